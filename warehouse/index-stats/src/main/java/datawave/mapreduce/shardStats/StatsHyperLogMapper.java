@@ -183,6 +183,9 @@ class StatsHyperLogMapper extends Mapper<Key,Value,BulkIngestKey,Value> {
         
         log.info("totals keys(" + this.outputTotal + ") +  'fi' values(" + this.total + ")");
         
+        // add the partition stats of the keys written to the counters
+        MultiTableRangePartitioner.flushStats();
+        
         super.cleanup(context);
     }
     
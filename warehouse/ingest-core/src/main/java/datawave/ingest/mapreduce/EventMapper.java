@@ -44,21 +44,28 @@ import datawave.util.time.TraceStopwatch;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Value;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.CounterGroup;
 import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.log4j.Logger;
 import org.apache.log4j.NDC;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -66,7 +73,13 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -78,9 +91,13 @@ import java.util.concurrent.TimeUnit;
  * is within the window, then the map will parse the Event into a map of field names and field values, the map method will call the process() method on each
  * DataTypeHandler implementation that has been configured for the Type of Event.
  *
- * This class no longer supports processing events in a multi-threaded fashion as that was proven to NOT be beneficial in the long run (i.e. The bulk of the
- * time is spent in the ContextWriter which is synchronized. Also multithreading mean potentially more memory use which we should already be maximizing per
- * machine in the hadoop map-reduce cluster.)
+ * By default each event is processed on the mapper thread, as the bulk of the time is typically spent in the ContextWriter which is synchronized, and
+ * multithreading means potentially more memory use which we should already be maximizing per machine in the hadoop map-reduce cluster. When normalization and
+ * the handlers dominate instead, the HANDLER_THREADS parameter may be set to process a window of up to HANDLER_WINDOW events on a pool of threads. Each thread
+ * sets up its own copies of the handlers, and the keys and values produced for each event are written to the ContextWriter on the mapper thread in input
+ * order, committing or rolling back each event as a unit exactly as when run serially. Handlers implementing ExtendedDataTypeHandler write directly to the
+ * ContextWriter, so they are run on the mapper thread when their event is written. This mode requires events to support RawRecordContainer.copy(), and is
+ * not used when ingest metrics are enabled.
  *
  *
  *
@@ -127,6 +144,17 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
     
     public static final String ID_FILTER_FSTS = "ingest.event.mapper.id.filter.fsts";
     
+    /**
+     * The number of threads used to normalize events and run their handlers. Defaults to 1 which processes each event on the mapper thread.
+     */
+    public static final String HANDLER_THREADS = "ingest.event.mapper.handler.threads";
+    
+    /**
+     * The maximum number of events being processed by the handler threads before the oldest is written to the context. Defaults to twice the number of
+     * handler threads.
+     */
+    public static final String HANDLER_WINDOW = "ingest.event.mapper.handler.window";
+    
     protected Map<String,List<DataTypeHandler<K1>>> typeMap = new HashMap<>();
     
     /**
@@ -160,6 +188,22 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
     private MetricsService<K2,V2> metricsService;
     private ReusableMetricsLabels metricsLabels;
     
+    // the handler threads, or null if events are processed on the mapper thread
+    private ExecutorService handlerExecutor = null;
+    private int handlerWindow = 0;
+    // the events being processed by the handler threads, in input order
+    private final Deque<PendingEvent> pendingEvents = new ArrayDeque<>();
+    // the type each handler was set up for, used to set up the copies used by the handler threads
+    private final Map<DataTypeHandler<K1>,Type> handlerTypes = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final List<HandlerThreadState> handlerThreadStates = Collections.synchronizedList(new ArrayList<>());
+    private final ThreadLocal<HandlerThreadState> handlerThreadState = ThreadLocal.withInitial(() -> {
+        HandlerThreadState state = new HandlerThreadState();
+        handlerThreadStates.add(state);
+        return state;
+    });
+    private Configuration handlerConf;
+    private TaskAttemptID handlerTaskAttemptID;
+    
     /**
      * Set up the datatype handlers
      */
@@ -263,6 +307,23 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
             }
         }
         
+        int handlerThreads = context.getConfiguration().getInt(HANDLER_THREADS, 1);
+        if (handlerThreads > 1) {
+            if (metricsEnabled) {
+                log.warn("Ingest metrics are collected on the mapper thread, ignoring " + HANDLER_THREADS + " of " + handlerThreads);
+            } else {
+                handlerWindow = Math.max(handlerThreads, context.getConfiguration().getInt(HANDLER_WINDOW, 2 * handlerThreads));
+                handlerConf = context.getConfiguration();
+                handlerTaskAttemptID = context.getTaskAttemptID();
+                AtomicInteger threadCount = new AtomicInteger();
+                handlerExecutor = Executors.newFixedThreadPool(handlerThreads, r -> {
+                    Thread thread = new Thread(r, "EventMapper handler " + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        
         validators = ArrayListMultimap.create();
         
         if (null != split) {
@@ -278,6 +339,9 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         if (log.isInfoEnabled()) {
             log.info("EventMapper configured. Bulk Ingest = true");
             log.info("EventMapper configured with the following filters: " + getDataTypeFilterClassNames());
+            if (handlerExecutor != null) {
+                log.info("EventMapper configured with " + handlerThreads + " handler threads and a window of " + handlerWindow + " events");
+            }
         }
         
     }
@@ -329,19 +393,10 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
                         try {
                             @SuppressWarnings("unchecked")
                             Class<? extends DataTypeHandler<K1>> clazz = (Class<? extends DataTypeHandler<K1>>) Class.forName(handlerClassName);
-                            DataTypeHandler<K1> h = clazz.newInstance();
+                            DataTypeHandler<K1> h = createHandler(clazz, t, context.getConfiguration(), context.getTaskAttemptID(), reporter);
                             // Create a counter initialized to zero for all handler types.
                             getCounter(context, IngestOutput.ROWS_CREATED.name(), h.getClass().getSimpleName()).increment(0);
-                            // Trick here. Set the data.name parameter to type T, then call setup on the DataTypeHandler
-                            Configuration clone = new Configuration(context.getConfiguration());
-                            clone.set(DataTypeHelper.Properties.DATA_NAME, t.typeName());
-                            // Use the StandaloneReporter and StandaloneTaskAttemptContext for the Handlers. Because the StandaloneTaskAttemptContext
-                            // is a subclass of TaskInputOutputContext and TaskAttemptContext is not. We are using this to record the counters during
-                            // processing. We will need to add the counters in the StandaloneReporter to the Map.Context in the close call.
-                            // TaskAttemptContext newContext = new TaskAttemptContext(clone, context.getTaskAttemptID());
-                            StandaloneTaskAttemptContext<K1,V1,K2,V2> newContext = new StandaloneTaskAttemptContext<>(clone, context.getTaskAttemptID(),
-                                            reporter);
-                            h.setup(newContext);
+                            handlerTypes.put(h, t);
                             typeMap.get(typeStr).add(h);
                         } catch (ClassNotFoundException e) {
                             log.error("Error finding DataTypeHandler " + handlerClassName, e);
@@ -357,6 +412,26 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         return typeMap.get(typeStr);
     }
     
+    /**
+     * Create a data type handler and set it up for the given type
+     * 
+     * @return the data type handler
+     */
+    private DataTypeHandler<K1> createHandler(Class<? extends DataTypeHandler<K1>> clazz, Type t, Configuration conf, TaskAttemptID taskAttemptID,
+                    StandaloneStatusReporter reporter) throws InstantiationException, IllegalAccessException {
+        DataTypeHandler<K1> h = clazz.newInstance();
+        // Trick here. Set the data.name parameter to type T, then call setup on the DataTypeHandler
+        Configuration clone = new Configuration(conf);
+        clone.set(DataTypeHelper.Properties.DATA_NAME, t.typeName());
+        // Use the StandaloneReporter and StandaloneTaskAttemptContext for the Handlers. Because the StandaloneTaskAttemptContext
+        // is a subclass of TaskInputOutputContext and TaskAttemptContext is not. We are using this to record the counters during
+        // processing. We will need to add the counters in the StandaloneReporter to the Map.Context in the close call.
+        // TaskAttemptContext newContext = new TaskAttemptContext(clone, context.getTaskAttemptID());
+        StandaloneTaskAttemptContext<K1,V1,K2,V2> newContext = new StandaloneTaskAttemptContext<>(clone, taskAttemptID, reporter);
+        h.setup(newContext);
+        return h;
+    }
+    
     private List<String> getDataTypeFilterClassNames() {
         
         SortedMap<Integer,String[]> priorityToFilters = new TreeMap<>();
@@ -430,6 +505,9 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
             if (log.isInfoEnabled())
                 log.info("Purging event from the " + errorSummary.getTableName() + " table");
             
+            // write out the events before this one so that the purge stays in input order
+            commitPendingEvents(0, context);
+            
             try {
                 // Load error dataType into typeMap
                 loadDataType(TypeRegistry.ERROR_PREFIX, context);
@@ -494,56 +572,29 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         }
         
         Multimap<String,NormalizedContentInterface> fields = HashMultimap.create();
-        try {
-            processEvent(key, value, handlers, fields, context);
-        } catch (Exception e) {
-            // Rollback anything written for this event
-            contextWriter.rollback();
-            
-            // Fail job on constraint violations
-            if (e instanceof ConstraintChecker.ConstraintViolationException) {
-                throw ((RuntimeException) e);
-            }
-            
-            // ensure they know we are still working on it
-            context.progress();
-            
-            // log error
-            log.error("Runtime exception processing event", e);
-            
-            // now lets dump to the errors table
-            // first set the exception on the event if not a field normalization error in which case the fields contain the errors
-            if (!(e instanceof FieldNormalizationError)) {
-                value.setAuxData(e);
-            }
-            for (DataTypeHandler<K1> handler : loadDataType(TypeRegistry.ERROR_PREFIX, context)) {
-                if (log.isTraceEnabled())
-                    log.trace("executing handler: " + handler.getClass().getName());
-                try {
-                    executeHandler(key, value, fields, handler, context);
-                    context.progress();
-                } catch (Exception e2) {
-                    // This is a real bummer, we had a critical exception attempting to throw the event into the error table.
-                    // lets terminate this job
-                    log.error("Failed to process error data handlers for an event", e2);
-                    throw new IOException("Failed to process error data handlers for an event", e2);
+        if (handlerExecutor != null) {
+            try {
+                submitEvent(key, value, handlers, context);
+            } finally {
+                // Remove ORIG_FILE from NDC that was populated by reprocessing events from the error tables
+                if (reprocessedNDCPush) {
+                    NDC.pop();
                 }
             }
-            
-            // now create some counters
-            getCounter(context, IngestProcess.RUNTIME_EXCEPTION).increment(1);
-            List<String> exceptions = getExceptionSynopsis(e);
-            for (String exception : exceptions) {
-                getCounter(context, IngestProcess.RUNTIME_EXCEPTION.name(), exception).increment(1);
-            }
-        } finally {
-            // Remove ORIG_FILE from NDC that was populated by reprocessing events from the error tables
-            if (reprocessedNDCPush) {
-                NDC.pop();
+        } else {
+            try {
+                processEvent(key, value, handlers, fields, context);
+            } catch (Exception e) {
+                handleEventError(key, value, fields, e, context);
+            } finally {
+                // Remove ORIG_FILE from NDC that was populated by reprocessing events from the error tables
+                if (reprocessedNDCPush) {
+                    NDC.pop();
+                }
+                // cleanup the context writer
+                contextWriter.commit(context);
+                context.progress();
             }
-            // cleanup the context writer
-            contextWriter.commit(context);
-            context.progress();
         }
         
         getCounter(context, IngestOutput.EVENTS_PROCESSED.name(), value.getDataType().typeName().toUpperCase()).increment(1);
@@ -560,6 +611,126 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         }
     }
     
+    /**
+     * Rollback anything written for an event that failed, and run the error handlers on it instead
+     * 
+     * @param key
+     *            The key of the map process
+     * @param value
+     *            The event
+     * @param fields
+     *            The last set of fields of the event
+     * @param e
+     *            The exception processing the event
+     * @param context
+     *            The context
+     */
+    private void handleEventError(K1 key, RawRecordContainer value, Multimap<String,NormalizedContentInterface> fields, Exception e, Context context)
+                    throws IOException, InterruptedException {
+        // Rollback anything written for this event
+        contextWriter.rollback();
+        
+        // Fail job on constraint violations
+        if (e instanceof ConstraintChecker.ConstraintViolationException) {
+            throw ((RuntimeException) e);
+        }
+        
+        // ensure they know we are still working on it
+        context.progress();
+        
+        // log error
+        log.error("Runtime exception processing event", e);
+        
+        // now lets dump to the errors table
+        // first set the exception on the event if not a field normalization error in which case the fields contain the errors
+        if (!(e instanceof FieldNormalizationError)) {
+            value.setAuxData(e);
+        }
+        for (DataTypeHandler<K1> handler : loadDataType(TypeRegistry.ERROR_PREFIX, context)) {
+            if (log.isTraceEnabled())
+                log.trace("executing handler: " + handler.getClass().getName());
+            try {
+                executeHandler(key, value, fields, handler, context);
+                context.progress();
+            } catch (Exception e2) {
+                // This is a real bummer, we had a critical exception attempting to throw the event into the error table.
+                // lets terminate this job
+                log.error("Failed to process error data handlers for an event", e2);
+                throw new IOException("Failed to process error data handlers for an event", e2);
+            }
+        }
+        
+        // now create some counters
+        getCounter(context, IngestProcess.RUNTIME_EXCEPTION).increment(1);
+        List<String> exceptions = getExceptionSynopsis(e);
+        for (String exception : exceptions) {
+            getCounter(context, IngestProcess.RUNTIME_EXCEPTION.name(), exception).increment(1);
+        }
+    }
+    
+    /**
+     * Hand an event to the handler threads, and then write out the oldest events until the window is no longer full.
+     * 
+     * @param key
+     *            The key of the map process
+     * @param value
+     *            The event
+     * @param handlers
+     *            The list of handlers to apply
+     * @param context
+     *            The context
+     */
+    @SuppressWarnings("unchecked")
+    private void submitEvent(K1 key, V1 value, List<DataTypeHandler<K1>> handlers, Context context) throws IOException, InterruptedException {
+        // the record reader may reuse the key and value objects, so hold on to copies of them
+        K1 eventKey = key instanceof Writable ? (K1) WritableUtils.clone((Writable) key, context.getConfiguration()) : key;
+        RawRecordContainer event = value.copy();
+        PendingEvent pending = new PendingEvent(eventKey, event, handlers, new ArrayList<>(validators.get(event.getDataType().outputName())), NDC.peek(),
+                        offset);
+        pending.future = handlerExecutor.submit(pending);
+        pendingEvents.add(pending);
+        commitPendingEvents(handlerWindow - 1, context);
+    }
+    
+    /**
+     * Write out the oldest events processed by the handler threads, waiting on them as needed, until no more than maxPending events remain. Each event is
+     * committed as a unit, or rolled back and passed to the error handlers if any of its handlers failed.
+     * 
+     * @param maxPending
+     *            The number of events which may be left pending
+     * @param context
+     *            The context
+     */
+    private void commitPendingEvents(int maxPending, Context context) throws IOException, InterruptedException {
+        while (pendingEvents.size() > maxPending) {
+            PendingEvent event = pendingEvents.remove();
+            try {
+                event.future.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to process event " + event.value.getId(), e.getCause());
+            }
+            try {
+                for (HandlerOutput output : event.outputs) {
+                    if (output.results == null && output.handler instanceof ExtendedDataTypeHandler) {
+                        executeHandler(event.key, event.value, output.fields, output.handler, context);
+                    } else {
+                        handlerCompleted(event.value, output.fields, output.handler, writeResults(output.results, context), context);
+                    }
+                    context.progress();
+                }
+                if (event.error != null) {
+                    throw event.error;
+                }
+            } catch (Exception e) {
+                handleEventError(event.key, event.value, event.fields, e, context);
+            } finally {
+                // cleanup the context writer
+                contextWriter.commit(context);
+                context.progress();
+            }
+        }
+    }
+    
     /**
      * Get an exception synopsis that is suitable as a counter. We want at a minimum the exception name and a useful location. A useful location is defined as
      * the highest location that is in the datawave.ingest package
@@ -613,6 +784,12 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
     @Override
     public void cleanup(Context context) throws IOException, InterruptedException {
         
+        if (handlerExecutor != null) {
+            // write out the events still being processed before the metadata
+            commitPendingEvents(0, context);
+            handlerExecutor.shutdown();
+        }
+        
         // Write the metadata to the output
         for (List<DataTypeHandler<K1>> handlers : typeMap.values()) {
             for (DataTypeHandler<K1> h : handlers)
@@ -633,6 +810,9 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         // cleanup the context writer
         contextWriter.cleanup(context);
         
+        // add the partition stats of the keys written to the counters
+        MultiTableRangePartitioner.flushStats();
+        
         for (List<DataTypeHandler<K1>> handlers : typeMap.values()) {
             for (DataTypeHandler<K1> h : handlers)
                 h.close(context);
@@ -640,12 +820,14 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         typeMap.clear();
         
         // Add the counters from the standalone reporter to this context.
-        Counters counters = reporter.getCounters();
-        for (CounterGroup cg : counters) {
-            for (Counter c : cg) {
-                getCounter(context, cg.getName(), c.getName()).increment(c.getValue());
-            }
+        addCounters(reporter, context);
+        
+        for (HandlerThreadState state : handlerThreadStates) {
+            for (DataTypeHandler<K1> h : state.handlers.values())
+                h.close(context);
+            addCounters(state.reporter, context);
         }
+        handlerThreadStates.clear();
         
         super.cleanup(context);
         
@@ -655,6 +837,15 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         }
     }
     
+    private void addCounters(StandaloneStatusReporter reporter, Context context) {
+        Counters counters = reporter.getCounters();
+        for (CounterGroup cg : counters) {
+            for (Counter c : cg) {
+                getCounter(context, cg.getName(), c.getName()).increment(c.getValue());
+            }
+        }
+    }
+    
     /**
      * This is where we apply a list of handlers to an event.
      *
@@ -739,6 +930,25 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
     }
     
     public Multimap<String,NormalizedContentInterface> getFields(RawRecordContainer value, DataTypeHandler<K1> handler) throws Exception {
+        return getFields(value, handler, NDC.peek(), offset);
+    }
+    
+    /**
+     * Get the fields of an event, using the given filename and offset for the ORIG_FILE field. This allows the fields to be gathered on a thread other than
+     * the mapper thread.
+     * 
+     * @param value
+     *            The event
+     * @param handler
+     *            The handler whose helper parses the event
+     * @param fileName
+     *            The filename the event was read from, as pushed on the NDC of the mapper thread
+     * @param offset
+     *            The offset of the event within the split
+     * @return the fields of the event
+     */
+    protected Multimap<String,NormalizedContentInterface> getFields(RawRecordContainer value, DataTypeHandler<K1> handler, String fileName, long offset)
+                    throws Exception {
         Multimap<String,NormalizedContentInterface> newFields;
         // Parse the event into its field names and field values using the DataTypeHandler's BaseIngestHelper object.
         newFields = handler.getHelper(value.getDataType()).getEventFields(value);
@@ -773,7 +983,7 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         
         // place the sequence filename into the event
         if (createSequenceFileName) {
-            seqFileName = NDC.peek();
+            seqFileName = fileName;
             
             if (trimSequenceFileName) {
                 seqFileName = StringUtils.substringAfterLast(seqFileName, "/");
@@ -825,13 +1035,7 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         
         if (!(handler instanceof ExtendedDataTypeHandler)) {
             r = handler.processBulk(key, event, fields, new ContextWrappedStatusReporter(getContext(context)));
-            if (r == null) {
-                getCounter(context, IngestInput.EVENT_FATAL_ERROR).increment(1);
-                getCounter(context, IngestInput.EVENT_FATAL_ERROR.name(), "NullMultiMap").increment(1);
-            } else {
-                contextWriter.write(r, context);
-                count = r.size();
-            }
+            count = writeResults(r, context);
         } else {
             count = ((ExtendedDataTypeHandler<K1,K2,V2>) handler).process(key, event, fields, context, contextWriter);
             if (count == -1) {
@@ -840,15 +1044,7 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
             }
         }
         
-        // Update the counters
-        if (count > 0) {
-            getCounter(context, IngestOutput.ROWS_CREATED.name(), handler.getClass().getSimpleName()).increment(count);
-            getCounter(context, IngestOutput.ROWS_CREATED).increment(count);
-        }
-        
-        if (handler.getMetadata() != null) {
-            handler.getMetadata().addEvent(handler.getHelper(event.getDataType()), event, fields, now.get());
-        }
+        handlerCompleted(event, fields, handler, count, context);
         
         if (metricsEnabled && handlerTimer != null) {
             handlerTimer.stop();
@@ -865,6 +1061,37 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         }
     }
     
+    /**
+     * Write the results of a handler to the context writer
+     * 
+     * @return the number of keys written
+     */
+    private long writeResults(Multimap<BulkIngestKey,Value> r, Context context) throws IOException, InterruptedException {
+        if (r == null) {
+            getCounter(context, IngestInput.EVENT_FATAL_ERROR).increment(1);
+            getCounter(context, IngestInput.EVENT_FATAL_ERROR.name(), "NullMultiMap").increment(1);
+            return 0;
+        }
+        contextWriter.write(r, context);
+        return r.size();
+    }
+    
+    /**
+     * Update the counters and metadata once a handler has been applied to an event
+     */
+    private void handlerCompleted(RawRecordContainer event, Multimap<String,NormalizedContentInterface> fields, DataTypeHandler<K1> handler, long count,
+                    Context context) {
+        // Update the counters
+        if (count > 0) {
+            getCounter(context, IngestOutput.ROWS_CREATED.name(), handler.getClass().getSimpleName()).increment(count);
+            getCounter(context, IngestOutput.ROWS_CREATED).increment(count);
+        }
+        
+        if (handler.getMetadata() != null) {
+            handler.getMetadata().addEvent(handler.getHelper(event.getDataType()), event, fields, now.get());
+        }
+    }
+    
     public ContextWriter<K2,V2> getContextWriter() {
         return this.contextWriter;
     }
@@ -873,4 +1100,113 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         return this.typeMap;
     }
     
+    /**
+     * The copies of the handlers used by a handler thread. Handlers and their helpers are not expected to be thread safe, so each thread sets up its own copy
+     * of the handlers loaded on the mapper thread, recording counters in its own reporter.
+     */
+    private class HandlerThreadState {
+        private final Map<DataTypeHandler<K1>,DataTypeHandler<K1>> handlers = new IdentityHashMap<>();
+        private final StandaloneStatusReporter reporter = new StandaloneStatusReporter();
+        
+        @SuppressWarnings("unchecked")
+        private DataTypeHandler<K1> getHandler(DataTypeHandler<K1> handler) throws InstantiationException, IllegalAccessException {
+            DataTypeHandler<K1> copy = handlers.get(handler);
+            if (copy == null) {
+                copy = createHandler((Class<? extends DataTypeHandler<K1>>) handler.getClass(), handlerTypes.get(handler), handlerConf, handlerTaskAttemptID,
+                                reporter);
+                handlers.put(handler, copy);
+            }
+            return copy;
+        }
+    }
+    
+    /**
+     * The output of a handler applied to an event on a handler thread
+     */
+    private class HandlerOutput {
+        // the handler loaded on the mapper thread
+        private final DataTypeHandler<K1> handler;
+        private final Multimap<String,NormalizedContentInterface> fields;
+        // the keys and values produced, or null for an ExtendedDataTypeHandler which is run on the mapper thread instead
+        private final Multimap<BulkIngestKey,Value> results;
+        
+        private HandlerOutput(DataTypeHandler<K1> handler, Multimap<String,NormalizedContentInterface> fields, Multimap<BulkIngestKey,Value> results) {
+            this.handler = handler;
+            this.fields = fields;
+            this.results = results;
+        }
+    }
+    
+    /**
+     * An event being processed on a handler thread. This mirrors processEvent, except that the handler results are held until the event can be written out
+     * in input order on the mapper thread.
+     */
+    private class PendingEvent implements Callable<Void> {
+        private final K1 key;
+        private final RawRecordContainer value;
+        private final List<DataTypeHandler<K1>> handlers;
+        private final Collection<FieldValidator> fieldValidators;
+        private final String fileName;
+        private final long offset;
+        private final List<HandlerOutput> outputs = new ArrayList<>();
+        // the last set of fields, retained for the error handlers
+        private Multimap<String,NormalizedContentInterface> fields = HashMultimap.create();
+        private Exception error = null;
+        private Future<Void> future = null;
+        
+        private PendingEvent(K1 key, RawRecordContainer value, List<DataTypeHandler<K1>> handlers, Collection<FieldValidator> fieldValidators,
+                        String fileName, long offset) {
+            this.key = key;
+            this.value = value;
+            this.handlers = handlers;
+            this.fieldValidators = fieldValidators;
+            this.fileName = fileName;
+            this.offset = offset;
+        }
+        
+        @Override
+        public Void call() {
+            HandlerThreadState state = handlerThreadState.get();
+            IngestHelperInterface previousHelper = null;
+            try {
+                for (DataTypeHandler<K1> handler : handlers) {
+                    DataTypeHandler<K1> threadHandler = state.getHandler(handler);
+                    IngestHelperInterface thisHelper = threadHandler.getHelper(value.getDataType());
+                    if (thisHelper == null) {
+                        continue;
+                    }
+                    
+                    if (null == previousHelper || !previousHelper.getClass().getName().equals(thisHelper.getClass().getName())) {
+                        // the fields of earlier outputs are left as they were
+                        fields = HashMultimap.create();
+                        Throwable e = null;
+                        for (Map.Entry<String,NormalizedContentInterface> entry : getFields(value, threadHandler, fileName, offset).entries()) {
+                            if (entry.getValue().getError() != null) {
+                                e = entry.getValue().getError();
+                            }
+                            fields.put(entry.getKey(), entry.getValue());
+                        }
+                        if (e != null) {
+                            throw new FieldNormalizationError("Failed getting all fields", e);
+                        }
+                        previousHelper = thisHelper;
+                    }
+                    
+                    for (FieldValidator validator : fieldValidators) {
+                        validator.validate(value, fields);
+                    }
+                    
+                    Multimap<BulkIngestKey,Value> results = null;
+                    if (!(handler instanceof ExtendedDataTypeHandler)) {
+                        results = threadHandler.processBulk(key, value, fields, state.reporter);
+                    }
+                    outputs.add(new HandlerOutput(handler, fields, results));
+                }
+            } catch (Exception e) {
+                error = e;
+            }
+            return null;
+        }
+    }
+    
 }
@@ -0,0 +1,200 @@
+package datawave.ingest.mapreduce.handler.edge;
+
+import com.google.common.collect.Multimap;
+import datawave.ingest.data.config.NormalizedContentInterface;
+import datawave.ingest.mapreduce.handler.edge.define.EdgeDefinition;
+import datawave.ingest.mapreduce.handler.edge.define.EdgeDefinitionConfigurationHelper;
+import datawave.ingest.mapreduce.handler.edge.evaluation.EdgePreconditionCacheHelper;
+import datawave.ingest.mapreduce.handler.edge.evaluation.EdgePreconditionJexlContext;
+import datawave.ingest.mapreduce.handler.edge.evaluation.EdgePreconditionJexlEvaluation;
+import org.apache.commons.jexl2.Script;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The edge definitions of a single data type compiled for event processing. The plan is built once when the handler is set up and holds what would otherwise
+ * be recomputed for every event: the grouped field names the definitions read, the group of the source and sink of each definition, and the compiled JEXL
+ * precondition scripts along with a context that is reused across events.
+ * 
+ * Each distinct precondition is evaluated at most once per event, no matter how many edge definitions share it.
+ */
+public class EdgeDefinitionPlan {
+    
+    public static final String NO_GROUP = "";
+    
+    private static final byte UNKNOWN = 0;
+    private static final byte MET = 1;
+    private static final byte NOT_MET = 2;
+    
+    private final EdgeDefinitionConfigurationHelper config;
+    private final List<EdgeDefinition> edgeDefs;
+    
+    private final String[] sourceGroups;
+    private final String[] sinkGroups;
+    private final boolean[] sameGroups;
+    
+    // the grouped field names read by the edge definitions, and the indexed field names they may have been built from
+    private final Set<String> fieldNames = new HashSet<>();
+    private final Set<String> indexedFieldNames = new HashSet<>();
+    
+    // the index into the preconditions of each edge definition, or -1 if it has none
+    private final int[] preconditionIndices;
+    private final Script[] preconditions;
+    private final byte[] preconditionResults;
+    private final EdgePreconditionJexlContext preconditionContext;
+    private final EdgePreconditionJexlEvaluation preconditionEvaluation;
+    
+    /**
+     * @param config
+     *            the edge definitions of the data type
+     * @param preconditionCacheHelper
+     *            used to compile the preconditions, or null if preconditions are not to be evaluated
+     */
+    public EdgeDefinitionPlan(EdgeDefinitionConfigurationHelper config, EdgePreconditionCacheHelper preconditionCacheHelper) {
+        this.config = config;
+        this.edgeDefs = new ArrayList<>(config.getEdges());
+        
+        int size = edgeDefs.size();
+        this.sourceGroups = new String[size];
+        this.sinkGroups = new String[size];
+        this.sameGroups = new boolean[size];
+        this.preconditionIndices = new int[size];
+        Arrays.fill(preconditionIndices, -1);
+        
+        Map<String,Integer> preconditionsByString = new HashMap<>();
+        List<Script> scripts = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            EdgeDefinition edgeDef = edgeDefs.get(i);
+            
+            sourceGroups[i] = getGroup(edgeDef.getSourceFieldName());
+            sinkGroups[i] = getGroup(edgeDef.getSinkFieldName());
+            sameGroups[i] = sourceGroups[i].equals(sinkGroups[i]) && sourceGroups[i] != NO_GROUP;
+            
+            addFieldName(edgeDef.getSourceFieldName());
+            addFieldName(edgeDef.getSinkFieldName());
+            addFieldName(edgeDef.getEnrichmentField());
+            if (edgeDef.hasDuration()) {
+                addFieldName(edgeDef.getUpTime());
+                addFieldName(edgeDef.getDownTime());
+                addFieldName(edgeDef.getElapsedTime());
+            }
+            
+            if (preconditionCacheHelper != null && edgeDef.hasJexlPrecondition()) {
+                Integer index = preconditionsByString.get(edgeDef.getJexlPrecondition());
+                if (index == null) {
+                    index = scripts.size();
+                    scripts.add(preconditionCacheHelper.createScriptFromString(edgeDef.getJexlPrecondition()));
+                    preconditionsByString.put(edgeDef.getJexlPrecondition(), index);
+                }
+                preconditionIndices[i] = index;
+            }
+        }
+        addFieldName(config.getEdgeAttribute2());
+        addFieldName(config.getEdgeAttribute3());
+        addFieldName(config.getActivityDateField());
+        
+        this.preconditions = scripts.toArray(new Script[scripts.size()]);
+        this.preconditionResults = new byte[preconditions.length];
+        if (preconditions.length > 0) {
+            this.preconditionContext = new EdgePreconditionJexlContext(edgeDefs);
+            this.preconditionEvaluation = new EdgePreconditionJexlEvaluation(preconditionContext);
+        } else {
+            this.preconditionContext = null;
+            this.preconditionEvaluation = null;
+        }
+    }
+    
+    // a grouped field name is an indexed field name followed by its group, so any prefix ending before a '.' may be the indexed field name
+    private void addFieldName(String fieldName) {
+        if (fieldName == null) {
+            return;
+        }
+        fieldNames.add(fieldName);
+        indexedFieldNames.add(fieldName);
+        for (int index = fieldName.indexOf('.'); index >= 0; index = fieldName.indexOf('.', index + 1)) {
+            indexedFieldNames.add(fieldName.substring(0, index));
+        }
+    }
+    
+    public static String getGroup(String groupedFieldName) {
+        int index = groupedFieldName.lastIndexOf('.');
+        if (index >= 0) {
+            return groupedFieldName.substring(index + 1);
+        } else {
+            return NO_GROUP;
+        }
+    }
+    
+    public EdgeDefinitionConfigurationHelper getConfig() {
+        return config;
+    }
+    
+    public List<EdgeDefinition> getEdges() {
+        return edgeDefs;
+    }
+    
+    public String getSourceGroup(int edge) {
+        return sourceGroups[edge];
+    }
+    
+    public String getSinkGroup(int edge) {
+        return sinkGroups[edge];
+    }
+    
+    /**
+     * @return true if the source and sink of the edge definition share a group, in which case edges are only created within the subgroups they have in common
+     */
+    public boolean isSameGroup(int edge) {
+        return sameGroups[edge];
+    }
+    
+    /**
+     * A cheap test on the indexed field name of a value, made before the grouped field name is built. A value passing this test is only needed if
+     * {@link #isFieldNeeded(String)} is also true of its grouped field name.
+     */
+    public boolean isIndexedFieldNeeded(String indexedFieldName) {
+        return indexedFieldNames.contains(indexedFieldName);
+    }
+    
+    public boolean isFieldNeeded(String groupedFieldName) {
+        return fieldNames.contains(groupedFieldName);
+    }
+    
+    public boolean hasPreconditions() {
+        return preconditions.length > 0;
+    }
+    
+    /**
+     * Load the fields of the next event into the precondition context and forget the precondition results of the last event.
+     */
+    public void setEvent(Multimap<String,NormalizedContentInterface> fields) {
+        if (preconditions.length > 0) {
+            preconditionContext.setFilteredContextForNormalizedContentInterface(fields);
+            Arrays.fill(preconditionResults, UNKNOWN);
+        }
+    }
+    
+    /**
+     * @return true if the edge definition has no precondition or its precondition is met by the current event
+     */
+    public boolean isPreconditionMet(int edge) {
+        int index = preconditionIndices[edge];
+        if (index < 0) {
+            return true;
+        }
+        if (preconditionResults[index] == UNKNOWN) {
+            preconditionResults[index] = preconditionEvaluation.apply(preconditions[index]) ? MET : NOT_MET;
+        }
+        return preconditionResults[index] == MET;
+    }
+    
+    public boolean hasPrecondition(int edge) {
+        return preconditionIndices[edge] >= 0;
+    }
+}
@@ -29,8 +29,6 @@ import datawave.ingest.mapreduce.handler.edge.define.EdgeDirection;
 import datawave.ingest.mapreduce.handler.edge.define.VertexValue;
 import datawave.ingest.mapreduce.handler.edge.define.VertexValue.ValueType;
 import datawave.ingest.mapreduce.handler.edge.evaluation.EdgePreconditionCacheHelper;
-import datawave.ingest.mapreduce.handler.edge.evaluation.EdgePreconditionJexlContext;
-import datawave.ingest.mapreduce.handler.edge.evaluation.EdgePreconditionJexlEvaluation;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
 import datawave.ingest.mapreduce.job.writer.ContextWriter;
 import datawave.ingest.metadata.RawRecordMetadata;
@@ -44,7 +42,6 @@ import datawave.util.time.DateHelper;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.security.ColumnVisibility;
-import org.apache.commons.jexl2.Script;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.StatusReporter;
@@ -124,10 +121,9 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
     
     private boolean evaluatePreconditions = false;
     private boolean includeAllEdges;
-    private EdgePreconditionJexlContext edgePreconditionContext;
-    private EdgePreconditionJexlEvaluation edgePreconditionEvaluation;
     private EdgePreconditionCacheHelper edgePreconditionCacheHelper;
-    private Map<String,Script> scriptCache;
+    // the edge definitions of each data type compiled for event processing
+    private Map<String,EdgeDefinitionPlan> edgeDefinitionPlans;
     
     protected String edgeTableName = null;
     protected String metadataTableName = null;
@@ -293,10 +289,7 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
          * not waste time evaluating edges where the conditions won't be met
          */
         if (evaluatePreconditions) {
-            edgePreconditionContext = new EdgePreconditionJexlContext(edges);
-            edgePreconditionEvaluation = new EdgePreconditionJexlEvaluation();
             edgePreconditionCacheHelper = new EdgePreconditionCacheHelper();
-            scriptCache = edgePreconditionCacheHelper.createScriptCacheFromEdges(edges);
         } else if (!includeAllEdges) {
             
             // Else remove edges with a precondition. No conditional edge defs will be evaluated possibly resulting in fewer edges
@@ -347,6 +340,8 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
             sb.append(t).append(" ");
         }
         log.info(sb.toString());
+        
+        compileEdgeDefinitionPlans();
         log.info("ProtobufEdgeDataTypeHandler configured.");
         
     }
@@ -354,15 +349,27 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
     public void setUpPreconditions() {
         // Set up the EdgePreconditionJexlContext, if enabled
         if (evaluatePreconditions) {
-            edgePreconditionContext = new EdgePreconditionJexlContext(edges);
-            edgePreconditionEvaluation = new EdgePreconditionJexlEvaluation();
             edgePreconditionCacheHelper = new EdgePreconditionCacheHelper();
-            scriptCache = edgePreconditionCacheHelper.createScriptCacheFromEdges(edges);
         } else {
             
             // Else remove edges with a precondition
             removeEdgesWithPreconditions();
         }
+        compileEdgeDefinitionPlans();
+    }
+    
+    /**
+     * Compile the edge definitions of each data type into a plan, so that the work which depends only on the definitions is not repeated for every event.
+     * This must be done again whenever the edge definitions change.
+     */
+    protected void compileEdgeDefinitionPlans() {
+        Map<String,EdgeDefinitionPlan> plans = new HashMap<>();
+        if (edges != null) {
+            for (Entry<String,EdgeDefinitionConfigurationHelper> entry : edges.entrySet()) {
+                plans.put(entry.getKey(), new EdgeDefinitionPlan(entry.getValue(), evaluatePreconditions ? edgePreconditionCacheHelper : null));
+            }
+        }
+        this.edgeDefinitionPlans = plans;
     }
     
     /**
@@ -417,6 +424,8 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
     
     public void setEdges(Map<String,EdgeDefinitionConfigurationHelper> edges) {
         this.edges = edges;
+        // recompiled when the next event is processed
+        this.edgeDefinitionPlans = null;
     }
     
     public Map<String,Set<String>> getBlacklistFieldLookup() {
@@ -473,27 +482,31 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
         // get edge definitions for this event type
         Type dataType = event.getDataType();
         String typeName = dataType.typeName();
-        List<EdgeDefinition> edgeDefs = null;
-        EdgeDefinitionConfigurationHelper edgeDefConfigs = null;
-        if (!edges.containsKey(typeName)) {
+        if (edgeDefinitionPlans == null) {
+            if (evaluatePreconditions && edgePreconditionCacheHelper == null) {
+                edgePreconditionCacheHelper = new EdgePreconditionCacheHelper();
+            }
+            compileEdgeDefinitionPlans();
+        }
+        EdgeDefinitionPlan plan = edgeDefinitionPlans.get(typeName);
+        if (plan == null) {
             return edgesCreated; // short circuit, no edges defined for this type
         }
-        edgeDefConfigs = edges.get(typeName);
-        edgeDefs = edgeDefConfigs.getEdges();
+        EdgeDefinitionConfigurationHelper edgeDefConfigs = plan.getConfig();
+        List<EdgeDefinition> edgeDefs = plan.getEdges();
         
         /**
-         * If enabled, set the filtered context from the NormalizedContentInterface and create the script cache
+         * If enabled, set the filtered context from the NormalizedContentInterface
          */
-        if (evaluatePreconditions) {
+        if (plan.hasPreconditions()) {
             long start = System.currentTimeMillis();
-            edgePreconditionContext.setFilteredContextForNormalizedContentInterface(fields);
-            edgePreconditionEvaluation.setJexlContext(edgePreconditionContext);
+            plan.setEvent(fields);
             if (log.isTraceEnabled()) {
                 long time = System.currentTimeMillis() - start;
                 // only worth logging those that took some time....
                 if (time > 1) {
                     if (log.isTraceEnabled()) {
-                        log.trace("Time to set terms on the filtered context & EdgePreconditionJexlEvaluations: " + time + "ms.");
+                        log.trace("Time to set terms on the filtered context: " + time + "ms.");
                     }
                 }
             }
@@ -511,18 +524,24 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
         }
         
         /*
-         * normalize field names with groups
+         * normalize field names with groups, keeping only the fields read by the edge definitions
          */
         Multimap<String,NormalizedContentInterface> normalizedFields = HashMultimap.create();
         Map<String,Multimap<String,NormalizedContentInterface>> depthFirstList = new HashMap<>();
         Multimap<String,NormalizedContentInterface> tmp = null;
         for (Entry<String,NormalizedContentInterface> e : fields.entries()) {
             NormalizedContentInterface value = e.getValue();
+            if (!plan.isIndexedFieldNeeded(value.getIndexedFieldName())) {
+                continue;
+            }
+            String fieldName = getGroupedFieldName(value);
+            if (!plan.isFieldNeeded(fieldName)) {
+                continue;
+            }
             String subGroup = null;
             if (value instanceof GroupedNormalizedContentInterface) {
                 subGroup = ((GroupedNormalizedContentInterface) value).getSubGroup();
             }
-            String fieldName = getGroupedFieldName(value);
             tmp = depthFirstList.get(fieldName);
             if (tmp == null) {
                 tmp = HashMultimap.create();
@@ -574,32 +593,30 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
         /*
          * Create Edge Values from Edge Definitions
          */
-        for (EdgeDefinition edgeDef : edgeDefs) {
+        for (int edge = 0; edge < edgeDefs.size(); edge++) {
+            EdgeDefinition edgeDef = edgeDefs.get(edge);
             
             String jexlPreconditions = null;
             
             /**
              * Fail fast for setting up precondition evaluations
              */
-            if (evaluatePreconditions) {
+            if (plan.hasPrecondition(edge)) {
+                jexlPreconditions = edgeDef.getJexlPrecondition();
+                long start = System.currentTimeMillis();
+                if (!plan.isPreconditionMet(edge)) {
                 
-                if (edgeDef.hasJexlPrecondition()) {
-                    jexlPreconditions = edgeDef.getJexlPrecondition();
-                    long start = System.currentTimeMillis();
-                    if (!edgePreconditionEvaluation.apply(scriptCache.get(jexlPreconditions))) {
-                        
-                        if (log.isTraceEnabled()) {
-                            log.trace("Time to evaluate event(-): " + (System.currentTimeMillis() - start) + "ms.");
-                        }
-                        continue;
-                        
-                    } else {
+                    if (log.isTraceEnabled()) {
+                        log.trace("Time to evaluate event(-): " + (System.currentTimeMillis() - start) + "ms.");
+                    }
+                    continue;
                         
-                        if (log.isTraceEnabled()) {
-                            log.trace("Time to evaluate event(+): " + (System.currentTimeMillis() - start) + "ms.");
-                        }
+                } else {
                         
+                    if (log.isTraceEnabled()) {
+                        log.trace("Time to evaluate event(+): " + (System.currentTimeMillis() - start) + "ms.");
                     }
+                        
                 }
             }
             
@@ -616,8 +633,8 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
             Multimap<String,NormalizedContentInterface> mSource = null;
             Multimap<String,NormalizedContentInterface> mSink = null;
             
-            String sourceGroup = getGroup(edgeDef.getSourceFieldName());
-            String sinkGroup = getGroup(edgeDef.getSinkFieldName());
+            String sourceGroup = plan.getSourceGroup(edge);
+            String sinkGroup = plan.getSinkGroup(edge);
             
             if (depthFirstList.containsKey(edgeDef.getSourceFieldName()) && depthFirstList.containsKey(edgeDef.getSinkFieldName())) {
                 mSource = depthFirstList.get(edgeDef.getSourceFieldName());
@@ -635,7 +652,7 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
             }
             
             // If within the same group, then within each subgroup that are in common for both the sink and source
-            if (sourceGroup.equals(sinkGroup) && (sourceGroup != NO_GROUP)) {
+            if (plan.isSameGroup(edge)) {
                 Set<String> commonKeys = mSource.keySet();
                 commonKeys.retainAll(mSink.keySet());
                 /**
@@ -896,15 +913,10 @@ public class ProtobufEdgeDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> implements Exten
         return fieldName;
     }
     
-    private static final String NO_GROUP = "";
+    private static final String NO_GROUP = EdgeDefinitionPlan.NO_GROUP;
     
     protected String getGroup(String groupedFieldName) {
-        int index = groupedFieldName.lastIndexOf('.');
-        if (index >= 0) {
-            return groupedFieldName.substring(index + 1);
-        } else {
-            return NO_GROUP;
-        }
+        return EdgeDefinitionPlan.getGroup(groupedFieldName);
     }
     
     /*
@@ -0,0 +1,484 @@
+package datawave.ingest.mapreduce.job;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import datawave.ingest.mapreduce.partition.CutPoints;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+/**
+ * A binary file of the split points of many tables, laid out so that it can be memory mapped and searched in place rather than parsed into {@link Text}
+ * objects.
+ * 
+ * The file starts with a header: the magic bytes, the format version, and an index holding the name, offset, length, number of splits and CRC32 checksum of the
+ * block of splits of each table, followed by a CRC32 checksum of the header itself. The blocks follow the header. The sorted splits within a block are prefix
+ * compressed: each is written as the number of leading bytes it shares with the split before it, followed by the length and bytes of the rest of it. Every
+ * {@value #RESTART_INTERVAL} splits a split is written in full, and the offsets of these restart points at the end of the block allow a binary search which
+ * only decodes the splits between two restart points.
+ * 
+ * A table's block is copied unchanged when a file is regenerated with new splits for only some of the tables.
+ */
+public class BinarySplitsFile {
+    
+    private static final byte[] MAGIC = {'D', 'W', 'S', 'P', 'L', 'I', 'T', 'S'};
+    public static final int VERSION = 1;
+    public static final int RESTART_INTERVAL = 16;
+    
+    /**
+     * Collects the splits of each table and writes them out as a binary splits file.
+     */
+    public static class Writer {
+        private final Map<String,Block> blocks = new TreeMap<>();
+        
+        /**
+         * @param table
+         *            the table name
+         * @param splits
+         *            the split points of the table, in any order
+         */
+        public void addTable(String table, Collection<Text> splits) {
+            List<Text> sorted = new ArrayList<>(splits);
+            Collections.sort(sorted);
+            
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int[] restarts = new int[(sorted.size() + RESTART_INTERVAL - 1) / RESTART_INTERVAL];
+            Text previous = null;
+            for (int i = 0; i < sorted.size(); i++) {
+                Text split = sorted.get(i);
+                int shared = 0;
+                if (i % RESTART_INTERVAL == 0) {
+                    restarts[i / RESTART_INTERVAL] = bytes.size();
+                } else {
+                    int max = Math.min(previous.getLength(), split.getLength());
+                    while (shared < max && previous.getBytes()[shared] == split.getBytes()[shared]) {
+                        shared++;
+                    }
+                }
+                writeVInt(bytes, shared);
+                writeVInt(bytes, split.getLength() - shared);
+                bytes.write(split.getBytes(), shared, split.getLength() - shared);
+                previous = split;
+            }
+            for (int restart : restarts) {
+                writeInt(bytes, restart);
+            }
+            byte[] block = bytes.toByteArray();
+            blocks.put(table, new Block(block, sorted.size(), checksum(ByteBuffer.wrap(block))));
+        }
+        
+        /**
+         * Copy the splits of a table unchanged from an existing file.
+         * 
+         * @throws IOException
+         *             if the splits of the table in the existing file are corrupt
+         */
+        public void copyTable(Reader reader, String table) throws IOException {
+            TableSplits splits = reader.getSplits(table);
+            if (splits == null) {
+                throw new IllegalArgumentException("No splits for " + table + " to copy");
+            }
+            byte[] block = new byte[splits.length];
+            ByteBuffer buffer = splits.buffer.duplicate();
+            buffer.position(splits.start);
+            buffer.get(block);
+            blocks.put(table, new Block(block, splits.count, splits.checksum));
+        }
+        
+        public Set<String> getTableNames() {
+            return blocks.keySet();
+        }
+        
+        public void write(OutputStream out) throws IOException {
+            List<byte[]> names = new ArrayList<>();
+            int headerLength = MAGIC.length + 4 + 4 + 8;
+            for (String table : blocks.keySet()) {
+                byte[] name = table.getBytes(StandardCharsets.UTF_8);
+                names.add(name);
+                headerLength += 2 + name.length + 8 + 4 + 4 + 8;
+            }
+            
+            ByteArrayOutputStream header = new ByteArrayOutputStream(headerLength);
+            DataOutputStream headerOut = new DataOutputStream(header);
+            headerOut.write(MAGIC);
+            headerOut.writeInt(VERSION);
+            headerOut.writeInt(blocks.size());
+            long offset = headerLength;
+            int i = 0;
+            for (Block block : blocks.values()) {
+                byte[] name = names.get(i++);
+                headerOut.writeShort(name.length);
+                headerOut.write(name);
+                headerOut.writeLong(offset);
+                headerOut.writeInt(block.bytes.length);
+                headerOut.writeInt(block.count);
+                headerOut.writeLong(block.checksum);
+                offset += block.bytes.length;
+            }
+            headerOut.flush();
+            headerOut.writeLong(checksum(ByteBuffer.wrap(header.toByteArray())));
+            
+            header.writeTo(out);
+            for (Block block : blocks.values()) {
+                out.write(block.bytes);
+            }
+            out.flush();
+        }
+        
+        private static class Block {
+            private final byte[] bytes;
+            private final int count;
+            private final long checksum;
+            
+            private Block(byte[] bytes, int count, long checksum) {
+                this.bytes = bytes;
+                this.count = count;
+                this.checksum = checksum;
+            }
+        }
+    }
+    
+    /**
+     * Reads a binary splits file. The checksum of the header is verified when the file is opened, and the checksum of the splits of a table when they are
+     * first asked for.
+     */
+    public static class Reader {
+        private final ByteBuffer buffer;
+        private final Map<String,TableSplits> tables = new TreeMap<>();
+        private final Set<String> verified = ConcurrentHashMap.newKeySet();
+        
+        public Reader(ByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            try {
+                for (int i = 0; i < MAGIC.length; i++) {
+                    if (buffer.get(i) != MAGIC[i]) {
+                        throw new IOException("Not a binary splits file");
+                    }
+                }
+                int position = MAGIC.length;
+                int version = buffer.getInt(position);
+                if (version != VERSION) {
+                    throw new IOException("Unsupported binary splits file version " + version);
+                }
+                int numTables = buffer.getInt(position + 4);
+                position += 8;
+                for (int i = 0; i < numTables; i++) {
+                    byte[] name = new byte[buffer.getShort(position) & 0xffff];
+                    position += 2;
+                    for (int j = 0; j < name.length; j++) {
+                        name[j] = buffer.get(position++);
+                    }
+                    long offset = buffer.getLong(position);
+                    int length = buffer.getInt(position + 8);
+                    int count = buffer.getInt(position + 12);
+                    long checksum = buffer.getLong(position + 16);
+                    position += 24;
+                    if (offset < 0 || offset + length > buffer.limit()) {
+                        throw new IOException("Binary splits file is truncated");
+                    }
+                    tables.put(new String(name, StandardCharsets.UTF_8), new TableSplits(buffer, (int) offset, length, count, checksum));
+                }
+                ByteBuffer header = buffer.duplicate();
+                header.position(0).limit(position);
+                if (checksum(header) != buffer.getLong(position)) {
+                    throw new IOException("Binary splits file header is corrupt");
+                }
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException("Binary splits file is truncated", e);
+            }
+        }
+        
+        /**
+         * Memory map a local file, such as one from the distributed cache.
+         */
+        public static Reader map(File file) throws IOException {
+            try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel()) {
+                // the mapping remains valid once the channel is closed
+                return new Reader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+        
+        /**
+         * Read a file into memory, for a file system which can not be memory mapped.
+         */
+        public static Reader read(FileSystem fs, Path path) throws IOException {
+            try (InputStream in = fs.open(path)) {
+                return new Reader(ByteBuffer.wrap(IOUtils.toByteArray(in)));
+            }
+        }
+        
+        public Set<String> getTableNames() {
+            return Collections.unmodifiableSet(tables.keySet());
+        }
+        
+        public int getSplitCount(String table) {
+            TableSplits splits = tables.get(table);
+            return splits == null ? 0 : splits.size();
+        }
+        
+        /**
+         * @return the splits of the table, or null if the file has none for it
+         * @throws IOException
+         *             if the checksum of the splits of the table does not match
+         */
+        public TableSplits getSplits(String table) throws IOException {
+            TableSplits splits = tables.get(table);
+            if (splits != null && !verified.contains(table)) {
+                ByteBuffer block = buffer.duplicate();
+                block.position(splits.start).limit(splits.start + splits.length);
+                if (checksum(block) != splits.checksum) {
+                    throw new IOException("Binary splits file is corrupt for table " + table);
+                }
+                verified.add(table);
+            }
+            return splits;
+        }
+    }
+    
+    /**
+     * The splits of one table, read in place from the file. Searching is thread safe and does not allocate.
+     */
+    public static class TableSplits implements CutPoints {
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int length;
+        private final int count;
+        private final long checksum;
+        private final int restarts;
+        private final int numRestarts;
+        
+        private TableSplits(ByteBuffer buffer, int start, int length, int count, long checksum) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+            this.count = count;
+            this.checksum = checksum;
+            this.numRestarts = (count + RESTART_INTERVAL - 1) / RESTART_INTERVAL;
+            this.restarts = start + length - 4 * numRestarts;
+        }
+        
+        @Override
+        public int size() {
+            return count;
+        }
+        
+        @Override
+        public int binarySearch(byte[] row, int offset, int rowLength) {
+            // find the last restart point less than the row
+            int low = 0;
+            int high = numRestarts - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int position = restart(mid);
+                // the number of shared bytes, which is zero at a restart point
+                position += vIntSize(position);
+                int splitLength = readVInt(position);
+                position += vIntSize(position);
+                int cmp = compare(position, splitLength, row, offset, rowLength);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid * RESTART_INTERVAL;
+                }
+            }
+            if (high < 0) {
+                return -1;
+            }
+            
+            // scan the splits after the restart point, knowing the length of the prefix each previous split shared with the row
+            int index = high * RESTART_INTERVAL;
+            int end = Math.min(count, index + RESTART_INTERVAL);
+            int position = restart(high);
+            position += vIntSize(position);
+            int suffixLength = readVInt(position);
+            position += vIntSize(position);
+            int common = commonPrefix(position, suffixLength, row, offset, rowLength, 0);
+            position += suffixLength;
+            for (index++; index < end; index++) {
+                int shared = readVInt(position);
+                position += vIntSize(position);
+                suffixLength = readVInt(position);
+                position += vIntSize(position);
+                if (shared < common) {
+                    // this split differs from the previous one where the previous one matched the row, and is greater than both
+                    return -(index + 1);
+                } else if (shared == common) {
+                    int matched = commonPrefix(position, suffixLength, row, offset, rowLength, common) - common;
+                    if (matched < suffixLength && common + matched < rowLength) {
+                        if ((buffer.get(position + matched) & 0xff) > (row[offset + common + matched] & 0xff)) {
+                            return -(index + 1);
+                        }
+                    } else if (matched == suffixLength && common + matched == rowLength) {
+                        return index;
+                    } else if (matched < suffixLength) {
+                        // the row is a prefix of this split
+                        return -(index + 1);
+                    }
+                    common += matched;
+                }
+                // otherwise this split differs from the row where the previous one did, and is less than the row as well
+                position += suffixLength;
+            }
+            return -(end + 1);
+        }
+        
+        /**
+         * @return the split at an index, decoded from the restart point before it
+         */
+        public Text get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            }
+            byte[] split = new byte[0];
+            int splitLength = 0;
+            int position = restart(index / RESTART_INTERVAL);
+            for (int i = index - index % RESTART_INTERVAL; i <= index; i++) {
+                int shared = readVInt(position);
+                position += vIntSize(position);
+                int suffixLength = readVInt(position);
+                position += vIntSize(position);
+                splitLength = shared + suffixLength;
+                if (splitLength > split.length) {
+                    split = Arrays.copyOf(split, Math.max(splitLength, split.length * 2));
+                }
+                for (int j = 0; j < suffixLength; j++) {
+                    split[shared + j] = buffer.get(position + j);
+                }
+                position += suffixLength;
+            }
+            Text text = new Text();
+            text.set(split, 0, splitLength);
+            return text;
+        }
+        
+        /**
+         * @return a view of the splits which decodes a split each time it is read
+         */
+        public List<Text> asList() {
+            return new AbstractList<Text>() {
+                @Override
+                public Text get(int index) {
+                    return TableSplits.this.get(index);
+                }
+                
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+        
+        /**
+         * @return all of the splits, decoded in a single pass
+         */
+        public List<Text> toList() {
+            List<Text> splits = new ArrayList<>(count);
+            byte[] split = new byte[0];
+            int position = start;
+            for (int i = 0; i < count; i++) {
+                int shared = readVInt(position);
+                position += vIntSize(position);
+                int suffixLength = readVInt(position);
+                position += vIntSize(position);
+                if (shared + suffixLength > split.length) {
+                    split = Arrays.copyOf(split, Math.max(shared + suffixLength, split.length * 2));
+                }
+                for (int j = 0; j < suffixLength; j++) {
+                    split[shared + j] = buffer.get(position + j);
+                }
+                position += suffixLength;
+                Text text = new Text();
+                text.set(split, 0, shared + suffixLength);
+                splits.add(text);
+            }
+            return splits;
+        }
+        
+        private int restart(int restart) {
+            return start + buffer.getInt(restarts + 4 * restart);
+        }
+        
+        private int compare(int position, int splitLength, byte[] row, int offset, int rowLength) {
+            for (int i = 0; i < splitLength && i < rowLength; i++) {
+                int diff = (buffer.get(position + i) & 0xff) - (row[offset + i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return splitLength - rowLength;
+        }
+        
+        // the length of the prefix of the row matched by the split bytes at the position, which follow the first from bytes of the row
+        private int commonPrefix(int position, int suffixLength, byte[] row, int offset, int rowLength, int from) {
+            int i = 0;
+            while (i < suffixLength && from + i < rowLength && buffer.get(position + i) == row[offset + from + i]) {
+                i++;
+            }
+            return from + i;
+        }
+        
+        private int readVInt(int position) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+        
+        private int vIntSize(int position) {
+            int size = 1;
+            while (buffer.get(position++) < 0) {
+                size++;
+            }
+            return size;
+        }
+    }
+    
+    private static long checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return crc.getValue();
+    }
+    
+    private static void writeVInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+    
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
@@ -57,6 +57,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Observer;
@@ -66,6 +67,11 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A processor whose job is to watch for completed Bulk Ingest jobs and bring the map files produced by them online in accumulo. This class attempts to bring
@@ -77,6 +83,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
     private static int SLEEP_TIME = 30000;
     private static int FAILURE_SLEEP_TIME = 10 * 60 * 1000; // 10 minutes
     private static int MAX_DIRECTORIES = 1;
+    private static int IN_FLIGHT_DIRECTORIES = 1;
     private static int MAJC_CHECK_INTERVAL = 1;
     private static int MAJC_THRESHOLD = 3000;
     private static int MAJC_WAIT_TIMEOUT = 0;// 2 * 60 * 1000;
@@ -91,6 +98,10 @@ public final class BulkIngestMapFileLoader implements Runnable {
     public static final String ATTEMPT_FILE_MARKER = "job.load.attempt.failed.do.not.delete";
     public static final String INPUT_FILES_MARKER = "job.paths";
     
+    public static final String STAGING_STAGE = "staging";
+    public static final String IMPORT_STAGE = "import";
+    public static final String COMPLETION_STAGE = "completion";
+    
     private Path workDir;
     private String jobDirPattern;
     private String instanceName;
@@ -106,6 +117,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
     private volatile boolean running;
     private ExecutorService executor;
     private JobObservable jobObservable;
+    private final Map<String,StageMetrics> stageMetrics = createStageMetrics();
     
     public static void main(String[] args) throws AccumuloSecurityException, IOException {
         
@@ -120,7 +132,8 @@ public final class BulkIngestMapFileLoader implements Runnable {
             log.error("usage: BulkIngestMapFileLoader hdfsWorkDir jobDirPattern instanceName zooKeepers username password "
                             + "[-sleepTime sleepTime] [-majcThreshold threshold] [-majcCheckInterval count] [-majcDelay majcDelay] "
                             + " [-seqFileHdfs seqFileSystemUri] [-srcHdfs srcFileSystemURI] [-destHdfs destFileSystemURI] [-jt jobTracker] "
-                            + "[-ingestMetricsDisabled] [-jobObservers jobObserverClasses] [-shutdownPort portNum] confFile [{confFile}]");
+                            + "[-ingestMetricsDisabled] [-jobObservers jobObserverClasses] [-shutdownPort portNum] [-inFlightDirectories count] "
+                            + "confFile [{confFile}]");
             System.exit(-1);
         }
         
@@ -187,6 +200,17 @@ public final class BulkIngestMapFileLoader implements Runnable {
                         log.error("-maxDirectories must be followed a number of directories", e);
                         System.exit(-2);
                     }
+                } else if ("-inFlightDirectories".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-inFlightDirectories must be followed by the number of job directories to load concurrently");
+                        System.exit(-2);
+                    }
+                    try {
+                        IN_FLIGHT_DIRECTORIES = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-inFlightDirectories must be followed by the number of job directories to load concurrently", e);
+                        System.exit(-2);
+                    }
                 } else if ("-numThreads".equalsIgnoreCase(args[i])) {
                     if (i + 2 > args.length) {
                         log.error("-numThreads must be followed by the number of bulk import threads");
@@ -321,6 +345,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
         log.info("Will not bring map files online unless at least " + MAJC_WAIT_TIMEOUT + "ms have passed since last time.");
         log.info("Will check the majcThreshold and majcDelay every " + MAJC_CHECK_INTERVAL + " bulk loads.");
         log.info("Processing a max of " + MAX_DIRECTORIES + " directories");
+        log.info("Loading up to " + IN_FLIGHT_DIRECTORIES + " directories concurrently");
         log.info("Using " + numBulkThreads + " bulk load threads");
         log.info("Using " + numHdfsThreads + " HDFS operation threads");
         log.info("Using " + numBulkAssignThreads + " bulk assign threads");
@@ -433,6 +458,12 @@ public final class BulkIngestMapFileLoader implements Runnable {
             log.error("Error Cleaning Up Directories.  Manually check for orphans: " + e.getMessage(), e);
         }
         
+        if (IN_FLIGHT_DIRECTORIES > 1) {
+            runPipeline(IN_FLIGHT_DIRECTORIES);
+            log.info("Bulk map file loader shutting down.");
+            return;
+        }
+        
         try {
             
             while (true) {
@@ -538,6 +569,485 @@ public final class BulkIngestMapFileLoader implements Runnable {
         log.info("Bulk map file loader shutting down.");
     }
     
+    /**
+     * Loads job directories through a pipeline of stages so that the load throughput is not limited by the slowest step. The discovery of job directories runs
+     * on this thread, and each job directory then passes through the staging (distcp), import, and completion (marker files and cleanup) stages, each of which
+     * has its own threads. Up to {@code inFlight} job directories are in the pipeline at once. Discovery keeps starting job directories while there is room,
+     * checking the compactions every MAJC_CHECK_INTERVAL job directories, and only sleeps when there was nothing it could start.
+     * 
+     * @param inFlight
+     *            the maximum number of job directories in the pipeline
+     */
+    protected void runPipeline(int inFlight) {
+        log.info("Starting pipeline to monitor map files with " + inFlight + " directories in flight.");
+        LoadPipeline pipeline = new LoadPipeline(inFlight, new LoaderStages(), stageMetrics, FAILURE_SLEEP_TIME, this::shutdown);
+        long lastLoadMessageTime = 0;
+        Path[] jobDirectories = new Path[0];
+        int nextJobIndex = 0;
+        
+        try {
+            while (running) {
+                int started = 0;
+                try {
+                    if (!pipeline.hasRoom()) {
+                        // wait for a job directory to finish rather than for the full sleep time
+                        pipeline.awaitRoom(SLEEP_TIME);
+                        continue;
+                    }
+                    long loadMessageDelta = System.currentTimeMillis() - lastLoadMessageTime;
+                    boolean logMessages = (loadMessageDelta > (5 * 60 * 1000));
+                    if (logMessages) {
+                        lastLoadMessageTime = System.currentTimeMillis();
+                        log.info("Pipeline stages: " + stageMetrics.values());
+                    }
+                    if (pipeline.isPaused()) {
+                        if (logMessages) {
+                            log.info("Waiting after failing to mark a job directory as failed before bringing more map files online.");
+                        }
+                    } else if (!canBringMapFilesOnline(pipeline.getLastOnlineTime(), logMessages)) {
+                        if (logMessages) {
+                            log.info("Waiting for load to decrease before bringing more map files online.");
+                        }
+                    } else {
+                        boolean listed = false;
+                        while (running && started < MAJC_CHECK_INTERVAL && pipeline.hasRoom()) {
+                            if (nextJobIndex >= jobDirectories.length) {
+                                // list the job directories at most once per pass, so that we sleep if none of them can be started
+                                if (listed) {
+                                    break;
+                                }
+                                jobDirectories = getJobDirectories(srcHdfs, new Path(workDir, jobDirPattern + '/' + COMPLETE_FILE_MARKER));
+                                nextJobIndex = 0;
+                                listed = true;
+                                if (jobDirectories.length == 0) {
+                                    break;
+                                }
+                            }
+                            if (pipeline.load(jobDirectories[nextJobIndex++])) {
+                                started++;
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    log.warn("Interrupted while waiting for room in the pipeline.", e);
+                    shutdown();
+                } catch (Exception e) {
+                    log.error("Error: " + e.getMessage(), e);
+                }
+                // go straight back to filling the pipeline if we started something
+                if (running && started == 0) {
+                    sleep();
+                }
+            }
+            
+            // let the job directories we own finish loading
+            pipeline.awaitInFlight();
+        } finally {
+            log.info("Shutting down executor services");
+            pipeline.shutdownExecutors();
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Get the latency metrics for the stages of the pipeline
+     * 
+     * @return the metrics by stage name
+     */
+    public Map<String,StageMetrics> getStageMetrics() {
+        return Collections.unmodifiableMap(stageMetrics);
+    }
+    
+    /**
+     * @return new metrics for each stage of the pipeline, in order
+     */
+    static Map<String,StageMetrics> createStageMetrics() {
+        Map<String,StageMetrics> stageMetrics = new LinkedHashMap<>();
+        for (String stage : new String[] {STAGING_STAGE, IMPORT_STAGE, COMPLETION_STAGE}) {
+            stageMetrics.put(stage, new StageMetrics(stage));
+        }
+        return stageMetrics;
+    }
+    
+    /**
+     * A step in the loading of a job directory
+     */
+    private interface Step {
+        void run() throws Exception;
+    }
+    
+    /**
+     * The state of a job directory as it passes through the pipeline
+     */
+    static class LoadJob {
+        final Path srcJobDirectory;
+        final long startTime = System.currentTimeMillis();
+        volatile Path dstJobDirectory;
+        // the filesystem holding dstJobDirectory, or null while it is still on the source filesystem
+        volatile URI workingHdfs;
+        volatile Path mapFilesDir;
+        
+        LoadJob(Path srcJobDirectory) {
+            this.srcJobDirectory = srcJobDirectory;
+            this.dstJobDirectory = srcJobDirectory;
+            this.mapFilesDir = new Path(srcJobDirectory, "mapFiles");
+        }
+    }
+    
+    /**
+     * The work done for a job directory in each stage of the pipeline
+     */
+    interface LoadStages {
+        /**
+         * @return true if we took ownership of the job directory
+         */
+        boolean takeOwnership(Path srcJobDirectory);
+        
+        /**
+         * Copy the map files to the destination filesystem if needed
+         */
+        void stage(LoadJob job) throws Exception;
+        
+        /**
+         * Bring the map files online and make sure they were all loaded
+         */
+        void load(LoadJob job) throws Exception;
+        
+        /**
+         * Clean up the job directory and record the load, always called from a single thread
+         */
+        void complete(LoadJob job) throws Exception;
+        
+        /**
+         * @return true if the job directory was marked as failed
+         */
+        boolean markFailed(LoadJob job);
+    }
+    
+    /**
+     * The stages of this loader
+     */
+    private class LoaderStages implements LoadStages {
+        @Override
+        public boolean takeOwnership(Path srcJobDirectory) {
+            return takeOwnershipJobDirectory(srcJobDirectory);
+        }
+        
+        @Override
+        public void stage(LoadJob job) throws Exception {
+            job.dstJobDirectory = distCpDirectory(job.srcJobDirectory);
+            job.workingHdfs = destHdfs;
+            // recreate the map files directory reference in case it moved filesystems
+            job.mapFilesDir = new Path(job.dstJobDirectory, "mapFiles");
+        }
+        
+        @Override
+        public void load(LoadJob job) throws Exception {
+            bringMapFilesOnline(job.mapFilesDir);
+            // ensure everything got loaded
+            verifyNothingLeftBehind(job.mapFilesDir);
+        }
+        
+        @Override
+        public void complete(LoadJob job) throws Exception {
+            cleanUpJobDirectory(job.mapFilesDir);
+            if (INGEST_METRICS) {
+                reporter.getCounter("MapFileLoader.StartTimes", job.srcJobDirectory.getName()).increment(job.startTime);
+            }
+            log.info("Finished processing " + job.mapFilesDir + ", duration (sec): " + ((System.currentTimeMillis() - job.startTime) / 1000));
+            writeStats(new Path[] {job.srcJobDirectory});
+        }
+        
+        @Override
+        public boolean markFailed(LoadJob job) {
+            return markJobDirectoryFailed(job.workingHdfs != null ? job.workingHdfs : srcHdfs, job.dstJobDirectory);
+        }
+    }
+    
+    /**
+     * The stages that job directories pass through. The number of job directories in flight is bounded, which in turn bounds the work queued for each stage.
+     */
+    static class LoadPipeline {
+        private final int inFlight;
+        private final LoadStages stages;
+        private final Map<String,StageMetrics> stageMetrics;
+        private final long failurePauseTime;
+        private final Runnable shutdown;
+        private final Semaphore permits;
+        private final ExecutorService stagingExecutor;
+        private final ExecutorService importExecutor;
+        // a single thread completes the loads as the reporter is not thread safe
+        private final ExecutorService completionExecutor = Executors.newSingleThreadExecutor();
+        private final AtomicLong lastOnlineTime = new AtomicLong(0);
+        private final AtomicLong pausedUntil = new AtomicLong(0);
+        private int fsAccessFailures = 0;
+        
+        /**
+         * @param inFlight
+         *            the maximum number of job directories in the pipeline
+         * @param stages
+         *            the work done in each stage
+         * @param stageMetrics
+         *            the metrics to update for each stage
+         * @param failurePauseTime
+         *            how long to stop starting job directories after a job directory could not be marked as failed
+         * @param shutdown
+         *            called when too many job directories could not be marked as failed
+         */
+        LoadPipeline(int inFlight, LoadStages stages, Map<String,StageMetrics> stageMetrics, long failurePauseTime, Runnable shutdown) {
+            this.inFlight = inFlight;
+            this.stages = stages;
+            this.stageMetrics = stageMetrics;
+            this.failurePauseTime = failurePauseTime;
+            this.shutdown = shutdown;
+            this.permits = new Semaphore(inFlight);
+            this.stagingExecutor = Executors.newFixedThreadPool(inFlight);
+            this.importExecutor = Executors.newFixedThreadPool(inFlight);
+        }
+        
+        /**
+         * @return true if another job directory can be started without waiting
+         */
+        boolean hasRoom() {
+            return permits.availablePermits() > 0;
+        }
+        
+        /**
+         * Wait for room in the pipeline
+         * 
+         * @param timeout
+         *            the maximum time to wait in milliseconds
+         * @throws InterruptedException
+         *             if interrupted while waiting
+         */
+        void awaitRoom(long timeout) throws InterruptedException {
+            if (permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                permits.release();
+            }
+        }
+        
+        /**
+         * @return true if new job directories should not be started yet, after a job directory could not be marked as failed
+         */
+        boolean isPaused() {
+            return System.currentTimeMillis() < pausedUntil.get();
+        }
+        
+        /**
+         * @return when map files were last brought online
+         */
+        long getLastOnlineTime() {
+            return lastOnlineTime.get();
+        }
+        
+        /**
+         * Take ownership of a job directory and start loading it, waiting for room in the pipeline first
+         * 
+         * @param srcJobDirectory
+         * @return true if we took ownership of the job directory
+         * @throws InterruptedException
+         *             if interrupted while waiting for room in the pipeline
+         */
+        boolean load(Path srcJobDirectory) throws InterruptedException {
+            permits.acquire();
+            if (!stages.takeOwnership(srcJobDirectory)) {
+                permits.release();
+                return false;
+            }
+            final LoadJob job = new LoadJob(srcJobDirectory);
+            log.info("Started processing " + job.mapFilesDir);
+            
+            submit(job, stagingExecutor, STAGING_STAGE, () -> stages.stage(job), () -> submit(job, importExecutor, IMPORT_STAGE, () -> stages.load(job),
+                            () -> submit(job, completionExecutor, COMPLETION_STAGE, () -> {
+                                stages.complete(job);
+                                lastOnlineTime.set(System.currentTimeMillis());
+                            }, permits::release)));
+            return true;
+        }
+        
+        /**
+         * Run a stage of a job and then hand the job on to the next stage. If the stage fails, then the job is marked as failed by the completion executor. If
+         * the executors have been shut down, then the job is dropped and its permit released so that nothing waits on it.
+         */
+        private void submit(LoadJob job, ExecutorService stageExecutor, String stage, Step step, Runnable next) {
+            final StageMetrics metrics = stageMetrics.get(stage);
+            final long queuedTime = metrics.queued();
+            try {
+                stageExecutor.execute(() -> {
+                    long startTime = metrics.started(queuedTime);
+                    try {
+                        step.run();
+                    } catch (Exception e) {
+                        metrics.finished(startTime, false);
+                        fail(job, e);
+                        return;
+                    }
+                    metrics.finished(startTime, true);
+                    next.run();
+                });
+            } catch (RejectedExecutionException e) {
+                metrics.rejected();
+                log.error("Unable to start the " + stage + " stage of " + job.mapFilesDir + " as the pipeline has been shut down", e);
+                permits.release();
+            }
+        }
+        
+        /**
+         * Hand a failed job to the completion executor to be marked as failed
+         */
+        private void fail(LoadJob job, Exception e) {
+            try {
+                completionExecutor.execute(() -> failed(job, e));
+            } catch (RejectedExecutionException ree) {
+                log.error("Failed to process " + job.mapFilesDir + " and unable to mark it as failed as the pipeline has been shut down", e);
+                permits.release();
+            }
+        }
+        
+        private void failed(LoadJob job, Exception e) {
+            try {
+                log.error("Failed to process " + job.mapFilesDir, e);
+                if (!stages.markFailed(job)) {
+                    ++fsAccessFailures;
+                    if (fsAccessFailures >= 3) {
+                        log.error("Too many failures updating marker files.  Exiting...");
+                        shutdown.run();
+                    } else {
+                        // pause the discovery of job directories rather than this thread, so that the job directories in flight still complete
+                        log.warn("Failed to mark " + job.dstJobDirectory + " as failed. Pausing new loads for " + failurePauseTime
+                                        + "ms in case this was a transient failure.");
+                        pausedUntil.set(System.currentTimeMillis() + failurePauseTime);
+                    }
+                }
+            } finally {
+                permits.release();
+            }
+        }
+        
+        /**
+         * Wait for every job directory in the pipeline to complete or fail
+         */
+        void awaitInFlight() {
+            log.info("Waiting for " + (inFlight - permits.availablePermits()) + " job directories to finish loading");
+            permits.acquireUninterruptibly(inFlight);
+            permits.release(inFlight);
+        }
+        
+        void shutdownExecutors() {
+            stagingExecutor.shutdown();
+            importExecutor.shutdown();
+            completionExecutor.shutdown();
+        }
+    }
+    
+    /**
+     * Latency metrics for a stage of the pipeline
+     */
+    public static class StageMetrics {
+        private final String stage;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        // the number of runs of the stage, successful or not, that the times are totalled over
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong totalWaitTime = new AtomicLong();
+        private final AtomicLong totalTime = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+        
+        public StageMetrics(String stage) {
+            this.stage = stage;
+        }
+        
+        /**
+         * @return the time the job was queued for this stage
+         */
+        long queued() {
+            queued.incrementAndGet();
+            return System.currentTimeMillis();
+        }
+        
+        /**
+         * @param queuedTime
+         *            when the job was queued for this stage
+         * @return the start time
+         */
+        long started(long queuedTime) {
+            long now = System.currentTimeMillis();
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            totalWaitTime.addAndGet(now - queuedTime);
+            return now;
+        }
+        
+        /**
+         * @param startTime
+         *            when the stage was started
+         * @param succeeded
+         *            true if the stage completed, false if it failed
+         */
+        void finished(long startTime, boolean succeeded) {
+            long time = System.currentTimeMillis() - startTime;
+            active.decrementAndGet();
+            if (succeeded) {
+                completed.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+            runs.incrementAndGet();
+            totalTime.addAndGet(time);
+            maxTime.accumulateAndGet(time, Math::max);
+        }
+        
+        /**
+         * Count a job that was queued for this stage but could not be started, which counts as a failure
+         */
+        void rejected() {
+            queued.decrementAndGet();
+            failed.incrementAndGet();
+        }
+        
+        public String getStage() {
+            return stage;
+        }
+        
+        public int getQueued() {
+            return queued.get();
+        }
+        
+        public int getActive() {
+            return active.get();
+        }
+        
+        public long getCompleted() {
+            return completed.get();
+        }
+        
+        public long getFailed() {
+            return failed.get();
+        }
+        
+        public long getAverageWaitTime() {
+            long count = runs.get();
+            return (count == 0 ? 0 : totalWaitTime.get() / count);
+        }
+        
+        public long getAverageTime() {
+            long count = runs.get();
+            return (count == 0 ? 0 : totalTime.get() / count);
+        }
+        
+        public long getMaxTime() {
+            return maxTime.get();
+        }
+        
+        @Override
+        public String toString() {
+            return stage + "[queued=" + getQueued() + ", active=" + getActive() + , completed=" + getCompleted() + ", failed=" + getFailed() + ", avgWaitMs=" + getAverageWaitTime()
+                            + ", avgMs=" + getAverageTime() + ", maxMs=" + getMaxTime() + ']';
+        }
+    }
+    
     protected void cleanJobDirectoriesOnStartup() throws IOException {
         Path[] cleanupDirectories = getJobDirectories(destHdfs, new Path(workDir, jobDirPattern + '/' + CLEANUP_FILE_MARKER));
         for (int i = 0; i < cleanupDirectories.length; i++) {
@@ -2,6 +2,8 @@ package datawave.ingest.mapreduce.job;
 
 import datawave.ingest.data.config.ConfigurationHelper;
 import datawave.ingest.mapreduce.handler.shard.ShardedDataTypeHandler;
+import datawave.ingest.mapreduce.partition.CutPointIndex;
+import datawave.ingest.mapreduce.partition.CutPoints;
 import org.apache.accumulo.core.client.TableExistsException;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.commons.codec.binary.Base64;
@@ -13,8 +15,10 @@ import org.apache.log4j.Logger;
 
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -33,6 +37,11 @@ public class NonShardedSplitsFile {
     protected static final Logger log = Logger.getLogger(NonShardedSplitsFile.class);
     public static final String SPLITS_FILE_NAME_PROPERTY_KEY = "datawave.ingest.bulk.NonShardedSplitsFile.cutFile";
     private static final String SPLITS_FILE_NAME_PROPERTY_VALUE = "splits.txt";
+    /**
+     * Whether to write the splits as a {@link BinarySplitsFile}, which tasks memory map and search in place rather than parse
+     */
+    public static final String BINARY_SPLITS_FILE_PROPERTY_KEY = "datawave.ingest.bulk.NonShardedSplitsFile.binary";
+    private static final String BINARY_SPLITS_FILE_NAME_PROPERTY_VALUE = "splits.bin";
     
     public static class Writer {
         private URI uri;
@@ -41,6 +50,7 @@ public class NonShardedSplitsFile {
         private final String[] tableNames;
         private final List<String> shardedTableNames;
         private final boolean isTrimmed;
+        private final boolean isBinary;
         private final Configuration conf;
         private final FileSystem fs;
         
@@ -75,6 +85,7 @@ public class NonShardedSplitsFile {
             this.fs = fs;
             this.tableNames = tableNames;
             this.isTrimmed = isTrimmed;
+            this.isBinary = conf.getBoolean(BINARY_SPLITS_FILE_PROPERTY_KEY, false);
             this.shardedTableNames = Arrays.asList(ConfigurationHelper.isNull(conf, ShardedDataTypeHandler.SHARDED_TNAMES, String[].class));
         }
         
@@ -85,12 +96,19 @@ public class NonShardedSplitsFile {
                 boolean shouldRefreshSplits = TableSplitsCache.shouldRefreshSplits(conf);
                 if (shouldRefreshSplits && !isCacheValid) {
                     log.info("Recreating splits");
-                    splits.update();
+                    splits.update(TableSplitsCache.getChangedTables(conf));
                 } else if (!shouldRefreshSplits && !isCacheValid) {
                     throw new Exception("Splits cache is invalid");
                 }
-                writeSplitsToFile(splits);
-                uri = new URI(workDirPath + "/" + createFileName(isTrimmed));
+                String fileName;
+                if (isBinary) {
+                    fileName = createBinaryFileName(isTrimmed);
+                    writeBinarySplitsToFile(splits, fileName);
+                } else {
+                    fileName = createFileName(isTrimmed);
+                    writeSplitsToFile(splits);
+                }
+                uri = new URI(workDirPath + "/" + fileName);
             } catch (Exception e) {
                 throw new RuntimeException("Could not create splits file for the job. See documentation for using generateSplitsFile.sh", e);
             }
@@ -102,22 +120,38 @@ public class NonShardedSplitsFile {
             out.close();
         }
         
-        private void outputSplitsForNonShardTables(TableSplitsCache splits, PrintStream out) throws IOException {
+        private void writeBinarySplitsToFile(TableSplitsCache splits, String fileName) throws IOException {
+            BinarySplitsFile.Writer writer = new BinarySplitsFile.Writer();
             for (String table : tableNames) {
                 if (null != shardedTableNames && shardedTableNames.contains(table)) {
                     continue;
                 }
-                outputSplitsForTable(splits, out, table);
+                writer.addTable(table, getSplitsForTable(splits, table));
+            }
+            try (OutputStream out = new BufferedOutputStream(fs.create(new Path(workDirPath, fileName)))) {
+                writer.write(out);
             }
         }
         
-        private void outputSplitsForTable(TableSplitsCache splits, PrintStream out, String table) throws IOException {
-            Collection<Text> tableSplits;
+        private Collection<Text> getSplitsForTable(TableSplitsCache splits, String table) throws IOException {
             if (isTrimmed) {
-                tableSplits = splits.getSplits(table, reduceTasks - 1);
+                return splits.getSplits(table, reduceTasks - 1);
             } else {
-                tableSplits = splits.getSplits(table);
+                return splits.getSplits(table);
             }
+        }
+        
+        private void outputSplitsForNonShardTables(TableSplitsCache splits, PrintStream out) throws IOException {
+            for (String table : tableNames) {
+                if (null != shardedTableNames && shardedTableNames.contains(table)) {
+                    continue;
+                }
+                outputSplitsForTable(splits, out, table);
+            }
+        }
+        
+        private void outputSplitsForTable(TableSplitsCache splits, PrintStream out, String table) throws IOException {
+            Collection<Text> tableSplits = getSplitsForTable(splits, table);
             for (Text split : tableSplits) {
                 out.println(table + "\t" + new String(Base64.encodeBase64(split.getBytes())));
                 if (log.isTraceEnabled()) {
@@ -135,12 +169,20 @@ public class NonShardedSplitsFile {
         return (isTrimmed ? "trimmed_" : "full_") + SPLITS_FILE_NAME_PROPERTY_VALUE;
     }
     
+    private static String createBinaryFileName(boolean isTrimmed) {
+        return (isTrimmed ? "trimmed_" : "full_") + BINARY_SPLITS_FILE_NAME_PROPERTY_VALUE;
+    }
+    
+    /**
+     * @return the binary splits file if there is one, otherwise the text splits file, or null if there is neither
+     */
     public static Path findSplitsFile(Configuration conf, Path[] filesToCheck, boolean isTrimmed) {
-        String fileName = createFileName(isTrimmed);
         if (filesToCheck != null) {
-            for (Path cacheFile : filesToCheck) {
-                if (matchesFileName(fileName, cacheFile)) {
-                    return cacheFile;
+            for (String fileName : new String[] {createBinaryFileName(isTrimmed), createFileName(isTrimmed)}) {
+                for (Path cacheFile : filesToCheck) {
+                    if (matchesFileName(fileName, cacheFile)) {
+                        return cacheFile;
+                    }
                 }
             }
         }
@@ -153,6 +195,8 @@ public class NonShardedSplitsFile {
     
     public static class Reader {
         private Map<String,Text[]> splits;
+        // the memory mapped splits, or null if the splits were read from a text file
+        private BinarySplitsFile.Reader binarySplits = null;
         
         public Reader(Configuration conf, Path[] filesToCheck, boolean isTrimmed) throws IOException {
             Path cacheFile = findSplitsFile(conf, filesToCheck, isTrimmed);
@@ -160,6 +204,12 @@ public class NonShardedSplitsFile {
                 throw new RuntimeException("Could not find cut point file");
             }
             
+            if (matchesFileName(createBinaryFileName(isTrimmed), cacheFile)) {
+                binarySplits = BinarySplitsFile.Reader.map(new File(cacheFile.toString()));
+                log.info("Mapped cut points for tables: " + binarySplits.getTableNames());
+                return;
+            }
+            
             splits = new HashMap<>();
             ArrayList<Text> cutPoints = new ArrayList<>();
             String previousTableName = null;
@@ -194,8 +244,34 @@ public class NonShardedSplitsFile {
             }
         }
         
-        public Map<String,Text[]> getSplitsByTable() {
+        public Map<String,Text[]> getSplitsByTable() throws IOException {
+            if (null == splits) {
+                splits = new HashMap<>();
+                for (String table : binarySplits.getTableNames()) {
+                    List<Text> tableSplits = binarySplits.getSplits(table).toList();
+                    splits.put(table, tableSplits.toArray(new Text[tableSplits.size()]));
+                }
+            }
             return splits;
         }
+        
+        /**
+         * @return the cut points of each table, searched in place within the memory mapped file if the splits are binary
+         * @throws IOException
+         *             if the binary splits of a table are corrupt
+         */
+        public Map<String,CutPoints> getCutPointsByTable() throws IOException {
+            Map<String,CutPoints> cutPoints = new HashMap<>();
+            if (null != binarySplits) {
+                for (String table : binarySplits.getTableNames()) {
+                    cutPoints.put(table, binarySplits.getSplits(table));
+                }
+            } else {
+                for (Map.Entry<String,Text[]> entry : splits.entrySet()) {
+                    cutPoints.put(entry.getKey(), new CutPointIndex(entry.getValue()));
+                }
+            }
+            return cutPoints;
+        }
     }
 }
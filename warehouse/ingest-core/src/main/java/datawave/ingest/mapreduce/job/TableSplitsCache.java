@@ -5,8 +5,11 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -31,6 +34,9 @@ import org.apache.log4j.Logger;
  * This class encapsulates the split points found in the accumulo.metadata table. Methods are also supplied to distribute the split points via a distributed job
  * cache. When the splits cache is updated, the current file will be compared to the new file to ensure that the MAX_SPLIT_DECREASE and
  * MAX_SPLIT_PERCENTAGE_DECREASE thresholds have not been exceeded.
+ * 
+ * Alongside the text file, the splits are written to a {@link BinarySplitsFile}, which is read in preference to the text file when it is at least as new. Only
+ * the splits of the tables asked for are then decoded, and {@link #update(Collection)} regenerates the files with new splits for only some of the tables.
  */
 public class TableSplitsCache extends BaseHdfsFileCacheUtil {
     
@@ -38,14 +44,21 @@ public class TableSplitsCache extends BaseHdfsFileCacheUtil {
     public static final String SPLITS_CACHE_DIR = "datawave.ingest.splits.cache.dir";
     public static final String MAX_SPLIT_DECREASE = "datawave.ingest.splits.max.decrease.number";
     public static final String MAX_SPLIT_PERCENTAGE_DECREASE = "datawave.ingest.splits.max.decrease.percentage";
+    public static final String CHANGED_TABLES = "datawave.ingest.splits.changed.tables";
     private static final Logger log = Logger.getLogger(TableSplitsCache.class);
     private static final String DEFAULT_SPLITS_CACHE_DIR = "/data/splitsCache";
     private static final String SPLITS_CACHE_FILE = "all-splits.txt";
+    private static final String BINARY_SPLITS_CACHE_FILE = "all-splits.bin";
     private static final short DEFAULT_MAX_SPLIT_DECREASE = 42;
     private static final double DEFAULT_MAX_SPLIT_PERCENTAGE_DECREASE = .5;
     private static final boolean DEFAULT_REFRESH_SPLITS = true;
     private Path splitsPath = null;
     private Map<String,List<Text>> splits = null;
+    // the binary splits file the splits are decoded from as they are asked for, or null if they were read from the text file
+    private BinarySplitsFile.Reader binarySplits = null;
+    // the tables to list the splits of when updating, or null to list the splits of all tables
+    private Collection<String> changedTables = null;
+    private Path tmpBinarySplitsFile = null;
     
     /**
      *
@@ -95,6 +108,10 @@ public class TableSplitsCache extends BaseHdfsFileCacheUtil {
         return new Path(conf.get(SPLITS_CACHE_DIR, DEFAULT_SPLITS_CACHE_DIR), SPLITS_CACHE_FILE);
     }
     
+    public static Path getBinarySplitsPath(Configuration conf) {
+        return new Path(conf.get(SPLITS_CACHE_DIR, DEFAULT_SPLITS_CACHE_DIR), BINARY_SPLITS_CACHE_FILE);
+    }
+    
     @Override
     protected boolean shouldRefreshCache(Configuration conf) {
         return shouldRefreshSplits(conf);
@@ -104,6 +121,15 @@ public class TableSplitsCache extends BaseHdfsFileCacheUtil {
         return (conf.getBoolean(REFRESH_SPLITS, DEFAULT_REFRESH_SPLITS));
     }
     
+    /**
+     * @param conf
+     * @return the tables whose splits are known to have changed, or null if they were not given and the splits of all tables should be listed
+     */
+    public static Collection<String> getChangedTables(Configuration conf) {
+        String[] changedTables = conf.getStrings(CHANGED_TABLES);
+        return (changedTables == null) ? null : Arrays.asList(changedTables);
+    }
+    
     /**
      * 
      * @return
@@ -119,7 +145,7 @@ public class TableSplitsCache extends BaseHdfsFileCacheUtil {
         return splitsStatus;
     }
     
-    private Set<String> getIngestTableNames() {
+    protected Set<String> getIngestTableNames() {
         Set<String> tableNames = TableConfigurationUtil.getTables(conf);
         if (tableNames.isEmpty()) {
             log.error("Missing data types or one of the following helperClass,readerClass,handlerClassNames,filterClassNames");
@@ -128,27 +154,48 @@ public class TableSplitsCache extends BaseHdfsFileCacheUtil {
         return tableNames;
     }
     
+    /**
+     * Update the splits files, listing the splits of only the changed tables and of any tables missing from the current binary splits file. The splits of the
+     * other tables are copied from the current binary splits file, and all tables are listed if there is none.
+     * 
+     * @param changedTables
+     *            the tables whose splits have changed, or null to list the splits of all tables
+     */
+    public void update(Collection<String> changedTables) {
+        this.changedTables = changedTables;
+        try {
+            update();
+        } finally {
+            this.changedTables = null;
+        }
+    }
+    
     /**
      * updates the splits file if the splits in the new file have not decreased beyond the maximum deviation allowed
      */
     @Override
     public void writeCacheFile(FileSystem fs, Path tmpSplitsFile) throws IOException {
-        TableOperations tops = null;
-        initAccumuloHelper();
-        try {
-            tops = this.accumuloHelper.getConnector().tableOperations();
-        } catch (AccumuloSecurityException | AccumuloException ex) {
-            throw new IOException("Could not get TableOperations", ex);
-        }
+        TableOperations tops = getTableOperations();
         Set<String> tableNames = getIngestTableNames();
         Map<String,Integer> splitsPerTable = new HashMap<>();
+        BinarySplitsFile.Reader previous = (changedTables == null) ? null : readBinarySplits(fs);
         if (tops != null) {
+            BinarySplitsFile.Writer binaryWriter = new BinarySplitsFile.Writer();
             try (PrintStream out = new PrintStream(new BufferedOutputStream(fs.create(tmpSplitsFile)))) {
                 this.splits = new HashMap<>();
+                this.binarySplits = null;
                 // gather the splits and write to PrintStream
                 for (String table : tableNames) {
-                    log.info("Retrieving splits for " + table);
-                    List<Text> splits = new ArrayList<>(tops.listSplits(table));
+                    List<Text> splits;
+                    if (previous != null && !changedTables.contains(table) && previous.getTableNames().contains(table)) {
+                        log.info("Copying unchanged splits for " + table);
+                        binaryWriter.copyTable(previous, table);
+                        splits = previous.getSplits(table).toList();
+                    } else {
+                        log.info("Retrieving splits for " + table);
+                        splits = new ArrayList<>(tops.listSplits(table));
+                        binaryWriter.addTable(table, splits);
+                    }
                     this.splits.put(table, splits);
                     splitsPerTable.put(table, splits.size());
                     log.info("Writing " + splits.size() + " splits.");
@@ -164,10 +211,85 @@ public class TableSplitsCache extends BaseHdfsFileCacheUtil {
                 log.error("Unable to write new splits file", ex);
                 throw new IOException(ex);
             }
+            
+            this.tmpBinarySplitsFile = new Path(tmpSplitsFile.getParent(), tmpSplitsFile.getName() + ".bin");
+            try (OutputStream out = new BufferedOutputStream(fs.create(tmpBinarySplitsFile, true))) {
+                binaryWriter.write(out);
+            } catch (IOException ex) {
+                log.error("Unable to write new binary splits file", ex);
+                cleanup(fs, tmpBinarySplitsFile);
+                this.tmpBinarySplitsFile = null;
+                throw ex;
+            }
         }
         
     }
     
+    protected TableOperations getTableOperations() throws IOException {
+        initAccumuloHelper();
+        try {
+            return this.accumuloHelper.getConnector().tableOperations();
+        } catch (AccumuloSecurityException | AccumuloException ex) {
+            throw new IOException("Could not get TableOperations", ex);
+        }
+    }
+    
+    /**
+     * Replace the text splits file, and then the binary splits file so that it is never older than the text file it was written with.
+     */
+    @Override
+    public void createCacheFile(FileSystem fs, Path tmpCacheFile) {
+        super.createCacheFile(fs, tmpCacheFile);
+        if (tmpBinarySplitsFile != null) {
+            Path binarySplitsPath = getBinarySplitsPath(conf);
+            try {
+                fs.delete(binarySplitsPath, false);
+                if (!fs.rename(tmpBinarySplitsFile, binarySplitsPath)) {
+                    throw new IOException("Failed to rename temporary binary splits file");
+                }
+            } catch (IOException e) {
+                log.warn("Unable to rename " + tmpBinarySplitsFile + " to " + binarySplitsPath, e);
+                cleanup(fs, tmpBinarySplitsFile);
+            }
+            tmpBinarySplitsFile = null;
+        }
+    }
+    
+    /**
+     * Read the splits from the binary splits file if it is at least as new as the text file, otherwise from the text file.
+     */
+    @Override
+    public void read() throws IOException {
+        FileSystem fs = FileSystem.get(this.splitsPath.toUri(), conf);
+        BinarySplitsFile.Reader reader = readBinarySplits(fs);
+        if (reader != null) {
+            this.splits = new HashMap<>();
+            this.binarySplits = reader;
+        } else {
+            this.binarySplits = null;
+            super.read();
+        }
+    }
+    
+    // the current binary splits file, or null if there is none, it is older than the text file, or it can not be read
+    private BinarySplitsFile.Reader readBinarySplits(FileSystem fs) {
+        Path binarySplitsPath = getBinarySplitsPath(conf);
+        try {
+            if (!fs.exists(binarySplitsPath)) {
+                return null;
+            }
+            FileStatus textStatus = getFileStatus();
+            if (textStatus != null && textStatus.getModificationTime() > fs.getFileStatus(binarySplitsPath).getModificationTime()) {
+                log.info("Ignoring binary splits file " + binarySplitsPath + " older than " + splitsPath);
+                return null;
+            }
+            return BinarySplitsFile.Reader.read(fs, binarySplitsPath);
+        } catch (IOException ex) {
+            log.warn("Unable to read binary splits file " + binarySplitsPath, ex);
+            return null;
+        }
+    }
+    
     private boolean exceedsMaxSplitsDeviation(Map<String,Integer> tmpSplitsPerTable) {
         Map<String,Integer> currentSplitsPerTable = getCurrentSplitsPerTable();
         if (!currentSplitsPerTable.isEmpty()) {
@@ -195,8 +317,14 @@ public class TableSplitsCache extends BaseHdfsFileCacheUtil {
             } catch (IOException ex) {
                 log.warn("No splits file exists");
             }
-        for (String tableName : this.splits.keySet()) {
-            currentSplitsPerTable.put(tableName, this.splits.get(tableName).size());
+        if (null != this.binarySplits) {
+            for (String tableName : this.binarySplits.getTableNames()) {
+                currentSplitsPerTable.put(tableName, this.binarySplits.getSplitCount(tableName));
+            }
+        } else {
+            for (String tableName : this.splits.keySet()) {
+                currentSplitsPerTable.put(tableName, this.splits.get(tableName).size());
+            }
         }
         return currentSplitsPerTable;
     }
@@ -238,6 +366,13 @@ public class TableSplitsCache extends BaseHdfsFileCacheUtil {
         if (null == this.splits)
             read();
         List<Text> tableSplits = this.splits.get(table);
+        if (tableSplits == null && this.binarySplits != null) {
+            BinarySplitsFile.TableSplits binaryTableSplits = this.binarySplits.getSplits(table);
+            if (binaryTableSplits != null) {
+                tableSplits = binaryTableSplits.toList();
+                this.splits.put(table, tableSplits);
+            }
+        }
         if (tableSplits == null) {
             return Collections.emptyList();
         }
@@ -252,6 +387,15 @@ public class TableSplitsCache extends BaseHdfsFileCacheUtil {
      * @throws IOException
      */
     public List<Text> getSplits(String table, int maxSplits) throws IOException {
+        if (null == this.splits)
+            read();
+        if (this.binarySplits != null && !this.splits.containsKey(table)) {
+            BinarySplitsFile.TableSplits binaryTableSplits = this.binarySplits.getSplits(table);
+            if (binaryTableSplits != null && binaryTableSplits.size() > maxSplits) {
+                // only decode the splits that are kept
+                return trimSplits(binaryTableSplits.asList(), maxSplits);
+            }
+        }
         return trimSplits(getSplits(table), maxSplits);
     }
     
@@ -263,6 +407,11 @@ public class TableSplitsCache extends BaseHdfsFileCacheUtil {
     public Map<String,List<Text>> getSplits() throws IOException {
         if (null == this.splits)
             read();
+        if (null != this.binarySplits) {
+            for (String table : this.binarySplits.getTableNames()) {
+                getSplits(table);
+            }
+        }
         return new HashMap<>(splits);
     }
     
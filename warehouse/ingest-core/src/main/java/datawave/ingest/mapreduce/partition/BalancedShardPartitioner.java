@@ -36,7 +36,9 @@ public class BalancedShardPartitioner extends Partitioner<BulkIngestKey,Value> i
     private static final long now = System.currentTimeMillis();
     private static final String today = formatDay(0);
     private Configuration conf;
-    private Map<String,Map<Text,Integer>> shardPartitionsByTable;
+    // keyed by the table name as it appears in the keys, so that the name is only converted to a string once
+    private Map<Text,Map<Text,Integer>> shardPartitionsByTable;
+    private final Text holder = new Text();
     private Map<String,TreeMap<Text,String>> shardIdToLocations = Maps.newHashMap();
     private Map<Text,Integer> offsetsFactorByTable;
     int missingShardIdCount = 0;
@@ -49,7 +51,8 @@ public class BalancedShardPartitioner extends Partitioner<BulkIngestKey,Value> i
     public synchronized int getPartition(BulkIngestKey key, Value value, int numReduceTasks) {
         try {
             // partition will be balanced for a given day, more so for recent days
-            int partition = getAssignedPartition(key.getTableName().toString(), key.getKey().getRow());
+            key.getKey().getRow(holder);
+            int partition = getAssignedPartition(key.getTableName(), holder);
             
             // the offsets should help send today's shard data to a different set of reducers than today's error shard data
             int offsetForTable = shardIdFactory.getNumShards(key.getKey().getTimestamp()) * offsetsFactorByTable.get(key.getTableName());
@@ -62,7 +65,7 @@ public class BalancedShardPartitioner extends Partitioner<BulkIngestKey,Value> i
     
     /**
      */
-    private int getAssignedPartition(String tableName, Text shardId) throws IOException {
+    private int getAssignedPartition(Text tableName, Text shardId) throws IOException {
         Map<Text,Integer> assignments = lazilyCreateAssignments(tableName);
         
         Integer partitionId = assignments.get(shardId);
@@ -101,14 +104,16 @@ public class BalancedShardPartitioner extends Partitioner<BulkIngestKey,Value> i
     /**
      * For a given tablename, provides the mapping from {@code shard id -> partition}
      */
-    private Map<Text,Integer> lazilyCreateAssignments(String tableName) throws IOException {
+    private Map<Text,Integer> lazilyCreateAssignments(Text tableName) throws IOException {
         if (this.shardPartitionsByTable == null) {
             this.shardPartitionsByTable = new HashMap<>();
         }
-        if (null == this.shardPartitionsByTable.get(tableName)) {
-            this.shardPartitionsByTable.put(tableName, getPartitionsByShardId(tableName));
+        Map<Text,Integer> assignments = this.shardPartitionsByTable.get(tableName);
+        if (null == assignments) {
+            assignments = getPartitionsByShardId(tableName.toString());
+            this.shardPartitionsByTable.put(new Text(tableName), assignments);
         }
-        return this.shardPartitionsByTable.get(tableName);
+        return assignments;
     }
     
     /**
@@ -0,0 +1,84 @@
+package datawave.ingest.mapreduce.partition;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * The sorted cut points of a table packed into a single byte array, with an index on the first byte of each cut point. A row is searched for by comparing its
+ * bytes in place against the cut points sharing its first byte, so finding the partition of a key does not allocate.
+ */
+public class CutPointIndex implements CutPoints {
+    // the number of distinct values of the first byte of a cut point
+    private static final int FIRST_BYTES = 256;
+    
+    private final byte[] bytes;
+    // the start of each cut point within bytes, followed by the end of the last one
+    private final int[] offsets;
+    // for each value of the first byte, the index of the first cut point that is not empty and does not start with a lower byte, followed by the number of cut
+    // points
+    private final int[] firstByteStarts;
+    
+    public CutPointIndex(Text[] cutPoints) {
+        int length = 0;
+        for (Text cutPoint : cutPoints) {
+            length += cutPoint.getLength();
+        }
+        bytes = new byte[length];
+        offsets = new int[cutPoints.length + 1];
+        int offset = 0;
+        for (int i = 0; i < cutPoints.length; i++) {
+            offsets[i] = offset;
+            System.arraycopy(cutPoints[i].getBytes(), 0, bytes, offset, cutPoints[i].getLength());
+            offset += cutPoints[i].getLength();
+        }
+        offsets[cutPoints.length] = offset;
+        
+        firstByteStarts = new int[FIRST_BYTES + 1];
+        int index = 0;
+        for (int b = 0; b < FIRST_BYTES; b++) {
+            while (index < cutPoints.length && firstByte(index) < b) {
+                index++;
+            }
+            firstByteStarts[b] = index;
+        }
+        firstByteStarts[FIRST_BYTES] = cutPoints.length;
+    }
+    
+    // the first byte of a cut point as an unsigned value, or -1 if the cut point is empty
+    private int firstByte(int index) {
+        return offsets[index] == offsets[index + 1] ? -1 : bytes[offsets[index]] & 0xff;
+    }
+    
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+    
+    @Override
+    public int binarySearch(byte[] row, int offset, int length) {
+        int low;
+        int high;
+        if (length == 0) {
+            // only the empty cut points can match an empty row
+            low = 0;
+            high = firstByteStarts[0] - 1;
+        } else {
+            // the cut points starting with a lower byte are less than the row, and those starting with a higher byte are greater
+            int b = row[offset] & 0xff;
+            low = firstByteStarts[b];
+            high = firstByteStarts[b + 1] - 1;
+        }
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = WritableComparator.compareBytes(bytes, offsets[mid], offsets[mid + 1] - offsets[mid], row, offset, length);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
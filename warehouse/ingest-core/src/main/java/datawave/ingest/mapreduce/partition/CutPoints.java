@@ -0,0 +1,22 @@
+package datawave.ingest.mapreduce.partition;
+
+/**
+ * The sorted cut points of a table, searched in place for the partition of a row.
+ */
+public interface CutPoints {
+    
+    int size();
+    
+    /**
+     * Search the cut points for a row, as {@link java.util.Arrays#binarySearch(Object[], Object)} would for an array of the cut points.
+     * 
+     * @param row
+     *            the bytes of the row
+     * @param offset
+     *            the start of the row
+     * @param length
+     *            the length of the row
+     * @return the index of the row if it is a cut point, otherwise (-(insertion point) - 1)
+     */
+    int binarySearch(byte[] row, int offset, int length);
+}
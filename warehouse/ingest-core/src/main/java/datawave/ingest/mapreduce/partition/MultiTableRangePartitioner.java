@@ -18,12 +18,18 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Range partitioner that uses a split file with the format: {@code tableName<tab>splitPoint}
  * 
+ * The cut points of each table are looked up by the table name as it appears in the key and searched in place, within the memory mapped file if the splits
+ * file is binary, and partition stats are accumulated in arrays
+ * which are added to the counters by {@link #flushStats()}, so that partitioning a key does not allocate.
  */
 public class MultiTableRangePartitioner extends Partitioner<BulkIngestKey,Value> implements DelegatePartitioner {
     private static final String PREFIX = MultiTableRangePartitioner.class.getName();
@@ -32,11 +38,12 @@ public class MultiTableRangePartitioner extends Partitioner<BulkIngestKey,Value>
     private static final Logger log = Logger.getLogger(MultiTableRangePartitioner.class);
     static TaskInputOutputContext<?,?,?,?> context = null;
     private static boolean collectStats = false;
+    // the tables with partition stats to be added to the counters of the context
+    private static final List<TableCutPoints> countedTables = new ArrayList<>();
     
     private volatile boolean cacheFilesRead = false;
     private Text holder = new Text();
-    private ThreadLocal<Map<String,Text[]>> splitsByTable = new ThreadLocal<>();
-    private DecimalFormat formatter = new DecimalFormat("000");
+    private ThreadLocal<Map<Text,TableCutPoints>> splitsByTable = new ThreadLocal<>();
     private Configuration conf;
     private PartitionLimiter partitionLimiter;
     private Object semaphore = new Object();
@@ -65,7 +72,11 @@ public class MultiTableRangePartitioner extends Partitioner<BulkIngestKey,Value>
             
             try {
                 NonShardedSplitsFile.Reader reader = new NonShardedSplitsFile.Reader(context.getConfiguration(), localCacheFiles, isTrimmed());
-                splitsByTable.set(reader.getSplitsByTable());
+                Map<Text,TableCutPoints> tables = new HashMap<>();
+                for (Map.Entry<String,CutPoints> entry : reader.getCutPointsByTable().entrySet()) {
+                    tables.put(new Text(entry.getKey()), new TableCutPoints(entry.getKey(), entry.getValue()));
+                }
+                splitsByTable.set(tables);
                 if (splitsByTable.get().isEmpty()) {
                     log.error("Non-sharded splits by table cannot be empty.  If this is a development system, please create at least one split in one of the non-sharded tables (see bin/ingest/seed_index_splits.sh).");
                     throw new IOException("splits by table cannot be empty");
@@ -83,20 +94,24 @@ public class MultiTableRangePartitioner extends Partitioner<BulkIngestKey,Value>
     public int getPartition(BulkIngestKey key, Value value, int numPartitions) {
         readCacheFilesIfNecessary();
         
-        String tableName = key.getTableName().toString();
-        Text[] cutPointArray = splitsByTable.get().get(tableName);
+        Map<Text,TableCutPoints> tables = splitsByTable.get();
+        TableCutPoints table = tables.get(key.getTableName());
+        if (null == table) {
+            // remember the tables without splits so that their names are only converted once
+            table = new TableCutPoints(key.getTableName().toString(), null);
+            tables.put(new Text(key.getTableName()), table);
+        }
         
-        if (null == cutPointArray)
-            return (tableName.hashCode() & Integer.MAX_VALUE) % numPartitions;
+        if (null == table.cutPoints)
+            return (table.tableName.hashCode() & Integer.MAX_VALUE) % numPartitions;
         key.getKey().getRow(holder);
-        int index = Arrays.binarySearch(cutPointArray, holder);
-        index = calculateIndex(index, numPartitions, tableName, cutPointArray.length);
+        int index = table.cutPoints.binarySearch(holder.getBytes(), 0, holder.getLength());
+        index = calculateIndex(index, numPartitions, table.tableName, table.cutPoints.size());
         
         index = partitionLimiter.limit(numPartitions, index);
         
-        TaskInputOutputContext<?,?,?,?> c = context;
-        if (c != null && collectStats) {
-            c.getCounter("Partitions: " + key.getTableName(), "part." + formatter.format(index)).increment(1);
+        if (context != null && collectStats) {
+            table.countPartition(index);
         }
         
         return index;
@@ -109,10 +124,35 @@ public class MultiTableRangePartitioner extends Partitioner<BulkIngestKey,Value>
     }
     
     public static void setContext(TaskInputOutputContext<?,?,?,?> context) {
+        if (context != MultiTableRangePartitioner.context) {
+            // the stats so far belong to the previous context
+            flushStats();
+        }
         MultiTableRangePartitioner.context = context;
         collectStats = (context != null) && context.getConfiguration().getBoolean(PARTITION_STATS, false);
     }
     
+    /**
+     * Add the partition stats collected since the last flush to the counters of the context. This should be called when the mapper is cleaned up.
+     */
+    public static void flushStats() {
+        TaskInputOutputContext<?,?,?,?> c = context;
+        DecimalFormat formatter = new DecimalFormat("000");
+        synchronized (countedTables) {
+            for (TableCutPoints table : countedTables) {
+                long[] counts = table.counts;
+                for (int index = 0; c != null && index < counts.length; index++) {
+                    if (counts[index] > 0) {
+                        c.getCounter("Partitions: " + table.tableName, "part." + formatter.format(index)).increment(counts[index]);
+                    }
+                }
+                // the table is counted again from scratch the next time it is partitioned
+                table.counts = null;
+            }
+            countedTables.clear();
+        }
+    }
+    
     @Override
     public void initializeJob(Job job) {
         try {
@@ -171,4 +211,30 @@ public class MultiTableRangePartitioner extends Partitioner<BulkIngestKey,Value>
     public Configuration getConf() {
         return this.conf;
     }
+    
+    /**
+     * The cut points of a table, along with the table name as a string for the hash of tables without cut points and for the partition stats
+     */
+    private static class TableCutPoints {
+        private final String tableName;
+        private final CutPoints cutPoints;
+        private long[] counts = null;
+        
+        private TableCutPoints(String tableName, CutPoints cutPoints) {
+            this.tableName = tableName;
+            this.cutPoints = cutPoints;
+        }
+        
+        private void countPartition(int index) {
+            if (counts == null) {
+                counts = new long[index + 1];
+                synchronized (countedTables) {
+                    countedTables.add(this);
+                }
+            } else if (index >= counts.length) {
+                counts = Arrays.copyOf(counts, index + 1);
+            }
+            counts[index]++;
+        }
+    }
 }
@@ -6,10 +6,12 @@ import datawave.util.time.DateHelper;
 import org.apache.accumulo.core.data.Value;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.log4j.Logger;
 
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.Date;
 
@@ -27,22 +29,30 @@ public class ShardIdPartitioner extends Partitioner<BulkIngestKey,Value> impleme
     private long baseTime = -1;
     private static int MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
     private static int SHARD_ID_SPLIT = 8;
+    // the most digits of a shard number that can be parsed without overflowing an int
+    private static int MAX_SHARD_DIGITS = 9;
     
     private ShardIdFactory shardIdFactory = null;
     
+    private final Text holder = new Text();
+    // the date of the last shard id parsed, and the number of its first shard
+    private final byte[] lastDate = new byte[SHARD_ID_SPLIT];
+    private boolean lastDateSet = false;
+    private long lastDateFirstShard = 0;
+    
     /**
      * Given the shard id and the number of shards, evenly distribute the shards across the reducers by turning the shard id into a consecutive sequence of
      * numbers
      */
     @Override
     public synchronized int getPartition(BulkIngestKey key, Value value, int numReduceTasks) {
-        String shardId = key.getKey().getRow().toString();
+        key.getKey().getRow(holder);
         try {
-            long shardIndex = generateNumberForShardId(shardId, getBaseTime());
+            long shardIndex = generateNumberForShardId(holder, getBaseTime());
             return (int) (shardIndex % numReduceTasks);
             
         } catch (Exception e) {
-            return (shardId.hashCode() & Integer.MAX_VALUE) % numReduceTasks;
+            return (holder.toString().hashCode() & Integer.MAX_VALUE) % numReduceTasks;
         }
     }
     
@@ -86,6 +96,54 @@ public class ShardIdPartitioner extends Partitioner<BulkIngestKey,Value> impleme
         return (daysFromBaseTime * shardIdFactory.getNumShards(date.getTime())) + shard;
     }
     
+    /**
+     * Turn a shard id in to a number as {@link #generateNumberForShardId(String, long)} does, but without converting it to a string. The number of the first
+     * shard of the last date seen is kept, as the shard ids of a date tend to be partitioned together. Shard ids which are not simply digits are handed off to
+     * generateNumberForShardId(String, long).
+     * 
+     * @param shardId
+     * @throws ParseException
+     */
+    private long generateNumberForShardId(Text shardId, long baseTime) throws ParseException {
+        byte[] bytes = shardId.getBytes();
+        int length = shardId.getLength();
+        if (length <= SHARD_ID_SPLIT + 1 || length > SHARD_ID_SPLIT + 1 + MAX_SHARD_DIGITS || bytes[SHARD_ID_SPLIT] != '_' || !isDigits(bytes, 0, SHARD_ID_SPLIT)
+                        || !isDigits(bytes, SHARD_ID_SPLIT + 1, length)) {
+            return generateNumberForShardId(shardId.toString(), baseTime);
+        }
+        
+        if (!lastDateSet || !isLastDate(bytes)) {
+            lastDateSet = false;
+            lastDateFirstShard = generateNumberForShardId(new String(bytes, 0, SHARD_ID_SPLIT, StandardCharsets.UTF_8) + "_0", baseTime);
+            System.arraycopy(bytes, 0, lastDate, 0, SHARD_ID_SPLIT);
+            lastDateSet = true;
+        }
+        
+        int shard = 0;
+        for (int i = SHARD_ID_SPLIT + 1; i < length; i++) {
+            shard = shard * 10 + (bytes[i] - '0');
+        }
+        return lastDateFirstShard + shard;
+    }
+    
+    private boolean isLastDate(byte[] bytes) {
+        for (int i = 0; i < SHARD_ID_SPLIT; i++) {
+            if (bytes[i] != lastDate[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isDigits(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     private long getBaseTime() throws IllegalArgumentException {
         if (baseTime < 0) {
             baseTime = conf.getLong(BASE_TIME, 0);
@@ -24,6 +24,7 @@ public class GenerateSplitsFile {
         options.addOption(OptionBuilder.isRequired(true).hasArg().withDescription("Config directory path").create("cd"));
         options.addOption(OptionBuilder.isRequired(false).hasArg().withDescription("Config file suffix").create("cs"));
         options.addOption(OptionBuilder.isRequired(false).hasArg().withDescription("Splits file path").create("sp"));
+        options.addOption(OptionBuilder.isRequired(false).hasArg().withDescription("Comma separated tables whose splits changed").create("ct"));
         Configuration conf = accumuloOptions.getConf(args, true);
         CommandLine cl;
         String configDirectory = null;
@@ -42,6 +43,10 @@ public class GenerateSplitsFile {
                 conf.set(TableSplitsCache.SPLITS_CACHE_DIR, cl.getOptionValue("sp"));
                 log.info("Set " + TableSplitsCache.SPLITS_CACHE_DIR + " to " + cl.getOptionValue("sp"));
             }
+            if (cl.hasOption("ct")) {
+                conf.set(TableSplitsCache.CHANGED_TABLES, cl.getOptionValue("ct"));
+                log.info("Set " + TableSplitsCache.CHANGED_TABLES + " to " + cl.getOptionValue("ct"));
+            }
             if (cl.hasOption("cs")) {
                 configSuffix = cl.getOptionValue("cs");
             } else {
@@ -51,7 +56,7 @@ public class GenerateSplitsFile {
             
             ConfigurationFileHelper.setConfigurationFromFiles(conf, configDirectory, configSuffix);
             TableSplitsCache splitsFile = new TableSplitsCache(conf);
-            splitsFile.update();
+            splitsFile.update(TableSplitsCache.getChangedTables(conf));
         } catch (ParseException ex) {
             log.error(GenerateSplitsFile.class.getName(), ex);
         }
@@ -28,7 +28,9 @@ import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 public class EventMapperTest {
     
@@ -204,6 +206,35 @@ public class EventMapperTest {
         assertEquals(4, written.size());
     }
     
+    @Test
+    public void shouldProcessEventsOnHandlerThreads() throws IOException, InterruptedException {
+        conf.setInt(EventMapper.HANDLER_THREADS, 2);
+        conf.setInt(EventMapper.HANDLER_WINDOW, 3);
+        
+        eventMapper.setup(mapContext);
+        // the same record object is passed to each map call, as a record reader may do
+        for (int i = 0; i < 5; i++) {
+            eventMapper.map(new LongWritable(i), record, mapContext);
+        }
+        eventMapper.map(new LongWritable(5), errorRecord, mapContext);
+        eventMapper.cleanup(mapContext);
+        
+        Multimap<BulkIngestKey,Value> written = TestContextWriter.getWritten();
+        
+        // each event is written with the offset it was read at
+        Set<String> offsets = new HashSet<>();
+        for (Map.Entry<BulkIngestKey,Value> entry : written.entries()) {
+            if (entry.getKey().getKey().getColumnFamily().toString().equals(EventMapper.SEQUENCE_FILE_FIELDNAME)) {
+                String origFile = entry.getKey().getKey().getColumnQualifier().toString();
+                offsets.add(origFile.substring(origFile.lastIndexOf('|') + 1));
+            }
+        }
+        assertEquals(6, offsets.size());
+        for (int i = 0; i < 6; i++) {
+            assertTrue(offsets.contains(Integer.toString(i)));
+        }
+    }
+    
     private Map.Entry<BulkIngestKey,Value> getMetric(Multimap<BulkIngestKey,Value> written) {
         return getFieldEntry(written, Metric.EVENT_COUNT.toString());
     }
@@ -0,0 +1,86 @@
+package datawave.ingest.mapreduce.handler.edge;
+
+import com.google.common.collect.HashMultimap;
+import datawave.ingest.mapreduce.handler.edge.define.EdgeDefinition;
+import datawave.ingest.mapreduce.handler.edge.define.EdgeDefinitionConfigurationHelper;
+import datawave.ingest.mapreduce.handler.edge.evaluation.EdgePreconditionCacheHelper;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EdgeDefinitionPlanTest {
+    
+    private static EdgeDefinition createEdge(String source, String sink, String precondition) {
+        EdgeDefinition edgeDef = new EdgeDefinition();
+        edgeDef.setSourceFieldName(source);
+        edgeDef.setSinkFieldName(sink);
+        edgeDef.setJexlPrecondition(precondition);
+        return edgeDef;
+    }
+    
+    private static EdgeDefinitionConfigurationHelper createConfig(EdgeDefinition... edgeDefs) {
+        EdgeDefinitionConfigurationHelper config = new EdgeDefinitionConfigurationHelper();
+        config.setEdges(Arrays.asList(edgeDefs));
+        config.setEdgeAttribute2("FOO_FIELD");
+        config.setEdgeAttribute3("BAR_FIELD");
+        config.setActivityDateField("EVENT_DATE");
+        config.init(new HashSet<>(), new HashSet<>());
+        return config;
+    }
+    
+    @Test
+    public void testFieldsAndGroups() {
+        EdgeDefinitionConfigurationHelper config = createConfig(createEdge("NAME.PERSON.ID_0", "NAME.CAST.ID_0", null),
+                        createEdge("EDGE_VERTEX_FROM", "EDGE_VERTEX_TO", null));
+        EdgeDefinitionPlan plan = new EdgeDefinitionPlan(config, null);
+        
+        assertEquals("ID_0", plan.getSourceGroup(0));
+        assertEquals("ID_0", plan.getSinkGroup(0));
+        assertTrue(plan.isSameGroup(0));
+        assertEquals(EdgeDefinitionPlan.NO_GROUP, plan.getSourceGroup(1));
+        assertFalse(plan.isSameGroup(1));
+        
+        assertTrue(plan.isIndexedFieldNeeded("NAME"));
+        assertTrue(plan.isIndexedFieldNeeded("NAME.PERSON"));
+        assertTrue(plan.isIndexedFieldNeeded("FOO_FIELD"));
+        assertTrue(plan.isIndexedFieldNeeded("EVENT_DATE"));
+        assertFalse(plan.isIndexedFieldNeeded("SHA1"));
+        
+        assertTrue(plan.isFieldNeeded("NAME.PERSON.ID_0"));
+        assertTrue(plan.isFieldNeeded("EDGE_VERTEX_TO"));
+        assertFalse(plan.isFieldNeeded("NAME.PERSON.ID_1"));
+        assertFalse(plan.isFieldNeeded("NAME"));
+        
+        assertFalse(plan.hasPreconditions());
+        assertTrue(plan.isPreconditionMet(0));
+    }
+    
+    @Test
+    public void testPreconditions() {
+        EdgeDefinitionConfigurationHelper config = createConfig(createEdge("A", "B", "true"), createEdge("A", "C", "false"), createEdge("B", "C", "true"),
+                        createEdge("A", "D", null));
+        
+        // preconditions which are not evaluated are treated as met
+        EdgeDefinitionPlan plan = new EdgeDefinitionPlan(config, null);
+        assertFalse(plan.hasPreconditions());
+        for (int edge = 0; edge < 4; edge++) {
+            assertFalse(plan.hasPrecondition(edge));
+            assertTrue(plan.isPreconditionMet(edge));
+        }
+        
+        plan = new EdgeDefinitionPlan(config, new EdgePreconditionCacheHelper());
+        assertTrue(plan.hasPreconditions());
+        plan.setEvent(HashMultimap.create());
+        assertTrue(plan.hasPrecondition(0));
+        assertTrue(plan.isPreconditionMet(0));
+        assertFalse(plan.isPreconditionMet(1));
+        assertTrue(plan.isPreconditionMet(2));
+        assertFalse(plan.hasPrecondition(3));
+        assertTrue(plan.isPreconditionMet(3));
+    }
+}
@@ -0,0 +1,149 @@
+package datawave.ingest.mapreduce.job;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinarySplitsFileTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private static List<Text> createSplits(Random random, int count) {
+        List<Text> splits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            splits.add(createRow(random));
+        }
+        return splits;
+    }
+    
+    // rows sharing long prefixes, with some bytes above 0x7f
+    private static Text createRow(Random random) {
+        byte[] row = new byte[random.nextInt(10)];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = (byte) (random.nextInt(8) == 0 ? 0xf0 : 'a' + random.nextInt(3));
+        }
+        return new Text(row);
+    }
+    
+    private static byte[] write(BinarySplitsFile.Writer writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(out);
+        return out.toByteArray();
+    }
+    
+    @Test
+    public void testReadWrite() throws IOException {
+        Random random = new Random(42);
+        List<Text> shardSplits = createSplits(random, 1000);
+        BinarySplitsFile.Writer writer = new BinarySplitsFile.Writer();
+        writer.addTable("shard", shardSplits);
+        writer.addTable("shardIndex", Arrays.asList(new Text("b"), new Text("a")));
+        writer.addTable("empty", Collections.emptyList());
+        
+        File file = temporaryFolder.newFile("all-splits.bin");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(write(writer));
+        }
+        BinarySplitsFile.Reader reader = BinarySplitsFile.Reader.map(file);
+        
+        Assert.assertEquals(3, reader.getTableNames().size());
+        Assert.assertNull(reader.getSplits("missing"));
+        Assert.assertEquals(0, reader.getSplits("empty").size());
+        Assert.assertEquals(Arrays.asList(new Text("a"), new Text("b")), reader.getSplits("shardIndex").toList());
+        
+        Collections.sort(shardSplits);
+        BinarySplitsFile.TableSplits splits = reader.getSplits("shard");
+        Assert.assertEquals(1000, splits.size());
+        Assert.assertEquals(shardSplits, splits.toList());
+        Assert.assertEquals(shardSplits, new ArrayList<>(splits.asList()));
+        Assert.assertEquals(TableSplitsCache.trimSplits(shardSplits, 10), TableSplitsCache.trimSplits(splits.asList(), 10));
+    }
+    
+    @Test
+    public void testBinarySearch() throws IOException {
+        Random random = new Random(7);
+        for (int count : new int[] {0, 1, 15, 16, 17, 100, 500}) {
+            List<Text> splits = createSplits(random, count);
+            BinarySplitsFile.Writer writer = new BinarySplitsFile.Writer();
+            writer.addTable("table", splits);
+            BinarySplitsFile.TableSplits tableSplits = new BinarySplitsFile.Reader(ByteBuffer.wrap(write(writer))).getSplits("table");
+            
+            Collections.sort(splits);
+            Text[] cutPoints = splits.toArray(new Text[splits.size()]);
+            for (int i = 0; i < 1000; i++) {
+                Text row = (count > 0 && i % 3 == 0) ? cutPoints[random.nextInt(count)] : createRow(random);
+                // search the row in the middle of a larger array
+                byte[] bytes = new byte[row.getLength() + 4];
+                System.arraycopy(row.getBytes(), 0, bytes, 2, row.getLength());
+                
+                int expected = Arrays.binarySearch(cutPoints, row);
+                int actual = tableSplits.binarySearch(bytes, 2, row.getLength());
+                if (expected >= 0) {
+                    // duplicate cut points may be found at any of their indices
+                    Assert.assertEquals(row, cutPoints[actual]);
+                } else {
+                    Assert.assertEquals(row.toString(), expected, actual);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testCopyTable() throws IOException {
+        List<Text> splits = createSplits(new Random(3), 100);
+        BinarySplitsFile.Writer writer = new BinarySplitsFile.Writer();
+        writer.addTable("shard", splits);
+        writer.addTable("shardIndex", Collections.singletonList(new Text("a")));
+        BinarySplitsFile.Reader previous = new BinarySplitsFile.Reader(ByteBuffer.wrap(write(writer)));
+        
+        writer = new BinarySplitsFile.Writer();
+        writer.copyTable(previous, "shard");
+        writer.addTable("shardIndex", Collections.singletonList(new Text("b")));
+        BinarySplitsFile.Reader reader = new BinarySplitsFile.Reader(ByteBuffer.wrap(write(writer)));
+        
+        Collections.sort(splits);
+        Assert.assertEquals(splits, reader.getSplits("shard").toList());
+        Assert.assertEquals(Collections.singletonList(new Text("b")), reader.getSplits("shardIndex").toList());
+    }
+    
+    @Test
+    public void testChecksums() throws IOException {
+        BinarySplitsFile.Writer writer = new BinarySplitsFile.Writer();
+        writer.addTable("shard", Arrays.asList(new Text("20190101_0"), new Text("20190101_1")));
+        byte[] bytes = write(writer);
+        
+        byte[] corruptSplits = bytes.clone();
+        corruptSplits[corruptSplits.length - 10]++;
+        BinarySplitsFile.Reader reader = new BinarySplitsFile.Reader(ByteBuffer.wrap(corruptSplits));
+        try {
+            reader.getSplits("shard");
+            Assert.fail("corrupt splits were read");
+        } catch (IOException e) {
+            // expected
+        }
+        
+        byte[] corruptHeader = bytes.clone();
+        corruptHeader[20]++;
+        try {
+            new BinarySplitsFile.Reader(ByteBuffer.wrap(corruptHeader));
+            Assert.fail("corrupt header was read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -12,9 +12,15 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import datawave.common.test.integration.IntegrationTest;
 import datawave.common.test.logging.CommonTestAppender;
@@ -77,6 +83,218 @@ public class BulkIngestMapFileLoaderTest {
         }
     }
     
+    @Test
+    public void testStageMetrics() throws InterruptedException {
+        BulkIngestMapFileLoader.StageMetrics metrics = new BulkIngestMapFileLoader.StageMetrics(BulkIngestMapFileLoader.IMPORT_STAGE);
+        long queuedTime = metrics.queued();
+        Assert.assertEquals(1, metrics.getQueued());
+        Thread.sleep(5);
+        long startTime = metrics.started(queuedTime);
+        Assert.assertEquals(0, metrics.getQueued());
+        Assert.assertEquals(1, metrics.getActive());
+        Thread.sleep(5);
+        metrics.finished(startTime, true);
+        Assert.assertEquals(0, metrics.getActive());
+        Assert.assertEquals(1, metrics.getCompleted());
+        Assert.assertTrue(metrics.getAverageWaitTime() >= 5);
+        Assert.assertTrue(metrics.getAverageTime() >= 5);
+        Assert.assertEquals(metrics.getAverageTime(), metrics.getMaxTime());
+        Assert.assertTrue(metrics.toString().startsWith(BulkIngestMapFileLoader.IMPORT_STAGE));
+        
+        // failed stages are counted and timed as well
+        metrics.finished(metrics.started(metrics.queued()), false);
+        Assert.assertEquals(1, metrics.getCompleted());
+        Assert.assertEquals(1, metrics.getFailed());
+        
+        // as are stages that could not be started
+        metrics.queued();
+        metrics.rejected();
+        Assert.assertEquals(0, metrics.getQueued());
+        Assert.assertEquals(0, metrics.getActive());
+        Assert.assertEquals(2, metrics.getFailed());
+    }
+    
+    /**
+     * Stages that record the order of events and can be held at each stage
+     */
+    private static class StubStages implements BulkIngestMapFileLoader.LoadStages {
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        final Map<String,CountDownLatch> importGates = new ConcurrentHashMap<>();
+        final Map<String,CountDownLatch> staged = new ConcurrentHashMap<>();
+        final Set<String> failImport = ConcurrentHashMap.newKeySet();
+        volatile boolean markFailedResult = true;
+        
+        CountDownLatch gate(String name) {
+            return importGates.computeIfAbsent(name, k -> new CountDownLatch(1));
+        }
+        
+        CountDownLatch staged(String name) {
+            return staged.computeIfAbsent(name, k -> new CountDownLatch(1));
+        }
+        
+        @Override
+        public boolean takeOwnership(Path srcJobDirectory) {
+            return true;
+        }
+        
+        @Override
+        public void stage(BulkIngestMapFileLoader.LoadJob job) {
+            events.add("stage:" + job.srcJobDirectory.getName());
+            staged(job.srcJobDirectory.getName()).countDown();
+        }
+        
+        @Override
+        public void load(BulkIngestMapFileLoader.LoadJob job) throws Exception {
+            String name = job.srcJobDirectory.getName();
+            if (importGates.containsKey(name)) {
+                Assert.assertTrue(gate(name).await(10, TimeUnit.SECONDS));
+            }
+            if (failImport.contains(name)) {
+                throw new IOException("failed to import " + name);
+            }
+            events.add("load:" + name);
+        }
+        
+        @Override
+        public void complete(BulkIngestMapFileLoader.LoadJob job) {
+            events.add("complete:" + job.srcJobDirectory.getName());
+        }
+        
+        @Override
+        public boolean markFailed(BulkIngestMapFileLoader.LoadJob job) {
+            events.add("failed:" + job.srcJobDirectory.getName());
+            return markFailedResult;
+        }
+    }
+    
+    private static BulkIngestMapFileLoader.LoadPipeline createPipeline(int inFlight, StubStages stages, Runnable shutdown) {
+        return createPipeline(inFlight, stages, BulkIngestMapFileLoader.createStageMetrics(), shutdown);
+    }
+    
+    private static BulkIngestMapFileLoader.LoadPipeline createPipeline(int inFlight, StubStages stages,
+                    Map<String,BulkIngestMapFileLoader.StageMetrics> stageMetrics, Runnable shutdown) {
+        return new BulkIngestMapFileLoader.LoadPipeline(inFlight, stages, stageMetrics, 60 * 1000L, shutdown);
+    }
+    
+    @Test
+    public void testPipelineStageOverlap() throws InterruptedException {
+        StubStages stages = new StubStages();
+        BulkIngestMapFileLoader.LoadPipeline pipeline = createPipeline(2, stages, () -> {});
+        try {
+            CountDownLatch gate = stages.gate("job1");
+            Assert.assertTrue(pipeline.load(new Path("/work/job1")));
+            Assert.assertTrue(pipeline.hasRoom());
+            Assert.assertTrue(pipeline.load(new Path("/work/job2")));
+            Assert.assertFalse(pipeline.hasRoom());
+            
+            // job2 is staged and imported while the import of job1 is still held
+            Assert.assertTrue(stages.staged("job2").await(10, TimeUnit.SECONDS));
+            pipeline.awaitRoom(10 * 1000L);
+            Assert.assertTrue(pipeline.hasRoom());
+            Assert.assertTrue(stages.events.contains("complete:job2"));
+            Assert.assertFalse(stages.events.contains("load:job1"));
+            
+            gate.countDown();
+            pipeline.awaitInFlight();
+            Assert.assertTrue(stages.events.indexOf("complete:job2") < stages.events.indexOf("load:job1"));
+            Assert.assertTrue(pipeline.getLastOnlineTime() > 0);
+        } finally {
+            pipeline.shutdownExecutors();
+        }
+    }
+    
+    @Test
+    public void testPipelineFailure() throws InterruptedException {
+        StubStages stages = new StubStages();
+        stages.failImport.add("job1");
+        stages.markFailedResult = false;
+        AtomicInteger shutdowns = new AtomicInteger();
+        BulkIngestMapFileLoader.LoadPipeline pipeline = createPipeline(1, stages, shutdowns::incrementAndGet);
+        try {
+            Assert.assertTrue(pipeline.load(new Path("/work/job1")));
+            pipeline.awaitInFlight();
+            Assert.assertTrue(stages.events.contains("failed:job1"));
+            Assert.assertFalse(stages.events.contains("complete:job1"));
+            
+            // the failure pauses new loads without holding the completion thread or the permit
+            Assert.assertTrue(pipeline.isPaused());
+            Assert.assertTrue(pipeline.hasRoom());
+            long start = System.currentTimeMillis();
+            Assert.assertTrue(pipeline.load(new Path("/work/job2")));
+            pipeline.awaitInFlight();
+            Assert.assertTrue(stages.events.contains("complete:job2"));
+            Assert.assertTrue(System.currentTimeMillis() - start < 10 * 1000L);
+            Assert.assertEquals(0, shutdowns.get());
+            
+            // too many failures to mark the job directories shuts the loader down
+            stages.failImport.add("job3");
+            stages.failImport.add("job4");
+            pipeline.load(new Path("/work/job3"));
+            pipeline.load(new Path("/work/job4"));
+            pipeline.awaitInFlight();
+            Assert.assertEquals(1, shutdowns.get());
+        } finally {
+            pipeline.shutdownExecutors();
+        }
+    }
+    
+    @Test
+    public void testPipelineRejected() throws InterruptedException {
+        StubStages stages = new StubStages();
+        Map<String,BulkIngestMapFileLoader.StageMetrics> stageMetrics = BulkIngestMapFileLoader.createStageMetrics();
+        BulkIngestMapFileLoader.LoadPipeline pipeline = createPipeline(2, stages, stageMetrics, () -> {});
+        CountDownLatch gate = stages.gate("job1");
+        Assert.assertTrue(pipeline.load(new Path("/work/job1")));
+        long timeout = System.currentTimeMillis() + 10 * 1000L;
+        while (stageMetrics.get(BulkIngestMapFileLoader.IMPORT_STAGE).getActive() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, stageMetrics.get(BulkIngestMapFileLoader.IMPORT_STAGE).getActive());
+        pipeline.shutdownExecutors();
+        
+        // a job directory started after the executors were shut down gives its permit back
+        Assert.assertTrue(pipeline.load(new Path("/work/job2")));
+        Assert.assertFalse(stages.events.contains("stage:job2"));
+        Assert.assertEquals(1, stageMetrics.get(BulkIngestMapFileLoader.STAGING_STAGE).getFailed());
+        
+        // as does one that finishes a stage after the executors were shut down, so waiting for the pipeline to drain does not hang
+        gate.countDown();
+        Thread waiter = new Thread(pipeline::awaitInFlight);
+        waiter.start();
+        waiter.join(10 * 1000L);
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertTrue(pipeline.hasRoom());
+        Assert.assertFalse(stages.events.contains("complete:job1"));
+        Assert.assertEquals(1, stageMetrics.get(BulkIngestMapFileLoader.IMPORT_STAGE).getCompleted());
+        Assert.assertEquals(1, stageMetrics.get(BulkIngestMapFileLoader.COMPLETION_STAGE).getFailed());
+    }
+    
+    @Test
+    public void testPipelineShutdownOrdering() throws InterruptedException {
+        StubStages stages = new StubStages();
+        BulkIngestMapFileLoader.LoadPipeline pipeline = createPipeline(2, stages, () -> {});
+        CountDownLatch gate = stages.gate("job1");
+        Assert.assertTrue(pipeline.load(new Path("/work/job1")));
+        Assert.assertTrue(pipeline.load(new Path("/work/job2")));
+        
+        Thread waiter = new Thread(() -> {
+            pipeline.awaitInFlight();
+            stages.events.add("drained");
+            pipeline.shutdownExecutors();
+        });
+        waiter.start();
+        waiter.join(200);
+        Assert.assertTrue(waiter.isAlive());
+        
+        // the executors are only shut down once the job directories in flight have completed
+        gate.countDown();
+        waiter.join(10 * 1000L);
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertEquals("drained", stages.events.get(stages.events.size() - 1));
+        Assert.assertTrue(stages.events.contains("complete:job1"));
+        Assert.assertTrue(stages.events.contains("complete:job2"));
+    }
+    
     public static class WrappedPositionedReadable extends InputStream implements PositionedReadable, Seekable {
         
         protected long position = 0;
@@ -1,6 +1,7 @@
 package datawave.ingest.mapreduce.job;
 
 import datawave.ingest.data.config.ingest.AccumuloHelper;
+import org.apache.accumulo.core.client.admin.TableOperations;
 import org.apache.accumulo.fate.zookeeper.ZooCache;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.hadoop.conf.Configuration;
@@ -20,18 +21,27 @@ import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.powermock.api.easymock.PowerMock;
 import org.powermock.reflect.Whitebox;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.net.URI;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.Set;
 
 public class TableSplitsCacheTest {
     
@@ -44,6 +54,9 @@ public class TableSplitsCacheTest {
     protected static Level zooCacheLevel;
     protected static Level zooKeeperLevel;
     
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
     protected static long FILE_STATUS_LENGTH = 1000l;
     protected static boolean FILE_STATUS_IS_DIRECTORY = true;
     protected static int FILE_STATUS_REPLICATION = 3;
@@ -664,4 +677,122 @@ public class TableSplitsCacheTest {
         }
     }
     
+    private static void writeTextSplits(File file, Map<String,List<Text>> splits) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(file))) {
+            for (Map.Entry<String,List<Text>> entry : splits.entrySet()) {
+                for (Text split : entry.getValue()) {
+                    out.println(entry.getKey() + "\t" + new String(Base64.encodeBase64(split.copyBytes())));
+                }
+            }
+        }
+    }
+    
+    private static void writeBinarySplits(File file, Map<String,List<Text>> splits) throws IOException {
+        BinarySplitsFile.Writer writer = new BinarySplitsFile.Writer();
+        for (Map.Entry<String,List<Text>> entry : splits.entrySet()) {
+            writer.addTable(entry.getKey(), entry.getValue());
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            writer.write(out);
+        }
+    }
+    
+    private static List<Text> texts(String... rows) {
+        List<Text> texts = new ArrayList<>();
+        for (String row : rows) {
+            texts.add(new Text(row));
+        }
+        return texts;
+    }
+    
+    private Configuration createSplitsCacheConfiguration(File splitsCacheDir) {
+        Configuration conf = new Configuration();
+        conf.set(TableSplitsCache.SPLITS_CACHE_DIR, splitsCacheDir.toURI().toString());
+        conf.setBoolean(TableSplitsCache.REFRESH_SPLITS, false);
+        return conf;
+    }
+    
+    @Test
+    public void testGetSplitsFromBinaryFile() throws IOException {
+        File splitsCacheDir = temporaryFolder.newFolder();
+        File textFile = new File(splitsCacheDir, "all-splits.txt");
+        File binaryFile = new File(splitsCacheDir, "all-splits.bin");
+        writeTextSplits(textFile, Collections.singletonMap("shard", texts("a", "b", "c")));
+        writeBinarySplits(binaryFile, Collections.singletonMap("shard", texts("x", "y")));
+        Assert.assertTrue(binaryFile.setLastModified(textFile.lastModified()));
+        
+        // the binary file is read when it is at least as new as the text file
+        TableSplitsCache uut = new TableSplitsCache(createSplitsCacheConfiguration(splitsCacheDir));
+        Assert.assertEquals(texts("x", "y"), uut.getSplits("shard"));
+        Assert.assertEquals(texts("y"), uut.getSplits("shard", 1));
+        Assert.assertTrue(uut.getSplits("bad-table").isEmpty());
+        Assert.assertEquals(Collections.singletonMap("shard", texts("x", "y")), uut.getSplits());
+    }
+    
+    @Test
+    public void testStaleBinaryFileIgnored() throws IOException {
+        File splitsCacheDir = temporaryFolder.newFolder();
+        File textFile = new File(splitsCacheDir, "all-splits.txt");
+        File binaryFile = new File(splitsCacheDir, "all-splits.bin");
+        writeTextSplits(textFile, Collections.singletonMap("shard", texts("a", "b", "c")));
+        writeBinarySplits(binaryFile, Collections.singletonMap("shard", texts("x", "y")));
+        Assert.assertTrue(binaryFile.setLastModified(textFile.lastModified() - 60 * 1000L));
+        
+        // a binary file older than the text file was not written with it
+        TableSplitsCache uut = new TableSplitsCache(createSplitsCacheConfiguration(splitsCacheDir));
+        Assert.assertEquals(texts("a", "b", "c"), uut.getSplits("shard"));
+    }
+    
+    @Test
+    public void testUpdateChangedTables() throws Exception {
+        File splitsCacheDir = temporaryFolder.newFolder();
+        Map<String,List<Text>> previous = new HashMap<>();
+        previous.put("shard", texts("a", "b", "c"));
+        previous.put("shardIndex", texts("d"));
+        File textFile = new File(splitsCacheDir, "all-splits.txt");
+        File binaryFile = new File(splitsCacheDir, "all-splits.bin");
+        writeTextSplits(textFile, previous);
+        writeBinarySplits(binaryFile, previous);
+        Assert.assertTrue(binaryFile.setLastModified(textFile.lastModified()));
+        
+        // only the changed table and the table missing from the binary file are listed
+        TableOperations tops = EasyMock.createMock(TableOperations.class);
+        EasyMock.expect(tops.listSplits("shardIndex")).andReturn(texts("e", "f"));
+        EasyMock.expect(tops.listSplits("shardReverseIndex")).andReturn(texts("g"));
+        EasyMock.replay(tops);
+        
+        TableSplitsCache uut = new TableSplitsCache(createSplitsCacheConfiguration(splitsCacheDir)) {
+            @Override
+            protected Set<String> getIngestTableNames() {
+                return new HashSet<>(Arrays.asList("shard", "shardIndex", "shardReverseIndex"));
+            }
+            
+            @Override
+            protected TableOperations getTableOperations() {
+                return tops;
+            }
+        };
+        uut.update(Collections.singleton("shardIndex"));
+        EasyMock.verify(tops);
+        
+        Map<String,List<Text>> expected = new HashMap<>();
+        expected.put("shard", texts("a", "b", "c"));
+        expected.put("shardIndex", texts("e", "f"));
+        expected.put("shardReverseIndex", texts("g"));
+        Assert.assertEquals(expected, uut.getSplits());
+        
+        // the updated binary file is not older than the text file, so it is read back
+        TableSplitsCache reread = new TableSplitsCache(createSplitsCacheConfiguration(splitsCacheDir));
+        Assert.assertEquals(expected, reread.getSplits());
+        Assert.assertNotNull(Whitebox.getInternalState(reread, "binarySplits"));
+    }
+    
+    @Test
+    public void testGetChangedTables() {
+        Configuration conf = new Configuration();
+        Assert.assertNull(TableSplitsCache.getChangedTables(conf));
+        conf.set(TableSplitsCache.CHANGED_TABLES, "shard,shardIndex");
+        Assert.assertEquals(Arrays.asList("shard", "shardIndex"), TableSplitsCache.getChangedTables(conf));
+    }
+    
 }
@@ -0,0 +1,42 @@
+package datawave.ingest.mapreduce.partition;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class CutPointIndexTest {
+    
+    private static final Text[] CUT_POINTS = new Text[] {new Text(""), new Text("a"), new Text("a\u0000"), new Text("ab"), new Text("b"), new Text("ba"),
+            new Text("m"), new Text("z"), new Text("\u00ff")};
+    
+    @Test
+    public void testBinarySearchMatchesArrays() {
+        CutPointIndex index = new CutPointIndex(CUT_POINTS);
+        Assert.assertEquals(CUT_POINTS.length, index.size());
+        
+        String[] rows = new String[] {"", "\u0000", "a", "a\u0000", "a\u0000\u0000", "aa", "ab", "abc", "b", "b\u0000", "ba", "bb", "c", "m", "mm", "y", "z",
+                "z\u0000", "\u00fe", "\u00ff", "\u00ff\u00ff"};
+        for (String row : rows) {
+            Text text = new Text(row);
+            Assert.assertEquals(row, Arrays.binarySearch(CUT_POINTS, text), index.binarySearch(text.getBytes(), 0, text.getLength()));
+        }
+    }
+    
+    @Test
+    public void testRowWithinBuffer() {
+        CutPointIndex index = new CutPointIndex(CUT_POINTS);
+        byte[] buffer = "xxbaxx".getBytes();
+        Assert.assertEquals(5, index.binarySearch(buffer, 2, 2));
+        Assert.assertEquals(-8, index.binarySearch(buffer, 0, 1));
+    }
+    
+    @Test
+    public void testNoCutPoints() {
+        CutPointIndex index = new CutPointIndex(new Text[0]);
+        Assert.assertEquals(0, index.size());
+        Assert.assertEquals(-1, index.binarySearch(new byte[0], 0, 0));
+        Assert.assertEquals(-1, index.binarySearch("a".getBytes(), 0, 1));
+    }
+}
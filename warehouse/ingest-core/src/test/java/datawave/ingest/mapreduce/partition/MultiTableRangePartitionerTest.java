@@ -1,6 +1,7 @@
 package datawave.ingest.mapreduce.partition;
 
 import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.ingest.test.StandaloneStatusReporter;
 import datawave.util.TableName;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Mutation;
@@ -57,6 +58,32 @@ public class MultiTableRangePartitionerTest {
         getPartition();
     }
     
+    @Test
+    public void testPartitionStatsFlushedToCounters() {
+        configuration.setBoolean(MultiTableRangePartitioner.PARTITION_STATS, true);
+        StandaloneStatusReporter reporter = new StandaloneStatusReporter();
+        final URL url = createUrl("trimmed_splits.txt");
+        MultiTableRangePartitioner.setContext(new MapContextImpl<Key,Value,Text,Mutation>(configuration, new TaskAttemptID(), null, null, null, reporter, null) {
+            @Override
+            public Path[] getLocalCacheFiles() throws IOException {
+                return new Path[] {new Path(url.getPath())};
+            }
+        });
+        
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(5, getPartition());
+        }
+        
+        // the stats are only added to the counters when flushed
+        Assert.assertEquals(0, reporter.getCounter("Partitions: " + TABLE_NAME, "part.005").getValue());
+        MultiTableRangePartitioner.flushStats();
+        Assert.assertEquals(3, reporter.getCounter("Partitions: " + TABLE_NAME, "part.005").getValue());
+        MultiTableRangePartitioner.flushStats();
+        Assert.assertEquals(3, reporter.getCounter("Partitions: " + TABLE_NAME, "part.005").getValue());
+        
+        MultiTableRangePartitioner.setContext(null);
+    }
+    
     private URL createUrl(String fileName) {
         return MultiTableRangePartitionerTest.class.getResource("/datawave/ingest/mapreduce/job/" + fileName);
     }
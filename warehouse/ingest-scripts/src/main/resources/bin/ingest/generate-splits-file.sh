@@ -15,4 +15,4 @@ export ACCUMULO_OTHER_OPTS="${ACCUMULO_OTHER_OPTS} $HADOOP_INGEST_OPTS"
 ADDJARS="$( cd ../../lib && pwd )/.*.jar"
 
 $WAREHOUSE_ACCUMULO_HOME/bin/accumulo -add $ADDJARS jar ${DATAWAVE_INGEST_CORE_JAR} datawave.ingest.util.GenerateSplitsFile -u $USERNAME -p $PASSWORD -i $WAREHOUSE_INSTANCE_NAME -zk $WAREHOUSE_ZOOKEEPERS \
--cd `readlink -f $CONF_DIR`
+-cd `readlink -f $CONF_DIR` "$@"
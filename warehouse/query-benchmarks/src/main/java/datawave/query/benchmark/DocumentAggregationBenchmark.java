@@ -0,0 +1,81 @@
+package datawave.query.benchmark;
+
+import com.google.common.collect.Maps;
+import datawave.query.attributes.Document;
+import datawave.query.composite.CompositeMetadata;
+import datawave.query.function.KeyToDocumentData;
+import datawave.query.iterator.aggregation.DocumentData;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning the event keys of a document into a {@link Document}: fetching the event data for a document key and aggregating it into attributes.
+ * Scores are per document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DocumentAggregationBenchmark {
+    
+    private static final int BATCH = 1000;
+    
+    @Param({"10", "100"})
+    public int fields;
+    
+    private SortedMap<Key,Value> data;
+    private List<Key> documentKeys;
+    private final TypeMetadata typeMetadata = new TypeMetadata();
+    private final CompositeMetadata compositeMetadata = new CompositeMetadata();
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ShardData shardData = new ShardData(BATCH, fields, 42);
+        data = shardData.load();
+        documentKeys = shardData.getDocumentKeys();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void fetch(Blackhole bh) {
+        KeyToDocumentData keyToDocumentData = new KeyToDocumentData(new SortedMapIterator(data));
+        for (Key documentKey : documentKeys) {
+            bh.consume(keyToDocumentData.apply(Maps.immutableEntry(documentKey, new Document())));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void fetchAndAggregate(Blackhole bh) {
+        KeyToDocumentData keyToDocumentData = new KeyToDocumentData(new SortedMapIterator(data));
+        for (Key documentKey : documentKeys) {
+            Entry<DocumentData,Document> entry = keyToDocumentData.apply(Maps.immutableEntry(documentKey, new Document()));
+            DocumentData documentData = entry.getKey();
+            bh.consume(new Document(documentKey, documentData.getDocKeys(), documentData.getData().iterator(), typeMetadata, compositeMetadata, false,
+                            false, null));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package datawave.query.benchmark;
+
+import datawave.query.iterator.NestedIterator;
+import datawave.query.iterator.NestedQuery;
+import datawave.query.iterator.NestedQueryIterator;
+import datawave.query.iterator.SeekableIterator;
+import datawave.query.iterator.SeekableNestedIterator;
+import datawave.query.iterator.logic.AndIterator;
+import datawave.query.iterator.logic.IndexIterator;
+import datawave.query.iterator.logic.IndexIteratorBridge;
+import datawave.query.iterator.logic.OrIterator;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seek/next throughput of the document key iterator trees built for a query: single field index terms, intersections, unions and nested queries. Each
+ * invocation seeks a freshly built tree over the whole shard and drains it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IteratorBenchmark {
+    
+    private static final Collection<ByteSequence> EMPTY_CFS = Collections.emptyList();
+    
+    @Param({"100000"})
+    public int documents;
+    
+    private SortedMap<Key,Value> data;
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        data = new ShardData(documents, 10, 42).load();
+    }
+    
+    @Benchmark
+    public int term(Blackhole bh) throws IOException {
+        // COLOR == 'red'
+        return drain(term("COLOR", "red"), bh);
+    }
+    
+    @Benchmark
+    public int and(Blackhole bh) throws IOException {
+        // COLOR == 'red' && SHAPE == 'circle'
+        return drain(new AndIterator<>(Arrays.asList(term("COLOR", "red"), term("SHAPE", "circle"))), bh);
+    }
+    
+    @Benchmark
+    public int andSelective(Blackhole bh) throws IOException {
+        // a rare term intersected with a common one, which is dominated by seeks: ID == '12345' && SHAPE == 'circle'
+        return drain(new AndIterator<>(Arrays.asList(term("ID", "12345"), term("SHAPE", "circle"))), bh);
+    }
+    
+    @Benchmark
+    public int or(Blackhole bh) throws IOException {
+        // COLOR == 'red' || COLOR == 'blue' || SHAPE == 'square'
+        return drain(new OrIterator<>(Arrays.asList(term("COLOR", "red"), term("COLOR", "blue"), term("SHAPE", "square"))), bh);
+    }
+    
+    @Benchmark
+    public int andOfOr(Blackhole bh) throws IOException {
+        // (COLOR == 'red' || COLOR == 'blue') && (SHAPE == 'circle' || SHAPE == 'square')
+        NestedIterator<Key> colors = new OrIterator<>(Arrays.asList(term("COLOR", "red"), term("COLOR", "blue")));
+        NestedIterator<Key> shapes = new OrIterator<>(Arrays.asList(term("SHAPE", "circle"), term("SHAPE", "square")));
+        return drain(new AndIterator<>(Arrays.asList(colors, shapes)), bh);
+    }
+    
+    @Benchmark
+    public int nested(Blackhole bh) throws IOException {
+        // COLOR == 'red' && SHAPE == 'circle' followed by COLOR == 'blue' || SHAPE == 'square', as produced when a query is split into nested queries
+        NestedQueryIterator<Key> iterator = new NestedQueryIterator<>(Arrays.asList(
+                        nest(new AndIterator<>(Arrays.asList(term("COLOR", "red"), term("SHAPE", "circle")))),
+                        nest(new OrIterator<>(Arrays.asList(term("COLOR", "blue"), term("SHAPE", "square"))))));
+        int count = 0;
+        while (iterator.hasNext()) {
+            bh.consume(iterator.next());
+            count++;
+        }
+        return count;
+    }
+    
+    private NestedIterator<Key> term(String field, String value) {
+        IndexIterator iterator = IndexIterator.builder(new Text(field), new Text(value), new SortedMapIterator(data)).build();
+        return new IndexIteratorBridge(iterator, null, field);
+    }
+    
+    // seek the leaves of a nested query, the NestedQueryIterator initializes each nest when it gets to it
+    private NestedQuery<Key> nest(NestedIterator<Key> root) throws IOException {
+        for (NestedIterator<Key> leaf : root.leaves()) {
+            if (leaf instanceof SeekableIterator) {
+                ((SeekableIterator) leaf).seek(new Range(), EMPTY_CFS, false);
+            }
+        }
+        NestedQuery<Key> nest = new NestedQuery<>();
+        nest.setIterator(root);
+        nest.setRange(new Range());
+        return nest;
+    }
+    
+    private static int drain(NestedIterator<Key> root, Blackhole bh) throws IOException {
+        SeekableNestedIterator<Key> iterator = new SeekableNestedIterator<>(root, null);
+        iterator.seek(new Range(), EMPTY_CFS, false);
+        int count = 0;
+        while (iterator.hasNext()) {
+            bh.consume(iterator.next());
+            count++;
+        }
+        return count;
+    }
+}
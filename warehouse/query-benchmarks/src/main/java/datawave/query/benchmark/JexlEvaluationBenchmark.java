@@ -0,0 +1,86 @@
+package datawave.query.benchmark;
+
+import com.google.common.collect.Maps;
+import datawave.query.attributes.Document;
+import datawave.query.composite.CompositeMetadata;
+import datawave.query.function.JexlEvaluation;
+import datawave.query.function.KeyToDocumentData;
+import datawave.query.iterator.aggregation.DocumentData;
+import datawave.query.jexl.DatawaveJexlContext;
+import datawave.query.util.Tuple3;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of evaluating the query against a document: populating the jexl context from the document and executing the script. Scores are per document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JexlEvaluationBenchmark {
+    
+    private static final int BATCH = 1000;
+    
+    @Param({"COLOR == 'red'", "COLOR == 'red' && SHAPE == 'circle'", "COLOR =~ 're.*' || SHAPE =~ '.*gon'",
+            "COLOR == 'red' && filter:includeRegex(TEXT, '.*delta.*')"})
+    public String query;
+    
+    private List<Document> documents;
+    private Set<String> queryFields;
+    private JexlEvaluation evaluation;
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ShardData shardData = new ShardData(BATCH, 10, 42);
+        KeyToDocumentData keyToDocumentData = new KeyToDocumentData(new SortedMapIterator(shardData.load()));
+        documents = new ArrayList<>(BATCH);
+        for (Key documentKey : shardData.getDocumentKeys()) {
+            DocumentData documentData = keyToDocumentData.apply(Maps.immutableEntry(documentKey, new Document())).getKey();
+            documents.add(new Document(documentKey, documentData.getDocKeys(), documentData.getData().iterator(), new TypeMetadata(),
+                            new CompositeMetadata(), false, false, null));
+        }
+        
+        queryFields = new HashSet<>();
+        queryFields.add("COLOR");
+        queryFields.add("SHAPE");
+        queryFields.add("TEXT");
+        evaluation = new JexlEvaluation(query);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int evaluate() {
+        int matched = 0;
+        for (Document document : documents) {
+            DatawaveJexlContext context = new DatawaveJexlContext();
+            document.visit(queryFields, context);
+            if (evaluation.apply(new Tuple3<>(document.getMetadata(), document, context))) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+}
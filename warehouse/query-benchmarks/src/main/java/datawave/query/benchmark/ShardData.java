@@ -0,0 +1,136 @@
+package datawave.query.benchmark;
+
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.query.Constants;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Synthetic shard table data for the benchmarks. Every document is written as event, field index and term frequency keys for a single shard into an
+ * {@link InMemoryInstance}, and the table is read back into a sorted map which the benchmarks use as the source for their iterators.
+ * <ul>
+ * <li>COLOR has {@link #COLORS} values, SHAPE has {@link #SHAPES} values, giving terms that hit a large and a moderate fraction of the documents</li>
+ * <li>ID is unique to each document</li>
+ * <li>TEXT holds a few tokens with term frequency entries</li>
+ * <li>FIELD_n are filler fields to give the documents a realistic size</li>
+ * </ul>
+ */
+public class ShardData {
+    
+    public static final String SHARD_TABLE = "shard";
+    public static final String SHARD = "20190101_0";
+    public static final String DATATYPE = "datatype";
+    public static final String VISIBILITY = "PUBLIC";
+    public static final Authorizations AUTHS = new Authorizations(VISIBILITY);
+    
+    public static final String[] COLORS = {"red", "orange", "yellow", "green", "blue", "indigo", "violet", "black"};
+    public static final String[] SHAPES = {"circle", "square", "triangle", "hexagon"};
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet"};
+    
+    private static final String TF = Constants.TERM_FREQUENCY_COLUMN_FAMILY.toString();
+    private static final long TIMESTAMP = 1546300800000L;
+    private static final Value EMPTY_VALUE = new Value(new byte[0]);
+    
+    private final int documents;
+    private final int fillerFields;
+    private final long seed;
+    
+    private final List<Key> documentKeys = new ArrayList<>();
+    
+    /**
+     * @param documents
+     *            the number of documents to create
+     * @param fillerFields
+     *            the number of filler fields per document
+     * @param seed
+     *            the random seed, so that every run creates the same data
+     */
+    public ShardData(int documents, int fillerFields, long seed) {
+        this.documents = documents;
+        this.fillerFields = fillerFields;
+        this.seed = seed;
+    }
+    
+    /**
+     * Write the data to a new in-memory instance and read it back
+     * 
+     * @return the contents of the shard table
+     * @throws Exception
+     *             if the data could not be written or read
+     */
+    public SortedMap<Key,Value> load() throws Exception {
+        Connector connector = new InMemoryInstance(ShardData.class.getName() + '-' + seed).getConnector("root", new PasswordToken(""));
+        connector.securityOperations().changeUserAuthorizations("root", AUTHS);
+        connector.tableOperations().create(SHARD_TABLE);
+        
+        Random random = new Random(seed);
+        ColumnVisibility cv = new ColumnVisibility(VISIBILITY);
+        documentKeys.clear();
+        BatchWriter writer = connector.createBatchWriter(SHARD_TABLE, new BatchWriterConfig());
+        try {
+            for (int i = 0; i < documents; i++) {
+                String uid = uid(random);
+                documentKeys.add(new Key(SHARD, DATATYPE + Constants.NULL + uid));
+                
+                Mutation m = new Mutation(SHARD);
+                put(m, cv, uid, "COLOR", COLORS[random.nextInt(COLORS.length)]);
+                put(m, cv, uid, "SHAPE", SHAPES[random.nextInt(SHAPES.length)]);
+                put(m, cv, uid, "ID", Integer.toString(i));
+                for (int f = 0; f < fillerFields; f++) {
+                    put(m, cv, uid, "FIELD_" + f, Long.toString(random.nextLong(), 36));
+                }
+                StringBuilder text = new StringBuilder();
+                for (int w = 0; w < 3; w++) {
+                    String word = WORDS[random.nextInt(WORDS.length)];
+                    text.append(w == 0 ? "" : " ").append(word);
+                    m.put(TF, DATATYPE + Constants.NULL + uid + Constants.NULL + word + Constants.NULL + "TEXT", cv, TIMESTAMP, EMPTY_VALUE);
+                }
+                put(m, cv, uid, "TEXT", text.toString());
+                writer.addMutation(m);
+            }
+        } finally {
+            writer.close();
+        }
+        documentKeys.sort(null);
+        
+        SortedMap<Key,Value> data = new TreeMap<>();
+        Scanner scanner = connector.createScanner(SHARD_TABLE, AUTHS);
+        for (Map.Entry<Key,Value> entry : scanner) {
+            data.put(entry.getKey(), entry.getValue());
+        }
+        return data;
+    }
+    
+    // event and field index entries for one field value
+    private static void put(Mutation m, ColumnVisibility cv, String uid, String field, String value) {
+        m.put(DATATYPE + Constants.NULL + uid, field + Constants.NULL + value, cv, TIMESTAMP, EMPTY_VALUE);
+        m.put(Constants.FIELD_INDEX_PREFIX + field, value + Constants.NULL + DATATYPE + Constants.NULL + uid, cv, TIMESTAMP, EMPTY_VALUE);
+    }
+    
+    private static String uid(Random random) {
+        return Integer.toString(random.nextInt() & Integer.MAX_VALUE, 36) + '.' + Integer.toString(random.nextInt() & Integer.MAX_VALUE, 36) + '.'
+                        + Integer.toString(random.nextInt() & Integer.MAX_VALUE, 36);
+    }
+    
+    /**
+     * @return the document keys (row and datatype\0uid column family) of the last data loaded, sorted
+     */
+    public List<Key> getDocumentKeys() {
+        return documentKeys;
+    }
+}
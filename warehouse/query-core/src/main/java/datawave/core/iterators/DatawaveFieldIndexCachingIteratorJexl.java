@@ -18,6 +18,7 @@ import datawave.query.util.TypeMetadata;
 import datawave.query.util.sortedset.FileKeySortedSet;
 import datawave.query.util.sortedset.FileSortedSet;
 import datawave.query.util.sortedset.HdfsBackedSortedSet;
+import datawave.query.util.sortedset.OffHeapFileKeySortedSet;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
@@ -85,6 +86,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         private int hdfsBackedSetBufferSize = 10000;
         private int maxOpenFiles = 100;
         private int numRetries = 2;
+        private boolean offHeapSortedSets = false;
         private FileSortedSet.PersistOptions persistOptions = new FileSortedSet.PersistOptions();
         private boolean sortedUIDs = true;
         protected QuerySpanCollector querySpanCollector = null;
@@ -174,6 +176,11 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             return self();
         }
         
+        public B withOffHeapSortedSets(boolean offHeapSortedSets) {
+            this.offHeapSortedSets = offHeapSortedSets;
+            return self();
+        }
+        
         public B withPersistOptions(FileSortedSet.PersistOptions persistOptions) {
             this.persistOptions = persistOptions;
             return self();
@@ -244,6 +251,9 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     @SuppressWarnings("unchecked")
     protected static final Collection<ByteSequence> EMPTY_CFS = Collections.EMPTY_LIST;
     
+    // the number of non-matching keys to next over before seeking to the key returned by getNextMatchingKey
+    protected static final int SKIP_SEEK_THRESHOLD = 10;
+    
     // These are the ranges to scan in the field index
     private final List<Range> boundingFiRanges = new ArrayList<>();
     protected Range currentFiRange = null;
@@ -292,6 +302,8 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     private final int maxOpenFiles;
     // the max number of retries when attempting to persist a sorted set to a filesystem
     private final int numRetries;
+    // whether the sorted sets are buffered off heap and persisted in a format which can be memory mapped
+    private final boolean offHeapSortedSets;
     // the persistence options
     private final FileSortedSet.PersistOptions persistOptions;
     
@@ -379,6 +391,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         this.hdfsBackedSetBufferSize = 10000;
         this.maxOpenFiles = 100;
         this.numRetries = 2;
+        this.offHeapSortedSets = false;
         this.maxRangeSplit = 11;
         this.maxResults = -1;
         this.persistOptions = new FileSortedSet.PersistOptions();
@@ -431,6 +444,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         this.hdfsBackedSetBufferSize = builder.hdfsBackedSetBufferSize;
         this.maxOpenFiles = builder.maxOpenFiles;
         this.numRetries = builder.numRetries;
+        this.offHeapSortedSets = builder.offHeapSortedSets;
         this.persistOptions = builder.persistOptions;
         this.maxRangeSplit = builder.maxRangeSplit;
         
@@ -473,6 +487,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         this.hdfsBackedSetBufferSize = other.hdfsBackedSetBufferSize;
         this.maxOpenFiles = other.maxOpenFiles;
         this.numRetries = other.numRetries;
+        this.offHeapSortedSets = other.offHeapSortedSets;
         this.persistOptions = other.persistOptions;
         
         this.set = other.set;
@@ -1087,6 +1102,8 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             QuerySpan querySpan = null;
             Key nextSeekKey = null;
             int nextCount = 0;
+            Key skipToKey = null;
+            int skipCount = 0;
             try {
                 if (collectTimingDetails && source instanceof SourceTrackingIterator) {
                     querySpan = ((SourceTrackingIterator) source).getQuerySpan();
@@ -1175,9 +1192,22 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                         if (!totalResults.increment()) {
                             throw new DatawaveIvaratorMaxResultsException("Exceeded the maximum set size");
                         }
+                    } else if (!negated && (skipToKey == null || top.compareTo(skipToKey) >= 0)) {
+                        // find where the next key that could match is
+                        skipToKey = getNextMatchingKey(top);
+                        skipCount = 0;
                     }
                     
-                    source.next();
+                    // next a few times on the way to the next key that could match before giving up and seeking to it
+                    if (skipToKey != null && top.compareTo(skipToKey) < 0 && ++skipCount > SKIP_SEEK_THRESHOLD) {
+                        if (boundingFiRange.afterEndKey(skipToKey)) {
+                            break;
+                        }
+                        source.seek(new Range(skipToKey, true, boundingFiRange.getEndKey(), boundingFiRange.isEndKeyInclusive()), EMPTY_CFS, false);
+                        skipToKey = null;
+                    } else {
+                        source.next();
+                    }
                     scanned++;
                     DatawaveFieldIndexCachingIteratorJexl.this.scannedKeys.incrementAndGet();
                 }
@@ -1200,7 +1230,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             }
         };
         
-        return IteratorThreadPoolManager.executeIvarator(runnable, DatawaveFieldIndexCachingIteratorJexl.this + " in " + boundingFiRange, this.initEnv);
+        return IteratorThreadPoolManager.executeIvarator(runnable, DatawaveFieldIndexCachingIteratorJexl.this + " in " + boundingFiRange, queryId, this.initEnv);
         
     }
     
@@ -1262,7 +1292,9 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             }
             
             this.set = new HdfsBackedSortedSet<>(null, hdfsBackedSetBufferSize, ivaratorCacheDirs, row, maxOpenFiles, numRetries, persistOptions,
-                            new FileKeySortedSet.Factory());
+                            offHeapSortedSets ? new OffHeapFileKeySortedSet.Factory() : new FileKeySortedSet.Factory());
+            // compact the persisted sets on the ivarator threads while the set is still being filled
+            this.set.setCompactionExecutor(task -> IteratorThreadPoolManager.executeIvarator(task, this + " compaction in " + row, queryId, this.initEnv));
             this.threadSafeSet = Collections.synchronizedSortedSet(this.set);
             this.currentRow = row;
             this.setControl.takeOwnership(row, this);
@@ -1389,6 +1421,19 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
      */
     protected abstract boolean matches(Key k) throws IOException;
     
+    /**
+     * Determine where the next key that could match a key which did not match may be found, allowing the keys in between to be skipped. This is not used
+     * when negated. NOTE: This method must be thread safe
+     * 
+     * @param k
+     *            a key within the bounding FI range
+     * @return a key greater than k at or before the next key that could match, or null if the next key must be examined
+     * @throws IOException
+     */
+    protected Key getNextMatchingKey(Key k) throws IOException {
+        return null;
+    }
+    
     /**
      * A protected method to force persistence of the set. This can be used by test cases to verify tear down and rebuilding with reuse of the previous results.
      * 
@@ -4,8 +4,10 @@ import datawave.data.ColumnFamilyConstants;
 import datawave.query.Constants;
 import datawave.query.parser.JavaRegexAnalyzer;
 import datawave.query.parser.JavaRegexAnalyzer.JavaRegexParseException;
+import datawave.query.util.regex.RegexAutomaton;
 import org.apache.accumulo.core.data.Column;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
@@ -14,7 +16,6 @@ import org.apache.hadoop.io.Text;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * 
@@ -44,6 +45,7 @@ public class DatawaveFieldIndexRegexIteratorJexl extends DatawaveFieldIndexCachi
     protected DatawaveFieldIndexRegexIteratorJexl(Builder builder) {
         super(builder);
         this.regex = builder.fieldValue.toString();
+        this.automaton = RegexAutomaton.getInstance(regex);
         try {
             // now fix the fValue to be the part we use for ranges
             JavaRegexAnalyzer analyzer = new JavaRegexAnalyzer(this.regex);
@@ -59,7 +61,8 @@ public class DatawaveFieldIndexRegexIteratorJexl extends DatawaveFieldIndexCachi
     }
     
     private String regex = null;
-    private ThreadLocal<Pattern> pattern = ThreadLocal.withInitial(() -> Pattern.compile(regex));
+    // compiled once per regex and shared, matching is thread safe
+    private RegexAutomaton automaton = null;
     
     // -------------------------------------------------------------------------
     // ------------- Constructors
@@ -70,6 +73,7 @@ public class DatawaveFieldIndexRegexIteratorJexl extends DatawaveFieldIndexCachi
     public DatawaveFieldIndexRegexIteratorJexl(DatawaveFieldIndexRegexIteratorJexl other, IteratorEnvironment env) {
         super(other, env);
         this.regex = other.regex;
+        this.automaton = other.automaton;
     }
     
     // -------------------------------------------------------------------------
@@ -123,15 +127,42 @@ public class DatawaveFieldIndexRegexIteratorJexl extends DatawaveFieldIndexCachi
      */
     @Override
     protected boolean matches(Key k) throws IOException {
-        boolean matches = false;
+        return automaton.matches(getValue(k));
+    }
+    
+    /**
+     * Seek past the values which cannot match our regex, using the next value which could match.
+     * 
+     * @param k
+     * @return the key at the next value that could match, or null if this value matches or the regex cannot be used to seek
+     */
+    @Override
+    protected Key getNextMatchingKey(Key k) throws IOException {
+        String value = getValue(k);
+        String next = automaton.nextString(value);
+        if (next == null) {
+            // no following values can match in this field
+            return k.followingKey(PartialKey.ROW_COLFAM);
+        } else if (next.equals(value)) {
+            return null;
+        } else {
+            return new Key(k.getRow(), k.getColumnFamily(), new Text(next));
+        }
+    }
+    
+    /**
+     * Get the value from the column qualifier of a field index key
+     * 
+     * @param k
+     * @return the value
+     */
+    private String getValue(Key k) {
         String colq = k.getColumnQualifier().toString();
         
         // search backwards for the null bytes to expose the value in value\0datatype\0UID
         int index = colq.lastIndexOf('\0');
         index = colq.lastIndexOf('\0', index - 1);
-        matches = (pattern.get().matcher(colq.substring(0, index)).matches());
-        
-        return matches;
+        return colq.substring(0, index);
     }
     
 }
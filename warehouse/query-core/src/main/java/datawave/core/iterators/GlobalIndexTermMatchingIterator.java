@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.Map;
 
 import datawave.core.iterators.filter.GlobalIndexTermMatchingFilter;
+import datawave.query.util.regex.RegexAutomaton;
 
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
@@ -14,6 +15,7 @@ import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.OptionDescriber;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Text;
 import org.apache.log4j.Logger;
 
 public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilter implements SortedKeyValueIterator<Key,Value>, OptionDescriber {
@@ -21,6 +23,9 @@ public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilt
     public static final String UNIQUE_TERMS_IN_FIELD = "term.unique";
     private static final Logger log = Logger.getLogger(GlobalIndexTermMatchingIterator.class);
     
+    // the number of non-matching keys to next over before seeking to the next term that could match
+    private static final int SEEK_THRESHOLD = 10;
+    
     private SortedKeyValueIterator<Key,Value> source;
     
     private boolean foundMatch = false;
@@ -31,6 +36,10 @@ public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilt
     
     protected boolean uniqueTermsOnly = false;
     
+    // the next term that could match, and the number of keys skipped on the way to it
+    private Text nextTerm = null;
+    private int skipped = 0;
+    
     public GlobalIndexTermMatchingIterator() throws IOException {}
     
     public GlobalIndexTermMatchingIterator deepCopy(IteratorEnvironment env) {
@@ -86,6 +95,7 @@ public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilt
         this.scanRange = range;
         this.scanCFs = columnFamilies;
         this.scanInclusive = inclusive;
+        this.nextTerm = null;
         getSource().seek(range, columnFamilies, inclusive);
         
         // if we have been reseeked after being torn down, and we are only returning unique terms, then advance to the next unique row/cf
@@ -112,9 +122,64 @@ public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilt
             if (accept(top, getSource().getTopValue())) {
                 foundMatch = true;
             } else {
-                getSource().next();
+                skip(top);
+            }
+        }
+    }
+    
+    /**
+     * Moves past a key whose term does not match. If the terms can be represented as an automaton, then we next a few times on the way to the next term that
+     * could match before giving up and seeking to it.
+     * 
+     * @param top
+     *            the current key which does not match
+     * @throws IOException
+     */
+    private void skip(final Key top) throws IOException {
+        RegexAutomaton automaton = getTermAutomaton();
+        if (automaton == null) {
+            getSource().next();
+            return;
+        }
+        
+        if (nextTerm == null || top.compareRow(nextTerm) >= 0) {
+            String next = automaton.nextString(top.getRow().toString());
+            if (next == null) {
+                // no following term can match
+                if (log.isTraceEnabled())
+                    log.trace("no terms following " + top + " can match");
+                exhaust(top);
+                return;
             }
+            nextTerm = new Text(next);
+            skipped = 0;
         }
+        
+        if (skipped++ < SEEK_THRESHOLD) {
+            getSource().next();
+        } else {
+            Key next = new Key(nextTerm);
+            if (scanRange.afterEndKey(next)) {
+                exhaust(top);
+            } else {
+                if (log.isTraceEnabled())
+                    log.trace("seeking to term " + nextTerm + " top key is " + top);
+                getSource().seek(new Range(next, true, scanRange.getEndKey(), scanRange.isEndKeyInclusive()), scanCFs, scanInclusive);
+            }
+            nextTerm = null;
+        }
+    }
+    
+    /**
+     * Seek the source to an empty range following the current key, leaving it without a top key
+     * 
+     * @param top
+     *            the current key
+     * @throws IOException
+     */
+    private void exhaust(final Key top) throws IOException {
+        getSource().seek(new Range(top, true, top, false), scanCFs, scanInclusive);
+        nextTerm = null;
     }
     
     /**
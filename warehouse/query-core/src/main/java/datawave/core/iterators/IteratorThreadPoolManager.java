@@ -1,9 +1,9 @@
 package datawave.core.iterators;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -17,7 +17,8 @@ import org.apache.accumulo.server.util.time.SimpleTimer;
 import org.apache.log4j.Logger;
 
 /**
- * 
+ * Manages the ivarator and evaluation thread pools shared by all queries on a tserver. Tasks are submitted on behalf of a session (the query id) and each pool
+ * serves the sessions with queued work in a round-robin via a {@link SessionFairExecutor}, so a query with a large backlog of tasks cannot starve the others.
  */
 public class IteratorThreadPoolManager {
     private static final Logger log = Logger.getLogger(IteratorThreadPoolManager.class);
@@ -27,7 +28,7 @@ public class IteratorThreadPoolManager {
     private static final String EVALUATOR_THREAD_NAME = "DATAWAVE Evaluation";
     private static final int DEFAULT_THREAD_POOL_SIZE = 100;
     
-    private Map<String,ExecutorService> threadPools = new TreeMap<>();
+    private Map<String,SessionFairExecutor> threadPools = new TreeMap<>();
     
     private static final Object instanceSemaphore = new Object();
     private static final String instanceId = Integer.toHexString(instanceSemaphore.hashCode());
@@ -47,7 +48,8 @@ public class IteratorThreadPoolManager {
             accumuloConfiguration = DefaultConfiguration.getInstance();
         }
         final ThreadPoolExecutor service = createExecutorService(getMaxThreads(prop, accumuloConfiguration), name + " (" + instanceId + ')');
-        threadPools.put(name, service);
+        final SessionFairExecutor executor = new SessionFairExecutor(service);
+        threadPools.put(name, executor);
         SimpleTimer.getInstance(accumuloConfiguration).schedule(() -> {
             try {
                 
@@ -57,6 +59,12 @@ public class IteratorThreadPoolManager {
                     service.setCorePoolSize(max);
                     service.setMaximumPoolSize(max);
                 }
+                if (log.isDebugEnabled()) {
+                    Map<String,SessionFairExecutor.SessionStats> stats = executor.getSessionStats();
+                    if (!stats.isEmpty()) {
+                        log.debug(name + " sessions: " + stats);
+                    }
+                }
             } catch (Throwable t) {
                 log.error(t, t);
             }
@@ -93,8 +101,8 @@ public class IteratorThreadPoolManager {
         return instance;
     }
     
-    private Future<?> execute(String name, final Runnable task, final String taskName) {
-        return threadPools.get(name).submit(() -> {
+    private Future<?> execute(String name, final Runnable task, final String taskName, final String sessionId) {
+        return threadPools.get(name).submit(sessionId, () -> {
             String oldName = Thread.currentThread().getName();
             Thread.currentThread().setName(oldName + " -> " + taskName);
             try {
@@ -106,11 +114,70 @@ public class IteratorThreadPoolManager {
     }
     
     public static Future<?> executeIvarator(Runnable task, String taskName, IteratorEnvironment env) {
-        return instance(env).execute(IVARATOR_THREAD_NAME, task, taskName);
+        return executeIvarator(task, taskName, null, env);
+    }
+    
+    /**
+     * Run an ivarator task, scheduled fairly with the tasks of other sessions
+     * 
+     * @param task
+     *            the task
+     * @param taskName
+     *            the name appended to the thread name while running
+     * @param sessionId
+     *            the session (typically the query id) the task runs on behalf of, null for the shared default session
+     * @param env
+     *            the iterator environment
+     * @return the future for the task
+     */
+    public static Future<?> executeIvarator(Runnable task, String taskName, String sessionId, IteratorEnvironment env) {
+        return instance(env).execute(IVARATOR_THREAD_NAME, task, taskName, sessionId);
     }
     
     public static Future<?> executeEvaluation(Runnable task, String taskName, IteratorEnvironment env) {
-        return instance(env).execute(EVALUATOR_THREAD_NAME, task, taskName);
+        return executeEvaluation(task, taskName, null, env);
+    }
+    
+    /**
+     * Run an evaluation task, scheduled fairly with the tasks of other sessions
+     * 
+     * @param task
+     *            the task
+     * @param taskName
+     *            the name appended to the thread name while running
+     * @param sessionId
+     *            the session (typically the query id) the task runs on behalf of, null for the shared default session
+     * @param env
+     *            the iterator environment
+     * @return the future for the task
+     */
+    public static Future<?> executeEvaluation(Runnable task, String taskName, String sessionId, IteratorEnvironment env) {
+        return instance(env).execute(EVALUATOR_THREAD_NAME, task, taskName, sessionId);
+    }
+    
+    /**
+     * @return a snapshot of the sessions with queued or running ivarator tasks
+     */
+    public static Map<String,SessionFairExecutor.SessionStats> getIvaratorSessionStats() {
+        return (instance == null ? Collections.emptyMap() : instance.threadPools.get(IVARATOR_THREAD_NAME).getSessionStats());
+    }
+    
+    /**
+     * @return a snapshot of the sessions with queued or running evaluation tasks
+     */
+    public static Map<String,SessionFairExecutor.SessionStats> getEvaluationSessionStats() {
+        return (instance == null ? Collections.emptyMap() : instance.threadPools.get(EVALUATOR_THREAD_NAME).getSessionStats());
+    }
+    
+    /**
+     * @return the number of evaluation tasks waiting for a thread, per evaluation thread
+     */
+    public static double getEvaluationBacklog() {
+        if (instance == null) {
+            return 0.0;
+        }
+        SessionFairExecutor executor = instance.threadPools.get(EVALUATOR_THREAD_NAME);
+        return (double) executor.getQueued() / Math.max(1, executor.getPool().getMaximumPoolSize());
     }
     
 }
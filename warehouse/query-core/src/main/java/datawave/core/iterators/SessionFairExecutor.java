@@ -0,0 +1,275 @@
+package datawave.core.iterators;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Schedules tasks from many sessions (typically one per query) fairly across a shared {@link ThreadPoolExecutor}. Each session gets its own sub-queue and the
+ * sessions with queued work are served in a weighted round-robin (deficit round-robin with a unit cost per task), so one session queueing thousands of tasks
+ * can only take its share of the threads instead of starving the sessions that queue after it.
+ * <p>
+ * The underlying pool keeps its own queue, but only of anonymous dispatch tickets: every submitted task enqueues exactly one ticket, and a ticket runs
+ * whichever task the round-robin selects when a thread picks it up. This leaves the sizing and thread management of the pool untouched.
+ */
+public class SessionFairExecutor {
+    
+    /**
+     * The session used for tasks submitted without a session id
+     */
+    public static final String DEFAULT_SESSION = "";
+    
+    /**
+     * A snapshot of the state of one session
+     */
+    public static class SessionStats {
+        private final int queued;
+        private final int running;
+        private final long submitted;
+        private final long totalWaitMs;
+        private final long maxWaitMs;
+        
+        private SessionStats(int queued, int running, long submitted, long totalWaitMs, long maxWaitMs) {
+            this.queued = queued;
+            this.running = running;
+            this.submitted = submitted;
+            this.totalWaitMs = totalWaitMs;
+            this.maxWaitMs = maxWaitMs;
+        }
+        
+        /**
+         * @return the number of tasks waiting to run
+         */
+        public int getQueued() {
+            return queued;
+        }
+        
+        /**
+         * @return the number of tasks currently running
+         */
+        public int getRunning() {
+            return running;
+        }
+        
+        /**
+         * @return the number of tasks submitted for this session
+         */
+        public long getSubmitted() {
+            return submitted;
+        }
+        
+        /**
+         * @return the average time a started task waited in the queue
+         */
+        public long getAverageWaitMs() {
+            long started = submitted - queued;
+            return (started == 0 ? 0 : totalWaitMs / started);
+        }
+        
+        /**
+         * @return the longest time a started task waited in the queue
+         */
+        public long getMaxWaitMs() {
+            return maxWaitMs;
+        }
+        
+        @Override
+        public String toString() {
+            return "queued=" + queued + ", running=" + running + ", submitted=" + submitted + ", avgWaitMs=" + getAverageWaitMs() + ", maxWaitMs=" + maxWaitMs;
+        }
+    }
+    
+    private static class QueuedTask {
+        private final FutureTask<?> task;
+        private final long queuedAt;
+        
+        private QueuedTask(FutureTask<?> task) {
+            this.task = task;
+            this.queuedAt = System.currentTimeMillis();
+        }
+    }
+    
+    private static class Session {
+        private final String id;
+        private final Deque<QueuedTask> tasks = new ArrayDeque<>();
+        private int weight = 1;
+        private int deficit = 0;
+        private int running = 0;
+        private long submitted = 0;
+        private long totalWaitMs = 0;
+        private long maxWaitMs = 0;
+        
+        private Session(String id) {
+            this.id = id;
+        }
+    }
+    
+    private final ThreadPoolExecutor pool;
+    
+    // all sessions with queued or running tasks, guarded by this
+    private final Map<String,Session> sessions = new HashMap<>();
+    // the sessions with queued tasks in round-robin order, guarded by this
+    private final Deque<Session> active = new ArrayDeque<>();
+    // weights set for sessions, retained while the session is idle, guarded by this
+    private final Map<String,Integer> weights = new HashMap<>();
+    
+    public SessionFairExecutor(ThreadPoolExecutor pool) {
+        this.pool = pool;
+    }
+    
+    /**
+     * @return the underlying pool
+     */
+    public ThreadPoolExecutor getPool() {
+        return pool;
+    }
+    
+    /**
+     * Submit a task for a session
+     * 
+     * @param sessionId
+     *            the session, null for the default session
+     * @param task
+     *            the task
+     * @return the future for the task
+     */
+    public Future<?> submit(String sessionId, Runnable task) {
+        FutureTask<?> future = new FutureTask<>(task, null);
+        QueuedTask queued = new QueuedTask(future);
+        Session session;
+        synchronized (this) {
+            session = sessions.computeIfAbsent(sessionId == null ? DEFAULT_SESSION : sessionId, this::newSession);
+            if (session.tasks.isEmpty()) {
+                session.deficit = session.weight;
+                active.addLast(session);
+            }
+            session.tasks.addLast(queued);
+            session.submitted++;
+        }
+        try {
+            pool.execute(this::dispatch);
+        } catch (RuntimeException e) {
+            // no ticket was queued for this task, so take it back out
+            synchronized (this) {
+                if (session.tasks.remove(queued)) {
+                    session.submitted--;
+                    if (session.tasks.isEmpty()) {
+                        active.remove(session);
+                        retire(session);
+                    }
+                }
+            }
+            throw e;
+        }
+        return future;
+    }
+    
+    private Session newSession(String id) {
+        Session session = new Session(id);
+        session.weight = weights.getOrDefault(id, 1);
+        return session;
+    }
+    
+    /**
+     * Set the number of tasks a session may start per round, relative to other sessions. Defaults to 1.
+     * 
+     * @param sessionId
+     *            the session, null for the default session
+     * @param weight
+     *            the weight, at least 1
+     */
+    public synchronized void setWeight(String sessionId, int weight) {
+        String id = (sessionId == null ? DEFAULT_SESSION : sessionId);
+        int w = Math.max(1, weight);
+        if (w == 1) {
+            weights.remove(id);
+        } else {
+            weights.put(id, w);
+        }
+        Session session = sessions.get(id);
+        if (session != null) {
+            session.weight = w;
+        }
+    }
+    
+    /**
+     * Drop any weight set for a session
+     * 
+     * @param sessionId
+     *            the session
+     */
+    public synchronized void clearWeight(String sessionId) {
+        setWeight(sessionId, 1);
+    }
+    
+    // run by a pool thread for each submitted task
+    private void dispatch() {
+        Session session;
+        QueuedTask next;
+        synchronized (this) {
+            session = active.peekFirst();
+            if (session == null) {
+                // every ticket has a matching task, so this should not happen
+                return;
+            }
+            next = session.tasks.pollFirst();
+            session.deficit--;
+            if (session.tasks.isEmpty()) {
+                active.pollFirst();
+            } else if (session.deficit <= 0) {
+                active.pollFirst();
+                session.deficit = session.weight;
+                active.addLast(session);
+            }
+            long waitMs = System.currentTimeMillis() - next.queuedAt;
+            session.totalWaitMs += waitMs;
+            session.maxWaitMs = Math.max(session.maxWaitMs, waitMs);
+            session.running++;
+        }
+        try {
+            next.task.run();
+        } finally {
+            synchronized (this) {
+                session.running--;
+                retire(session);
+            }
+        }
+    }
+    
+    private void retire(Session session) {
+        if (session.running == 0 && session.tasks.isEmpty()) {
+            sessions.remove(session.id);
+        }
+    }
+    
+    /**
+     * @return the number of tasks waiting to run across all sessions
+     */
+    public synchronized int getQueued() {
+        int queued = 0;
+        for (Session session : active) {
+            queued += session.tasks.size();
+        }
+        return queued;
+    }
+    
+    /**
+     * @return a snapshot of every session with queued or running tasks
+     */
+    public synchronized Map<String,SessionStats> getSessionStats() {
+        if (sessions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String,SessionStats> stats = new TreeMap<>();
+        for (Session session : sessions.values()) {
+            stats.put(session.id, new SessionStats(session.tasks.size(), session.running, session.submitted, session.totalWaitMs, session.maxWaitMs));
+        }
+        return stats;
+    }
+}
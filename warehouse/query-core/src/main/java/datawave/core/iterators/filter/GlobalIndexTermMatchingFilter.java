@@ -5,10 +5,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 import datawave.ingest.protobuf.Uid;
+import datawave.query.util.regex.RegexAutomaton;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.Filter;
@@ -26,9 +26,11 @@ public class GlobalIndexTermMatchingFilter extends Filter {
     public static final String LITERAL = "term.literal.";
     public static final String PATTERN = "term.pattern.";
     public static final String REVERSE_INDEX = "reverse.index";
-    private Map<String,Pattern> patterns = new HashMap<>();
+    private Map<String,RegexAutomaton> patterns = new HashMap<>();
     private Set<String> literals = new HashSet<>();
     private boolean reverseIndex = false;
+    // matches the terms as they appear in the rows, null if the patterns cannot be represented as an automaton
+    private RegexAutomaton termAutomaton = null;
     private String matchedValue = null;
     
     @Override
@@ -55,10 +57,12 @@ public class GlobalIndexTermMatchingFilter extends Filter {
         if (options.containsKey(REVERSE_INDEX)) {
             reverseIndex = Boolean.parseBoolean(options.get(REVERSE_INDEX));
         }
+        termAutomaton = RegexAutomaton.getInstance(patterns.keySet(), literals, reverseIndex);
         if (log.isDebugEnabled()) {
             log.debug("Set the literals to " + literals);
             log.debug("Set the patterns to " + patterns);
             log.debug("Set the reverseIndex flag to " + reverseIndex);
+            log.debug("Seeking over non-matching terms is " + (termAutomaton == null ? "disabled" : "enabled"));
         }
     }
     
@@ -88,8 +92,8 @@ public class GlobalIndexTermMatchingFilter extends Filter {
         }
     }
     
-    private Pattern getPattern(String term) {
-        return Pattern.compile(term);
+    private RegexAutomaton getPattern(String term) {
+        return RegexAutomaton.getInstance(term);
     }
     
     private boolean matches(String term) {
@@ -107,8 +111,8 @@ public class GlobalIndexTermMatchingFilter extends Filter {
             return true;
         }
         
-        for (Map.Entry<String,Pattern> entry : patterns.entrySet()) {
-            if (entry.getValue().matcher(term).matches()) {
+        for (Map.Entry<String,RegexAutomaton> entry : patterns.entrySet()) {
+            if (entry.getValue().matches(term)) {
                 matchedValue = entry.getKey();
                 return true;
             }
@@ -117,6 +121,15 @@ public class GlobalIndexTermMatchingFilter extends Filter {
         return false;
     }
     
+    /**
+     * Get an automaton matching any of the terms as they appear in the row, which can be used to seek past rows that cannot match
+     * 
+     * @return the automaton, or null if the patterns cannot be represented as an automaton
+     */
+    protected RegexAutomaton getTermAutomaton() {
+        return termAutomaton;
+    }
+    
     public String getMatchedValue() {
         return matchedValue;
     }
@@ -328,6 +328,22 @@ public abstract class Attribute<T extends Comparable<T>> implements WritableComp
     
     public abstract void write(Kryo kryo, Output output, Boolean reducedResponse);
     
+    /**
+     * Write this attribute using the supplied encoding for any nested field names and attribute types. Only attributes containing other attributes need to
+     * override this.
+     */
+    public void write(Kryo kryo, Output output, Boolean reducedResponse, AttributeEncoding encoding) {
+        write(kryo, output, reducedResponse);
+    }
+    
+    /**
+     * Read this attribute using the supplied encoding for any nested field names and attribute types. Only attributes containing other attributes need to
+     * override this.
+     */
+    public void read(Kryo kryo, Input input, AttributeEncoding encoding) {
+        read(kryo, input);
+    }
+    
     public abstract Object getData();
     
     public abstract Collection<ValueTuple> visit(Collection<String> fieldnames, DatawaveJexlContext context);
@@ -0,0 +1,105 @@
+package datawave.query.attributes;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Controls how the field names and concrete attribute types within a {@link Document} (and any nested {@link Attributes}) are written when serializing with
+ * Kryo. The attributes themselves are always written by their own {@link Attribute#write(com.esotericsoftware.kryo.Kryo, Output, Boolean)}.
+ */
+public abstract class AttributeEncoding {
+    
+    /**
+     * The original encoding which writes every field name and the fully qualified attribute class name as strings
+     */
+    public static final AttributeEncoding CLASS_NAME = new AttributeEncoding() {
+        @Override
+        public void writeFieldName(Output output, String fieldName) {
+            // writeAscii fails to be read correctly if the value has only one character
+            // need to use writeString here
+            output.writeString(fieldName);
+        }
+        
+        @Override
+        public String readFieldName(Input input) {
+            return input.readString();
+        }
+        
+        @Override
+        public void writeType(Output output, Attribute<?> attribute) {
+            output.writeString(attribute.getClass().getName());
+        }
+        
+        @Override
+        public Attribute<?> readType(Input input) {
+            return newInstance(input.readString());
+        }
+    };
+    
+    /**
+     * Write the name of a field
+     * 
+     * @param output
+     *            the output
+     * @param fieldName
+     *            the field name
+     */
+    public abstract void writeFieldName(Output output, String fieldName);
+    
+    /**
+     * Read the name of a field written by {@link #writeFieldName(Output, String)}
+     * 
+     * @param input
+     *            the input
+     * @return the field name
+     */
+    public abstract String readFieldName(Input input);
+    
+    /**
+     * Write the concrete type of an attribute, which precedes the attribute itself
+     * 
+     * @param output
+     *            the output
+     * @param attribute
+     *            the attribute
+     */
+    public abstract void writeType(Output output, Attribute<?> attribute);
+    
+    /**
+     * Read the type written by {@link #writeType(Output, Attribute)}
+     * 
+     * @param input
+     *            the input
+     * @return a new, empty, instance of the attribute type ready to be read
+     */
+    public abstract Attribute<?> readType(Input input);
+    
+    /**
+     * Get an empty instance of an attribute class by name
+     * 
+     * @param attrClassName
+     *            the attribute class name
+     * @return a new instance of the class
+     */
+    protected static Attribute<?> newInstance(String attrClassName) {
+        Class<?> clz;
+        
+        // Get the Class for the name of the class of the concrete Attribute
+        try {
+            clz = Class.forName(attrClassName);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        
+        if (!Attribute.class.isAssignableFrom(clz)) {
+            throw new ClassCastException("Found class that was not an instance of Attribute");
+        }
+        
+        // Get an instance of the concrete Attribute
+        try {
+            return (Attribute<?>) clz.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -288,6 +288,11 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
     
     @Override
     public void write(Kryo kryo, Output output, Boolean reducedResponse) {
+        write(kryo, output, reducedResponse, AttributeEncoding.CLASS_NAME);
+    }
+    
+    @Override
+    public void write(Kryo kryo, Output output, Boolean reducedResponse, AttributeEncoding encoding) {
         output.writeInt(this._count, true);
         output.writeBoolean(this.trackSizes);
         // Write out the number of Attributes we're going to store
@@ -295,46 +300,31 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
         
         for (Attribute<? extends Comparable<?>> attr : this.attributes) {
             // Write out the concrete Attribute class
-            output.writeString(attr.getClass().getName());
+            encoding.writeType(output, attr);
             
             // Defer to the concrete instance to write() itself
-            attr.write(kryo, output, reducedResponse);
+            attr.write(kryo, output, reducedResponse, encoding);
         }
     }
     
     @Override
     public void read(Kryo kryo, Input input) {
+        read(kryo, input, AttributeEncoding.CLASS_NAME);
+    }
+    
+    @Override
+    public void read(Kryo kryo, Input input, AttributeEncoding encoding) {
         this._count = input.readInt(true);
         this.trackSizes = input.readBoolean();
         int numAttrs = input.readInt(true);
         
         this.attributes = new LinkedHashSet<>();
         for (int i = 0; i < numAttrs; i++) {
-            String attrClassName = input.readString();
-            Class<?> clz;
-            
-            // Get the name of the concrete Attribute
-            try {
-                clz = Class.forName(attrClassName);
-            } catch (ClassNotFoundException e) {
-                log.error("could not find class for \"" + attrClassName + "\"");
-                throw new RuntimeException(e);
-            }
-            
-            if (!Attribute.class.isAssignableFrom(clz)) {
-                throw new ClassCastException("Found class that was not an instance of Attribute");
-            }
-            
-            // Get the Class for the name of the class of the concrete Attribute
-            Attribute<?> attr;
-            try {
-                attr = (Attribute<?>) clz.newInstance();
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+            // Get an instance of the concrete Attribute
+            Attribute<?> attr = encoding.readType(input);
             
             // Reload the attribute
-            attr.read(kryo, input);
+            attr.read(kryo, input, encoding);
             
             // Add the attribute back to the Set
             this.attributes.add(attr);
@@ -0,0 +1,125 @@
+package datawave.query.attributes;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A compact {@link AttributeEncoding} for serialized documents. Attribute types are written as a small integer id from a registered dictionary instead of the
+ * class name, and each field name is written once per encoded document and referred to by index after that. Types missing from the dictionary are written
+ * by class name.
+ * <p>
+ * Field names are interned from one {@link #reset()} to the next, so an instance must be reset before each document is written or read, and must not be
+ * shared between threads.
+ */
+public class CompactAttributeEncoding extends AttributeEncoding {
+    
+    // id 0 is reserved for types written by class name
+    private static final int UNREGISTERED = 0;
+    
+    // The dictionary of attribute types. The index + 1 is the id written on the wire, so this list may only be appended to.
+    private static final List<Class<? extends Attribute>> TYPES = new ArrayList<>();
+    private static final List<Supplier<Attribute<?>>> FACTORIES = new ArrayList<>();
+    private static final Map<Class<?>,Integer> TYPE_IDS = new IdentityHashMap<>();
+    
+    static {
+        register(Document.class, Document::new);
+        register(Attributes.class, Attributes::new);
+        register(Content.class, Content::new);
+        register(Numeric.class, Numeric::new);
+        register(TypeAttribute.class, TypeAttribute::new);
+        register(DateContent.class, DateContent::new);
+        register(DiacriticContent.class, DiacriticContent::new);
+        register(DocumentKey.class, DocumentKey::new);
+        register(Cardinality.class, Cardinality::new);
+        register(GeoPoint.class, GeoPoint::new);
+        register(Geometry.class, Geometry::new);
+        register(IpAddress.class, IpAddress::new);
+        register(Latitude.class, Latitude::new);
+        register(Longitude.class, Longitude::new);
+        register(PreNormalizedAttribute.class, PreNormalizedAttribute::new);
+        register(Metadata.class, Metadata::new);
+        register(TimingMetadata.class, TimingMetadata::new);
+    }
+    
+    private static void register(Class<? extends Attribute> type, Supplier<Attribute<?>> factory) {
+        TYPES.add(type);
+        FACTORIES.add(factory);
+        TYPE_IDS.put(type, TYPES.size());
+    }
+    
+    /**
+     * @return the registered attribute types, in id order starting with id 1
+     */
+    public static List<Class<? extends Attribute>> getRegisteredTypes() {
+        return Collections.unmodifiableList(TYPES);
+    }
+    
+    private final Map<String,Integer> fieldIds = new HashMap<>();
+    private final List<String> fieldNames = new ArrayList<>();
+    
+    /**
+     * Forget the field names interned so far
+     */
+    public void reset() {
+        fieldIds.clear();
+        fieldNames.clear();
+    }
+    
+    @Override
+    public void writeFieldName(Output output, String fieldName) {
+        // 0 introduces a new name, otherwise the id of a name already written
+        Integer id = fieldIds.get(fieldName);
+        if (id == null) {
+            output.writeInt(0, true);
+            output.writeString(fieldName);
+            fieldIds.put(fieldName, fieldIds.size() + 1);
+        } else {
+            output.writeInt(id, true);
+        }
+    }
+    
+    @Override
+    public String readFieldName(Input input) {
+        int id = input.readInt(true);
+        if (id == 0) {
+            String fieldName = input.readString();
+            fieldNames.add(fieldName);
+            return fieldName;
+        }
+        if (id > fieldNames.size()) {
+            throw new IllegalStateException("Unknown field name id " + id + ", only " + fieldNames.size() + " field names have been read");
+        }
+        return fieldNames.get(id - 1);
+    }
+    
+    @Override
+    public void writeType(Output output, Attribute<?> attribute) {
+        Integer id = TYPE_IDS.get(attribute.getClass());
+        if (id == null) {
+            output.writeInt(UNREGISTERED, true);
+            output.writeString(attribute.getClass().getName());
+        } else {
+            output.writeInt(id, true);
+        }
+    }
+    
+    @Override
+    public Attribute<?> readType(Input input) {
+        int id = input.readInt(true);
+        if (id == UNREGISTERED) {
+            return newInstance(input.readString());
+        }
+        if (id > FACTORIES.size()) {
+            throw new IllegalStateException("Unknown attribute type id " + id);
+        }
+        return FACTORIES.get(id - 1).get();
+    }
+}
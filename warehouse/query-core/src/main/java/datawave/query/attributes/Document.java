@@ -756,6 +756,11 @@ public class Document extends AttributeBag<Document> implements Serializable {
     
     @Override
     public void write(Kryo kryo, Output output, Boolean reducedResponse) {
+        write(kryo, output, reducedResponse, AttributeEncoding.CLASS_NAME);
+    }
+    
+    @Override
+    public void write(Kryo kryo, Output output, Boolean reducedResponse, AttributeEncoding encoding) {
         output.writeInt(this._count, true);
         output.writeBoolean(trackSizes);
         output.writeLong(this._bytes, true);
@@ -764,13 +769,11 @@ public class Document extends AttributeBag<Document> implements Serializable {
         
         for (Entry<String,Attribute<? extends Comparable<?>>> entry : this.dict.entrySet()) {
             // Write out the field name
-            // writeAscii fails to be read correctly if the value has only one character
-            // need to use writeString here
-            output.writeString(entry.getKey());
+            encoding.writeFieldName(output, entry.getKey());
             
             Attribute<?> attribute = entry.getValue();
-            output.writeString(attribute.getClass().getName());
-            attribute.write(kryo, output, reducedResponse);
+            encoding.writeType(output, attribute);
+            attribute.write(kryo, output, reducedResponse, encoding);
         }
         
         output.writeLong(this.shardTimestamp);
@@ -778,6 +781,11 @@ public class Document extends AttributeBag<Document> implements Serializable {
     
     @Override
     public void read(Kryo kryo, Input input) {
+        read(kryo, input, AttributeEncoding.CLASS_NAME);
+    }
+    
+    @Override
+    public void read(Kryo kryo, Input input, AttributeEncoding encoding) {
         this._count = input.readInt(true);
         trackSizes = input.readBoolean();
         this._bytes = input.readLong(true);
@@ -788,33 +796,13 @@ public class Document extends AttributeBag<Document> implements Serializable {
         
         for (int i = 0; i < numAttrs; i++) {
             // Get the fieldName
-            String fieldName = input.readString();
+            String fieldName = encoding.readFieldName(input);
             
-            // Get the class name for the concrete Attribute
-            String attrClassName = input.readString();
-            Class<?> clz;
-            
-            // Get the Class for the name of the class of the concrete Attribute
-            try {
-                clz = Class.forName(attrClassName);
-            } catch (ClassNotFoundException e) {
-                throw new RuntimeException(e);
-            }
+            // Get an instance of the concrete Attribute
+            Attribute<?> attr = encoding.readType(input);
             
-            Attribute<?> attr;
-            if (Attribute.class.isAssignableFrom(clz)) {
-                // Get an instance of the concrete Attribute
-                try {
-                    attr = (Attribute<?>) clz.newInstance();
-                } catch (InstantiationException | IllegalAccessException e) {
-                    throw new RuntimeException(e);
-                }
-                
-            } else {
-                throw new ClassCastException("Found class that was not an instance of Attribute");
-            }
             // Reload the attribute
-            attr.read(kryo, input);
+            attr.read(kryo, input, encoding);
             
             // Add the attribute back to the Map
             this.dict.put(fieldName, attr);
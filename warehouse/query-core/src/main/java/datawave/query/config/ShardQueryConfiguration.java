@@ -24,6 +24,8 @@ import datawave.query.jexl.visitors.whindex.WhindexVisitor;
 import datawave.query.model.QueryModel;
 import datawave.query.tables.ShardQueryLogic;
 import datawave.query.tld.TLDQueryIterator;
+import datawave.query.transformer.GroupingTransform;
+import datawave.query.transformer.UniqueTransform;
 import datawave.query.attributes.UniqueFields;
 import datawave.query.util.QueryStopwatch;
 import datawave.util.TableName;
@@ -318,12 +320,16 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private int maxFieldIndexRangeSplit = 11;
     private int ivaratorMaxOpenFiles = 100;
     private int ivaratorNumRetries = 2;
+    private boolean ivaratorOffHeapSortedSets = false;
     private boolean ivaratorPersistVerify = true;
     private int ivaratorPersistVerifyCount = 100;
     private int maxIvaratorSources = 33;
     private long maxIvaratorResults = -1;
     private int maxEvaluationPipelines = 25;
     private int maxPipelineCachedResults = 25;
+    // vary the evaluation pipelines in flight between minEvaluationPipelines and maxEvaluationPipelines
+    private boolean adaptiveEvaluationPipelines = false;
+    private int minEvaluationPipelines = 2;
     private boolean expandAllTerms = false;
     // Adding the ability to pre-cache the query model for performance sake. If this is null
     // then the query model will be pulled from the MetadataHelper
@@ -341,9 +347,13 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private boolean compositeFilterFunctionsEnabled = false;
     
     private int groupFieldsBatchSize;
+    // the memory budget for aggregating groups before spilling them to the ivarator cache dirs (webserver) or returning them early (tserver)
+    private long groupFieldsMaxMemoryBytes = GroupingTransform.DEFAULT_MAX_MEMORY_BYTES;
     private boolean accrueStats = false;
     private Set<String> groupFields = new HashSet<>(0);
     private UniqueFields uniqueFields = new UniqueFields();
+    // the memory budget for tracking unique field sets before spilling them to the ivarator cache dirs
+    private long uniqueMaxMemoryBytes = UniqueTransform.DEFAULT_MAX_MEMORY_BYTES;
     private boolean cacheModel = false;
     /**
      * should the sizes of documents be tracked for this query
@@ -522,12 +532,15 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setMaxFieldIndexRangeSplit(other.getMaxFieldIndexRangeSplit());
         this.setIvaratorMaxOpenFiles(other.getIvaratorMaxOpenFiles());
         this.setIvaratorNumRetries(other.getIvaratorNumRetries());
+        this.setIvaratorOffHeapSortedSets(other.isIvaratorOffHeapSortedSets());
         this.setIvaratorPersistVerify(other.isIvaratorPersistVerify());
         this.setIvaratorPersistVerifyCount(other.getIvaratorPersistVerifyCount());
         this.setMaxIvaratorSources(other.getMaxIvaratorSources());
         this.setMaxIvaratorResults(other.getMaxIvaratorResults());
         this.setMaxEvaluationPipelines(other.getMaxEvaluationPipelines());
         this.setMaxPipelineCachedResults(other.getMaxPipelineCachedResults());
+        this.setAdaptiveEvaluationPipelines(other.isAdaptiveEvaluationPipelines());
+        this.setMinEvaluationPipelines(other.getMinEvaluationPipelines());
         this.setExpandAllTerms(other.isExpandAllTerms());
         this.setQueryModel(null == other.getQueryModel() ? null : new QueryModel(other.getQueryModel()));
         this.setModelName(other.getModelName());
@@ -539,9 +552,11 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setIndexOnlyFilterFunctionsEnabled(other.isIndexOnlyFilterFunctionsEnabled());
         this.setCompositeFilterFunctionsEnabled(other.isCompositeFilterFunctionsEnabled());
         this.setGroupFieldsBatchSize(other.getGroupFieldsBatchSize());
+        this.setGroupFieldsMaxMemoryBytes(other.getGroupFieldsMaxMemoryBytes());
         this.setAccrueStats(other.getAccrueStats());
         this.setGroupFields(null == other.getGroupFields() ? null : Sets.newHashSet(other.getGroupFields()));
         this.setUniqueFields(UniqueFields.copyOf(other.getUniqueFields()));
+        this.setUniqueMaxMemoryBytes(other.getUniqueMaxMemoryBytes());
         this.setCacheModel(other.getCacheModel());
         this.setTrackSizes(other.isTrackSizes());
         this.setContentFieldNames(null == other.getContentFieldNames() ? null : Lists.newArrayList(other.getContentFieldNames()));
@@ -1285,6 +1300,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.ivaratorNumRetries = ivaratorNumRetries;
     }
     
+    public boolean isIvaratorOffHeapSortedSets() {
+        return ivaratorOffHeapSortedSets;
+    }
+    
+    public void setIvaratorOffHeapSortedSets(boolean ivaratorOffHeapSortedSets) {
+        this.ivaratorOffHeapSortedSets = ivaratorOffHeapSortedSets;
+    }
+    
     public boolean isIvaratorPersistVerify() {
         return ivaratorPersistVerify;
     }
@@ -1333,6 +1356,22 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.maxPipelineCachedResults = maxCachedResults;
     }
     
+    public boolean isAdaptiveEvaluationPipelines() {
+        return adaptiveEvaluationPipelines;
+    }
+    
+    public void setAdaptiveEvaluationPipelines(boolean adaptiveEvaluationPipelines) {
+        this.adaptiveEvaluationPipelines = adaptiveEvaluationPipelines;
+    }
+    
+    public int getMinEvaluationPipelines() {
+        return minEvaluationPipelines;
+    }
+    
+    public void setMinEvaluationPipelines(int minEvaluationPipelines) {
+        this.minEvaluationPipelines = minEvaluationPipelines;
+    }
+    
     public boolean isExpandAllTerms() {
         return expandAllTerms;
     }
@@ -1555,6 +1594,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         return "" + groupFieldsBatchSize;
     }
     
+    public long getGroupFieldsMaxMemoryBytes() {
+        return groupFieldsMaxMemoryBytes;
+    }
+    
+    public void setGroupFieldsMaxMemoryBytes(long groupFieldsMaxMemoryBytes) {
+        this.groupFieldsMaxMemoryBytes = groupFieldsMaxMemoryBytes;
+    }
+    
     public UniqueFields getUniqueFields() {
         return uniqueFields;
     }
@@ -1567,6 +1614,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         }
     }
     
+    public long getUniqueMaxMemoryBytes() {
+        return uniqueMaxMemoryBytes;
+    }
+    
+    public void setUniqueMaxMemoryBytes(long uniqueMaxMemoryBytes) {
+        this.uniqueMaxMemoryBytes = uniqueMaxMemoryBytes;
+    }
+    
     public boolean isHitList() {
         return this.hitList;
     }
@@ -62,6 +62,15 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
     
     private boolean includeParent = false;
     
+    // the number of keys to read forward to the start of the next document before seeking to it instead, or < 0 to seek to every document
+    private int seekThreshold = -1;
+    
+    // the range the source was last sought to when reading forward, or null if the source is bounded by the last document
+    private Range readRange = null;
+    
+    // the range of the last document, to catch documents that overlap it
+    private Range lastKeyRange = null;
+    
     public KeyToDocumentData(SortedKeyValueIterator<Key,Value> source) {
         this(source, new PrefixEquality(PartialKey.ROW_COLFAM), false, false);
     }
@@ -99,6 +108,21 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
         }
     }
     
+    /**
+     * Read forward from one document to the next rather than seeking to every document. The source is sought to the end of the row rather than the end of the
+     * document, so that when the next document starts within seekThreshold keys of where the last one ended, it is reached by next() instead of a seek. This
+     * turns the seeks for documents that are close together (e.g. a dense set of field index hits) into a sequential read of the shard.
+     * <p>
+     * Only use this when the source is not shared with anything else, and documents are applied in sorted order (as they come off a field index). Documents
+     * out of order, or overlapping the last one, are sought as before.
+     * 
+     * @param seekThreshold
+     *            the number of keys to read forward before seeking, or &lt; 0 to seek to every document
+     */
+    public void setSeekThreshold(int seekThreshold) {
+        this.seekThreshold = seekThreshold;
+    }
+    
     /**
      * Append hierarchy fields, including parent and descendant counts, based on the specified range and key
      * 
@@ -124,7 +148,9 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
         
         try {
             
-            source.seek(keyRange, columnFamilies, inclusive);
+            if (!readForward(keyRange)) {
+                seek(keyRange);
+            }
             
             if (log.isDebugEnabled())
                 log.debug(source.hasTop() + " Key range is " + keyRange);
@@ -132,13 +158,19 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
             final List<Entry<Key,Value>> attrs; // Assign only once for
                                                 // efficiency
             final Set<Key> docKeys = new HashSet<>();
-            if (source.hasTop()) {
+            if (source.hasTop() && keyRange.contains(source.getTopKey())) {
                 attrs = this.collectDocumentAttributes(from.getKey(), docKeys, keyRange);
                 this.appendHierarchyFields(attrs, keyRange, from.getKey());
             } else {
                 attrs = Collections.emptyList();
             }
             
+            // a seek made while collecting the document bounds the source by the document, leaving nothing to read forward to
+            if (readRange != null && !source.hasTop()) {
+                readRange = null;
+            }
+            lastKeyRange = keyRange;
+            
             return Maps.immutableEntry(new DocumentData(from.getKey(), docKeys, attrs), from.getValue());
         } catch (IOException e) {
             log.error("Unable to collection document attributes for evaluation: " + keyRange, e);
@@ -148,6 +180,40 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
         
     }
     
+    /**
+     * Seek the source to a document, or from the document to the end of its row when reading forward
+     */
+    private void seek(Range keyRange) throws IOException {
+        readRange = null;
+        if (seekThreshold >= 0 && countFunction == null && keyRange.getStartKey() != null && keyRange.getEndKey() != null) {
+            Key rowEnd = new Key(keyRange.getStartKey().getRow()).followingKey(PartialKey.ROW);
+            if (keyRange.getEndKey().compareTo(rowEnd) < 0) {
+                readRange = new Range(keyRange.getStartKey(), keyRange.isStartKeyInclusive(), rowEnd, false);
+            }
+        }
+        source.seek(readRange != null ? readRange : keyRange, columnFamilies, inclusive);
+    }
+    
+    /**
+     * Advance the source from the end of the last document to the start of this one, if that is within seekThreshold keys
+     * 
+     * @return true if the source is positioned at the start of the document
+     */
+    private boolean readForward(Range keyRange) throws IOException {
+        if (readRange == null || lastKeyRange == null || !source.hasTop() || keyRange.getStartKey() == null || keyRange.getEndKey() == null) {
+            return false;
+        }
+        // the document must lie within the range that was read, and after the last document
+        if (readRange.afterEndKey(keyRange.getEndKey()) || lastKeyRange.getEndKey().compareTo(keyRange.getStartKey()) > 0) {
+            return false;
+        }
+        for (int i = 0; i < seekThreshold && source.hasTop() && keyRange.beforeStartKey(source.getTopKey()); i++) {
+            source.next();
+        }
+        // if the source ran out, it may have been bounded by a seek made while collecting the last document, so seek to be sure
+        return source.hasTop() && !keyRange.beforeStartKey(source.getTopKey());
+    }
+    
     /**
      * Given a Key pointing to the start of an document to aggregate, construct a list of attributes, adding the names of the attributes to the specified set of
      * "docKeys".
@@ -189,7 +255,8 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
             documentAttributes = new ArrayList<>(256);
             WeakReference<Key> docAttrKey = new WeakReference<>(source.getTopKey());
             
-            while (docAttrKey != null) {
+            // stop at the end of the document, as the source may have been sought beyond it
+            while (docAttrKey != null && (keyRange == null || !keyRange.afterEndKey(docAttrKey.get()))) {
                 boolean seeked = false;
                 if (equality.partOf(documentStartKey, docAttrKey.get())) {
                     if (filter == null || filter.keep(docAttrKey.get())) {
@@ -0,0 +1,40 @@
+package datawave.query.function.deserializer;
+
+import java.io.InputStream;
+import java.io.Serializable;
+
+import datawave.query.attributes.CompactAttributeEncoding;
+import datawave.query.attributes.Document;
+import datawave.query.function.serializer.CompactDocumentSerializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+
+/**
+ * Transform bytes written by a {@link CompactDocumentSerializer} back into a Document. Ordering of Attributes is <b>not</b> guaranteed across serialization.
+ */
+public class CompactDocumentDeserializer extends DocumentDeserializer implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    final transient Kryo kryo = new Kryo();
+    final transient CompactAttributeEncoding encoding = new CompactAttributeEncoding();
+    
+    @Override
+    public Document deserialize(InputStream data) {
+        Input input = new Input(data);
+        encoding.reset();
+        
+        byte version = input.readByte();
+        if (version != CompactDocumentSerializer.VERSION) {
+            throw new RuntimeException("Unsupported compact Document version " + version);
+        }
+        
+        Document document = new Document();
+        document.read(kryo, input, encoding);
+        
+        input.close();
+        
+        return document;
+    }
+    
+}
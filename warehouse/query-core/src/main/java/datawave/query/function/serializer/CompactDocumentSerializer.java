@@ -0,0 +1,53 @@
+package datawave.query.function.serializer;
+
+import java.io.ByteArrayOutputStream;
+
+import datawave.query.attributes.CompactAttributeEncoding;
+import datawave.query.attributes.Document;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Transform the Document into a compact Kryo-serialized version, in which attribute types are written as registered ids and field names are interned within
+ * each Document (see {@link CompactAttributeEncoding}). Ordering of Attributes is <b>not</b> guaranteed across serialization.
+ */
+public class CompactDocumentSerializer extends DocumentSerializer {
+    
+    /**
+     * The version of the compact format, written ahead of each document
+     */
+    public static final byte VERSION = 1;
+    
+    final Kryo kryo = new Kryo();
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
+    final CompactAttributeEncoding encoding = new CompactAttributeEncoding();
+    
+    public CompactDocumentSerializer() {
+        this(false, false);
+    }
+    
+    public CompactDocumentSerializer(boolean reducedResponse) {
+        this(reducedResponse, false);
+    }
+    
+    public CompactDocumentSerializer(boolean reducedResponse, boolean compress) {
+        super(reducedResponse, compress);
+    }
+    
+    @Override
+    public byte[] serialize(Document doc) {
+        baos.reset();
+        encoding.reset();
+        
+        Output output = new Output(baos);
+        
+        output.writeByte(VERSION);
+        doc.write(kryo, output, reducedResponse, encoding);
+        
+        output.close();
+        
+        return baos.toByteArray();
+    }
+    
+}
@@ -0,0 +1,265 @@
+package datawave.query.iterator;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import datawave.query.composite.CompositeMetadata;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.visitors.RebuildingVisitor;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A tserver wide cache of the decoded forms of the options passed to a {@link QueryIterator}. Every range of a query, and every re-seek after a yield or a
+ * restarted scan session, initializes a new iterator with the same options, which would otherwise be decompressed and parsed all over again.
+ * <p>
+ * Entries are keyed on the serialized option itself, so an entry can never be stale: a changed option is simply a different key. Entries are weighed by the
+ * length of the serialized option plus the length of a decompressed value, and the cache is bounded by {@value #MAX_BYTES} and expires entries that have not
+ * been used within {@value #EXPIRE_MS}, both of which may be set in the Accumulo configuration of the tserver along with {@value #ENABLED}. The configuration
+ * is read again at most every {@link #CONFIG_CHECK_MS} milliseconds, at which point the hit and miss counts are logged. Parsed scripts and type metadata are
+ * copied on the way out, as iterators modify them.
+ */
+public class ParsedOptionsCache {
+    
+    private static final Logger log = Logger.getLogger(ParsedOptionsCache.class);
+    
+    // Accumulo properties
+    public static final String ENABLED = "datawave.query.options.cache.enabled";
+    public static final String MAX_BYTES = "datawave.query.options.cache.maxBytes";
+    public static final String EXPIRE_MS = "datawave.query.options.cache.expireMs";
+    
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_EXPIRE_MS = TimeUnit.MILLISECONDS.convert(15, TimeUnit.MINUTES);
+    public static final long CONFIG_CHECK_MS = TimeUnit.MILLISECONDS.convert(1, TimeUnit.MINUTES);
+    
+    private static final String DECOMPRESSED = "decompressed";
+    private static final String TYPE_METADATA = "typeMetadata";
+    private static final String COMPOSITE_METADATA = "compositeMetadata";
+    private static final String SCRIPT = "script";
+    
+    private static volatile boolean enabled = true;
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    private static long expireMs = DEFAULT_EXPIRE_MS;
+    private static volatile Cache<CacheKey,Object> cache = createCache(maxBytes, expireMs);
+    private static volatile long configCheckedAt = 0;
+    private static long statsRequestCount = 0;
+    
+    private ParsedOptionsCache() {}
+    
+    private static Cache<CacheKey,Object> createCache(long maxBytes, long expireMs) {
+        // @formatter:off
+        return CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((CacheKey key, Object value) -> key.weight(value))
+                .expireAfterAccess(expireMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        // @formatter:on
+    }
+    
+    /**
+     * Update the settings of the cache from the tserver configuration unless they were checked within the last {@link #CONFIG_CHECK_MS}, and log the hit and
+     * miss counts of the cache if it has been used since they were last logged. Cheap enough to call for every iterator that is initialized.
+     * 
+     * @param conf
+     *            the tserver configuration, may be null
+     */
+    public static void configure(final AccumuloConfiguration conf) {
+        if (conf == null || System.currentTimeMillis() - configCheckedAt < CONFIG_CHECK_MS) {
+            return;
+        }
+        synchronized (ParsedOptionsCache.class) {
+            if (System.currentTimeMillis() - configCheckedAt < CONFIG_CHECK_MS) {
+                return;
+            }
+            configCheckedAt = System.currentTimeMillis();
+            CacheStats stats = cache.stats();
+            if (stats.requestCount() != statsRequestCount) {
+                statsRequestCount = stats.requestCount();
+                log.info("Parsed options cache: " + cache.size() + " entries, " + stats);
+            }
+            setConfig(conf);
+        }
+    }
+    
+    /**
+     * Update the settings of the cache from the tserver configuration. A change to the size or expiration replaces the cache.
+     * 
+     * @param conf
+     *            the tserver configuration, may be null
+     */
+    synchronized public static void setConfig(final AccumuloConfiguration conf) {
+        if (conf == null) {
+            return;
+        }
+        String enabledStr = conf.get(ENABLED);
+        if (enabledStr != null) {
+            enabled = Boolean.parseBoolean(enabledStr);
+        }
+        long newMaxBytes = getLong(conf, MAX_BYTES, maxBytes);
+        long newExpireMs = getLong(conf, EXPIRE_MS, expireMs);
+        if (newMaxBytes != maxBytes || newExpireMs != expireMs) {
+            log.info("Replacing the parsed options cache with maxBytes=" + newMaxBytes + " and expireMs=" + newExpireMs);
+            maxBytes = newMaxBytes;
+            expireMs = newExpireMs;
+            cache = createCache(maxBytes, expireMs);
+            statsRequestCount = 0;
+        }
+        if (!enabled) {
+            cache.invalidateAll();
+        }
+    }
+    
+    private static long getLong(AccumuloConfiguration conf, String property, long defaultValue) {
+        String value = conf.get(property);
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                log.error("Bad value: (" + value + ") in " + property + " : " + e.getMessage());
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Drop every cached entry
+     */
+    public static void invalidateAll() {
+        cache.invalidateAll();
+    }
+    
+    /**
+     * @return the hit, miss and eviction counts of the cache since it was created
+     */
+    public static CacheStats getStats() {
+        return cache.stats();
+    }
+    
+    /**
+     * @return the number of cached entries
+     */
+    public static long size() {
+        return cache.size();
+    }
+    
+    /**
+     * Decompress an option, see {@link QueryOptions#decompressOption(String, java.nio.charset.Charset)}
+     */
+    static String getDecompressed(String option, Callable<String> decompressor) throws IOException {
+        return get(DECOMPRESSED, option, decompressor);
+    }
+    
+    /**
+     * Build the type metadata from its serialized form, see {@link QueryOptions#buildTypeMetadata(String)}
+     * 
+     * @return a copy of the cached type metadata
+     */
+    static TypeMetadata getTypeMetadata(String option) throws IOException {
+        TypeMetadata typeMetadata = get(TYPE_METADATA, option, () -> QueryOptions.buildTypeMetadata(option));
+        return enabled ? new TypeMetadata(typeMetadata) : typeMetadata;
+    }
+    
+    /**
+     * Decode the base64 serialized composite metadata. The composite metadata is only read by the iterators, so it is shared.
+     */
+    static CompositeMetadata getCompositeMetadata(String option) throws IOException {
+        return get(COMPOSITE_METADATA, option, () -> CompositeMetadata.fromBytes(Base64.getDecoder().decode(option)));
+    }
+    
+    /**
+     * Parse a query, see {@link JexlASTHelper#parseJexlQuery(String)}
+     * 
+     * @return a copy of the cached script
+     */
+    static ASTJexlScript getScript(String query) throws ParseException {
+        try {
+            ASTJexlScript script = get(SCRIPT, query, () -> JexlASTHelper.parseJexlQuery(query));
+            return enabled ? (ASTJexlScript) RebuildingVisitor.copy(script) : script;
+        } catch (IOException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ParseException) {
+                throw (ParseException) cause;
+            }
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T get(String kind, String option, Callable<T> loader) throws IOException {
+        if (!enabled) {
+            return call(loader);
+        }
+        try {
+            return (T) cache.get(new CacheKey(kind, option), () -> {
+                if (log.isDebugEnabled()) {
+                    log.debug("Caching " + kind + " of " + option.length() + " chars, " + cache.stats());
+                }
+                return loader.call();
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Unable to decode the " + kind + " option", cause);
+        }
+    }
+    
+    private static <T> T call(Callable<T> loader) throws IOException {
+        try {
+            return loader.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+    
+    private static class CacheKey {
+        private final String kind;
+        private final String option;
+        
+        CacheKey(String kind, String option) {
+            this.kind = kind;
+            this.option = option;
+        }
+        
+        // the serialized option is held as the key, and a decompressed value weighs its own length, which may be many times that of the key. The other
+        // decoded forms are taken to be roughly the size of the serialized option.
+        int weight(Object value) {
+            long chars = option.length() + ((value instanceof String) ? ((String) value).length() : option.length());
+            return (int) Math.min(Integer.MAX_VALUE, 2L * chars);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return kind.equals(other.kind) && option.equals(other.option);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, option);
+        }
+    }
+}
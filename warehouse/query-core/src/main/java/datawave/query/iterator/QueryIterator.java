@@ -11,6 +11,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.UnmodifiableIterator;
 import datawave.core.iterators.DatawaveFieldIndexListIteratorJexl;
+import datawave.core.iterators.IteratorThreadPoolManager;
 import datawave.data.type.Type;
 import datawave.data.type.util.NumericalEncoder;
 import datawave.ingest.data.config.ingest.CompositeIngest;
@@ -35,12 +36,16 @@ import datawave.query.function.LimitFields;
 import datawave.query.function.MaskedValueFilterFactory;
 import datawave.query.function.MaskedValueFilterInterface;
 import datawave.query.function.RemoveGroupingContext;
+import datawave.query.function.deserializer.CompactDocumentDeserializer;
+import datawave.query.function.deserializer.DocumentDeserializer;
 import datawave.query.function.deserializer.KryoDocumentDeserializer;
+import datawave.query.function.serializer.CompactDocumentSerializer;
 import datawave.query.function.serializer.KryoDocumentSerializer;
 import datawave.query.function.serializer.ToStringDocumentSerializer;
 import datawave.query.function.serializer.WritableDocumentSerializer;
 import datawave.query.iterator.aggregation.DocumentData;
 import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
+import datawave.query.iterator.pipeline.AdaptivePipelineSizer;
 import datawave.query.iterator.pipeline.PipelineFactory;
 import datawave.query.iterator.pipeline.PipelineIterator;
 import datawave.query.iterator.profile.EvaluationTrackingFunction;
@@ -55,7 +60,6 @@ import datawave.query.iterator.profile.QuerySpanCollector;
 import datawave.query.iterator.profile.SourceTrackingIterator;
 import datawave.query.jexl.DatawaveJexlContext;
 import datawave.query.jexl.DefaultArithmetic;
-import datawave.query.jexl.JexlASTHelper;
 import datawave.query.jexl.StatefulArithmetic;
 import datawave.query.jexl.functions.IdentityAggregator;
 import datawave.query.jexl.functions.KeyAdjudicator;
@@ -231,6 +235,11 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             log.trace("QueryIterator init()");
         }
         
+        // the options are decoded through the tserver wide cache, so pick up its (potentially) updated config first
+        if (env != null) {
+            ParsedOptionsCache.configure(env.getConfig());
+        }
+        
         if (!validateOptions(new SourcedOptions<>(source, env, options))) {
             throw new IllegalArgumentException("Could not initialize QueryIterator with " + options);
         }
@@ -245,7 +254,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         
         // Parse the query
         try {
-            this.script = JexlASTHelper.parseJexlQuery(this.getQuery());
+            this.script = ParsedOptionsCache.getScript(this.getQuery());
             this.myEvaluationFunction = new JexlEvaluation(this.getQuery(), arithmetic);
             
         } catch (Exception e) {
@@ -476,6 +485,10 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                             yield, yieldThresholdMs, columnFamilies, inclusive);
             
             pipelineIter.setCollectTimingDetails(collectTimingDetails);
+            if (isAdaptiveEvaluationPipelines()) {
+                pipelineIter.setPipelineSizer(new AdaptivePipelineSizer(getMinEvaluationPipelines(), getMaxEvaluationPipelines(),
+                                IteratorThreadPoolManager::getEvaluationBacklog));
+            }
             // TODO pipelineIter.setStatsdHostAndPort(statsdHostAndPort);
             
             pipelineIter.startPipeline();
@@ -521,6 +534,9 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             if (this.getReturnType() == ReturnType.kryo) {
                 // Serialize the Document using Kryo
                 this.serializedDocuments = Iterators.transform(pipelineDocuments, new KryoDocumentSerializer(isReducedResponse(), isCompressResults()));
+            } else if (this.getReturnType() == ReturnType.compact) {
+                // Serialize the Document using the compact attribute encoding
+                this.serializedDocuments = Iterators.transform(pipelineDocuments, new CompactDocumentSerializer(isReducedResponse(), isCompressResults()));
             } else if (this.getReturnType() == ReturnType.writable) {
                 // Use the Writable interface to serialize the Document
                 this.serializedDocuments = Iterators.transform(pipelineDocuments, new WritableDocumentSerializer(isReducedResponse()));
@@ -532,7 +548,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             }
             
             if (log.isTraceEnabled()) {
-                KryoDocumentDeserializer dser = new KryoDocumentDeserializer();
+                DocumentDeserializer dser = (this.getReturnType() == ReturnType.compact ? new CompactDocumentDeserializer() : new KryoDocumentDeserializer());
                 this.serializedDocuments = Iterators.filter(this.serializedDocuments, keyValueEntry -> {
                     log.trace("after serializing, keyValueEntry:" + dser.apply(keyValueEntry));
                     return true;
@@ -556,7 +572,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                                 this.getReturnType(), this.isReducedResponse(), this.isCompressResults(), this.yield);
             }
             if (log.isTraceEnabled()) {
-                KryoDocumentDeserializer dser = new KryoDocumentDeserializer();
+                DocumentDeserializer dser = (this.getReturnType() == ReturnType.compact ? new CompactDocumentDeserializer() : new KryoDocumentDeserializer());
                 this.serializedDocuments = Iterators.filter(this.serializedDocuments, keyValueEntry -> {
                     log.debug("finally, considering:" + dser.apply(keyValueEntry));
                     return true;
@@ -706,7 +722,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 JexlEvaluation eval = null;
                 try {
                     
-                    myScript = JexlASTHelper.parseJexlQuery(queries.getValue());
+                    myScript = ParsedOptionsCache.getScript(queries.getValue());
                     eval = new JexlEvaluation(queries.getValue(), myArithmetic);
                     
                 } catch (Exception e) {
@@ -869,8 +885,11 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 }
             };
         } else {
-            docMapper = new KeyToDocumentData(deepSourceCopy, myEnvironment, documentOptions, super.equality, getEvaluationFilter(),
-                            this.includeHierarchyFields, this.includeHierarchyFields);
+            KeyToDocumentData keyToDocumentData = new KeyToDocumentData(deepSourceCopy, myEnvironment, documentOptions, super.equality,
+                            getEvaluationFilter(), this.includeHierarchyFields, this.includeHierarchyFields);
+            // the pipeline has a source of its own and is handed its documents in order, so it can read forward from one document to the next
+            keyToDocumentData.setSeekThreshold(getDocumentSeekThreshold());
+            docMapper = keyToDocumentData;
         }
         
         Iterator<Entry<DocumentData,Document>> sourceIterator = Iterators.transform(documentSpecificSource, from -> {
@@ -1462,6 +1481,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 .setMaxRangeSplit(this.getMaxIndexRangeSplit())
                 .setIvaratorMaxOpenFiles(this.getIvaratorMaxOpenFiles())
                 .setIvaratorNumRetries(this.getIvaratorNumRetries())
+                .setIvaratorOffHeapSortedSets(this.isIvaratorOffHeapSortedSets())
                 .setIvaratorPersistOptions(this.getIvaratorPersistOptions())
                 .setUnsortedIvaratorSource(this.sourceForDeepCopies)
                 .setIvaratorSourcePool(createIvaratorSourcePool(this.maxIvaratorSources))
@@ -1601,7 +1621,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         if (groupingTransform == null && getGroupFields() != null && !getGroupFields().isEmpty()) {
             synchronized (getGroupFields()) {
                 if (groupingTransform == null) {
-                    groupingTransform = new GroupingTransform(null, getGroupFields(), true);
+                    groupingTransform = new GroupingTransform(null, getGroupFields(), true, getGroupFieldsMaxMemoryBytes());
                     groupingTransform.initialize(null, MarkingFunctionsFactory.createMarkingFunctions());
                 }
             }
@@ -47,6 +47,7 @@ import datawave.query.predicate.TimeFilter;
 import datawave.query.statsd.QueryStatsDClient;
 import datawave.query.tables.async.Scan;
 import datawave.query.tracking.ActiveQueryLog;
+import datawave.query.transformer.GroupingTransform;
 import datawave.query.attributes.UniqueFields;
 import datawave.query.util.TypeMetadata;
 import datawave.query.util.sortedset.FileSortedSet;
@@ -125,6 +126,7 @@ public class QueryOptions implements OptionDescriber {
     public static final String COMPOSITE_FIELDS = "composite.fields";
     public static final String COMPOSITE_METADATA = "composite.metadata";
     public static final String COMPOSITE_SEEK_THRESHOLD = "composite.seek.threshold";
+    public static final String DOCUMENT_SEEK_THRESHOLD = "document.seek.threshold";
     public static final String CONTAINS_COMPOSITE_TERMS = "composite.terms";
     public static final String IGNORE_COLUMN_FAMILIES = "ignore.column.families";
     public static final String INCLUDE_GROUPING_CONTEXT = "include.grouping.context";
@@ -137,6 +139,7 @@ public class QueryOptions implements OptionDescriber {
     public static final String LIMIT_FIELDS_FIELD = "limit.fields.field";
     public static final String GROUP_FIELDS = "group.fields";
     public static final String GROUP_FIELDS_BATCH_SIZE = "group.fields.batch.size";
+    public static final String GROUP_FIELDS_MAX_MEMORY_BYTES = "group.fields.max.memory.bytes";
     public static final String UNIQUE_FIELDS = "unique.fields";
     public static final String HITS_ONLY = "hits.only";
     public static final String HIT_LIST = "hit.list";
@@ -213,6 +216,8 @@ public class QueryOptions implements OptionDescriber {
     
     public static final String IVARATOR_NUM_RETRIES = "ivarator.num.retries";
     
+    public static final String IVARATOR_OFF_HEAP_SORTED_SETS = "ivarator.off.heap.sorted.sets";
+    
     public static final String IVARATOR_PERSIST_VERIFY = "ivarator.persist.verify";
     
     public static final String IVARATOR_PERSIST_VERIFY_COUNT = "ivarator.persist.verify.count";
@@ -229,6 +234,10 @@ public class QueryOptions implements OptionDescriber {
     
     public static final String MAX_PIPELINE_CACHED_RESULTS = "max.pipeline.cached.results";
     
+    public static final String ADAPTIVE_EVALUATION_PIPELINES = "adaptive.evaluation.pipelines";
+    
+    public static final String MIN_EVALUATION_PIPELINES = "min.evaluation.pipelines";
+    
     public static final String BATCHED_QUERY = "query.iterator.batch";
     
     public static final String BATCHED_QUERY_RANGE_PREFIX = "query.iterator.batch.range.";
@@ -260,6 +269,7 @@ public class QueryOptions implements OptionDescriber {
     protected Set<String> typeMetadataAuthsKey = Sets.newHashSet();
     protected CompositeMetadata compositeMetadata = null;
     protected int compositeSeekThreshold = 10;
+    protected int documentSeekThreshold = 10;
     protected DocumentSerialization.ReturnType returnType = DocumentSerialization.ReturnType.kryo;
     protected boolean reducedResponse = false;
     protected boolean fullTableScanOnly = false;
@@ -276,6 +286,7 @@ public class QueryOptions implements OptionDescriber {
     
     protected Set<String> groupFields = Sets.newHashSet();
     protected int groupFieldsBatchSize = Integer.MAX_VALUE;
+    protected long groupFieldsMaxMemoryBytes = GroupingTransform.DEFAULT_MAX_MEMORY_BYTES;
     protected UniqueFields uniqueFields = new UniqueFields();
     
     protected Set<String> hitsOnlySet = new HashSet<>();
@@ -289,6 +300,8 @@ public class QueryOptions implements OptionDescriber {
     
     protected int maxEvaluationPipelines = 25;
     protected int maxPipelineCachedResults = 25;
+    protected boolean adaptiveEvaluationPipelines = false;
+    protected int minEvaluationPipelines = 2;
     
     protected Set<String> indexOnlyFields = Sets.newHashSet();
     protected Set<String> indexedFields = Sets.newHashSet();
@@ -333,6 +346,7 @@ public class QueryOptions implements OptionDescriber {
     protected int maxIndexRangeSplit = 11;
     protected int ivaratorMaxOpenFiles = 100;
     protected int ivaratorNumRetries = 2;
+    protected boolean ivaratorOffHeapSortedSets = false;
     protected FileSortedSet.PersistOptions ivaratorPersistOptions = new FileSortedSet.PersistOptions();
     
     protected int maxIvaratorSources = 33;
@@ -403,6 +417,7 @@ public class QueryOptions implements OptionDescriber {
         this.metadataTableName = other.metadataTableName;
         this.compositeMetadata = other.compositeMetadata;
         this.compositeSeekThreshold = other.compositeSeekThreshold;
+        this.documentSeekThreshold = other.documentSeekThreshold;
         this.returnType = other.returnType;
         this.reducedResponse = other.reducedResponse;
         this.fullTableScanOnly = other.fullTableScanOnly;
@@ -456,6 +471,7 @@ public class QueryOptions implements OptionDescriber {
         this.hdfsFileCompressionCodec = other.hdfsFileCompressionCodec;
         this.maxIndexRangeSplit = other.maxIndexRangeSplit;
         this.ivaratorMaxOpenFiles = other.ivaratorMaxOpenFiles;
+        this.ivaratorOffHeapSortedSets = other.ivaratorOffHeapSortedSets;
         this.maxIvaratorSources = other.maxIvaratorSources;
         this.maxIvaratorResults = other.maxIvaratorResults;
         
@@ -467,6 +483,7 @@ public class QueryOptions implements OptionDescriber {
         this.limitFieldsField = other.limitFieldsField;
         this.groupFields = other.groupFields;
         this.groupFieldsBatchSize = other.groupFieldsBatchSize;
+        this.groupFieldsMaxMemoryBytes = other.groupFieldsMaxMemoryBytes;
         this.hitsOnlySet = other.hitsOnlySet;
         
         this.compressedMappings = other.compressedMappings;
@@ -481,6 +498,8 @@ public class QueryOptions implements OptionDescriber {
         this.batchedQueries = other.batchedQueries;
         this.batchStack = other.batchStack;
         this.maxEvaluationPipelines = other.maxEvaluationPipelines;
+        this.adaptiveEvaluationPipelines = other.adaptiveEvaluationPipelines;
+        this.minEvaluationPipelines = other.minEvaluationPipelines;
         
         this.dateIndexTimeTravel = other.dateIndexTimeTravel;
         
@@ -568,6 +587,14 @@ public class QueryOptions implements OptionDescriber {
         this.compositeSeekThreshold = compositeSeekThreshold;
     }
     
+    public int getDocumentSeekThreshold() {
+        return documentSeekThreshold;
+    }
+    
+    public void setDocumentSeekThreshold(int documentSeekThreshold) {
+        this.documentSeekThreshold = documentSeekThreshold;
+    }
+    
     public DocumentSerialization.ReturnType getReturnType() {
         return returnType;
     }
@@ -863,6 +890,14 @@ public class QueryOptions implements OptionDescriber {
         this.ivaratorNumRetries = ivaratorNumRetries;
     }
     
+    public boolean isIvaratorOffHeapSortedSets() {
+        return ivaratorOffHeapSortedSets;
+    }
+    
+    public void setIvaratorOffHeapSortedSets(boolean ivaratorOffHeapSortedSets) {
+        this.ivaratorOffHeapSortedSets = ivaratorOffHeapSortedSets;
+    }
+    
     public FileSortedSet.PersistOptions getIvaratorPersistOptions() {
         return ivaratorPersistOptions;
     }
@@ -935,6 +970,14 @@ public class QueryOptions implements OptionDescriber {
         this.groupFieldsBatchSize = groupFieldsBatchSize;
     }
     
+    public long getGroupFieldsMaxMemoryBytes() {
+        return groupFieldsMaxMemoryBytes;
+    }
+    
+    public void setGroupFieldsMaxMemoryBytes(long groupFieldsMaxMemoryBytes) {
+        this.groupFieldsMaxMemoryBytes = groupFieldsMaxMemoryBytes;
+    }
+    
     public UniqueFields getUniqueFields() {
         return uniqueFields;
     }
@@ -1025,6 +1068,7 @@ public class QueryOptions implements OptionDescriber {
         options.put(LIMIT_FIELDS, "limit fields");
         options.put(GROUP_FIELDS, "group fields");
         options.put(GROUP_FIELDS_BATCH_SIZE, "group fields.batch.size");
+        options.put(GROUP_FIELDS_MAX_MEMORY_BYTES, "memory budget for the grouped fields before partial groups are returned");
         options.put(UNIQUE_FIELDS, "unique fields");
         options.put(HIT_LIST, "hit list");
         options.put(NON_INDEXED_DATATYPES, "Normalizers to apply only at aggregation time");
@@ -1049,6 +1093,8 @@ public class QueryOptions implements OptionDescriber {
                         "The maximum number of files that can be opened at one time during a merge sort.  If more that this number of files are created, then compactions will occur");
         options.put(IVARATOR_NUM_RETRIES,
                         "The number of times an ivarator should attempt to persist a sorted set to a given ivarator cache directory.  We will use the specified number of retries for each of the configured ivarator cache directories.");
+        options.put(IVARATOR_OFF_HEAP_SORTED_SETS,
+                        "Whether ivarators should buffer their sorted sets off heap and persist them in a format which can be memory mapped.  Default is false.");
         options.put(MAX_IVARATOR_SOURCES,
                         " The maximum number of sources to use for ivarators across all ivarated terms within the query.  Note the thread pool size is controlled via an accumulo property.");
         options.put(YIELD_THRESHOLD_MS,
@@ -1057,6 +1103,9 @@ public class QueryOptions implements OptionDescriber {
         options.put(MAX_EVALUATION_PIPELINES, "The max number of evaluation pipelines");
         options.put(SERIAL_EVALUATION_PIPELINE, "Forces us to use the serial pipeline. Allows us to still have a single thread for evaluation");
         options.put(MAX_PIPELINE_CACHED_RESULTS, "The max number of non-null evaluated results to cache beyond the evaluation pipelines in queue");
+        options.put(ADAPTIVE_EVALUATION_PIPELINES,
+                        "Vary the number of evaluation pipelines between the min and max with the evaluation cost and the evaluation thread pool load");
+        options.put(MIN_EVALUATION_PIPELINES, "The min number of evaluation pipelines when they are adaptive");
         options.put(DATE_INDEX_TIME_TRAVEL, "Whether the shards from before the event should be gathered from the dateIndex");
         
         options.put(SORTED_UIDS,
@@ -1137,7 +1186,11 @@ public class QueryOptions implements OptionDescriber {
         if (options.containsKey(COMPOSITE_METADATA)) {
             String compositeMetadataString = options.get(COMPOSITE_METADATA);
             if (compositeMetadataString != null && !compositeMetadataString.isEmpty()) {
-                this.compositeMetadata = CompositeMetadata.fromBytes(java.util.Base64.getDecoder().decode(compositeMetadataString));
+                try {
+                    this.compositeMetadata = ParsedOptionsCache.getCompositeMetadata(compositeMetadataString);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
             }
             
             if (log.isTraceEnabled()) {
@@ -1153,6 +1206,14 @@ public class QueryOptions implements OptionDescriber {
             }
         }
         
+        if (options.containsKey(DOCUMENT_SEEK_THRESHOLD)) {
+            try {
+                this.documentSeekThreshold = Integer.parseInt(options.get(DOCUMENT_SEEK_THRESHOLD));
+            } catch (NumberFormatException nfe) {
+                this.documentSeekThreshold = 10;
+            }
+        }
+        
         // Currently writable, kryo or toString
         if (options.containsKey(Constants.RETURN_TYPE)) {
             setReturnType(DocumentSerialization.ReturnType.valueOf(options.get(Constants.RETURN_TYPE)));
@@ -1341,6 +1402,10 @@ public class QueryOptions implements OptionDescriber {
             this.setGroupFieldsBatchSize(batchSize);
         }
         
+        if (options.containsKey(GROUP_FIELDS_MAX_MEMORY_BYTES)) {
+            this.setGroupFieldsMaxMemoryBytes(Long.parseLong(options.get(GROUP_FIELDS_MAX_MEMORY_BYTES)));
+        }
+        
         if (options.containsKey(UNIQUE_FIELDS)) {
             this.setUniqueFields(UniqueFields.from(options.get(UNIQUE_FIELDS)));
         }
@@ -1438,6 +1503,10 @@ public class QueryOptions implements OptionDescriber {
             this.setIvaratorNumRetries(Integer.parseInt(options.get(IVARATOR_NUM_RETRIES)));
         }
         
+        if (options.containsKey(IVARATOR_OFF_HEAP_SORTED_SETS)) {
+            this.setIvaratorOffHeapSortedSets(Boolean.parseBoolean(options.get(IVARATOR_OFF_HEAP_SORTED_SETS)));
+        }
+        
         if (options.containsKey(IVARATOR_PERSIST_VERIFY)) {
             boolean verify = Boolean.parseBoolean(options.get(IVARATOR_PERSIST_VERIFY));
             FileSortedSet.PersistOptions persistOptions = getIvaratorPersistOptions();
@@ -1478,6 +1547,14 @@ public class QueryOptions implements OptionDescriber {
             this.setMaxPipelineCachedResults(Integer.parseInt(options.get(MAX_PIPELINE_CACHED_RESULTS)));
         }
         
+        if (options.containsKey(ADAPTIVE_EVALUATION_PIPELINES)) {
+            this.setAdaptiveEvaluationPipelines(Boolean.parseBoolean(options.get(ADAPTIVE_EVALUATION_PIPELINES)));
+        }
+        
+        if (options.containsKey(MIN_EVALUATION_PIPELINES)) {
+            this.setMinEvaluationPipelines(Integer.parseInt(options.get(MIN_EVALUATION_PIPELINES)));
+        }
+        
         if (options.containsKey(TERM_FREQUENCIES_REQUIRED)) {
             this.setTermFrequenciesRequired(Boolean.parseBoolean(options.get(TERM_FREQUENCIES_REQUIRED)));
         }
@@ -1561,7 +1638,7 @@ public class QueryOptions implements OptionDescriber {
                 if (compressedMappings) {
                     typeMetadataString = decompressOption(typeMetadataString, QueryOptions.UTF8);
                 }
-                this.typeMetadata = buildTypeMetadata(typeMetadataString);
+                this.typeMetadata = ParsedOptionsCache.getTypeMetadata(typeMetadataString);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -1577,6 +1654,13 @@ public class QueryOptions implements OptionDescriber {
     }
     
     protected static String decompressOption(final String buffer, Charset characterSet) throws IOException {
+        if (characterSet.equals(QueryOptions.UTF8)) {
+            return ParsedOptionsCache.getDecompressed(buffer, () -> decompress(buffer, characterSet));
+        }
+        return decompress(buffer, characterSet);
+    }
+    
+    private static String decompress(final String buffer, Charset characterSet) throws IOException {
         final byte[] inBase64 = Base64.decodeBase64(buffer.getBytes());
         
         ByteArrayInputStream byteInputStream = new ByteArrayInputStream(inBase64);
@@ -1872,6 +1956,22 @@ public class QueryOptions implements OptionDescriber {
         this.maxPipelineCachedResults = maxCachedResults;
     }
     
+    public boolean isAdaptiveEvaluationPipelines() {
+        return adaptiveEvaluationPipelines;
+    }
+    
+    public void setAdaptiveEvaluationPipelines(boolean adaptiveEvaluationPipelines) {
+        this.adaptiveEvaluationPipelines = adaptiveEvaluationPipelines;
+    }
+    
+    public int getMinEvaluationPipelines() {
+        return minEvaluationPipelines;
+    }
+    
+    public void setMinEvaluationPipelines(int minEvaluationPipelines) {
+        this.minEvaluationPipelines = minEvaluationPipelines;
+    }
+    
     public String getStatsdHostAndPort() {
         return statsdHostAndPort;
     }
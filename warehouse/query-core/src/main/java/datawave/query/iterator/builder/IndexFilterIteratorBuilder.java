@@ -80,6 +80,7 @@ public class IndexFilterIteratorBuilder extends IvaratorBuilder implements Itera
                         .withMaxResults(maxIvaratorResults)
                         .withIvaratorCacheDirs(ivaratorCacheDirs)
                         .withNumRetries(ivaratorNumRetries)
+                        .withOffHeapSortedSets(ivaratorOffHeapSortedSets)
                         .withPersistOptions(ivaratorPersistOptions)
                         .withQueryLock(queryLock)
                         .allowDirResuse(true)
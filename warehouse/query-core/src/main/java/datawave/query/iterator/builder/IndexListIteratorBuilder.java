@@ -86,6 +86,7 @@ public class IndexListIteratorBuilder extends IvaratorBuilder implements Iterato
                         .withMaxOpenFiles(ivaratorMaxOpenFiles)
                         .withIvaratorCacheDirs(ivaratorCacheDirs)
                         .withNumRetries(ivaratorNumRetries)
+                        .withOffHeapSortedSets(ivaratorOffHeapSortedSets)
                         .withPersistOptions(ivaratorPersistOptions)
                         .withMaxResults(maxIvaratorResults)
                         .withQueryLock(queryLock)
@@ -63,6 +63,7 @@ public class IndexRegexIteratorBuilder extends IvaratorBuilder implements Iterat
                         .withMaxResults(maxIvaratorResults)
                         .withIvaratorCacheDirs(ivaratorCacheDirs)
                         .withNumRetries(ivaratorNumRetries)
+                        .withOffHeapSortedSets(ivaratorOffHeapSortedSets)
                         .withPersistOptions(ivaratorPersistOptions)
                         .withQueryLock(queryLock)
                         .allowDirResuse(true)
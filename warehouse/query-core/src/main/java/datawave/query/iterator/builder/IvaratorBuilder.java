@@ -33,6 +33,7 @@ public abstract class IvaratorBuilder extends IndexIteratorBuilder {
     protected int ivaratorMaxOpenFiles = 100;
     protected long maxIvaratorResults = -1;
     protected int ivaratorNumRetries = 2;
+    protected boolean ivaratorOffHeapSortedSets = false;
     protected FileSortedSet.PersistOptions ivaratorPersistOptions = new FileSortedSet.PersistOptions();
     protected boolean collectTimingDetails = false;
     protected QuerySpanCollector querySpanCollector = null;
@@ -137,6 +138,14 @@ public abstract class IvaratorBuilder extends IndexIteratorBuilder {
         this.ivaratorNumRetries = ivaratorNumRetries;
     }
     
+    public boolean isIvaratorOffHeapSortedSets() {
+        return ivaratorOffHeapSortedSets;
+    }
+    
+    public void setIvaratorOffHeapSortedSets(boolean ivaratorOffHeapSortedSets) {
+        this.ivaratorOffHeapSortedSets = ivaratorOffHeapSortedSets;
+    }
+    
     public FileSortedSet.PersistOptions getIvaratorPersistOptions() {
         return ivaratorPersistOptions;
     }
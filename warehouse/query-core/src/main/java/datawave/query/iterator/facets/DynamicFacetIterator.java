@@ -36,6 +36,7 @@ import datawave.query.function.DocumentCountCardinality;
 import datawave.query.function.JexlEvaluation;
 import datawave.query.function.KeyToDocumentData;
 import datawave.query.function.MinimumEstimation;
+import datawave.query.function.serializer.CompactDocumentSerializer;
 import datawave.query.function.serializer.KryoDocumentSerializer;
 import datawave.query.function.serializer.ToStringDocumentSerializer;
 import datawave.query.function.serializer.WritableDocumentSerializer;
@@ -255,6 +256,9 @@ public class DynamicFacetIterator extends FieldIndexOnlyQueryIterator {
         if (this.getReturnType() == ReturnType.kryo) {
             // Serialize the Document using Kryo
             this.serializedDocuments = Iterators.transform(fieldIndexDocuments, new KryoDocumentSerializer(isReducedResponse(), isCompressResults()));
+        } else if (this.getReturnType() == ReturnType.compact) {
+            // Serialize the Document using the compact attribute encoding
+            this.serializedDocuments = Iterators.transform(fieldIndexDocuments, new CompactDocumentSerializer(isReducedResponse(), isCompressResults()));
         } else if (this.getReturnType() == ReturnType.writable) {
             // Use the Writable interface to serialize the Document
             this.serializedDocuments = Iterators.transform(fieldIndexDocuments, new WritableDocumentSerializer(isReducedResponse()));
@@ -3,6 +3,7 @@ package datawave.query.iterator.filter;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
 
@@ -33,6 +34,9 @@ import com.google.common.collect.HashMultimap;
  *
  * Prefiltering is an optional component that can determine quickly if a key will fail using a whitelist of accepted values parsed from the jexl
  *
+ * When the query is one of the common edge query shapes it is compiled into an {@link EdgeKeyPredicate}, which is evaluated against the bytes of each key
+ * without building a JEXL context. Keys that the compiled predicate cannot evaluate, and queries that cannot be compiled, are evaluated by JEXL.
+ * 
  */
 public class EdgeFilterIterator extends Filter {
     public static final Logger log = Logger.getLogger(EdgeFilterIterator.class);
@@ -42,6 +46,7 @@ public class EdgeFilterIterator extends Filter {
     public static final String INCLUDE_STATS_OPTION = "includeStats";
     public static final String JEXL_STATS_OPTION = "jexlStatsQuery";
     public static final String PREFILTER_WHITELIST = "prefilter";
+    public static final String COMPILED_PREDICATE_OPTION = "compiledPredicate";
     
     private static final JexlEngine jexlEngine = new JexlEngine();
     
@@ -53,12 +58,24 @@ public class EdgeFilterIterator extends Filter {
     
     private HashMultimap<String,String> preFilterValues;
     
+    // the compiled form of the queries, and the whitelist as bytes indexed by key component, if the query could be compiled
+    private EdgeKeyPredicate predicate = null;
+    private EdgeKeyPredicate statsPredicate = null;
+    private byte[][][] preFilterBytes = null;
+    private EdgeKeyComponents parsedKey = null;
+    
     @Override
     public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
         EdgeFilterIterator result = (EdgeFilterIterator) super.deepCopy(env);
         result.protobuffFormat = this.protobuffFormat;
         result.expression = this.expression;
         result.preFilterValues = this.preFilterValues;
+        result.predicate = this.predicate;
+        result.statsPredicate = this.statsPredicate;
+        result.preFilterBytes = this.preFilterBytes;
+        if (this.parsedKey != null) {
+            result.parsedKey = new EdgeKeyComponents();
+        }
         
         return result;
     }
@@ -82,6 +99,9 @@ public class EdgeFilterIterator extends Filter {
         
         io.addNamedOption(PREFILTER_WHITELIST, "Serialized Hashmultimap of fieldname:fieldvalue for prefiltering.");
         io.setDescription("Used to filter keys prior to building a jexl context.");
+        
+        io.addNamedOption(COMPILED_PREDICATE_OPTION, "Compile the query to evaluate it against the key bytes when possible? Defaults to true.");
+        io.setDescription("Evaluates common edge query shapes without JEXL.");
         return io;
     }
     
@@ -182,6 +202,70 @@ public class EdgeFilterIterator extends Filter {
                 log.error("Class not found for whitelies value.");
             }
         }
+        
+        String compile = options.get(COMPILED_PREDICATE_OPTION);
+        if (protobuffFormat && (null == compile || Boolean.parseBoolean(compile))) {
+            predicate = EdgeKeyPredicate.compile(caseFixQuery);
+            if (predicate != null) {
+                if (statsExpression != null) {
+                    statsPredicate = EdgeKeyPredicate.compile(jexlStats.toLowerCase());
+                }
+                preFilterBytes = compilePrefilter(preFilterValues);
+                parsedKey = new EdgeKeyComponents();
+            }
+        }
+    }
+    
+    /**
+     * Convert the whitelist into bytes to compare against the key components
+     * 
+     * @param preFilterValues
+     * @return the whitelisted values of each key component, or null for a component which is not filtered
+     */
+    private static byte[][][] compilePrefilter(HashMultimap<String,String> preFilterValues) {
+        if (preFilterValues == null) {
+            return null;
+        }
+        byte[][][] values = new byte[EdgeKeyComponents.NUM_COMPONENTS][][];
+        for (int component = 0; component < EdgeKeyComponents.NUM_COMPONENTS; component++) {
+            String fieldName = Fields.getInstance().getFieldName(EdgeKeyComponents.FIELD_KEYS[component]);
+            Set<String> fieldValues = preFilterValues.get(fieldName);
+            if (fieldValues != null && !fieldValues.isEmpty()) {
+                values[component] = new byte[fieldValues.size()][];
+                int i = 0;
+                for (String fieldValue : fieldValues) {
+                    values[component][i++] = fieldValue.getBytes(StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * The prefilter against the components of a key parsed without allocation
+     * 
+     * @param key
+     * @return false if the key can be ignored
+     */
+    private boolean prefilter(EdgeKeyComponents key) {
+        if (preFilterBytes != null) {
+            for (int component = 0; component < EdgeKeyComponents.NUM_COMPONENTS; component++) {
+                if (preFilterBytes[component] == null || !key.has(component)) {
+                    continue;
+                }
+                boolean found = false;
+                for (byte[] value : preFilterBytes[component]) {
+                    if (key.equalsExactly(component, value)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
     
     /**
@@ -240,6 +324,22 @@ public class EdgeFilterIterator extends Filter {
      */
     @Override
     public boolean accept(Key k, Value V) {
+        if (parsedKey != null && parsedKey.parse(k)) {
+            if (!prefilter(parsedKey)) {
+                return false;
+            } else if (parsedKey.isStats()) {
+                if (!includeStatsEdges) {
+                    return false;
+                } else if (statsExpression == null) {
+                    return true;
+                } else if (statsPredicate != null && statsPredicate.canEvaluate(parsedKey)) {
+                    return statsPredicate.evaluate(parsedKey);
+                }
+            } else if (predicate.canEvaluate(parsedKey)) {
+                return predicate.evaluate(parsedKey);
+            }
+        }
+        
         boolean value = false;
         
         Map<FieldKey,String> keyComponents = EdgeKeyUtil.dissasembleKey(k, protobuffFormat);
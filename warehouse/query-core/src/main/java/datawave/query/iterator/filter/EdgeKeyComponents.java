@@ -0,0 +1,297 @@
+package datawave.query.iterator.filter;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import datawave.edge.model.EdgeModelAware.Fields.FieldKey;
+import datawave.edge.util.EdgeKeyUtil;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.hadoop.io.Text;
+
+/**
+ * The components of a protocol buffer formatted edge key, found as byte ranges within the row, column family and column qualifier of the key. This is the
+ * allocation free counterpart of {@link EdgeKeyUtil#dissasembleKey(Key, boolean)}, and splits the key exactly as it does. An instance is reused for every key
+ * seen by an iterator, and so must not be shared between iterators.
+ */
+public class EdgeKeyComponents {
+    
+    public static final int SOURCE = 0;
+    public static final int SINK = 1;
+    public static final int TYPE = 2;
+    public static final int RELATIONSHIP = 3;
+    public static final int ATTRIBUTE1 = 4;
+    public static final int ATTRIBUTE2 = 5;
+    public static final int ATTRIBUTE3 = 6;
+    public static final int DATE = 7;
+    public static final int STATS_EDGE = 8;
+    
+    public static final int NUM_COMPONENTS = 9;
+    
+    // the field key of each component
+    static final FieldKey[] FIELD_KEYS = {FieldKey.EDGE_SOURCE, FieldKey.EDGE_SINK, FieldKey.EDGE_TYPE, FieldKey.EDGE_RELATIONSHIP, FieldKey.EDGE_ATTRIBUTE1,
+            FieldKey.EDGE_ATTRIBUTE2, FieldKey.EDGE_ATTRIBUTE3, FieldKey.DATE, FieldKey.STATS_EDGE};
+    
+    private static final byte[] STATS_PREFIX = {'S', 'T', 'A', 'T', 'S'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte NULL_BYTE = 0;
+    private static final byte SEPARATOR = '/';
+    private static final byte ESCAPE = '\\';
+    // the most column family or qualifier parts any component is taken from
+    private static final int MAX_PARTS = 4;
+    
+    private final Text row = new Text();
+    private final Text colFam = new Text();
+    private final Text colQual = new Text();
+    
+    private final byte[][] bytes = new byte[NUM_COMPONENTS][];
+    private final int[] starts = new int[NUM_COMPONENTS];
+    private final int[] lengths = new int[NUM_COMPONENTS];
+    private boolean stats;
+    
+    private final int[] partStarts = new int[MAX_PARTS];
+    private final int[] partEnds = new int[MAX_PARTS];
+    
+    private final LowerCaseSequence[] lowerCase = new LowerCaseSequence[NUM_COMPONENTS];
+    private Matcher[] matchers = new Matcher[0];
+    
+    /**
+     * Find the components of a key.
+     * 
+     * @param key
+     *            a protocol buffer formatted edge key
+     * @return false if the key cannot be split without allocation, in which case {@link EdgeKeyUtil#dissasembleKey(Key, boolean)} must be used
+     */
+    public boolean parse(Key key) {
+        for (int i = 0; i < NUM_COMPONENTS; i++) {
+            bytes[i] = null;
+        }
+        
+        // the row is split on null bytes, ignoring empty parts, and the source and sink are only found if there are one or two parts
+        key.getRow(row);
+        byte[] rowBytes = row.getBytes();
+        int rowLength = row.getLength();
+        int parts = 0;
+        int start = 0;
+        for (int i = 0; i <= rowLength; i++) {
+            if (i == rowLength || rowBytes[i] == NULL_BYTE) {
+                if (i > start) {
+                    if (parts < 2) {
+                        partStarts[parts] = start;
+                        partEnds[parts] = i;
+                    }
+                    parts++;
+                }
+                start = i + 1;
+            }
+        }
+        if (parts == 1 || parts == 2) {
+            for (int i = 0; i < parts; i++) {
+                // the source and sink are unescaped, which would need a copy
+                for (int j = partStarts[i]; j < partEnds[i]; j++) {
+                    if (rowBytes[j] == ESCAPE) {
+                        return false;
+                    }
+                }
+                set(i == 0 ? SOURCE : SINK, rowBytes, partStarts[i], partEnds[i]);
+            }
+        }
+        
+        key.getColumnFamily(colFam);
+        key.getColumnQualifier(colQual);
+        stats = startsWith(colFam, STATS_PREFIX);
+        
+        int offset;
+        if (stats) {
+            set(STATS_EDGE, TRUE, 0, TRUE.length);
+            offset = 2;
+        } else {
+            offset = 0;
+        }
+        parts = split(colFam, offset + 2);
+        if (parts >= offset + 2) {
+            set(TYPE, colFam.getBytes(), partStarts[offset], partEnds[offset]);
+            set(RELATIONSHIP, colFam.getBytes(), partStarts[offset + 1], partEnds[offset + 1]);
+        }
+        
+        parts = split(colQual, MAX_PARTS);
+        for (int i = 0; i < Math.min(parts, MAX_PARTS); i++) {
+            set(i == 0 ? DATE : ATTRIBUTE1 + i - 1, colQual.getBytes(), partStarts[i], partEnds[i]);
+        }
+        return true;
+    }
+    
+    private void set(int component, byte[] source, int start, int end) {
+        bytes[component] = source;
+        starts[component] = start;
+        lengths[component] = end - start;
+    }
+    
+    private static boolean startsWith(Text text, byte[] prefix) {
+        if (text.getLength() < prefix.length) {
+            return false;
+        }
+        byte[] textBytes = text.getBytes();
+        for (int i = 0; i < prefix.length; i++) {
+            if (textBytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Split text on '/' as {@link String#split(String)} would, recording the first parts.
+     * 
+     * @return the number of parts String.split would have returned
+     */
+    private int split(Text text, int maxParts) {
+        byte[] textBytes = text.getBytes();
+        int length = text.getLength();
+        int parts = 0;
+        // the number of parts up to and including the last non empty part, as String.split drops trailing empty parts
+        int nonEmptyParts = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || textBytes[i] == SEPARATOR) {
+                if (parts < maxParts) {
+                    partStarts[parts] = start;
+                    partEnds[parts] = i;
+                }
+                parts++;
+                if (i > start) {
+                    nonEmptyParts = parts;
+                }
+                start = i + 1;
+            }
+        }
+        // with no separator the whole text is returned, even if it is empty
+        return parts == 1 ? 1 : nonEmptyParts;
+    }
+    
+    public boolean isStats() {
+        return stats;
+    }
+    
+    public boolean has(int component) {
+        return bytes[component] != null;
+    }
+    
+    /**
+     * @return true if the component is missing or entirely ascii, so that it may be lower cased a byte at a time
+     */
+    public boolean isAscii(int component) {
+        byte[] b = bytes[component];
+        if (b != null) {
+            for (int i = starts[component], end = starts[component] + lengths[component]; i < end; i++) {
+                if (b[i] < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Compare the component exactly against the bytes of a value.
+     */
+    public boolean equalsExactly(int component, byte[] value) {
+        if (lengths[component] != value.length) {
+            return false;
+        }
+        byte[] b = bytes[component];
+        int start = starts[component];
+        for (int i = 0; i < value.length; i++) {
+            if (b[start + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Compare the lower cased ascii component against the bytes of a lower case value, as {@link org.apache.hadoop.io.WritableComparator#compareBytes} would.
+     */
+    public int compareLowerCase(int component, byte[] value) {
+        byte[] b = bytes[component];
+        int start = starts[component];
+        int length = lengths[component];
+        for (int i = 0; i < length && i < value.length; i++) {
+            int diff = toLowerCase(b[start + i]) - (value[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - value.length;
+    }
+    
+    /**
+     * @return the component lower cased, as a view over the bytes of the key which is only valid until the next key is parsed
+     */
+    public CharSequence toLowerCase(int component) {
+        if (lowerCase[component] == null) {
+            lowerCase[component] = new LowerCaseSequence();
+        }
+        lowerCase[component].set(bytes[component], starts[component], lengths[component]);
+        return lowerCase[component];
+    }
+    
+    /**
+     * @return a matcher for the pattern which is reused for every key
+     */
+    public Matcher matcher(int id, Pattern pattern) {
+        if (id >= matchers.length) {
+            Matcher[] grown = new Matcher[id + 1];
+            System.arraycopy(matchers, 0, grown, 0, matchers.length);
+            matchers = grown;
+        }
+        if (matchers[id] == null) {
+            matchers[id] = pattern.matcher("");
+        }
+        return matchers[id];
+    }
+    
+    private static int toLowerCase(byte b) {
+        return (b >= 'A' && b <= 'Z') ? b + ('a' - 'A') : b & 0xff;
+    }
+    
+    // lower cases ascii bytes as they are read
+    private static class LowerCaseSequence implements CharSequence {
+        private byte[] bytes;
+        private int start;
+        private int length;
+        
+        void set(byte[] bytes, int start, int length) {
+            this.bytes = bytes;
+            this.start = start;
+            this.length = length;
+        }
+        
+        @Override
+        public int length() {
+            return length;
+        }
+        
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            }
+            return (char) toLowerCase(bytes[start + index]);
+        }
+        
+        @Override
+        public CharSequence subSequence(int begin, int end) {
+            return toString().substring(begin, end);
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                builder.append(charAt(i));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package datawave.query.iterator.filter;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import datawave.edge.model.EdgeModelAware;
+import datawave.query.jexl.JexlASTHelper;
+
+import org.apache.commons.jexl2.parser.ASTAndNode;
+import org.apache.commons.jexl2.parser.ASTEQNode;
+import org.apache.commons.jexl2.parser.ASTERNode;
+import org.apache.commons.jexl2.parser.ASTIdentifier;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ASTNENode;
+import org.apache.commons.jexl2.parser.ASTNRNode;
+import org.apache.commons.jexl2.parser.ASTNotNode;
+import org.apache.commons.jexl2.parser.ASTOrNode;
+import org.apache.commons.jexl2.parser.ASTStringLiteral;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.commons.jexl2.parser.Parser;
+import org.apache.commons.jexl2.parser.TokenMgrError;
+import org.apache.log4j.Logger;
+
+/**
+ * An edge filter query compiled into a tree which is evaluated directly against the {@link EdgeKeyComponents} of a key, in place of building a JEXL context
+ * of lower cased strings for every key.
+ * 
+ * Only the common edge query shapes are compiled: equality, inequality, regex and negated regex terms comparing an edge field against a string literal,
+ * combined with and, or and not. Equality terms or'ed together on the same field are evaluated as a single IN list. Values are compared case-insensitively
+ * against the lower cased query, as the JEXL evaluation does.
+ */
+public class EdgeKeyPredicate {
+    private static final Logger log = Logger.getLogger(EdgeKeyPredicate.class);
+    
+    // the lower cased JEXL context variable of each component, as set by the EdgeFilterIterator
+    private static final Map<String,Integer> COMPONENTS = new HashMap<>();
+    static {
+        COMPONENTS.put(EdgeModelAware.EDGE_SOURCE.toLowerCase(), EdgeKeyComponents.SOURCE);
+        COMPONENTS.put(EdgeModelAware.EDGE_SINK.toLowerCase(), EdgeKeyComponents.SINK);
+        COMPONENTS.put(EdgeModelAware.EDGE_TYPE.toLowerCase(), EdgeKeyComponents.TYPE);
+        COMPONENTS.put(EdgeModelAware.EDGE_RELATIONSHIP.toLowerCase(), EdgeKeyComponents.RELATIONSHIP);
+        COMPONENTS.put(EdgeModelAware.EDGE_ATTRIBUTE1.toLowerCase(), EdgeKeyComponents.ATTRIBUTE1);
+        COMPONENTS.put(EdgeModelAware.EDGE_ATTRIBUTE2.toLowerCase(), EdgeKeyComponents.ATTRIBUTE2);
+        COMPONENTS.put(EdgeModelAware.EDGE_ATTRIBUTE3.toLowerCase(), EdgeKeyComponents.ATTRIBUTE3);
+        COMPONENTS.put(EdgeModelAware.DATE.toLowerCase(), EdgeKeyComponents.DATE);
+    }
+    
+    private final Node root;
+    // the components read by the tree
+    private final int[] components;
+    
+    private EdgeKeyPredicate(Node root, BitSet components) {
+        this.root = root;
+        this.components = components.stream().toArray();
+    }
+    
+    /**
+     * Compile a lower cased edge filter query.
+     * 
+     * @param query
+     *            the query as it would be given to the JEXL engine
+     * @return the compiled query, or null if the query is not one of the shapes which can be compiled
+     */
+    public static EdgeKeyPredicate compile(String query) {
+        ASTJexlScript script;
+        try {
+            script = new Parser(new StringReader(";")).parse(new StringReader(query), null);
+        } catch (TokenMgrError | Exception e) {
+            log.debug("Could not parse edge filter query " + query + ", it will not be compiled", e);
+            return null;
+        }
+        if (script.jjtGetNumChildren() != 1) {
+            return null;
+        }
+        Compiler compiler = new Compiler();
+        Node root = compiler.compile(script.jjtGetChild(0));
+        if (root == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Edge filter query " + query + " can not be compiled, it will be evaluated by JEXL");
+            }
+            return null;
+        }
+        return new EdgeKeyPredicate(root, compiler.components);
+    }
+    
+    /**
+     * @return false if a component read by the predicate can not be lower cased a byte at a time, in which case the key must be evaluated by JEXL
+     */
+    public boolean canEvaluate(EdgeKeyComponents key) {
+        for (int component : components) {
+            if (!key.isAscii(component)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public boolean evaluate(EdgeKeyComponents key) {
+        return root.evaluate(key);
+    }
+    
+    private static class Compiler {
+        private final BitSet components = new BitSet();
+        private int regexes = 0;
+        
+        Node compile(JexlNode node) {
+            node = JexlASTHelper.dereference(node);
+            if (node instanceof ASTAndNode || node instanceof ASTOrNode) {
+                boolean and = node instanceof ASTAndNode;
+                List<JexlNode> terms = new ArrayList<>();
+                flatten(node, node.getClass(), terms);
+                List<Node> children = new ArrayList<>();
+                // equality terms or'ed together on the same field become a single IN list
+                Map<Integer,List<byte[]>> inLists = new LinkedHashMap<>();
+                for (JexlNode term : terms) {
+                    term = JexlASTHelper.dereference(term);
+                    if (!and && term instanceof ASTEQNode) {
+                        Term eq = getTerm(term, true);
+                        if (eq == null) {
+                            return null;
+                        }
+                        inLists.computeIfAbsent(eq.component, c -> new ArrayList<>()).add(eq.value);
+                        continue;
+                    }
+                    Node child = compile(term);
+                    if (child == null) {
+                        return null;
+                    }
+                    children.add(child);
+                }
+                for (Map.Entry<Integer,List<byte[]>> inList : inLists.entrySet()) {
+                    if (inList.getValue().size() == 1) {
+                        children.add(new EqualsNode(inList.getKey(), inList.getValue().get(0)));
+                    } else {
+                        children.add(new InNode(inList.getKey(), inList.getValue()));
+                    }
+                }
+                Node[] array = children.toArray(new Node[children.size()]);
+                return and ? new AndNode(array) : new OrNode(array);
+            } else if (node instanceof ASTNotNode) {
+                Node child = compile(node.jjtGetChild(0));
+                return child == null ? null : new NotNode(child);
+            } else if (node instanceof ASTEQNode || node instanceof ASTNENode) {
+                Term term = getTerm(node, true);
+                if (term == null) {
+                    return null;
+                }
+                Node equals = new EqualsNode(term.component, term.value);
+                return node instanceof ASTEQNode ? equals : new NotNode(equals);
+            } else if (node instanceof ASTERNode || node instanceof ASTNRNode) {
+                Term term = getTerm(node, false);
+                if (term == null) {
+                    return null;
+                }
+                Pattern pattern;
+                try {
+                    pattern = Pattern.compile(term.literal);
+                } catch (PatternSyntaxException e) {
+                    return null;
+                }
+                Node matches = new RegexNode(term.component, pattern, regexes++);
+                return node instanceof ASTERNode ? matches : new NotNode(matches);
+            }
+            return null;
+        }
+        
+        private void flatten(JexlNode node, Class<?> type, List<JexlNode> terms) {
+            for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                JexlNode child = JexlASTHelper.dereference(node.jjtGetChild(i));
+                if (child.getClass() == type) {
+                    flatten(child, type, terms);
+                } else {
+                    terms.add(child);
+                }
+            }
+        }
+        
+        // an edge field compared against a string literal, in either order if the comparison is symmetric
+        private Term getTerm(JexlNode node, boolean symmetric) {
+            if (node.jjtGetNumChildren() != 2) {
+                return null;
+            }
+            JexlNode left = JexlASTHelper.dereference(node.jjtGetChild(0));
+            JexlNode right = JexlASTHelper.dereference(node.jjtGetChild(1));
+            if (symmetric && left instanceof ASTStringLiteral && right instanceof ASTIdentifier) {
+                JexlNode swap = left;
+                left = right;
+                right = swap;
+            }
+            if (!(left instanceof ASTIdentifier) || !(right instanceof ASTStringLiteral)) {
+                return null;
+            }
+            Integer component = COMPONENTS.get(left.image);
+            if (component == null) {
+                return null;
+            }
+            components.set(component);
+            return new Term(component, ((ASTStringLiteral) right).getLiteral());
+        }
+    }
+    
+    private static class Term {
+        final int component;
+        final String literal;
+        final byte[] value;
+        
+        Term(int component, String literal) {
+            this.component = component;
+            this.literal = literal;
+            this.value = literal.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+    
+    private abstract static class Node {
+        abstract boolean evaluate(EdgeKeyComponents key);
+    }
+    
+    private static class AndNode extends Node {
+        private final Node[] children;
+        
+        AndNode(Node[] children) {
+            this.children = children;
+        }
+        
+        @Override
+        boolean evaluate(EdgeKeyComponents key) {
+            for (Node child : children) {
+                if (!child.evaluate(key)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    private static class OrNode extends Node {
+        private final Node[] children;
+        
+        OrNode(Node[] children) {
+            this.children = children;
+        }
+        
+        @Override
+        boolean evaluate(EdgeKeyComponents key) {
+            for (Node child : children) {
+                if (child.evaluate(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private static class NotNode extends Node {
+        private final Node child;
+        
+        NotNode(Node child) {
+            this.child = child;
+        }
+        
+        @Override
+        boolean evaluate(EdgeKeyComponents key) {
+            return !child.evaluate(key);
+        }
+    }
+    
+    // a missing component is null in the JEXL context, which is not equal to any literal
+    private static class EqualsNode extends Node {
+        private final int component;
+        private final byte[] value;
+        
+        EqualsNode(int component, byte[] value) {
+            this.component = component;
+            this.value = value;
+        }
+        
+        @Override
+        boolean evaluate(EdgeKeyComponents key) {
+            return key.has(component) && key.compareLowerCase(component, value) == 0;
+        }
+    }
+    
+    private static class InNode extends Node {
+        private final int component;
+        // sorted as unsigned bytes for a binary search
+        private final byte[][] values;
+        
+        InNode(int component, List<byte[]> values) {
+            this.component = component;
+            this.values = values.toArray(new byte[values.size()][]);
+            Arrays.sort(this.values, InNode::compare);
+        }
+        
+        private static int compare(byte[] a, byte[] b) {
+            for (int i = 0; i < a.length && i < b.length; i++) {
+                int diff = (a[i] & 0xff) - (b[i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return a.length - b.length;
+        }
+        
+        @Override
+        boolean evaluate(EdgeKeyComponents key) {
+            if (!key.has(component)) {
+                return false;
+            }
+            int low = 0;
+            int high = values.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = key.compareLowerCase(component, values[mid]);
+                if (cmp > 0) {
+                    low = mid + 1;
+                } else if (cmp < 0) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    // a missing component is null in the JEXL context, which does not match any regex
+    private static class RegexNode extends Node {
+        private final int component;
+        private final Pattern pattern;
+        private final int id;
+        
+        RegexNode(int component, Pattern pattern, int id) {
+            this.component = component;
+            this.pattern = pattern;
+            this.id = id;
+        }
+        
+        @Override
+        boolean evaluate(EdgeKeyComponents key) {
+            return key.has(component) && key.matcher(id, pattern).reset(key.toLowerCase(component)).matches();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package datawave.query.iterator.pipeline;
+
+import java.util.function.DoubleSupplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Decides how many evaluation pipelines a {@link PipelineIterator} keeps in flight, between a minimum and a maximum. The target follows two observations:
+ * <ul>
+ * <li>the ratio of the average time to evaluate a document to the average time to get the next document from the source, which is roughly the number of
+ * pipelines needed for evaluation to keep up with the source</li>
+ * <li>the backlog of the shared evaluation pool as queued tasks per thread. The target is halved while the pool is saturated, and only grows while nothing is
+ * waiting for a thread.</li>
+ * </ul>
+ * Cheap evaluations therefore settle near the minimum instead of flooding the pool, while expensive ones (e.g. content functions) ramp up to the maximum when
+ * there are threads to spare. This is not thread safe, it is driven by the thread iterating over the pipelines.
+ */
+public class AdaptivePipelineSizer {
+    
+    private static final Logger log = Logger.getLogger(AdaptivePipelineSizer.class);
+    
+    // the weight given to each new sample in the moving averages
+    private static final double SMOOTHING = 0.2;
+    
+    // the number of evaluations recorded between adjustments of the target
+    static final int ADJUST_INTERVAL = 8;
+    
+    private final int minPipelines;
+    private final int maxPipelines;
+    private final DoubleSupplier poolBacklog;
+    
+    private double averageEvaluationNanos = Double.NaN;
+    private double averageSourceNanos = Double.NaN;
+    private long evaluations = 0;
+    private int target;
+    
+    /**
+     * @param minPipelines
+     *            the minimum number of pipelines, also the starting target
+     * @param maxPipelines
+     *            the maximum number of pipelines
+     * @param poolBacklog
+     *            supplies the number of tasks waiting for a thread in the evaluation pool, per thread
+     */
+    public AdaptivePipelineSizer(int minPipelines, int maxPipelines, DoubleSupplier poolBacklog) {
+        if (maxPipelines < 1) {
+            throw new IllegalArgumentException("maxPipelines must be at least 1: " + maxPipelines);
+        }
+        this.maxPipelines = maxPipelines;
+        this.minPipelines = Math.max(1, Math.min(minPipelines, maxPipelines));
+        this.poolBacklog = poolBacklog;
+        this.target = this.minPipelines;
+    }
+    
+    /**
+     * Record the time taken to get the next document from the source
+     * 
+     * @param nanos
+     *            the elapsed time in nanoseconds
+     */
+    public void recordSource(long nanos) {
+        averageSourceNanos = average(averageSourceNanos, nanos);
+    }
+    
+    /**
+     * Record the time taken to evaluate a document, periodically adjusting the target
+     * 
+     * @param nanos
+     *            the elapsed time in nanoseconds
+     */
+    public void recordEvaluation(long nanos) {
+        averageEvaluationNanos = average(averageEvaluationNanos, nanos);
+        if (++evaluations % ADJUST_INTERVAL == 0) {
+            adjust();
+        }
+    }
+    
+    /**
+     * @return the number of pipelines that should currently be in flight
+     */
+    public int getTarget() {
+        return target;
+    }
+    
+    void adjust() {
+        int desired = getDesired();
+        double backlog = poolBacklog.getAsDouble();
+        
+        int next = target;
+        if (backlog >= 1.0) {
+            // every thread has at least one task waiting behind it, back off
+            next = Math.min(desired, target / 2);
+        } else if (desired < target) {
+            next = desired;
+        } else if (desired > target && backlog <= 0.0) {
+            // nothing is waiting for a thread, so there is room to grow
+            next = Math.min(desired, target * 2);
+        }
+        next = Math.max(minPipelines, Math.min(maxPipelines, next));
+        
+        if (next != target && log.isDebugEnabled()) {
+            log.debug("Changing the evaluation pipelines from " + target + " to " + next + " (evaluation " + (long) averageEvaluationNanos + "ns, source "
+                            + (long) averageSourceNanos + "ns, pool backlog " + backlog + ')');
+        }
+        target = next;
+    }
+    
+    // the number of pipelines for evaluation to keep up with the source, one more covers the document being fetched
+    private int getDesired() {
+        if (Double.isNaN(averageEvaluationNanos) || Double.isNaN(averageSourceNanos)) {
+            return target;
+        }
+        double ratio = averageEvaluationNanos / Math.max(averageSourceNanos, 1.0);
+        return (int) Math.ceil(Math.min(ratio, maxPipelines)) + 1;
+    }
+    
+    private static double average(double average, long sample) {
+        return (Double.isNaN(average) ? sample : average + SMOOTHING * (sample - average));
+    }
+}
@@ -29,6 +29,8 @@ public class Pipeline implements Runnable {
     private Entry<Key,Document> result = null;
     // the pipeline
     private Iterator<Entry<Key,Document>> iterator = null;
+    // the time taken by the last run
+    private long evaluationNanos = 0;
     
     private QuerySpanCollector querySpanCollector = null;
     
@@ -62,13 +64,19 @@ public class Pipeline implements Runnable {
         return result;
     }
     
+    public long getEvaluationNanos() {
+        return evaluationNanos;
+    }
+    
     @Override
     public void run() {
+        long start = System.nanoTime();
         if (iterator.hasNext()) {
             result = iterator.next();
         } else {
             result = null;
         }
+        evaluationNanos = System.nanoTime() - start;
         
         if (log.isTraceEnabled()) {
             log.trace("next() returned " + result);
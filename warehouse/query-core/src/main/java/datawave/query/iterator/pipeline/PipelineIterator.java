@@ -30,7 +30,8 @@ import java.util.concurrent.TimeoutException;
 
 /**
  * This is the iterator that handles the evaluation pipelines. Essentially it will queue up N evaluations. On each hasNext and next call, it will pull the
- * results ready from the top and cache the non-null results in a results queue.
+ * results ready from the top and cache the non-null results in a results queue. With an {@link AdaptivePipelineSizer} N varies between a minimum and the
+ * maximum number of pipelines.
  */
 public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     
@@ -47,8 +48,12 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     protected final QuerySpan querySpan;
     protected boolean collectTimingDetails = false;
     protected IteratorEnvironment env;
+    // the query id, used to schedule evaluations fairly with those of other queries
+    protected final String queryId;
     protected Collection<ByteSequence> columnFamilies;
     protected boolean inclusive;
+    // when set, decides how many of the pipelines are kept in flight
+    protected AdaptivePipelineSizer sizer = null;
     
     public PipelineIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, QuerySpanCollector querySpanCollector, QuerySpan querySpan,
                     QueryIterator sourceIterator, SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env,
@@ -61,6 +66,7 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
         this.querySpanCollector = querySpanCollector;
         this.querySpan = querySpan;
         this.env = env;
+        this.queryId = (sourceIterator == null ? null : sourceIterator.getQueryId());
         this.yield = yieldCallback;
         this.yieldThresholdMs = yieldThresholdMs;
         this.columnFamilies = columnFamilies;
@@ -71,6 +77,16 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
         this.collectTimingDetails = collectTimingDetails;
     }
     
+    /**
+     * Adapt the number of evaluations in flight to the observed evaluation cost and pool load instead of always running the maximum
+     * 
+     * @param sizer
+     *            the sizer, null to always run the maximum number of pipelines
+     */
+    public void setPipelineSizer(AdaptivePipelineSizer sizer) {
+        this.sizer = sizer;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -254,6 +270,10 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             // pull the result
             result = nextFuture.second().getResult();
             
+            if (sizer != null) {
+                sizer.recordEvaluation(nextFuture.second().getEvaluationNanos());
+            }
+            
             if (log.isTraceEnabled()) {
                 Key docKey = nextFuture.second().getSource().getKey();
                 log.trace("Polling for result from " + docKey + " was " + (result == null ? "empty" : "successful"));
@@ -271,15 +291,8 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             pipelines.checkIn(nextFuture.second());
         }
         
-        // start a new evaluation if we can
-        if (docSource.hasNext()) {
-            Key keySource = docSource.next();
-            NestedQuery<Key> nestedQuery = null;
-            if (docSource instanceof NestedQueryIterator) {
-                nestedQuery = ((NestedQueryIterator) this.docSource).getNestedQuery();
-            }
-            
-            evaluate(keySource, docSource.document(), nestedQuery, columnFamilies, inclusive);
+        // start new evaluations if we can, up to the number of pipelines we want in flight
+        while (evaluationQueue.size() < getTargetPipelines() && startNextEvaluation()) {
             if (collectTimingDetails) {
                 querySpanCollector.addQuerySpan(querySpan);
             }
@@ -306,28 +319,48 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     }
     
     public void startPipeline() {
-        // start up to maxPipeline pipelines
-        int maxPipelines = pipelines.maxPipelines;
-        boolean isNested = false;
-        NestedQuery<Key> nestedQuery = null;
-        if (docSource instanceof NestedQueryIterator) {
+        if (docSource instanceof NestedQueryIterator && log.isTraceEnabled()) {
+            log.trace("we're in a nested query");
+        }
+        
+        // start up to the target number of pipelines, maxPipelines unless sized adaptively
+        int targetPipelines = getTargetPipelines();
+        for (int i = 0; i < targetPipelines && startNextEvaluation(); i++) {
             if (log.isTraceEnabled()) {
-                log.trace("we're in a nested query");
+                log.trace("started pipeline " + i);
             }
-            isNested = true;
-            
+        }
+    }
+    
+    private int getTargetPipelines() {
+        return (sizer == null ? pipelines.maxPipelines : sizer.getTarget());
+    }
+    
+    /**
+     * Get the next document from the source and start evaluating it
+     * 
+     * @return false if the source is exhausted
+     */
+    private boolean startNextEvaluation() {
+        long start = System.nanoTime();
+        if (!docSource.hasNext()) {
+            return false;
+        }
+        Key keySource = docSource.next();
+        if (sizer != null) {
+            sizer.recordSource(System.nanoTime() - start);
         }
         
-        for (int i = 0; i < maxPipelines && this.docSource.hasNext(); i++) {
-            Key keySource = this.docSource.next();
-            if (isNested) {
-                nestedQuery = ((NestedQueryIterator) this.docSource).getNestedQuery();
-            }
+        NestedQuery<Key> nestedQuery = null;
+        if (docSource instanceof NestedQueryIterator) {
+            nestedQuery = ((NestedQueryIterator) this.docSource).getNestedQuery();
             if (log.isTraceEnabled()) {
                 log.trace("evaluating nested " + nestedQuery);
             }
-            evaluate(keySource, this.docSource.document(), nestedQuery, columnFamilies, inclusive);
         }
+        
+        evaluate(keySource, docSource.document(), nestedQuery, columnFamilies, inclusive);
+        return true;
     }
     
     private void evaluate(Key key, Document document, NestedQuery<Key> nestedQuery, Collection<ByteSequence> columnFamilies, boolean inclusive) {
@@ -336,7 +369,7 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
         }
         Pipeline pipeline = pipelines.checkOut(key, document, nestedQuery, columnFamilies, inclusive);
         
-        evaluationQueue.add(new Tuple2<>(IteratorThreadPoolManager.executeEvaluation(pipeline, pipeline.toString(), env), pipeline));
+        evaluationQueue.add(new Tuple2<>(IteratorThreadPoolManager.executeEvaluation(pipeline, pipeline.toString(), queryId, env), pipeline));
     }
     
     /*
@@ -4,6 +4,7 @@ import com.google.common.collect.Iterators;
 import datawave.query.DocumentSerialization;
 import datawave.query.attributes.Document;
 import datawave.query.function.LogTiming;
+import datawave.query.function.serializer.CompactDocumentSerializer;
 import datawave.query.function.serializer.KryoDocumentSerializer;
 import datawave.query.function.serializer.ToStringDocumentSerializer;
 import datawave.query.function.serializer.WritableDocumentSerializer;
@@ -102,6 +103,9 @@ public class FinalDocumentTrackingIterator implements Iterator<Map.Entry<Key,Val
         } else if (returnType == DocumentSerialization.ReturnType.tostring) {
             // Just return a toString() representation of the document
             serializedDocuments = Iterators.transform(emptyDocumentIterator, new ToStringDocumentSerializer(isReducedResponse));
+        } else if (returnType == DocumentSerialization.ReturnType.compact) {
+            // Serialize the Document with an attribute type dictionary
+            serializedDocuments = Iterators.transform(emptyDocumentIterator, new CompactDocumentSerializer(isReducedResponse, isCompressResults));
         } else {
             throw new IllegalArgumentException("Unknown return type of: " + returnType);
         }
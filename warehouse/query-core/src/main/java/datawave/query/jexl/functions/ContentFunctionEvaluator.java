@@ -1,5 +1,6 @@
 package datawave.query.jexl.functions;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -13,7 +14,6 @@ import org.apache.log4j.Logger;
 
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Lists;
 
 /**
  * An abstract class to for the ordered and unordered content evaluators.
@@ -68,9 +68,23 @@ public abstract class ContentFunctionEvaluator {
      * Evaluate the function based on the list of offset lists. The lists are expected to be ordered, and there is one offset list per term.
      * 
      * @param offsets
-     * @return List of offset matching the query, often just the first match for efficiency
+     * @return true if the offsets satisfy the function
      */
-    protected abstract boolean evaluate(List<List<TermWeightPosition>> offsets);
+    protected boolean evaluate(List<List<TermWeightPosition>> offsets) {
+        List<TermPositions> positions = new ArrayList<>(offsets.size());
+        for (List<TermWeightPosition> termOffsets : offsets) {
+            positions.add(termOffsets == null ? null : TermPositions.of(termOffsets, maxScore));
+        }
+        return evaluatePositions(positions);
+    }
+    
+    /**
+     * Evaluate the function based on the positions of each term, with one {@link TermPositions} per term.
+     * 
+     * @param offsets
+     * @return true if the positions satisfy the function
+     */
+    protected abstract boolean evaluatePositions(List<TermPositions> offsets);
     
     /**
      * Validate and initialize this class. This will validate the arguments and setup other members.
@@ -155,7 +169,7 @@ public abstract class ContentFunctionEvaluator {
             
             // now for each event, lets process the terms
             for (String eventId : eventIds) {
-                ListMultimap<String,List<TermWeightPosition>> offsetsByField = LinkedListMultimap.create();
+                ListMultimap<String,TermPositions> offsetsByField = LinkedListMultimap.create();
                 for (String term : terms) {
                     TermFrequencyList tfList = termOffsetMap.get(term);
                     
@@ -163,15 +177,15 @@ public abstract class ContentFunctionEvaluator {
                     // and group the lists together
                     for (String field : tfList.fields()) {
                         TermFrequencyList.Zone zone = new TermFrequencyList.Zone(field, true, eventId);
-                        Collection<TermWeightPosition> offsets = tfList.fetchOffsets().get(zone);
+                        TermPositions offsets = tfList.getPositions(zone);
                         // if no offsets, but we are explicitly looking for this field (i.e. not unfielded), then check for a non-content expansion zone
                         if (offsets.isEmpty() && (fields != null && fields.contains(field))) {
                             zone = new TermFrequencyList.Zone(field, false, eventId);
-                            offsets = tfList.fetchOffsets().get(zone);
+                            offsets = tfList.getPositions(zone);
                         }
                         // not all field/event pairs will have offsets
-                        if (offsets != null && !offsets.isEmpty()) {
-                            offsetsByField.put(field, Lists.newArrayList(offsets));
+                        if (!offsets.isEmpty()) {
+                            offsetsByField.put(field, offsets);
                         }
                     }
                 }
@@ -187,7 +201,7 @@ public abstract class ContentFunctionEvaluator {
                     if (!fields.isEmpty() && !fields.contains(field)) {
                         continue;
                     }
-                    List<List<TermWeightPosition>> offsets = offsetsByField.get(field);
+                    List<TermPositions> offsets = offsetsByField.get(field);
                     if (offsets == null || offsets.isEmpty()) {
                         continue;
                     }
@@ -217,7 +231,7 @@ public abstract class ContentFunctionEvaluator {
                     }
                     
                     // evaluate the offsets
-                    if (evaluate(offsets)) {
+                    if (evaluatePositions(offsets)) {
                         if (log.isTraceEnabled()) {
                             log.trace(logPrefix + " satisfied the content function");
                         }
@@ -1,19 +1,16 @@
 package datawave.query.jexl.functions;
 
-import datawave.ingest.protobuf.TermWeightPosition;
 import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableSet;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * <p>
  * To support phrase() queries on all unicode terms, the terms are presented as an array of Strings and the TermWeightPosition offset lists are stored in the
- * <code>Map&lt;String, List&lt;TermFrequencyList&gt;&gt;</code>. There should be an entry in the map for each term provided in the function call
+ * <code>Map&lt;String, List&lt;TermFrequencyList&gt;&gt;</code>. There should be an entry in the map for each term provided in the function call. The offsets
+ * are evaluated as {@link TermPositions}, walking a cursor through the positions of each term.
  * </p>
  *
  * <b>Functions</b>
@@ -40,59 +37,56 @@ public class ContentOrderedEvaluator extends ContentFunctionEvaluator {
     
     private static final Logger log = Logger.getLogger(ContentOrderedEvaluator.class);
     
-    private static final int FORWARD = 1;
-    private static final int REVERSE = -1;
-    
     public ContentOrderedEvaluator(Set<String> fields, int distance, float maxScore, Map<String,TermFrequencyList> termOffsetMap, String... terms) {
         super(fields, distance, maxScore, termOffsetMap, terms);
         if (log.isTraceEnabled()) {
-            log.trace("ContentOrderedEvaluatorTreeSet constructor");
+            log.trace("ContentOrderedEvaluator constructor");
         }
     }
     
+    /**
+     * Evaluate the positions of the terms. Each term keeps a cursor into its positions, and a match is found when the positions under the cursors are each
+     * within distance of the one before.
+     */
     @Override
-    protected boolean evaluate(List<List<TermWeightPosition>> offsets) {
+    protected boolean evaluatePositions(List<TermPositions> offsets) {
         if (offsets.isEmpty() || offsets.size() < terms.length) {
             return false;
         }
         
-        List<NavigableSet<EvaluateTermPosition>> termPositions = buildTermPositions(offsets);
+        TermPositions[] termPositions = buildTermPositions(offsets);
         
-        // apply a trim
-        termPositions = trim(termPositions);
-        
-        // if a trim resulted in no more term positions we are done
+        // if any term has no positions a match is not possible
         if (termPositions == null) {
             return false;
         }
         
-        while (!isConverged(termPositions, distance)) {
+        int[] cursors = new int[termPositions.length];
+        
+        // apply a trim, if a trim resulted in no more term positions we are done
+        if (!trim(termPositions, cursors)) {
+            return false;
+        }
+        
+        int[] alternatives = new int[cursors.length];
+        while (!isConverged(termPositions, cursors)) {
             // look for alternatives that also satisfy convergence within each term before rolling forward. Move at most one term one position until there are
             // no alternatives that satisfy the distance left
-            List<NavigableSet<EvaluateTermPosition>> alternativeTermPositions = trimAlternatives(termPositions, distance);
-            boolean alternativeConverged = false;
-            while (alternativeTermPositions != null && !(alternativeConverged = isConverged(alternativeTermPositions, distance))) {
-                alternativeTermPositions = trimAlternatives(alternativeTermPositions, distance);
-            }
-            
-            // found a valid alternative
-            if (alternativeConverged) {
-                return true;
+            System.arraycopy(cursors, 0, alternatives, 0, cursors.length);
+            while (nextAlternative(termPositions, alternatives)) {
+                // found a valid alternative
+                if (isConverged(termPositions, alternatives)) {
+                    return true;
+                }
             }
             
-            // if no alternatives, move to the next first term and start again
-            termPositions.get(0).pollFirst();
-            
-            // ensure that wasn't the last one
-            if (termPositions.get(0).isEmpty()) {
+            // if no alternatives, move to the next first term and start again, ensuring that wasn't the last one
+            if (++cursors[0] == termPositions[0].size()) {
                 return false;
             }
             
-            // trim whatever is left
-            termPositions = trim(termPositions);
-            
-            // if term positions are null a trim resulted in an impossible match
-            if (termPositions == null) {
+            // trim whatever is left, if a trim resulted in an impossible match we are done
+            if (!trim(termPositions, cursors)) {
                 return false;
             }
         }
@@ -102,265 +96,123 @@ public class ContentOrderedEvaluator extends ContentFunctionEvaluator {
     }
     
     /**
-     * Convert a List of offsets into a NavigableSet of EvaluateTermPositions
+     * Drop the positions of each term that score worse than the max score
      * 
      * @param offsets
      * @return null if a phrase match is not possible, or the term positions
      */
-    private List<NavigableSet<EvaluateTermPosition>> buildTermPositions(List<List<TermWeightPosition>> offsets) {
-        // build sorted sets for each term
-        int index = 0;
-        List<NavigableSet<EvaluateTermPosition>> termPositions = new ArrayList<>(terms.length);
-        for (List<TermWeightPosition> termOffsets : offsets) {
-            termPositions.add(new TreeSet<>());
-            for (TermWeightPosition twp : termOffsets) {
-                // Skip terms greater then the max score if it score is set
-                if (twp.getScore() > maxScore) {
-                    if (log.isTraceEnabled()) {
-                        log.trace("[" + terms[index] + "] Skip score => " + twp);
-                    }
-                    continue;
+    private TermPositions[] buildTermPositions(List<TermPositions> offsets) {
+        TermPositions[] termPositions = new TermPositions[offsets.size()];
+        for (int index = 0; index < termPositions.length; index++) {
+            termPositions[index] = offsets.get(index).filter(maxScore);
+            
+            if (termPositions[index].isEmpty()) {
+                if (log.isTraceEnabled()) {
+                    log.trace("[" + terms[index] + "] has no positions within the max score " + maxScore);
                 }
-                
-                EvaluateTermPosition etp = new EvaluateTermPosition(terms[index], index, twp);
-                termPositions.get(index).add(etp);
-            }
-            
-            // if any term positions were never populated a match is not possible
-            if (termPositions.get(index).isEmpty()) {
                 return null;
             }
-            
-            // increment the index
-            index++;
         }
         
         return termPositions;
     }
     
     /**
-     * Trim impossible offsets from the arrays by removing any terms which are less than the first term walking through the term lists
+     * Trim impossible offsets by advancing the cursor of each term past any positions which are less than the position of the term before it, walking through
+     * the terms in order
      * 
-     * @param offsets
-     * @return null if a terms offsets are empty, otherwise the trimmed list
+     * @param termPositions
+     * @param cursors
+     *            the cursor of each term, advanced in place
+     * @return false if a term runs out of positions, otherwise true
      */
-    private List<NavigableSet<EvaluateTermPosition>> trim(List<NavigableSet<EvaluateTermPosition>> offsets) {
-        // sanity check
-        if (offsets == null) {
-            return null;
-        }
-        
+    private boolean trim(TermPositions[] termPositions, int[] cursors) {
         // advance each first/second pair so that second is always >= first
-        for (int i = 0; i + 1 < offsets.size(); i++) {
-            NavigableSet<EvaluateTermPosition> first = offsets.get(i);
-            NavigableSet<EvaluateTermPosition> second = offsets.get(i + 1);
+        for (int i = 0; i + 1 < termPositions.length; i++) {
+            TermPositions first = termPositions[i];
+            TermPositions second = termPositions[i + 1];
             
-            int termCompare = first.first().termWeightPosition.compareTo(second.first().termWeightPosition);
+            // gallop second forward until it is not less than first
+            int index = second.seek(cursors[i + 1], first, cursors[i]);
             
-            // advance second until less than first or while they are the same term and position
-            while (termCompare > 0 || (termCompare == 0 && first.first().isSameTerm(second.first()))) {
-                // advance second
-                second.pollFirst();
-                
-                // test for end condition
-                if (second.isEmpty()) {
-                    return null;
-                }
-                
-                // update compare
-                termCompare = first.first().termWeightPosition.compareTo(second.first().termWeightPosition);
+            // advance past the same term at the same position, positions are unique so there is at most one
+            if (index < second.size() && second.compare(index, first, cursors[i]) == 0 && terms[i].equals(terms[i + 1])) {
+                index++;
             }
+            
+            // test for end condition
+            if (index == second.size()) {
+                return false;
+            }
+            
+            cursors[i + 1] = index;
         }
         
-        return offsets;
+        return true;
     }
     
     /**
-     * Taking an existing set of offsets, look for alternatives starting with the second term that also satisfy the distance requirement. Move at most one term
-     * one position. Do not modify offsets, but return a copy
+     * Taking an existing set of cursors, look for an alternative starting with the second term that also satisfies the distance requirement. Move at most one
+     * term one position.
      * 
-     * @param offsets
-     *            original offsets
-     * @param distance
-     *            distance to accept for alternatives
-     * @return alternatives or null if no alternatives exist
+     * @param termPositions
+     * @param alternatives
+     *            the cursor of each term, advanced in place
+     * @return true if an alternative was found, false if no alternatives exist
      */
-    private List<NavigableSet<EvaluateTermPosition>> trimAlternatives(List<NavigableSet<EvaluateTermPosition>> offsets, int distance) {
-        List<NavigableSet<EvaluateTermPosition>> alternatives = new ArrayList<>(offsets.size());
-        
-        alternatives.add(offsets.get(0));
-        
-        for (int i = 1; i < offsets.size(); i++) {
-            // strip the first offset for this term and make a copy
-            NavigableSet<EvaluateTermPosition> candidateSet = offsets.get(i).tailSet(offsets.get(i).first(), false);
+    private boolean nextAlternative(TermPositions[] termPositions, int[] alternatives) {
+        for (int i = 1; i < termPositions.length; i++) {
+            int candidate = alternatives[i] + 1;
             
-            // if the candidate set has something in it, and it is within the constraints of the distance this is a valid alternative
-            if (!candidateSet.isEmpty()
-                            && (alternatives.get(i - 1).first().isWithIn(candidateSet.first(), distance) && !alternatives.get(i - 1).first()
-                                            .isSameTerm(candidateSet.first()))) {
-                alternatives.add(candidateSet);
-                
+            // if the term has another position, and it is within the constraints of the distance this is a valid alternative
+            if (candidate < termPositions[i].size() && !terms[i - 1].equals(terms[i])
+                            && isWithIn(termPositions[i - 1], alternatives[i - 1], termPositions[i], candidate)) {
                 // once there is a new alternative, leave all other terms alone to test it fully
-                for (int j = i + 1; j < offsets.size(); j++) {
-                    alternatives.add(offsets.get(j));
-                }
-                
-                // send these back for evaluation
-                return alternatives;
-            } else {
-                // nothing to change for this term, add it as-is
-                alternatives.add(offsets.get(i));
+                alternatives[i] = candidate;
+                return true;
             }
         }
         
         // no good candidate exists, there are no alternatives
-        return null;
+        return false;
     }
     
     /**
-     * Test if a set of offsets satisfy a distance requirement
-     * 
-     * @param offsets
-     * @param distance
+     * Test if the positions under a set of cursors satisfy the distance requirement
+     *
+     * @param termPositions
+     * @param cursors
      * @return true if satisfied, false otherwise
      */
-    private boolean isConverged(List<NavigableSet<EvaluateTermPosition>> offsets, int distance) {
-        if (offsets.size() == 1) {
-            return true;
-        }
-        
-        int secondIndex = 1;
-        NavigableSet<EvaluateTermPosition> first = offsets.get(0);
-        NavigableSet<EvaluateTermPosition> second = offsets.get(secondIndex);
-        
-        // test that these terms are within distance
-        while (first.first().isWithIn(second.first(), distance)) {
-            // are there more terms?
-            if (secondIndex + 1 < offsets.size()) {
-                // advance and test the next pair
-                secondIndex++;
-                first = second;
-                second = offsets.get(secondIndex);
-            } else {
-                // nope
-                return true;
+    private boolean isConverged(TermPositions[] termPositions, int[] cursors) {
+        // test that each pair of terms are within distance
+        for (int i = 0; i + 1 < termPositions.length; i++) {
+            if (!isWithIn(termPositions[i], cursors[i], termPositions[i + 1], cursors[i + 1])) {
+                return false;
             }
         }
         
-        // terms not within distance
-        return false;
+        return true;
     }
     
     /**
-     * <p>
-     * EvaluateTermPosition: Is a utility class for sorting terms and their positions
-     * </p>
-     *
-     * <ul>
-     * <li>isZeroOffset() two terms have the same offset, if it isn't allowed</li>
-     * <li>isWithIn() are two terms within a certain distance, with respect to direction</li>
-     * <li>comparable =&gt; prioritizes position, then phraseIndex, and finally alphanumeric on term</li>
-     * </ul>
+     * Is a position of the second term within distance after a position of the first term. Skip words widen a position down to its low offset, and two terms
+     * at the same offset do not match if either of them does not allow a zero offset match.
      */
-    private static class EvaluateTermPosition implements Comparable<EvaluateTermPosition> {
-        String term;
-        int phraseIndex;
-        TermWeightPosition termWeightPosition;
-        
-        public EvaluateTermPosition(String term, Integer phraseIndex, TermWeightPosition termWeightPosition) {
-            this.term = term;
-            this.phraseIndex = phraseIndex;
-            this.termWeightPosition = termWeightPosition;
-        }
-        
-        /**
-         *
-         * Conditional if to allow these positions based on offset True if zeroOffset is not allowed, and offsets are equal. False if zeroOffsets are allowed.
-         *
-         * @param o
-         *            Other position
-         * @return True if zeroOffset is not allowed, and offsets are equal
-         */
-        public boolean isZeroOffset(EvaluateTermPosition o) {
-            if ((!this.termWeightPosition.getZeroOffsetMatch()) || (!o.termWeightPosition.getZeroOffsetMatch())) {
-                
-                if (this.termWeightPosition.getOffset() == o.termWeightPosition.getOffset()) {
-                    if (log.isTraceEnabled()) {
-                        log.trace("EvaluateTermPosition.isZeroOffset: " + this.termWeightPosition.getOffset() + " == " + o.termWeightPosition.getOffset());
-                    }
-                    return true;
-                }
-            }
+    private boolean isWithIn(TermPositions first, int firstIndex, TermPositions second, int secondIndex) {
+        // Instructed to not match at the same position
+        if ((!first.getZeroOffsetMatch(firstIndex) || !second.getZeroOffsetMatch(secondIndex)) && first.getOffset(firstIndex) == second.getOffset(secondIndex)) {
             return false;
         }
         
-        public boolean isWithIn(EvaluateTermPosition o, int distance) {
-            return isWithIn(o, distance, FORWARD);
-        }
-        
-        public boolean isWithIn(EvaluateTermPosition o, int distance, int direction) {
-            
-            // Instructed to not match at the same position
-            if (isZeroOffset(o)) {
-                return false;
-            }
-            
-            int low, high = -1;
-            EvaluateTermPosition eval;
-            switch (direction) {
-                case FORWARD:
-                    low = termWeightPosition.getLowOffset();
-                    high = termWeightPosition.getOffset() + distance;
-                    eval = o;
-                    break;
-                case REVERSE:
-                    low = o.termWeightPosition.getLowOffset();
-                    high = o.termWeightPosition.getOffset() + distance;
-                    eval = this;
-                    break;
-                default:
-                    throw new IllegalArgumentException("Invalid direction option.");
-            }
-            
-            if (log.isTraceEnabled()) {
-                log.trace("EvaluateTermPosition.isWithIn: " + low + "<=" + eval.termWeightPosition.getOffset() + " && "
-                                + eval.termWeightPosition.getLowOffset() + "<=" + high);
-            }
-            
-            return (low <= eval.termWeightPosition.getOffset() && eval.termWeightPosition.getLowOffset() <= high);
-        }
-        
-        public boolean isSameTerm(EvaluateTermPosition o) {
-            // Fail on same term at same position
-            if (term.equals(o.term)) {
-                return true;
-            }
-            
-            return false;
-        }
+        int low = first.getLowOffset(firstIndex);
+        int high = first.getOffset(firstIndex) + distance;
         
-        @Override
-        public int compareTo(EvaluateTermPosition o) {
-            int result = termWeightPosition.compareTo(o.termWeightPosition);
-            if (result != 0) {
-                return result;
-            }
-            
-            // Reverse the phrase index so you hit the other phrases before hitting current phrase index
-            // This helps with end match scenarios
-            result = Integer.compare(o.phraseIndex, phraseIndex);
-            if (result != 0) {
-                return result;
-            }
-            
-            // todo: comparing the term value makes no sense given how this class is used to subset a list of ordered term positions
-            // perhaps we are never supposed to get here?
-            return term.compareTo(o.term);
+        if (log.isTraceEnabled()) {
+            log.trace("ContentOrderedEvaluator.isWithIn: " + low + "<=" + second.getOffset(secondIndex) + " && " + second.getLowOffset(secondIndex) + "<="
+                            + high);
         }
         
-        @Override
-        public String toString() {
-            return "{" + "term='" + term + '\'' + ", index=" + phraseIndex + ", position=" + termWeightPosition + '}';
-        }
+        return (low <= second.getOffset(secondIndex) && second.getLowOffset(secondIndex) <= high);
     }
 }
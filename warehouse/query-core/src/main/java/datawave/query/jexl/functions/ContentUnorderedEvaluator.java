@@ -1,14 +1,9 @@
 package datawave.query.jexl.functions;
 
-import java.util.Collection;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.PriorityQueue;
 import java.util.Set;
 
 import datawave.ingest.protobuf.TermWeightPosition;
@@ -47,6 +42,11 @@ public class ContentUnorderedEvaluator extends ContentFunctionEvaluator {
         super(fields, distance, maxScore, termOffsetMap, terms);
     }
     
+    @Override
+    public boolean evaluate(List<List<TermWeightPosition>> offsets) {
+        return super.evaluate(offsets);
+    }
+    
     /**
      * Evaluate a list of offsets in an unordered kind of way.
      * 
@@ -54,110 +54,66 @@ public class ContentUnorderedEvaluator extends ContentFunctionEvaluator {
      * @return true if we found an unordered list within the specified distance for the specified set of offsets.
      */
     @Override
-    public boolean evaluate(List<List<TermWeightPosition>> offsets) {
-        filterOffsets(offsets);
-        MultiOffsetMatcher mlIter = new MultiOffsetMatcher(distance, terms, offsets);
+    protected boolean evaluatePositions(List<TermPositions> offsets) {
+        MultiOffsetMatcher mlIter = new MultiOffsetMatcher(distance, terms, filterOffsets(offsets));
         return mlIter.findMatch();
     }
     
-    private void filterOffsets(List<List<TermWeightPosition>> offsets) {
+    private List<TermPositions> filterOffsets(List<TermPositions> offsets) {
         // if max score is maximum possible value short circuit
         if (maxScore == DEFAULT_MAX_SCORE) {
-            return;
-        }
-        
-        for (List<TermWeightPosition> offset : offsets) {
-            Iterator<TermWeightPosition> twpIter = offset.iterator();
-            while (twpIter.hasNext()) {
-                Integer score = twpIter.next().getScore();
-                if (null == score || score > maxScore) {
-                    twpIter.remove();
-                }
-            }
-        }
-    }
-    
-    private static class OffsetList implements Comparable<OffsetList> {
-        private final String term;
-        private final List<TermWeightPosition> offsets;
-        private TermWeightPosition minOffset;
-        private TermWeightPosition maxOffset = null;
-        
-        public OffsetList(String term, List<TermWeightPosition> o) {
-            this.term = term;
-            this.offsets = o;
-            
-            // as long as there is at least one term, grab the last item for a max
-            if (!o.isEmpty()) {
-                // offsets with skip words will sort based on min so for max we need to loop over all offsets
-                maxOffset = Collections.max(offsets, new TermWeightPosition.MaxOffsetComparator());
-            }
-            
-            nextOffset();
-        }
-        
-        public TermWeightPosition getMinOffset() {
-            return minOffset;
-        }
-        
-        /**
-         * 
-         * @return the highest value in this list
-         */
-        public TermWeightPosition getMaxOffset() {
-            return maxOffset;
-        }
-        
-        public Optional<TermWeightPosition> nextOffset() {
-            if (offsets.isEmpty()) {
-                return Optional.empty();
-            } else {
-                minOffset = offsets.remove(0);
-                return Optional.of(minOffset);
-            }
-        }
-        
-        @Override
-        public int compareTo(OffsetList o) {
-            return this.getMinOffset().compareTo(o.getMinOffset());
-        }
-        
-        @Override
-        public boolean equals(Object o) {
-            return minOffset == ((OffsetList) o).minOffset;
+            return offsets;
         }
         
-        @Override
-        public String toString() {
-            return term + ";" + minOffset + ":" + maxOffset;
+        List<TermPositions> filtered = new ArrayList<>(offsets.size());
+        for (TermPositions offset : offsets) {
+            filtered.add(offset == null ? null : offset.filter(maxScore));
         }
+        return filtered;
     }
     
+    /**
+     * Slides a window over the positions of the terms, in order, until the window is within the distance. Each term has a cursor into its positions, and a term
+     * that appears more than once in the function has a cursor for each appearance which all draw positions from the same list. There are only as many cursors
+     * as terms, so the lowest cursor is found by a scan rather than by a queue.
+     */
     private static class MultiOffsetMatcher {
         int distance = 0;
         
         final String[] terms;
         
-        final PriorityQueue<OffsetList> offsetQueue = new PriorityQueue<>();
-        Optional<TermWeightPosition> maxOffset = Optional.empty();
+        // parallel arrays, indexed by cursor
+        TermPositions[] positions;
+        int[] current;
+        int[] maxOffsets;
+        int[] slots;
+        
+        // the next position to draw from each distinct term's positions
+        int[] next;
+        
+        int size = 0;
+        
+        // the highest current position
+        boolean maxPresent = false;
+        int maxLowOffset;
+        int maxOffset;
         
         /**
-         * At the end of this method, terms will contain the query terms. currentOffsets will contain the minimum offset for each term and offsetLists will
-         * contain the remaining offsets for each term.
+         * At the end of this method, terms will contain the query terms, and there will be a cursor on the minimum offset for each term. The remaining offsets
+         * for each term are drawn in order as the cursors are advanced.
          * 
-         * The indexes of terms, offsetLists and currentOffsets are parallel in that the i'th item in currentOffsets corresponds to the i'th item in offsetLists
-         * and term[i].
+         * The indexes of terms and the cursors are parallel in that the i'th cursor corresponds to term[i].
          *
          * @param distance
          *            the maximum acceptable distance between terms.
          * @param terms
          *            the query terms.
          * @param termOffsets
-         *            the offsets for the specified terms, these lists will not be modified in any way.
+         *            the offsets for the specified terms, these will not be modified in any way.
          * @throws IllegalArgumentException
          *             if the number of terms does not match the number of offset lists.
          */
-        public MultiOffsetMatcher(int distance, String[] terms, Collection<List<TermWeightPosition>> termOffsets) {
+        public MultiOffsetMatcher(int distance, String[] terms, List<TermPositions> termOffsets) {
             this.distance = distance;
             this.terms = terms;
             
@@ -168,77 +124,104 @@ public class ContentUnorderedEvaluator extends ContentFunctionEvaluator {
                 throw new IllegalArgumentException("Less terms than the number of offset lists received");
             }
             
-            int termPos = 0;
+            positions = new TermPositions[terms.length];
+            current = new int[terms.length];
+            maxOffsets = new int[terms.length];
+            slots = new int[terms.length];
+            next = new int[terms.length];
             
-            // holds the (canonical) offset list for of each term
-            final Map<String,List<TermWeightPosition>> termsSeen = new HashMap<>();
+            // holds the slot of (canonical) offset list for of each term
+            final Map<String,Integer> termsSeen = new HashMap<>();
             
-            for (List<TermWeightPosition> offsetList : termOffsets) {
-                String term = terms[termPos++];
+            for (int termPos = 0; termPos < terms.length; termPos++) {
+                String term = terms[termPos];
+                TermPositions offsetList = termOffsets.get(termPos);
+                int slot = termPos;
                 
                 if (offsetList != null) {
-                    if (!termsSeen.containsKey(term)) {
-                        // new term, create a defensive copy that's safe to modify.
-                        offsetList = new LinkedList<>(offsetList);
-                        termsSeen.put(term, offsetList);
+                    Integer seen = termsSeen.get(term);
+                    if (seen == null) {
+                        termsSeen.put(term, slot);
                     } else {
-                        // already seen term, all matching terms should reference the same list.
-                        offsetList = termsSeen.get(term);
+                        // already seen term, all matching terms should draw from the same list.
+                        slot = seen;
+                        offsetList = positions[slot];
                     }
                 }
                 
-                if (offsetList == null || offsetList.isEmpty()) {
+                if (offsetList == null || next[slot] >= offsetList.size()) {
                     if (log.isTraceEnabled()) {
                         log.trace("The offset list for " + term + " is null or has no elements: " + offsetList + ". Exiting");
                     }
                     
-                    offsetQueue.clear();
+                    size = 0;
                     return;
                 }
                 
-                OffsetList entry = new OffsetList(term, offsetList);
-                if ((!maxOffset.isPresent()) || (entry.getMinOffset().compareTo(maxOffset.get()) > 0)) {
-                    maxOffset = Optional.of(entry.getMinOffset());
+                // offsets with skip words will sort based on min so for max we need to loop over all remaining offsets
+                positions[termPos] = offsetList;
+                slots[termPos] = slot;
+                maxOffsets[termPos] = offsetList.getMaxOffset(next[slot]);
+                current[termPos] = next[slot]++;
+                size++;
+                
+                updateMax(termPos);
+            }
+        }
+        
+        private void updateMax(int cursor) {
+            TermPositions offsetList = positions[cursor];
+            int index = current[cursor];
+            if (!maxPresent || offsetList.getLowOffset(index) > maxLowOffset
+                            || (offsetList.getLowOffset(index) == maxLowOffset && offsetList.getOffset(index) > maxOffset)) {
+                maxPresent = true;
+                maxLowOffset = offsetList.getLowOffset(index);
+                maxOffset = offsetList.getOffset(index);
+            }
+        }
+        
+        private int minCursor() {
+            int min = 0;
+            for (int cursor = 1; cursor < size; cursor++) {
+                if (positions[cursor].compare(current[cursor], positions[min], current[min]) < 0) {
+                    min = cursor;
                 }
-                offsetQueue.add(entry);
             }
+            return min;
         }
         
         public boolean findMatch() {
             // Quick short-circuit -- if we have fewer offsets than terms in the phrase/adjacency/within
             // we're evaluating, we know there are no results
-            if (terms.length > offsetQueue.size() || (!maxOffset.isPresent())) {
+            if (terms.length > size || !maxPresent) {
                 return false;
             }
             
             while (true) {
-                OffsetList o = offsetQueue.remove();
+                int o = minCursor();
                 
-                if (maxOffset.get().getLowOffset() - o.getMinOffset().getOffset() <= distance) {
+                if (maxLowOffset - positions[o].getOffset(current[o]) <= distance) {
                     return true;
                 }
                 
                 // if the maxOffset is more than distance from the largest value in this list, there is no way to satisfy
-                if (maxOffset.get().getLowOffset() - o.getMaxOffset().getOffset() > distance) {
+                if (maxLowOffset - maxOffsets[o] > distance) {
                     return false;
                 }
                 
-                Optional<TermWeightPosition> nextOffset = o.nextOffset();
-                if (!nextOffset.isPresent()) { // no more offsets from this list
+                int slot = slots[o];
+                if (next[slot] >= positions[o].size()) { // no more offsets from this list
                     return false;
                 }
                 
-                if (nextOffset.get().compareTo(maxOffset.get()) > 0) {
-                    maxOffset = nextOffset;
-                }
-                
-                offsetQueue.add(o);
+                current[o] = next[slot]++;
+                updateMax(o);
             }
         }
         
         @Override
         public String toString() {
-            return "MultiOffsetMatcher; dis:" + distance + " max: " + maxOffset + " queue: " + offsetQueue;
+            return "MultiOffsetMatcher; dis:" + distance + " max: " + maxLowOffset + ":" + maxOffset + " cursors: " + size;
         }
     }
 }
@@ -4,7 +4,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -97,6 +99,9 @@ public class TermFrequencyList {
     
     protected final TreeMultimap<Zone,TermWeightPosition> offsetsPerField;
     
+    // the offsets of each zone as primitive positions, built as the content functions first ask for them
+    private Map<Zone,TermPositions> positionsPerZone = null;
+    
     public TermFrequencyList(TreeMultimap<Zone,TermWeightPosition> offsetsByField) {
         checkNotNull(offsetsByField);
         
@@ -131,6 +136,9 @@ public class TermFrequencyList {
         checkNotNull(offsets);
         
         this.offsetsPerField.putAll(field, offsets);
+        if (this.positionsPerZone != null) {
+            this.positionsPerZone.remove(field);
+        }
     }
     
     public void addOffsets(Entry<Zone,Iterable<TermWeightPosition>> offsetForField) {
@@ -176,6 +184,27 @@ public class TermFrequencyList {
         return (TreeMultimap<Zone,TermWeightPosition>) Multimaps.filterKeys(this.offsetsPerField, new FieldFilterPredicate(fields));
     }
     
+    /**
+     * Return the offsets for a zone as sorted primitive positions. These are built once per zone and kept until offsets are next added to the zone through
+     * this list, so the content functions evaluated against a document share them.
+     * 
+     * @param zone
+     * @return the positions, empty if there are no offsets for the zone
+     */
+    public TermPositions getPositions(Zone zone) {
+        checkNotNull(zone);
+        
+        if (this.positionsPerZone == null) {
+            this.positionsPerZone = new HashMap<>();
+        }
+        TermPositions positions = this.positionsPerZone.get(zone);
+        if (positions == null) {
+            positions = TermPositions.of(this.offsetsPerField.get(zone));
+            this.positionsPerZone.put(zone, positions);
+        }
+        return positions;
+    }
+    
     /**
      * Let clients ask what fields we are currently tracking.
      */
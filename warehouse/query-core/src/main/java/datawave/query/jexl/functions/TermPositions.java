@@ -0,0 +1,245 @@
+package datawave.query.jexl.functions;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import datawave.ingest.protobuf.TermWeightPosition;
+
+/**
+ * The positions of a term within a single zone, held as parallel primitive arrays rather than as {@link TermWeightPosition} objects. Positions are sorted as
+ * {@link TermWeightPosition#compareTo(TermWeightPosition)} sorts them, by the low offset and then the offset, with equal positions dropped, which lets the
+ * content evaluators walk them with plain indexes and gallop over runs of positions that cannot match.
+ */
+public class TermPositions {
+    
+    public static final TermPositions EMPTY = new TermPositions(new int[0], new int[0], new int[0], new boolean[0]);
+    
+    private final int[] lowOffsets;
+    private final int[] offsets;
+    private final int[] scores;
+    private final boolean[] zeroOffsetMatches;
+    
+    private TermPositions(int[] lowOffsets, int[] offsets, int[] scores, boolean[] zeroOffsetMatches) {
+        this.lowOffsets = lowOffsets;
+        this.offsets = offsets;
+        this.scores = scores;
+        this.zeroOffsetMatches = zeroOffsetMatches;
+    }
+    
+    /**
+     * Create the positions of a term
+     * 
+     * @param positions
+     *            the positions, which need not be sorted
+     * @return the sorted positions
+     */
+    public static TermPositions of(Collection<TermWeightPosition> positions) {
+        return of(positions, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Create the positions of a term, dropping any that score worse than a max score
+     * 
+     * @param positions
+     *            the positions, which need not be sorted
+     * @param maxScore
+     *            the max term weight score, see {@link TermWeightPosition#positionScoreToTermWeightScore(float)}
+     * @return the sorted positions
+     */
+    public static TermPositions of(Collection<TermWeightPosition> positions, int maxScore) {
+        if (positions == null || positions.isEmpty()) {
+            return EMPTY;
+        }
+        
+        TermWeightPosition[] sorted = new TermWeightPosition[positions.size()];
+        int size = 0;
+        boolean inOrder = true;
+        for (TermWeightPosition position : positions) {
+            if (position.getScore() > maxScore) {
+                continue;
+            }
+            if (size > 0 && sorted[size - 1].compareTo(position) > 0) {
+                inOrder = false;
+            }
+            sorted[size++] = position;
+        }
+        // the sort is stable, so the first of any equal positions is the one kept
+        if (!inOrder) {
+            Arrays.sort(sorted, 0, size);
+        }
+        
+        int[] lowOffsets = new int[size];
+        int[] offsets = new int[size];
+        int[] scores = new int[size];
+        boolean[] zeroOffsetMatches = new boolean[size];
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            TermWeightPosition position = sorted[i];
+            if (unique > 0 && lowOffsets[unique - 1] == position.getLowOffset() && offsets[unique - 1] == position.getOffset()) {
+                continue;
+            }
+            lowOffsets[unique] = position.getLowOffset();
+            offsets[unique] = position.getOffset();
+            scores[unique] = position.getScore();
+            zeroOffsetMatches[unique] = position.getZeroOffsetMatch();
+            unique++;
+        }
+        
+        if (unique == 0) {
+            return EMPTY;
+        } else if (unique < size) {
+            return new TermPositions(Arrays.copyOf(lowOffsets, unique), Arrays.copyOf(offsets, unique), Arrays.copyOf(scores, unique),
+                            Arrays.copyOf(zeroOffsetMatches, unique));
+        }
+        return new TermPositions(lowOffsets, offsets, scores, zeroOffsetMatches);
+    }
+    
+    /**
+     * Drop the positions that score worse than a max score
+     * 
+     * @param maxScore
+     *            the max term weight score, see {@link TermWeightPosition#positionScoreToTermWeightScore(float)}
+     * @return these positions if none were dropped, otherwise the remaining positions
+     */
+    public TermPositions filter(int maxScore) {
+        int size = 0;
+        for (int score : scores) {
+            if (score <= maxScore) {
+                size++;
+            }
+        }
+        if (size == scores.length) {
+            return this;
+        } else if (size == 0) {
+            return EMPTY;
+        }
+        
+        int[] newLowOffsets = new int[size];
+        int[] newOffsets = new int[size];
+        int[] newScores = new int[size];
+        boolean[] newZeroOffsetMatches = new boolean[size];
+        int index = 0;
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] <= maxScore) {
+                newLowOffsets[index] = lowOffsets[i];
+                newOffsets[index] = offsets[i];
+                newScores[index] = scores[i];
+                newZeroOffsetMatches[index] = zeroOffsetMatches[i];
+                index++;
+            }
+        }
+        return new TermPositions(newLowOffsets, newOffsets, newScores, newZeroOffsetMatches);
+    }
+    
+    public int size() {
+        return offsets.length;
+    }
+    
+    public boolean isEmpty() {
+        return offsets.length == 0;
+    }
+    
+    /**
+     * @return the highest possible offset of a position, see {@link TermWeightPosition#getOffset()}
+     */
+    public int getOffset(int index) {
+        return offsets[index];
+    }
+    
+    /**
+     * @return the lowest possible offset of a position with respect to skips, see {@link TermWeightPosition#getLowOffset()}
+     */
+    public int getLowOffset(int index) {
+        return lowOffsets[index];
+    }
+    
+    public int getScore(int index) {
+        return scores[index];
+    }
+    
+    public boolean getZeroOffsetMatch(int index) {
+        return zeroOffsetMatches[index];
+    }
+    
+    /**
+     * @return the highest offset of the positions from an index on, or {@link Integer#MIN_VALUE} if there are none
+     */
+    public int getMaxOffset(int from) {
+        // offsets with skip words are sorted on their low offset, so every position has to be looked at
+        int max = Integer.MIN_VALUE;
+        for (int i = from; i < offsets.length; i++) {
+            max = Math.max(max, offsets[i]);
+        }
+        return max;
+    }
+    
+    /**
+     * Compare a position to a position of another term, in the same way that {@link TermWeightPosition#compareTo(TermWeightPosition)} would
+     */
+    public int compare(int index, TermPositions other, int otherIndex) {
+        return compare(index, other.lowOffsets[otherIndex], other.offsets[otherIndex]);
+    }
+    
+    private int compare(int index, int lowOffset, int offset) {
+        int result = Integer.compare(lowOffsets[index], lowOffset);
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(offsets[index], offset);
+    }
+    
+    /**
+     * Find the first position, from an index on, that does not sort before a position of another term. This gallops forward from the index and then binary
+     * searches the last step, so skipping a long run of positions costs only the log of its length.
+     * 
+     * @param from
+     *            the index to start from
+     * @param other
+     *            the other term
+     * @param otherIndex
+     *            the index of the position of the other term
+     * @return the index of the first position at or after the other one, or {@link #size()} if there is none
+     */
+    public int seek(int from, TermPositions other, int otherIndex) {
+        int lowOffset = other.lowOffsets[otherIndex];
+        int offset = other.offsets[otherIndex];
+        int size = offsets.length;
+        if (from >= size || compare(from, lowOffset, offset) >= 0) {
+            return from;
+        }
+        
+        // positions at low sort before the other one, positions at high (if any) do not
+        int low = from;
+        int step = 1;
+        int high = from + step;
+        while (high < size && compare(high, lowOffset, offset) < 0) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, size);
+        
+        while (low + 1 < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, lowOffset, offset) < 0) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < offsets.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("{zeroMatch=").append(zeroOffsetMatches[i]).append(", offset=").append(offsets[i]).append(", lowOffset=").append(lowOffsets[i])
+                            .append(", score=").append(scores[i]).append('}');
+        }
+        return sb.append(']').toString();
+    }
+}
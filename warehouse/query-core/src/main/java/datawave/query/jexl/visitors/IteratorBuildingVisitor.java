@@ -154,6 +154,7 @@ public class IteratorBuildingVisitor extends BaseVisitor {
     protected int ivaratorMaxOpenFiles = 100;
     protected long maxIvaratorResults = -1;
     protected int ivaratorNumRetries = 2;
+    protected boolean ivaratorOffHeapSortedSets = false;
     protected FileSortedSet.PersistOptions ivaratorPersistOptions = new FileSortedSet.PersistOptions();
     protected SortedKeyValueIterator<Key,Value> unsortedIvaratorSource = null;
     protected int ivaratorCount = 0;
@@ -1388,6 +1389,7 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         builder.setIvaratorMaxOpenFiles(ivaratorMaxOpenFiles);
         builder.setMaxIvaratorResults(maxIvaratorResults);
         builder.setIvaratorNumRetries(ivaratorNumRetries);
+        builder.setIvaratorOffHeapSortedSets(ivaratorOffHeapSortedSets);
         builder.setIvaratorPersistOptions(ivaratorPersistOptions);
         builder.setCollectTimingDetails(collectTimingDetails);
         builder.setQuerySpanCollector(querySpanCollector);
@@ -1624,6 +1626,11 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         return this;
     }
     
+    public IteratorBuildingVisitor setIvaratorOffHeapSortedSets(boolean ivaratorOffHeapSortedSets) {
+        this.ivaratorOffHeapSortedSets = ivaratorOffHeapSortedSets;
+        return this;
+    }
+    
     public IteratorBuildingVisitor setIvaratorPersistOptions(FileSortedSet.PersistOptions persistOptions) {
         this.ivaratorPersistOptions = persistOptions;
         return this;
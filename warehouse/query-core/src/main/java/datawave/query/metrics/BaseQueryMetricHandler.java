@@ -1,8 +1,10 @@
 package datawave.query.metrics;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import datawave.webservice.query.metric.BaseQueryMetric;
 import datawave.webservice.query.metric.BaseQueryMetric.PageMetric;
@@ -76,64 +78,89 @@ public abstract class BaseQueryMetricHandler<T extends BaseQueryMetric> implemen
         return summary;
     }
     
+    /**
+     * Bin summaries that were rolled up by the hour or by the day, see {@link QueryMetricSummaryRollup}. Each rollup is binned on the end of its hour or day,
+     * so every hour or day that overlaps a bucket is counted in it in full. The hours and days should not overlap.
+     * 
+     * @param summary
+     *            the response to bin the rollups into
+     * @param hourRollups
+     *            the hourly rollups, keyed on the start of their hour
+     * @param dayRollups
+     *            the daily rollups, keyed on the start of their day
+     * @return the response
+     */
+    public <R extends QueryMetricsSummaryResponse> R processQueryMetricsRollups(R summary, Map<Date,QueryMetricSummary> hourRollups,
+                    Map<Date,QueryMetricSummary> dayRollups) {
+        return processQueryMetricsRollups(summary, hourRollups, dayRollups, new Date());
+    }
+    
+    <R extends QueryMetricsSummaryResponse> R processQueryMetricsRollups(R summary, Map<Date,QueryMetricSummary> hourRollups,
+                    Map<Date,QueryMetricSummary> dayRollups, Date now) {
+        Date hour1 = DateUtils.addHours(now, -1);
+        Date hour6 = DateUtils.addHours(now, -6);
+        Date hour12 = DateUtils.addHours(now, -12);
+        Date day1 = DateUtils.addDays(now, -1);
+        Date day7 = DateUtils.addDays(now, -7);
+        Date day30 = DateUtils.addDays(now, -30);
+        Date day60 = DateUtils.addDays(now, -60);
+        Date day90 = DateUtils.addDays(now, -90);
+        
+        for (Map.Entry<Date,QueryMetricSummary> rollup : hourRollups.entrySet()) {
+            Date endOfHour = DateUtils.addHours(rollup.getKey(), 1);
+            for (QueryMetricSummary bucket : getBuckets(endOfHour, summary, hour1, hour6, hour12, day1, day7, day30, day60, day90)) {
+                QueryMetricSummaryRollup.merge(rollup.getValue(), bucket);
+            }
+        }
+        for (Map.Entry<Date,QueryMetricSummary> rollup : dayRollups.entrySet()) {
+            Date endOfDay = DateUtils.addDays(rollup.getKey(), 1);
+            for (QueryMetricSummary bucket : getBuckets(endOfDay, summary, hour1, hour6, hour12, day1, day7, day30, day60, day90)) {
+                QueryMetricSummaryRollup.merge(rollup.getValue(), bucket);
+            }
+        }
+        
+        return summary;
+    }
+    
     public void binSummary(T metric, QueryMetricsSummaryResponse summary, Date hour1, Date hour6, Date hour12, Date day1, Date day7, Date day30, Date day60,
                     Date day90) {
-        Date d = metric.getCreateDate();
-        // Find out which bucket this query belongs to
+        for (QueryMetricSummary bucket : getBuckets(metric.getCreateDate(), summary, hour1, hour6, hour12, day1, day7, day30, day60, day90)) {
+            populateSummary(metric, bucket);
+        }
+    }
+    
+    /**
+     * @return the buckets of the summary that a date falls in
+     */
+    protected List<QueryMetricSummary> getBuckets(Date d, QueryMetricsSummaryResponse summary, Date hour1, Date hour6, Date hour12, Date day1, Date day7,
+                    Date day30, Date day60, Date day90) {
+        List<QueryMetricSummary> buckets = new ArrayList<>();
+        // Find out which bucket this query belongs to, and every bucket after it
         if (d.after(hour1)) {
-            populateSummary(metric, summary.getHour1());
-            populateSummary(metric, summary.getHour6());
-            populateSummary(metric, summary.getHour12());
-            populateSummary(metric, summary.getDay1());
-            populateSummary(metric, summary.getDay7());
-            populateSummary(metric, summary.getDay30());
-            populateSummary(metric, summary.getDay60());
-            populateSummary(metric, summary.getDay90());
-            populateSummary(metric, summary.getAll());
-        } else if (d.after(hour6)) {
-            populateSummary(metric, summary.getHour6());
-            populateSummary(metric, summary.getHour12());
-            populateSummary(metric, summary.getDay1());
-            populateSummary(metric, summary.getDay7());
-            populateSummary(metric, summary.getDay30());
-            populateSummary(metric, summary.getDay60());
-            populateSummary(metric, summary.getDay90());
-            populateSummary(metric, summary.getAll());
-        } else if (d.after(hour12)) {
-            populateSummary(metric, summary.getHour12());
-            populateSummary(metric, summary.getDay1());
-            populateSummary(metric, summary.getDay7());
-            populateSummary(metric, summary.getDay30());
-            populateSummary(metric, summary.getDay60());
-            populateSummary(metric, summary.getDay90());
-            populateSummary(metric, summary.getAll());
-        } else if (d.after(day1)) {
-            populateSummary(metric, summary.getDay1());
-            populateSummary(metric, summary.getDay7());
-            populateSummary(metric, summary.getDay30());
-            populateSummary(metric, summary.getDay60());
-            populateSummary(metric, summary.getDay90());
-            populateSummary(metric, summary.getAll());
-        } else if (d.after(day7)) {
-            populateSummary(metric, summary.getDay7());
-            populateSummary(metric, summary.getDay30());
-            populateSummary(metric, summary.getDay60());
-            populateSummary(metric, summary.getDay90());
-            populateSummary(metric, summary.getAll());
-        } else if (d.after(day30)) {
-            populateSummary(metric, summary.getDay30());
-            populateSummary(metric, summary.getDay60());
-            populateSummary(metric, summary.getDay90());
-            populateSummary(metric, summary.getAll());
-        } else if (d.after(day60)) {
-            populateSummary(metric, summary.getDay60());
-            populateSummary(metric, summary.getDay90());
-            populateSummary(metric, summary.getAll());
-        } else if (d.after(day90)) {
-            populateSummary(metric, summary.getDay90());
-            populateSummary(metric, summary.getAll());
-        } else {
-            populateSummary(metric, summary.getAll());
+            buckets.add(summary.getHour1());
+        }
+        if (d.after(hour6)) {
+            buckets.add(summary.getHour6());
+        }
+        if (d.after(hour12)) {
+            buckets.add(summary.getHour12());
+        }
+        if (d.after(day1)) {
+            buckets.add(summary.getDay1());
+        }
+        if (d.after(day7)) {
+            buckets.add(summary.getDay7());
+        }
+        if (d.after(day30)) {
+            buckets.add(summary.getDay30());
+        }
+        if (d.after(day60)) {
+            buckets.add(summary.getDay60());
+        }
+        if (d.after(day90)) {
+            buckets.add(summary.getDay90());
         }
+        buckets.add(summary.getAll());
+        return buckets;
     }
 }
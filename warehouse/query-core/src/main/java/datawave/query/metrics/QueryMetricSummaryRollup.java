@@ -0,0 +1,317 @@
+package datawave.query.metrics;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import datawave.webservice.query.metric.BaseQueryMetric.PageMetric;
+import datawave.webservice.query.metric.QueryMetricSummary;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.commons.lang.time.DateUtils;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+/**
+ * Hourly and daily rollups of the query metrics, which let the summary endpoints read a row per hour or day instead of every query metric in the requested
+ * range.
+ * <p>
+ * Each hourly row is the user and the hour that the queries were created in, {@code <user>\0<yyyyMMddHH>}, and each daily row the user and the day,
+ * {@code <user>\1<yyyyMMdd>}. The rows with an empty user hold the totals across every user. Each statistic is a column family with an empty qualifier and a
+ * value of a long in its string form, which the combiners set up by {@link QueryMetricSummaryTableConfigHelper} sum or max. The page response times are also
+ * counted in the buckets of {@link QueryMetricSummary#PAGE_RESPONSE_TIME_BOUNDS}.
+ * <p>
+ * The rollups only have hour or day granularity, so a summary over a date range or a window counts every hour or day that overlaps it in full.
+ */
+public class QueryMetricSummaryRollup {
+    
+    private static final Logger log = Logger.getLogger(QueryMetricSummaryRollup.class);
+    
+    public static final String SUMMARY_TABLE_NAME = "querymetrics.summary.table.name";
+    
+    public static final String QUERY_COUNT = "QUERY_COUNT";
+    public static final String TOTAL_PAGES = "TOTAL_PAGES";
+    public static final String TOTAL_PAGE_RESULT_SIZE = "TOTAL_PAGE_RESULT_SIZE";
+    public static final String TOTAL_PAGE_RESPONSE_TIME = "TOTAL_PAGE_RESPONSE_TIME";
+    public static final String MAX_PAGE_RESULT_SIZE = "MAX_PAGE_RESULT_SIZE";
+    public static final String MAX_PAGE_RESPONSE_TIME = "MAX_PAGE_RESPONSE_TIME";
+    public static final String PAGE_RESPONSE_TIME_COUNT_PREFIX = "PAGE_RESPONSE_TIME_COUNT_";
+    
+    // the count column of each page response time bucket, e.g. PAGE_RESPONSE_TIME_COUNT_LE_100 and PAGE_RESPONSE_TIME_COUNT_GT_60000
+    private static final String[] PAGE_RESPONSE_TIME_COUNT_COLUMNS = new String[QueryMetricSummary.PAGE_RESPONSE_TIME_BOUNDS.length + 1];
+    private static final Map<String,Integer> PAGE_RESPONSE_TIME_COUNT_BUCKETS = new HashMap<>();
+    static {
+        long[] bounds = QueryMetricSummary.PAGE_RESPONSE_TIME_BOUNDS;
+        for (int bucket = 0; bucket <= bounds.length; bucket++) {
+            String column = PAGE_RESPONSE_TIME_COUNT_PREFIX + (bucket < bounds.length ? "LE_" + bounds[bucket] : "GT_" + bounds[bounds.length - 1]);
+            PAGE_RESPONSE_TIME_COUNT_COLUMNS[bucket] = column;
+            PAGE_RESPONSE_TIME_COUNT_BUCKETS.put(column, bucket);
+        }
+    }
+    
+    public static final String[] SUM_COLUMNS = concat(new String[] {QUERY_COUNT, TOTAL_PAGES, TOTAL_PAGE_RESULT_SIZE, TOTAL_PAGE_RESPONSE_TIME},
+                    PAGE_RESPONSE_TIME_COUNT_COLUMNS);
+    public static final String[] MAX_COLUMNS = {MAX_PAGE_RESULT_SIZE, MAX_PAGE_RESPONSE_TIME};
+    
+    public static final String ALL_USERS = "";
+    
+    private static final String HOUR_SEPARATOR = "\0";
+    private static final String DAY_SEPARATOR = "\1";
+    private static final String HOUR_FORMAT = "yyyyMMddHH";
+    private static final String DAY_FORMAT = "yyyyMMdd";
+    private static final Text EMPTY_TEXT = new Text();
+    
+    private QueryMetricSummaryRollup() {}
+    
+    private static String[] concat(String[] a, String[] b) {
+        String[] columns = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, columns, a.length, b.length);
+        return columns;
+    }
+    
+    private static SimpleDateFormat getFormat(String pattern) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format;
+    }
+    
+    private static String getHourRow(String user, String hour) {
+        return user + HOUR_SEPARATOR + hour;
+    }
+    
+    private static String getDayRow(String user, String day) {
+        return user + DAY_SEPARATOR + day;
+    }
+    
+    /**
+     * @param date
+     *            a date
+     * @return the start of the day, in GMT, that the date falls in
+     */
+    public static Date getDayStart(Date date) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        calendar.setTime(date);
+        return DateUtils.truncate(calendar, Calendar.DATE).getTime();
+    }
+    
+    /**
+     * Get the mutations that add an update of a query metric to the hourly and daily rollups of its user and of every user
+     * 
+     * @param user
+     *            the user that ran the query
+     * @param createDate
+     *            the create date of the query
+     * @param visibility
+     *            the visibility of the query metric
+     * @param newQuery
+     *            whether this is the first update of the query, which counts it
+     * @param newPages
+     *            the pages that have not been added to the rollups yet
+     * @return the mutations, empty if there is nothing to add
+     */
+    public static List<Mutation> getMutations(String user, Date createDate, ColumnVisibility visibility, boolean newQuery, Collection<PageMetric> newPages) {
+        List<Mutation> mutations = new ArrayList<>();
+        if (createDate == null || (!newQuery && newPages.isEmpty())) {
+            return mutations;
+        }
+        
+        long totalPageResultSize = 0;
+        long totalPageResponseTime = 0;
+        long maxPageResultSize = 0;
+        long maxPageResponseTime = 0;
+        long[] pageResponseTimeCounts = new long[PAGE_RESPONSE_TIME_COUNT_COLUMNS.length];
+        for (PageMetric page : newPages) {
+            totalPageResultSize += page.getPagesize();
+            totalPageResponseTime += page.getReturnTime();
+            maxPageResultSize = Math.max(maxPageResultSize, page.getPagesize());
+            maxPageResponseTime = Math.max(maxPageResponseTime, page.getReturnTime());
+            pageResponseTimeCounts[QueryMetricSummary.getPageResponseTimeBucket(page.getReturnTime())]++;
+        }
+        
+        Map<String,Long> statistics = new LinkedHashMap<>();
+        if (newQuery) {
+            statistics.put(QUERY_COUNT, 1L);
+        }
+        if (!newPages.isEmpty()) {
+            statistics.put(TOTAL_PAGES, (long) newPages.size());
+            statistics.put(TOTAL_PAGE_RESULT_SIZE, totalPageResultSize);
+            statistics.put(TOTAL_PAGE_RESPONSE_TIME, totalPageResponseTime);
+            statistics.put(MAX_PAGE_RESULT_SIZE, maxPageResultSize);
+            statistics.put(MAX_PAGE_RESPONSE_TIME, maxPageResponseTime);
+            for (int bucket = 0; bucket < pageResponseTimeCounts.length; bucket++) {
+                if (pageResponseTimeCounts[bucket] > 0) {
+                    statistics.put(PAGE_RESPONSE_TIME_COUNT_COLUMNS[bucket], pageResponseTimeCounts[bucket]);
+                }
+            }
+        }
+        
+        String hour = getFormat(HOUR_FORMAT).format(createDate);
+        String day = getFormat(DAY_FORMAT).format(createDate);
+        for (String rowUser : new String[] {user, ALL_USERS}) {
+            rowUser = (rowUser == null ? ALL_USERS : rowUser);
+            mutations.add(getMutation(getHourRow(rowUser, hour), visibility, statistics));
+            mutations.add(getMutation(getDayRow(rowUser, day), visibility, statistics));
+            // a query without a user is only counted in the totals
+            if (rowUser.isEmpty()) {
+                break;
+            }
+        }
+        return mutations;
+    }
+    
+    private static Mutation getMutation(String row, ColumnVisibility visibility, Map<String,Long> statistics) {
+        Mutation m = new Mutation(row);
+        for (Map.Entry<String,Long> statistic : statistics.entrySet()) {
+            m.put(new Text(statistic.getKey()), EMPTY_TEXT, visibility, new Value(Long.toString(statistic.getValue()).getBytes()));
+        }
+        return m;
+    }
+    
+    /**
+     * Get the range of the rollups of a user, or of every user, for the hours that overlap a date range. The begin date is rounded down to its hour, so the
+     * range includes the queries of that hour that were created before the begin date.
+     * 
+     * @param user
+     *            the user, or {@link #ALL_USERS} for the totals
+     * @param begin
+     *            the begin date, or null for no lower bound
+     * @param end
+     *            the end date, or null for no upper bound
+     * @return the range
+     */
+    public static Range getRange(String user, Date begin, Date end) {
+        SimpleDateFormat format = getFormat(HOUR_FORMAT);
+        Text startRow = new Text(getHourRow(user, begin == null ? "" : format.format(begin)));
+        // the hour digits always sort before the daily rows of the user
+        Text endRow = new Text(end == null ? user + DAY_SEPARATOR : getHourRow(user, format.format(end)));
+        return new Range(startRow, true, endRow, true);
+    }
+    
+    /**
+     * Get the range of the daily rollups of a user, or of every user, for the days that overlap a date range. The begin date is rounded down to its day.
+     * 
+     * @param user
+     *            the user, or {@link #ALL_USERS} for the totals
+     * @param begin
+     *            the begin date, or null for no lower bound
+     * @param end
+     *            the end date, or null for no upper bound
+     * @return the range
+     */
+    public static Range getDayRange(String user, Date begin, Date end) {
+        SimpleDateFormat format = getFormat(DAY_FORMAT);
+        Text startRow = new Text(getDayRow(user, begin == null ? "" : format.format(begin)));
+        // the day digits always sort before the byte after the day separator
+        Text endRow = new Text(end == null ? user + "\2" : getDayRow(user, format.format(end)));
+        return new Range(startRow, true, endRow, true);
+    }
+    
+    /**
+     * Read hourly or daily rollups into a summary per hour or day, summed across visibilities
+     * 
+     * @param entries
+     *            the rollup entries
+     * @return the summaries, keyed on the start of their hour or day
+     */
+    public static Map<Date,QueryMetricSummary> read(Iterable<Map.Entry<Key,Value>> entries) {
+        SimpleDateFormat hourFormat = getFormat(HOUR_FORMAT);
+        SimpleDateFormat dayFormat = getFormat(DAY_FORMAT);
+        Map<Date,QueryMetricSummary> rollups = new TreeMap<>();
+        String lastRow = null;
+        QueryMetricSummary rollup = null;
+        for (Map.Entry<Key,Value> entry : entries) {
+            String row = entry.getKey().getRow().toString();
+            if (!row.equals(lastRow)) {
+                lastRow = row;
+                try {
+                    int hourSeparator = row.lastIndexOf(HOUR_SEPARATOR);
+                    int daySeparator = row.lastIndexOf(DAY_SEPARATOR);
+                    Date start = (daySeparator > hourSeparator ? dayFormat.parse(row.substring(daySeparator + 1)) : hourFormat.parse(row
+                                    .substring(hourSeparator + 1)));
+                    rollup = rollups.computeIfAbsent(start, h -> new QueryMetricSummary());
+                } catch (ParseException e) {
+                    log.error("Skipping query metric rollup with a bad row: " + row);
+                    rollup = null;
+                }
+            }
+            if (rollup != null) {
+                try {
+                    add(rollup, entry.getKey().getColumnFamily().toString(), Long.parseLong(entry.getValue().toString()));
+                } catch (NumberFormatException e) {
+                    log.error("Skipping query metric rollup with a bad value: " + entry.getKey());
+                }
+            }
+        }
+        return rollups;
+    }
+    
+    private static void add(QueryMetricSummary rollup, String statistic, long value) {
+        switch (statistic) {
+            case QUERY_COUNT:
+                rollup.setQueryCount(add(rollup.getQueryCount(), value));
+                break;
+            case TOTAL_PAGES:
+                rollup.setTotalPages(add(rollup.getTotalPages(), value));
+                break;
+            case TOTAL_PAGE_RESULT_SIZE:
+                rollup.setTotalPageResultSize(add(rollup.getTotalPageResultSize(), value));
+                break;
+            case TOTAL_PAGE_RESPONSE_TIME:
+                rollup.setTotalPageResponseTime(add(rollup.getTotalPageResponseTime(), value));
+                break;
+            case MAX_PAGE_RESULT_SIZE:
+                rollup.setMaxPageResultSize(Math.max(rollup.getMaxPageResultSize(), value));
+                break;
+            case MAX_PAGE_RESPONSE_TIME:
+                rollup.setMaxPageResponseTime(Math.max(rollup.getMaxPageResponseTime(), value));
+                break;
+            default:
+                Integer bucket = PAGE_RESPONSE_TIME_COUNT_BUCKETS.get(statistic);
+                if (bucket != null) {
+                    rollup.addPageResponseTimeCount(bucket, value);
+                } else {
+                    log.debug("Ignoring unknown query metric rollup statistic: " + statistic);
+                }
+        }
+    }
+    
+    /**
+     * Add one summary to another, saturating the totals as {@link QueryMetricSummary#addPage(long, long)} does
+     * 
+     * @param rollup
+     *            the summary to add
+     * @param bucket
+     *            the summary to add it to
+     */
+    public static void merge(QueryMetricSummary rollup, QueryMetricSummary bucket) {
+        bucket.setQueryCount(add(bucket.getQueryCount(), rollup.getQueryCount()));
+        bucket.setTotalPages(add(bucket.getTotalPages(), rollup.getTotalPages()));
+        bucket.setTotalPageResultSize(add(bucket.getTotalPageResultSize(), rollup.getTotalPageResultSize()));
+        bucket.setTotalPageResponseTime(add(bucket.getTotalPageResponseTime(), rollup.getTotalPageResponseTime()));
+        bucket.setMaxPageResultSize(Math.max(bucket.getMaxPageResultSize(), rollup.getMaxPageResultSize()));
+        bucket.setMaxPageResponseTime(Math.max(bucket.getMaxPageResponseTime(), rollup.getMaxPageResponseTime()));
+        long[] pageResponseTimeCounts = rollup.getPageResponseTimeCounts();
+        for (int i = 0; i < pageResponseTimeCounts.length; i++) {
+            bucket.addPageResponseTimeCount(i, pageResponseTimeCounts[i]);
+        }
+    }
+    
+    private static long add(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
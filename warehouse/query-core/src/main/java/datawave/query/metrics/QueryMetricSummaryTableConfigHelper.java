@@ -0,0 +1,59 @@
+package datawave.query.metrics;
+
+import datawave.ingest.table.config.AbstractTableConfigHelper;
+
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+
+/**
+ * Configures the table of {@link QueryMetricSummaryRollup}s with a SummingCombiner over the totals and a MaxCombiner over the maximums. Both run below the
+ * VersioningIterator so that they see every version of a rollup.
+ */
+public class QueryMetricSummaryTableConfigHelper extends AbstractTableConfigHelper {
+    protected Logger log;
+    
+    protected Configuration conf;
+    protected String tableName;
+    
+    @Override
+    public void setup(String tableName, Configuration config, Logger log) throws IllegalArgumentException {
+        this.log = log;
+        this.conf = config;
+        this.tableName = tableName;
+        
+        String summaryTableName = conf.get(QueryMetricSummaryRollup.SUMMARY_TABLE_NAME);
+        
+        if (summaryTableName == null) {
+            throw new IllegalArgumentException("Query Metrics Summary Table is not defined in the Configuration.");
+        }
+        
+        if (!tableName.equals(summaryTableName)) {
+            throw new IllegalArgumentException("Invalid Query Metrics Summary Table Definition For: " + tableName);
+        }
+    }
+    
+    @Override
+    public void configure(TableOperations tops) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        for (IteratorUtil.IteratorScope scope : IteratorUtil.IteratorScope.values()) {
+            setCombiner(tops, scope, "sum", "18,org.apache.accumulo.core.iterators.user.SummingCombiner", QueryMetricSummaryRollup.SUM_COLUMNS);
+            setCombiner(tops, scope, "max", "19,org.apache.accumulo.core.iterators.user.MaxCombiner", QueryMetricSummaryRollup.MAX_COLUMNS);
+        }
+    }
+    
+    private void setCombiner(TableOperations tops, IteratorUtil.IteratorScope scope, String name, String iterator, String[] columns)
+                    throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        final StringBuilder propName = new StringBuilder(String.format("%s%s.%s", Property.TABLE_ITERATOR_PREFIX, scope.name(), name));
+        setPropertyIfNecessary(tableName, propName.toString(), iterator, tops, log);
+        propName.append(".opt.");
+        setPropertyIfNecessary(tableName, propName + "columns", StringUtils.join(columns, ','), tops, log);
+        setPropertyIfNecessary(tableName, propName + "lossy", "FALSE", tops, log);
+        setPropertyIfNecessary(tableName, propName + "type", "STRING", tops, log);
+    }
+}
@@ -9,6 +9,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -17,16 +18,19 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Striped;
 
 import datawave.configuration.DatawaveEmbeddedProjectStageHolder;
 import datawave.data.hash.UID;
@@ -46,6 +50,7 @@ import datawave.query.map.SimpleQueryGeometryHandler;
 import datawave.security.authorization.DatawavePrincipal;
 import datawave.security.system.CallerPrincipal;
 import datawave.security.util.AuthorizationsUtil;
+import datawave.security.util.ScannerHelper;
 import datawave.webservice.common.connection.AccumuloConnectionFactory;
 import datawave.webservice.common.connection.AccumuloConnectionFactory.Priority;
 import datawave.webservice.common.logging.ThreadConfigurableLogger;
@@ -64,6 +69,7 @@ import datawave.webservice.query.metric.BaseQueryMetric.Lifecycle;
 import datawave.webservice.query.metric.BaseQueryMetricListResponse;
 import datawave.webservice.query.metric.QueryMetric;
 import datawave.webservice.query.metric.QueryMetricListResponse;
+import datawave.webservice.query.metric.QueryMetricSummary;
 import datawave.webservice.query.metric.QueryMetricsDetailListResponse;
 import datawave.webservice.query.metric.QueryMetricsSummaryHtmlResponse;
 import datawave.webservice.query.metric.QueryMetricsSummaryResponse;
@@ -78,12 +84,14 @@ import datawave.webservice.result.EventQueryResponseBase;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
 import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
 import org.apache.accumulo.core.client.TableExistsException;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.client.admin.TableOperations;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.collections4.map.LRUMap;
@@ -147,6 +155,10 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
     @SuppressWarnings("unchecked")
     private static Map metricsCache = Collections.synchronizedMap(new LRUMap(5000));
     
+    // updates to the same query are serialized, updates to different queries are not
+    private static final int METRIC_LOCK_STRIPES = 256;
+    private static final Striped<Lock> metricLocks = Striped.lock(METRIC_LOCK_STRIPES);
+    
     private final Configuration conf = new Configuration();
     private final StatusReporter reporter = new MockStatusReporter();
     private final AtomicBoolean tablesChecked = new AtomicBoolean(false);
@@ -154,6 +166,9 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
     
     private UIDBuilder<UID> uidBuilder = UID.builder();
     
+    // the table of hourly and daily rollups that the summaries are read from, or null to query the metrics themselves
+    private final String summaryTableName;
+    
     public ShardTableQueryMetricHandler() {
         URL queryMetricsUrl = Thread.currentThread().getContextClassLoader().getResource("datawave/query/QueryMetrics.xml");
         Preconditions.checkNotNull(queryMetricsUrl);
@@ -163,6 +178,7 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
         String accumuloPassword = conf.get("AccumuloRecordWriter.password");
         byte[] encodedAccumuloPassword = Base64.encodeBase64(accumuloPassword.getBytes());
         conf.set("AccumuloRecordWriter.password", new String(encodedAccumuloPassword));
+        summaryTableName = StringUtils.trimToNull(conf.get(QueryMetricSummaryRollup.SUMMARY_TABLE_NAME));
         markingFunctions = MarkingFunctions.Factory.createMarkingFunctions();
     }
     
@@ -208,7 +224,12 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
         try {
             connector = this.connectionFactory.getConnection(Priority.ADMIN, new HashMap<>());
             AbstractColumnBasedHandler<Key> handler = new ContentQueryMetricsHandler<>();
-            createAndConfigureTablesIfNecessary(handler.getTableNames(conf), connector.tableOperations(), conf);
+            String[] tableNames = handler.getTableNames(conf);
+            if (summaryTableName != null) {
+                tableNames = Arrays.copyOf(tableNames, tableNames.length + 1);
+                tableNames[tableNames.length - 1] = summaryTableName;
+            }
+            createAndConfigureTablesIfNecessary(tableNames, connector.tableOperations(), conf);
         } catch (Exception e) {
             log.error("Error verifying table configuration", e);
         } finally {
@@ -222,7 +243,8 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
         }
     }
     
-    private void writeMetrics(QueryMetric updatedQueryMetric, List<QueryMetric> storedQueryMetrics, Date lastUpdated, boolean delete) throws Exception {
+    protected void writeMetrics(QueryMetric updatedQueryMetric, QueryMetric storedQueryMetric, Multimap<String,String> fields, Date lastUpdated,
+                    boolean delete) throws Exception {
         LiveContextWriter contextWriter = null;
         
         MapContext<Text,RawRecordContainer,Text,Mutation> context = null;
@@ -234,23 +256,21 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
             TaskAttemptID taskId = new TaskAttemptID(new TaskID(new JobID(JOB_ID, 1), TaskType.MAP, 1), 1);
             context = new MapContextImpl<>(conf, taskId, null, recordWriter, null, reporter, null);
             
-            for (QueryMetric storedQueryMetric : storedQueryMetrics) {
-                AbstractColumnBasedHandler<Key> handler = new ContentQueryMetricsHandler<>();
-                handler.setup(context);
-                
-                Multimap<BulkIngestKey,Value> r = getEntries(handler, updatedQueryMetric, storedQueryMetric, lastUpdated, delete);
+            AbstractColumnBasedHandler<Key> handler = new ContentQueryMetricsHandler<>();
+            handler.setup(context);
+            
+            Multimap<BulkIngestKey,Value> r = getEntries(handler, updatedQueryMetric, storedQueryMetric, fields, lastUpdated, delete);
+            
+            try {
+                if (r != null) {
+                    contextWriter.write(r, context);
+                }
                 
-                try {
-                    if (r != null) {
-                        contextWriter.write(r, context);
-                    }
-                    
-                    if (handler.getMetadata() != null) {
-                        contextWriter.write(handler.getMetadata().getBulkMetadata(), context);
-                    }
-                } finally {
-                    contextWriter.commit(context);
+                if (handler.getMetadata() != null) {
+                    contextWriter.write(handler.getMetadata().getBulkMetadata(), context);
                 }
+            } finally {
+                contextWriter.commit(context);
             }
         } finally {
             if (contextWriter != null && context != null) {
@@ -271,8 +291,52 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
         return eventFields;
     }
     
+    private ColumnVisibility getColumnVisibility(QueryMetric queryMetric) {
+        // get security markings from metric, otherwise default to PUBLIC
+        Map<String,String> markings = queryMetric.getMarkings();
+        if (markingFunctions == null || markings == null || markings.isEmpty()) {
+            return new ColumnVisibility(DEFAULT_SECURITY_MARKING);
+        } else {
+            try {
+                return this.markingFunctions.translateToColumnVisibility(markings);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                return new ColumnVisibility(DEFAULT_SECURITY_MARKING);
+            }
+        }
+    }
+    
+    /**
+     * Add what is new in an update of a query metric to the hourly and daily rollups: the query itself on its first update, and any pages that were not in
+     * the stored metrics.
+     */
+    private void writeRollups(QueryMetric updatedQueryMetric, List<QueryMetric> storedQueryMetrics, boolean newQuery, String user) throws IOException {
+        Set<Long> storedPages = new HashSet<>();
+        for (QueryMetric storedQueryMetric : storedQueryMetrics) {
+            for (PageMetric p : storedQueryMetric.getPageTimes()) {
+                storedPages.add(p.getPageNumber());
+            }
+        }
+        List<PageMetric> newPages = new ArrayList<>();
+        for (PageMetric p : updatedQueryMetric.getPageTimes()) {
+            if (storedPages.add(p.getPageNumber())) {
+                newPages.add(p);
+            }
+        }
+        
+        ColumnVisibility visibility = getColumnVisibility(updatedQueryMetric);
+        writeRollups(QueryMetricSummaryRollup.getMutations(user, updatedQueryMetric.getCreateDate(), visibility, newQuery, newPages));
+    }
+    
+    protected void writeRollups(List<Mutation> mutations) throws IOException {
+        Text table = new Text(summaryTableName);
+        for (Mutation m : mutations) {
+            recordWriter.write(table, m);
+        }
+    }
+    
     private Multimap<BulkIngestKey,Value> getEntries(AbstractColumnBasedHandler<Key> handler, QueryMetric updatedQueryMetric, QueryMetric storedQueryMetric,
-                    Date lastUpdated, boolean delete) {
+                    Multimap<String,String> eventFields, Date lastUpdated, boolean delete) {
         Type type = TypeRegistry.getType("querymetrics");
         ContentQueryMetricsIngestHelper ingestHelper = new ContentQueryMetricsIngestHelper(delete);
         
@@ -282,31 +346,14 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
         event.setConf(this.conf);
         event.setDataType(type);
         event.setDate(storedQueryMetric.getCreateDate().getTime());
-        // get security markings from metric, otherwise default to PUBLIC
-        Map<String,String> markings = updatedQueryMetric.getMarkings();
-        if (markingFunctions == null || markings == null || markings.isEmpty()) {
-            event.setVisibility(new ColumnVisibility(DEFAULT_SECURITY_MARKING));
-        } else {
-            try {
-                event.setVisibility(this.markingFunctions.translateToColumnVisibility(markings));
-            } catch (Exception e) {
-                log.error(e.getMessage(), e);
-                event.setVisibility(new ColumnVisibility(DEFAULT_SECURITY_MARKING));
-            }
-        }
+        event.setVisibility(getColumnVisibility(updatedQueryMetric));
         event.setAuxData(storedQueryMetric);
         event.setRawRecordNumber(1000L);
         event.addAltId(storedQueryMetric.getQueryId());
         
         event.setId(uidBuilder.newId(storedQueryMetric.getQueryId().getBytes(), (Date) null));
         
-        final Multimap<String,NormalizedContentInterface> fields;
-        
-        if (delete) {
-            fields = ingestHelper.getEventFieldsToDelete(updatedQueryMetric, storedQueryMetric);
-        } else {
-            fields = ingestHelper.getEventFieldsToWrite(updatedQueryMetric);
-        }
+        final Multimap<String,NormalizedContentInterface> fields = ingestHelper.normalize(eventFields);
         
         Key key = new Key();
         
@@ -364,6 +411,9 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
     public void updateMetric(QueryMetric updatedQueryMetric, DatawavePrincipal datawavePrincipal) throws Exception {
         Date lastUpdated = updatedQueryMetric.getLastUpdated();
         
+        // hold the lock for this query for the whole update so that the cached metric always reflects what was last written
+        Lock lock = metricLocks.get(updatedQueryMetric.getQueryId());
+        lock.lock();
         try {
             enableLogs(false);
             String sid = updatedQueryMetric.getUser();
@@ -377,31 +427,26 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
             Date begin = DateUtils.setYears(end, 2000);
             
             // user's DatawavePrincipal must have the Administrator role to use the Metrics query logic
-            QueryMetric cachedQueryMetric;
-            QueryMetric newCachedQueryMetric;
-            synchronized (ShardTableQueryMetricHandler.class) {
-                cachedQueryMetric = (QueryMetric) metricsCache.get(updatedQueryMetric.getQueryId());
-                // duplicate updatedQueryMetric because we're counting on the cache to be a snapshot of the QueryMetric
-                // so that we can retrieve it next update call to create the delete Mutations for the values written to Accumulo
-                Map<Long,PageMetric> storedPageMetricMap = new TreeMap<>();
-                if (cachedQueryMetric != null) {
-                    List<PageMetric> cachedPageMetrics = cachedQueryMetric.getPageTimes();
-                    if (cachedPageMetrics != null) {
-                        for (PageMetric p : cachedPageMetrics) {
-                            storedPageMetricMap.put(p.getPageNumber(), p);
-                        }
+            CachedQueryMetric cachedQueryMetric = (CachedQueryMetric) metricsCache.get(updatedQueryMetric.getQueryId());
+            // duplicate updatedQueryMetric because we're counting on the cache to be a snapshot of the QueryMetric
+            // so that we can retrieve it next update call to create the delete Mutations for the values written to Accumulo
+            Map<Long,PageMetric> storedPageMetricMap = new TreeMap<>();
+            if (cachedQueryMetric != null) {
+                List<PageMetric> cachedPageMetrics = cachedQueryMetric.getQueryMetric().getPageTimes();
+                if (cachedPageMetrics != null) {
+                    for (PageMetric p : cachedPageMetrics) {
+                        storedPageMetricMap.put(p.getPageNumber(), p);
                     }
                 }
-                // combine all of the page metrics from the cached metric and the updated metric
-                for (PageMetric p : updatedQueryMetric.getPageTimes()) {
-                    storedPageMetricMap.put(p.getPageNumber(), p);
-                }
-                newCachedQueryMetric = (QueryMetric) updatedQueryMetric.duplicate();
-                ArrayList<PageMetric> newPageMetrics = new ArrayList<>();
-                newPageMetrics.addAll(storedPageMetricMap.values());
-                newCachedQueryMetric.setPageTimes(newPageMetrics);
-                metricsCache.put(updatedQueryMetric.getQueryId(), newCachedQueryMetric);
             }
+            // combine all of the page metrics from the cached metric and the updated metric
+            for (PageMetric p : updatedQueryMetric.getPageTimes()) {
+                storedPageMetricMap.put(p.getPageNumber(), p);
+            }
+            QueryMetric newCachedQueryMetric = (QueryMetric) updatedQueryMetric.duplicate();
+            ArrayList<PageMetric> newPageMetrics = new ArrayList<>();
+            newPageMetrics.addAll(storedPageMetricMap.values());
+            newCachedQueryMetric.setPageTimes(newPageMetrics);
             
             List<QueryMetric> queryMetrics = new ArrayList<>();
             
@@ -425,11 +470,7 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
                     queryMetrics = getQueryMetrics(response, query, callerPrincipal);
                 }
             } else {
-                queryMetrics = Collections.singletonList(cachedQueryMetric);
-            }
-            
-            if (!queryMetrics.isEmpty()) {
-                writeMetrics(updatedQueryMetric, queryMetrics, lastUpdated, true);
+                queryMetrics = Collections.singletonList(cachedQueryMetric.getQueryMetric());
             }
             
             long nextUpdateNumber = 0;
@@ -441,20 +482,77 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
             }
             
             updatedQueryMetric.setNumUpdates(nextUpdateNumber);
+            newCachedQueryMetric.setNumUpdates(nextUpdateNumber);
             
-            synchronized (ShardTableQueryMetricHandler.class) {
-                newCachedQueryMetric.setNumUpdates(nextUpdateNumber);
-                metricsCache.put(updatedQueryMetric.getQueryId(), newCachedQueryMetric);
+            ContentQueryMetricsIngestHelper.HelperDelegate<QueryMetric> delegate = new ContentQueryMetricsIngestHelper.HelperDelegate<>();
+            Multimap<String,String> fields = delegate.getEventFieldsToWrite(updatedQueryMetric);
+            for (QueryMetric storedQueryMetric : queryMetrics) {
+                Multimap<String,String> fieldsToDelete = getFieldsToDelete(delegate.getEventFieldsToDelete(updatedQueryMetric, storedQueryMetric), fields);
+                writeMetrics(updatedQueryMetric, storedQueryMetric, fieldsToDelete, lastUpdated, true);
             }
             
-            // write new entry
-            writeMetrics(updatedQueryMetric, Collections.singletonList(updatedQueryMetric), lastUpdated, false);
+            // write new entry, only the fields that changed since the cached metric was written if we have it
+            Multimap<String,String> fieldsToWrite = fields;
+            if (cachedQueryMetric != null) {
+                fieldsToWrite = getChangedFields(fields, cachedQueryMetric.getWrittenFields());
+            }
+            writeMetrics(updatedQueryMetric, updatedQueryMetric, fieldsToWrite, lastUpdated, false);
+            
+            metricsCache.put(updatedQueryMetric.getQueryId(), new CachedQueryMetric(newCachedQueryMetric, fields));
+            
+            // the rollups are written after the cache is updated, so a failed write is never counted twice by the next update
+            if (summaryTableName != null) {
+                // only count the query on its first update, the stored metrics are empty as well when looking them up failed
+                boolean newQuery = cachedQueryMetric == null && updatedQueryMetric.getLifecycle() == Lifecycle.DEFINED;
+                writeRollups(updatedQueryMetric, queryMetrics, newQuery, sid);
+            }
         } finally {
             enableLogs(true);
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Get the stored values to delete, leaving out any value that the updated metric still has. The deletes are stamped with the time of the update, which is
+     * later than the timestamp the values are written with, so a value that was deleted and written again would stay hidden.
+     * 
+     * @param fieldsToDelete
+     *            the stored values that differ from the updated metric
+     * @param fields
+     *            the fields of the updated metric
+     * @return the values to delete
+     */
+    static Multimap<String,String> getFieldsToDelete(Multimap<String,String> fieldsToDelete, Multimap<String,String> fields) {
+        Multimap<String,String> deletedFields = HashMultimap.create();
+        for (Entry<String,String> field : fieldsToDelete.entries()) {
+            if (!fields.containsEntry(field.getKey(), field.getValue())) {
+                deletedFields.put(field.getKey(), field.getValue());
+            }
+        }
+        return deletedFields;
+    }
+    
+    /**
+     * Get the fields that need to be written to bring a stored metric up to date. The event keys of a field include its value, and values the updated metric
+     * still has are never deleted, so a field whose value has not changed since it was last written is still visible and is not written again.
+     * 
+     * @param fields
+     *            the fields of the updated metric
+     * @param writtenFields
+     *            the fields last written for the metric
+     * @return the fields to write
+     */
+    static Multimap<String,String> getChangedFields(Multimap<String,String> fields, Multimap<String,String> writtenFields) {
+        Multimap<String,String> changedFields = HashMultimap.create();
+        for (Entry<String,String> field : fields.entries()) {
+            if (!writtenFields.containsEntry(field.getKey(), field.getValue())) {
+                changedFields.put(field.getKey(), field.getValue());
+            }
         }
+        return changedFields;
     }
     
-    private List<QueryMetric> getQueryMetrics(BaseResponse response, Query query, DatawavePrincipal datawavePrincipal) {
+    protected List<QueryMetric> getQueryMetrics(BaseResponse response, Query query, DatawavePrincipal datawavePrincipal) {
         List<QueryMetric> queryMetrics = new ArrayList<>();
         RunningQuery runningQuery = null;
         Connector connector = null;
@@ -579,6 +677,10 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
             // this method is open to any user
             datawavePrincipal = callerPrincipal;
             
+            if (summaryTableName != null) {
+                return getRollupSummary(response, QueryMetricSummaryRollup.ALL_USERS, begin, end, datawavePrincipal);
+            }
+            
             Collection<? extends Collection<String>> authorizations = datawavePrincipal.getAuthorizations();
             QueryImpl query = new QueryImpl();
             query.setBeginDate(begin);
@@ -615,6 +717,10 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
             // this method is open to any user
             datawavePrincipal = callerPrincipal;
             
+            if (summaryTableName != null) {
+                return getRollupSummary(response, user, begin, end, datawavePrincipal);
+            }
+            
             Collection<? extends Collection<String>> authorizations = datawavePrincipal.getAuthorizations();
             QueryImpl query = new QueryImpl();
             query.setBeginDate(begin);
@@ -641,6 +747,49 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
         return response;
     }
     
+    /**
+     * Read the rollups of a user, or of every user, into a summary response. The hour and day buckets need the hourly rollups from the start of the day before
+     * today, and the daily rollups are read for anything older, so that a 90 day summary reads at most 90 daily rows rather than 2160 hourly ones.
+     */
+    private <R extends QueryMetricsSummaryResponse> R getRollupSummary(R response, String user, Date begin, Date end, DatawavePrincipal datawavePrincipal) {
+        Connector connector = null;
+        
+        try {
+            Map<String,String> trackingMap = this.connectionFactory.getTrackingMap(Thread.currentThread().getStackTrace());
+            connector = this.connectionFactory.getConnection(Priority.ADMIN, trackingMap);
+            Set<Authorizations> authorizations = AuthorizationsUtil.buildAuthorizations(datawavePrincipal.getAuthorizations());
+            Scanner scanner = ScannerHelper.createScanner(connector, summaryTableName, authorizations);
+            Date now = new Date();
+            Date hoursBegin = QueryMetricSummaryRollup.getDayStart(DateUtils.addDays(now, -1));
+            
+            Map<Date,QueryMetricSummary> hourRollups = Collections.emptyMap();
+            if (end == null || !end.before(hoursBegin)) {
+                scanner.setRange(QueryMetricSummaryRollup.getRange(user, (begin == null || begin.before(hoursBegin) ? hoursBegin : begin), end));
+                hourRollups = QueryMetricSummaryRollup.read(scanner);
+            }
+            Map<Date,QueryMetricSummary> dayRollups = Collections.emptyMap();
+            if (begin == null || begin.before(hoursBegin)) {
+                Date daysEnd = new Date(hoursBegin.getTime() - 1);
+                scanner.setRange(QueryMetricSummaryRollup.getDayRange(user, begin, (end == null || end.after(daysEnd) ? daysEnd : end)));
+                dayRollups = QueryMetricSummaryRollup.read(scanner);
+            }
+            processQueryMetricsRollups(response, hourRollups, dayRollups, now);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            response.addExceptions(new QueryException(e).getQueryExceptionsInStack());
+        } finally {
+            if (null != connector) {
+                try {
+                    this.connectionFactory.returnConnection(connector);
+                } catch (Exception e) {
+                    log.warn("Could not return connector to factory", e);
+                }
+            }
+        }
+        
+        return response;
+    }
+    
     public QueryMetric toMetric(datawave.webservice.query.result.event.EventBase event) {
         SimpleDateFormat sdf_date_time1 = new SimpleDateFormat("yyyyMMdd HHmmss");
         SimpleDateFormat sdf_date_time2 = new SimpleDateFormat("yyyyMMdd HHmmss");
@@ -923,6 +1072,10 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
             // this method is open to any user
             datawavePrincipal = callerPrincipal;
             
+            if (summaryTableName != null) {
+                return getRollupSummary(response, QueryMetricSummaryRollup.ALL_USERS, begin, end, datawavePrincipal);
+            }
+            
             Collection<? extends Collection<String>> authorizations = datawavePrincipal.getAuthorizations();
             QueryImpl query = new QueryImpl();
             query.setBeginDate(begin);
@@ -948,4 +1101,25 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
         
         return response;
     }
+    
+    /**
+     * A snapshot of a query metric along with the fields that were last written for it
+     */
+    private static class CachedQueryMetric {
+        private final QueryMetric queryMetric;
+        private final Multimap<String,String> writtenFields;
+        
+        CachedQueryMetric(QueryMetric queryMetric, Multimap<String,String> writtenFields) {
+            this.queryMetric = queryMetric;
+            this.writtenFields = writtenFields;
+        }
+        
+        QueryMetric getQueryMetric() {
+            return queryMetric;
+        }
+        
+        Multimap<String,String> getWrittenFields() {
+            return writtenFields;
+        }
+    }
 }
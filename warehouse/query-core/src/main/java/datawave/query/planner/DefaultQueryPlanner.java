@@ -206,6 +206,11 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
      */
     protected boolean cacheDataTypes = false;
     
+    /**
+     * Caches planned query trees across queries, see {@link QueryPlanCache}
+     */
+    protected boolean cachePlans = false;
+    
     /**
      * Overrides behavior with doc specific ranges
      */
@@ -321,6 +326,7 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         this(other.maxRangesPerQueryPiece, other.limitScanners);
         setRangeStreamClass(other.getRangeStreamClass());
         setCacheDataTypes(other.getCacheDataTypes());
+        setCachePlans(other.getCachePlans());
         setDisableAnyFieldLookup(other.disableAnyFieldLookup);
         setDisableBoundedLookup(other.disableBoundedLookup);
         setDisableCompositeFields(other.disableCompositeFields);
@@ -414,7 +420,7 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         }
         
         try {
-            config.setQueryTree(updateQueryTree(scannerFactory, metadataHelper, dateIndexHelper, config, query, queryData, settings));
+            config.setQueryTree(planQueryTree(scannerFactory, metadataHelper, dateIndexHelper, config, query, queryData, settings));
         } catch (StackOverflowError e) {
             if (log.isTraceEnabled()) {
                 log.trace("Stack trace for overflow " + e);
@@ -535,6 +541,7 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         addOption(cfg, QueryOptions.LIMIT_FIELDS, config.getLimitFieldsAsString(), true);
         addOption(cfg, QueryOptions.GROUP_FIELDS, config.getGroupFieldsAsString(), true);
         addOption(cfg, QueryOptions.GROUP_FIELDS_BATCH_SIZE, config.getGroupFieldsBatchSizeAsString(), true);
+        addOption(cfg, QueryOptions.GROUP_FIELDS_MAX_MEMORY_BYTES, Long.toString(config.getGroupFieldsMaxMemoryBytes()), true);
         addOption(cfg, QueryOptions.UNIQUE_FIELDS, config.getUniqueFields().toString(), true);
         addOption(cfg, QueryOptions.HIT_LIST, Boolean.toString(config.isHitList()), false);
         addOption(cfg, QueryOptions.TERM_FREQUENCY_FIELDS, Joiner.on(',').join(config.getQueryTermFrequencyFields()), false);
@@ -660,6 +667,29 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         }
     }
     
+    /**
+     * Plan the query tree, or take the plan of an identical query from the {@link QueryPlanCache} when plans are cached. Failed plans, including those that
+     * found no results, are never cached.
+     */
+    protected ASTJexlScript planQueryTree(ScannerFactory scannerFactory, MetadataHelper metadataHelper, DateIndexHelper dateIndexHelper,
+                    ShardQueryConfiguration config, String query, QueryData queryData, Query settings) throws DatawaveQueryException {
+        if (!cachePlans) {
+            return updateQueryTree(scannerFactory, metadataHelper, dateIndexHelper, config, query, queryData, settings);
+        }
+        
+        List<Object> key = QueryPlanCache.getKey(this, config, query, settings);
+        TraceStopwatch stopwatch = config.getTimers().newStartedStopwatch("DefaultQueryPlanner - Check the query plan cache");
+        ASTJexlScript queryTree = QueryPlanCache.apply(key, config);
+        stopwatch.stop();
+        if (queryTree == null) {
+            queryTree = updateQueryTree(scannerFactory, metadataHelper, dateIndexHelper, config, query, queryData, settings);
+            if (queryTree != null) {
+                QueryPlanCache.put(key, queryTree, config);
+            }
+        }
+        return queryTree;
+    }
+    
     protected ASTJexlScript updateQueryTree(ScannerFactory scannerFactory, MetadataHelper metadataHelper, DateIndexHelper dateIndexHelper,
                     ShardQueryConfiguration config, String query, QueryData queryData, Query settings) throws DatawaveQueryException {
         final QueryStopwatch timers = config.getTimers();
@@ -1999,10 +2029,15 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
                         addOption(cfg, QueryOptions.MAX_IVARATOR_OPEN_FILES, Integer.toString(config.getIvaratorMaxOpenFiles()), false);
                         addOption(cfg, QueryOptions.MAX_IVARATOR_RESULTS, Long.toString(config.getMaxIvaratorResults()), false);
                         addOption(cfg, QueryOptions.IVARATOR_NUM_RETRIES, Integer.toString(config.getIvaratorNumRetries()), false);
+                        addOption(cfg, QueryOptions.IVARATOR_OFF_HEAP_SORTED_SETS, Boolean.toString(config.isIvaratorOffHeapSortedSets()), false);
                         addOption(cfg, QueryOptions.IVARATOR_PERSIST_VERIFY, Boolean.toString(config.isIvaratorPersistVerify()), false);
                         addOption(cfg, QueryOptions.IVARATOR_PERSIST_VERIFY_COUNT, Integer.toString(config.getIvaratorPersistVerifyCount()), false);
                         addOption(cfg, QueryOptions.MAX_EVALUATION_PIPELINES, Integer.toString(config.getMaxEvaluationPipelines()), false);
                         addOption(cfg, QueryOptions.MAX_PIPELINE_CACHED_RESULTS, Integer.toString(config.getMaxPipelineCachedResults()), false);
+                        if (config.isAdaptiveEvaluationPipelines()) {
+                            addOption(cfg, QueryOptions.ADAPTIVE_EVALUATION_PIPELINES, Boolean.toString(true), false);
+                            addOption(cfg, QueryOptions.MIN_EVALUATION_PIPELINES, Integer.toString(config.getMinEvaluationPipelines()), false);
+                        }
                         addOption(cfg, QueryOptions.MAX_IVARATOR_SOURCES, Integer.toString(config.getMaxIvaratorSources()), false);
                         
                         if (config.getYieldThresholdMs() != Long.MAX_VALUE && config.getYieldThresholdMs() > 0) {
@@ -2481,6 +2516,14 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         this.cacheDataTypes = cacheDataTypes;
     }
     
+    public boolean getCachePlans() {
+        return cachePlans;
+    }
+    
+    public void setCachePlans(boolean cachePlans) {
+        this.cachePlans = cachePlans;
+    }
+    
     private Multimap<String,String> invertMultimap(Map<String,String> multi) {
         Multimap<String,String> inverse = HashMultimap.create();
         for (Entry<String,String> entry : multi.entrySet()) {
@@ -0,0 +1,262 @@
+package datawave.query.planner;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import datawave.data.type.DiscreteIndexType;
+import datawave.data.type.Type;
+import datawave.query.attributes.UniqueFields;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.jexl.visitors.RebuildingVisitor;
+import datawave.webservice.query.Query;
+import datawave.webservice.query.QueryImpl.Parameter;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of planned query trees that is shared across queries, so that a query that is run again with the same parameters and authorizations skips the
+ * parsing, model expansion, index expansion and range lookups of {@link DefaultQueryPlanner#updateQueryTree}. Along with the tree, each plan keeps the parts of
+ * the {@link ShardQueryConfiguration} that planning sets, so that a hit leaves the configuration as planning would have.
+ * <p>
+ * The key holds the planner, the query logic, the query, its parameters, its date range, the authorizations and the tables planning reads, along with a
+ * generation that {@link #invalidateAll()} advances when the metadata changes. Plans also expire after a configurable time, which bounds how stale the
+ * index expansions within them can be.
+ * <p>
+ * The cache is shared by every planner in the JVM, so it is sized once from the {@link #MAX_SIZE_PROPERTY} and {@link #EXPIRE_MILLIS_PROPERTY} system
+ * properties rather than by each planner.
+ */
+public class QueryPlanCache {
+    
+    private static final Logger log = Logger.getLogger(QueryPlanCache.class);
+    
+    public static final String MAX_SIZE_PROPERTY = "datawave.query.plan.cache.max.size";
+    public static final String EXPIRE_MILLIS_PROPERTY = "datawave.query.plan.cache.expire.millis";
+    public static final long DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    
+    private static final AtomicLong generation = new AtomicLong();
+    
+    private static final long maxSize = Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+    private static final long expireMillis = Long.getLong(EXPIRE_MILLIS_PROPERTY, DEFAULT_EXPIRE_MILLIS);
+    private static final Cache<List<Object>,Plan> plans = CacheBuilder.newBuilder().maximumSize(maxSize)
+                    .expireAfterWrite(expireMillis, TimeUnit.MILLISECONDS).recordStats().build();
+    
+    private QueryPlanCache() {}
+    
+    public static long getMaxSize() {
+        return maxSize;
+    }
+    
+    public static long getExpireMillis() {
+        return expireMillis;
+    }
+    
+    /**
+     * Drop every plan, and keep plans that were being planned against the old metadata from being found once they are put
+     */
+    public static void invalidateAll() {
+        generation.incrementAndGet();
+        plans.invalidateAll();
+        log.debug("Invalidated the query plan cache");
+    }
+    
+    public static CacheStats getStats() {
+        return plans.stats();
+    }
+    
+    public static long size() {
+        return plans.size();
+    }
+    
+    /**
+     * Get the key of a query, which has to be called before planning as planning updates the configuration
+     * 
+     * @param planner
+     *            the planner
+     * @param config
+     *            the configuration
+     * @param query
+     *            the query string
+     * @param settings
+     *            the query settings
+     * @return the key
+     */
+    public static List<Object> getKey(QueryPlanner planner, ShardQueryConfiguration config, String query, Query settings) {
+        Set<String> parameters = new TreeSet<>();
+        if (settings != null && settings.getParameters() != null) {
+            for (Parameter parameter : settings.getParameters()) {
+                parameters.add(parameter.getParameterName() + '=' + parameter.getParameterValue());
+            }
+        }
+        Set<String> authorizations = new TreeSet<>();
+        if (config.getAuthorizations() != null) {
+            config.getAuthorizations().forEach(auths -> authorizations.add(auths.toString()));
+        }
+        
+        return Arrays.asList(generation.get(), planner.getClass().getName(), settings == null ? null : settings.getQueryLogicName(), query, parameters,
+                        time(config.getBeginDate()), time(config.getEndDate()), authorizations,
+                        config.getDatatypeFilter() == null ? null : new TreeSet<>(config.getDatatypeFilter()), config.getModelName(),
+                        config.getModelTableName(), config.getMetadataTableName(), config.getShardTableName(), config.getIndexTableName());
+    }
+    
+    private static Long time(Date date) {
+        return date == null ? null : date.getTime();
+    }
+    
+    /**
+     * Apply the plan cached under a key to a configuration
+     * 
+     * @param key
+     *            the key
+     * @param config
+     *            the configuration to update
+     * @return a copy of the planned query tree, or null if there is no plan cached
+     */
+    public static ASTJexlScript apply(List<Object> key, ShardQueryConfiguration config) {
+        Plan plan = plans.getIfPresent(key);
+        if (plan == null) {
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Using the cached plan for " + key);
+        }
+        return plan.apply(config);
+    }
+    
+    /**
+     * Cache a planned query tree and the configuration that planning left
+     * 
+     * @param key
+     *            the key, from before planning
+     * @param queryTree
+     *            the planned query tree
+     * @param config
+     *            the configuration after planning
+     */
+    public static void put(List<Object> key, ASTJexlScript queryTree, ShardQueryConfiguration config) {
+        plans.put(key, new Plan(queryTree, config));
+    }
+    
+    /**
+     * A planned query tree and the parts of the configuration that planning sets
+     */
+    static class Plan {
+        private final ASTJexlScript queryTree;
+        private final Date beginDate;
+        private final Date endDate;
+        private final Set<String> blacklistedFields;
+        private final boolean collapseUids;
+        private final Map<String,String> compositeFieldSeparators;
+        private final Multimap<String,String> compositeToFieldMap;
+        private final Map<String,Date> compositeTransitionDates;
+        private final boolean containsCompositeTerms;
+        private final boolean containsIndexOnlyTerms;
+        private final boolean expandAllTerms;
+        private final Map<String,DiscreteIndexType<?>> fieldToDiscreteIndexTypes;
+        private final Set<String> groupFields;
+        private final int groupFieldsBatchSize;
+        private final boolean hitList;
+        private final boolean includeGroupingContext;
+        private final Set<String> indexedFields;
+        private final Set<String> limitFields;
+        private final Set<String> noExpansionFields;
+        private final Multimap<String,Type<?>> normalizedFieldsDatatypes;
+        private final Set<String> projectFields;
+        private final Multimap<String,Type<?>> queryFieldsDatatypes;
+        private final Set<String> queryTermFrequencyFields;
+        private final Set<String> reverseIndexedFields;
+        private final boolean sortedUIDs;
+        private final boolean termFrequenciesRequired;
+        private final UniqueFields uniqueFields;
+        
+        Plan(ASTJexlScript queryTree, ShardQueryConfiguration config) {
+            this.queryTree = (ASTJexlScript) RebuildingVisitor.copy(queryTree);
+            this.beginDate = copy(config.getBeginDate());
+            this.endDate = copy(config.getEndDate());
+            this.blacklistedFields = copy(config.getBlacklistedFields());
+            this.collapseUids = config.getCollapseUids();
+            this.compositeFieldSeparators = copy(config.getCompositeFieldSeparators());
+            this.compositeToFieldMap = null == config.getCompositeToFieldMap() ? null : ArrayListMultimap.create(config.getCompositeToFieldMap());
+            this.compositeTransitionDates = copy(config.getCompositeTransitionDates());
+            this.containsCompositeTerms = config.isContainsCompositeTerms();
+            this.containsIndexOnlyTerms = config.isContainsIndexOnlyTerms();
+            this.expandAllTerms = config.isExpandAllTerms();
+            this.fieldToDiscreteIndexTypes = copy(config.getFieldToDiscreteIndexTypes());
+            this.groupFields = copy(config.getGroupFields());
+            this.groupFieldsBatchSize = config.getGroupFieldsBatchSize();
+            this.hitList = config.isHitList();
+            this.includeGroupingContext = config.getIncludeGroupingContext();
+            this.indexedFields = copy(config.getIndexedFields());
+            this.limitFields = copy(config.getLimitFields());
+            this.noExpansionFields = copy(config.getNoExpansionFields());
+            this.normalizedFieldsDatatypes = copy(config.getNormalizedFieldsDatatypes());
+            this.projectFields = copy(config.getProjectFields());
+            this.queryFieldsDatatypes = copy(config.getQueryFieldsDatatypes());
+            this.queryTermFrequencyFields = copy(config.getQueryTermFrequencyFields());
+            this.reverseIndexedFields = copy(config.getReverseIndexedFields());
+            this.sortedUIDs = config.isSortedUIDs();
+            this.termFrequenciesRequired = config.isTermFrequenciesRequired();
+            this.uniqueFields = null == config.getUniqueFields() ? null : UniqueFields.copyOf(config.getUniqueFields());
+        }
+        
+        ASTJexlScript apply(ShardQueryConfiguration config) {
+            config.setBeginDate(copy(beginDate));
+            config.setEndDate(copy(endDate));
+            config.setBlacklistedFields(copy(blacklistedFields));
+            config.setCollapseUids(collapseUids);
+            config.setCompositeFieldSeparators(copy(compositeFieldSeparators));
+            config.setCompositeToFieldMap(null == compositeToFieldMap ? null : ArrayListMultimap.create(compositeToFieldMap));
+            config.setCompositeTransitionDates(copy(compositeTransitionDates));
+            config.setContainsCompositeTerms(containsCompositeTerms);
+            config.setContainsIndexOnlyTerms(containsIndexOnlyTerms);
+            config.setExpandAllTerms(expandAllTerms);
+            config.setFieldToDiscreteIndexTypes(copy(fieldToDiscreteIndexTypes));
+            config.setGroupFields(copy(groupFields));
+            config.setGroupFieldsBatchSize(groupFieldsBatchSize);
+            config.setHitList(hitList);
+            config.setIncludeGroupingContext(includeGroupingContext);
+            config.setIndexedFields(copy(indexedFields));
+            config.setLimitFields(copy(limitFields));
+            config.setNoExpansionFields(copy(noExpansionFields));
+            config.setNormalizedFieldsDatatypes(copy(normalizedFieldsDatatypes));
+            config.setProjectFields(copy(projectFields));
+            config.setQueryFieldsDatatypes(copy(queryFieldsDatatypes));
+            config.setQueryTermFrequencyFields(copy(queryTermFrequencyFields));
+            config.setReverseIndexedFields(copy(reverseIndexedFields));
+            config.setSortedUIDs(sortedUIDs);
+            config.setTermFrequenciesRequired(termFrequenciesRequired);
+            config.setUniqueFields(null == uniqueFields ? null : UniqueFields.copyOf(uniqueFields));
+            return (ASTJexlScript) RebuildingVisitor.copy(queryTree);
+        }
+        
+        private static Date copy(Date date) {
+            return null == date ? null : new Date(date.getTime());
+        }
+        
+        private static <T> Set<T> copy(Set<T> set) {
+            return null == set ? null : Sets.newHashSet(set);
+        }
+        
+        private static <K,V> Map<K,V> copy(Map<K,V> map) {
+            return null == map ? null : Maps.newHashMap(map);
+        }
+        
+        private static <K,V> Multimap<K,V> copy(Multimap<K,V> multimap) {
+            return null == multimap ? null : HashMultimap.create(multimap);
+        }
+    }
+}
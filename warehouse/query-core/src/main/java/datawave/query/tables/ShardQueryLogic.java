@@ -72,6 +72,7 @@ import org.apache.accumulo.core.security.Authorizations;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.log4j.Logger;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -185,6 +186,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
     
     private CardinalityConfiguration cardinalityConfiguration = null;
     
+    // transforms that may spill under the ivarator cache dirs, which are closed along with the query
+    private final List<Closeable> spillingTransforms = new ArrayList<>();
+    
+    // the spilling transforms of the current query, shared by every transformer created for it so that their spilled runs last as long as the query does
+    private ShardQueryConfiguration spillingTransformsConfig = null;
+    private UniqueTransform uniqueTransform = null;
+    private GroupingTransform groupingTransform = null;
+    
     /**
      * Basic constructor
      */
@@ -594,11 +603,24 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         if (getConfig() != null) {
             transformer.setProjectFields(getConfig().getProjectFields());
             transformer.setBlacklistedFields(getConfig().getBlacklistedFields());
+            if (spillingTransformsConfig != getConfig()) {
+                spillingTransformsConfig = getConfig();
+                uniqueTransform = null;
+                groupingTransform = null;
+            }
             if (getConfig().getUniqueFields() != null && !getConfig().getUniqueFields().isEmpty()) {
-                transformer.addTransform(new UniqueTransform(this, getConfig().getUniqueFields()));
+                if (uniqueTransform == null) {
+                    uniqueTransform = new UniqueTransform(this, getConfig().getUniqueFields());
+                    spillingTransforms.add(uniqueTransform);
+                }
+                transformer.addTransform(uniqueTransform);
             }
             if (getConfig().getGroupFields() != null && !getConfig().getGroupFields().isEmpty()) {
-                transformer.addTransform(new GroupingTransform(this, getConfig().getGroupFields()));
+                if (groupingTransform == null) {
+                    groupingTransform = new GroupingTransform(this, getConfig().getGroupFields());
+                    spillingTransforms.add(groupingTransform);
+                }
+                transformer.addTransform(groupingTransform);
             }
         }
         
@@ -1087,6 +1109,19 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             }
         }
         
+        for (Closeable transform : spillingTransforms) {
+            try {
+                log.debug("Closing ShardQueryLogic transform: " + transform.getClass().getSimpleName());
+                transform.close();
+            } catch (IOException e) {
+                log.error("Caught exception trying to close " + transform.getClass().getSimpleName(), e);
+            }
+        }
+        spillingTransforms.clear();
+        spillingTransformsConfig = null;
+        uniqueTransform = null;
+        groupingTransform = null;
+        
     }
     
     @Override
@@ -1203,6 +1238,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         return getConfig().getGroupFieldsBatchSize();
     }
     
+    public long getGroupFieldsMaxMemoryBytes() {
+        return getConfig().getGroupFieldsMaxMemoryBytes();
+    }
+    
+    public void setGroupFieldsMaxMemoryBytes(long groupFieldsMaxMemoryBytes) {
+        getConfig().setGroupFieldsMaxMemoryBytes(groupFieldsMaxMemoryBytes);
+    }
+    
     public UniqueFields getUniqueFields() {
         return getConfig().getUniqueFields();
     }
@@ -1211,6 +1254,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setUniqueFields(uniqueFields);
     }
     
+    public long getUniqueMaxMemoryBytes() {
+        return getConfig().getUniqueMaxMemoryBytes();
+    }
+    
+    public void setUniqueMaxMemoryBytes(long uniqueMaxMemoryBytes) {
+        getConfig().setUniqueMaxMemoryBytes(uniqueMaxMemoryBytes);
+    }
+    
     public String getBlacklistedFieldsString() {
         return getConfig().getBlacklistedFieldsAsString();
     }
@@ -1652,6 +1703,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setIvaratorNumRetries(ivaratorNumRetries);
     }
     
+    public boolean isIvaratorOffHeapSortedSets() {
+        return getConfig().isIvaratorOffHeapSortedSets();
+    }
+    
+    public void setIvaratorOffHeapSortedSets(boolean ivaratorOffHeapSortedSets) {
+        getConfig().setIvaratorOffHeapSortedSets(ivaratorOffHeapSortedSets);
+    }
+    
     public boolean isIvaratorPersistVerify() {
         return getConfig().isIvaratorPersistVerify();
     }
@@ -1700,6 +1759,22 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setMaxPipelineCachedResults(maxCachedResults);
     }
     
+    public boolean isAdaptiveEvaluationPipelines() {
+        return getConfig().isAdaptiveEvaluationPipelines();
+    }
+    
+    public void setAdaptiveEvaluationPipelines(boolean adaptiveEvaluationPipelines) {
+        getConfig().setAdaptiveEvaluationPipelines(adaptiveEvaluationPipelines);
+    }
+    
+    public int getMinEvaluationPipelines() {
+        return getConfig().getMinEvaluationPipelines();
+    }
+    
+    public void setMinEvaluationPipelines(int minEvaluationPipelines) {
+        getConfig().setMinEvaluationPipelines(minEvaluationPipelines);
+    }
+    
     public double getMinimumSelectivity() {
         return getConfig().getMinSelectivity();
     }
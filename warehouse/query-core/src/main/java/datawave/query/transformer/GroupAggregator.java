@@ -0,0 +1,543 @@
+package datawave.query.transformer;
+
+import datawave.data.type.Type;
+import datawave.marking.MarkingFunctions;
+import datawave.query.transformer.GroupingTransform.GroupingTypeAttribute;
+import datawave.query.util.sortedset.BufferedFileBackedSortedSet;
+import datawave.query.util.sortedset.ByteArrayComparator;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.io.WritableUtils;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Counts the documents in each group for the {@link GroupingTransform}. Groups are kept in an open addressing hash table whose slots hold the attributes of
+ * the group, its count as a primitive, and the visibility of the documents counted so far. Visibilities are merged as documents are added, so no per-document
+ * state is kept: when a document matches an existing group, the visibilities of its attributes are merged into those of the group's attributes, and its
+ * visibility into the group's.
+ * <p>
+ * When the groups held in memory go over the memory budget they are spilled as a sorted run of serialized partial aggregates into a
+ * {@link BufferedFileBackedSortedSet} (typically an {@link datawave.query.util.sortedset.HdfsBackedSortedSet} using the ivarator cache dirs). Draining the
+ * aggregator then merges the runs, combining the partial aggregates of each group as they come off the merged runs in order. Without a spill set, an aggregator
+ * over budget reports itself as full, so that the caller can hand back its partial aggregates early (e.g. from the tserver to be combined on the webserver),
+ * and grows without bound if the budget is &lt;= 0.
+ */
+class GroupAggregator {
+    
+    private static final Logger log = getLogger(GroupAggregator.class);
+    
+    // approximate heap overhead per group (attribute array and the slots of the table) in addition to the attributes themselves
+    protected static final int GROUP_OVERHEAD = 64;
+    
+    private static final int INITIAL_CAPACITY = 64;
+    private static final ByteArrayComparator COMPARATOR = new ByteArrayComparator();
+    // orders attributes the same way in every serialized group: by field name, then by type and value
+    private static final Comparator<GroupingTypeAttribute<?>> ATTRIBUTE_ORDER = Comparator
+                    .comparing((GroupingTypeAttribute<?> attr) -> attr.getMetadata().getRow().toString())
+                    .thenComparing(attr -> attr.getType().getClass().getName()).thenComparing(attr -> attr.getType().getDelegateAsString());
+    
+    private final MarkingFunctions markingFunctions;
+    private final long maxMemoryBytes;
+    private final BufferedFileBackedSortedSet<byte[]> spillSet;
+    
+    // the table: a slot is empty when its attributes are null
+    private GroupingTypeAttribute<?>[][] attributes;
+    private int[] hashes;
+    private long[] counts;
+    private ColumnVisibility[] visibilities;
+    // the visibility most recently merged into each group, to skip merging it again
+    private ColumnVisibility[] lastVisibilities;
+    private int size = 0;
+    private long memoryBytes = 0;
+    
+    private long spillSequence = 0;
+    private int spillCount = 0;
+    private boolean draining = false;
+    
+    /**
+     * Create an aggregator that is held in memory only
+     * 
+     * @param markingFunctions
+     *            used to merge visibilities
+     * @param maxMemoryBytes
+     *            the memory budget, or &lt;= 0 for no budget
+     */
+    public GroupAggregator(MarkingFunctions markingFunctions, long maxMemoryBytes) {
+        this(markingFunctions, maxMemoryBytes, null);
+    }
+    
+    /**
+     * Create an aggregator that spills to the supplied sorted set when over the memory budget
+     * 
+     * @param markingFunctions
+     *            used to merge visibilities
+     * @param maxMemoryBytes
+     *            the memory budget for the groups held in memory
+     * @param spillSet
+     *            the set to spill sorted runs into, which should be created with a {@link ByteArrayComparator} and a buffer persist threshold large enough to
+     *            never persist on its own. May be null.
+     */
+    public GroupAggregator(MarkingFunctions markingFunctions, long maxMemoryBytes, BufferedFileBackedSortedSet<byte[]> spillSet) {
+        this.markingFunctions = markingFunctions;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.spillSet = spillSet;
+        allocate(INITIAL_CAPACITY);
+    }
+    
+    private void allocate(int capacity) {
+        attributes = new GroupingTypeAttribute<?>[capacity][];
+        hashes = new int[capacity];
+        counts = new long[capacity];
+        visibilities = new ColumnVisibility[capacity];
+        lastVisibilities = new ColumnVisibility[capacity];
+    }
+    
+    /**
+     * Count documents in a group
+     * 
+     * @param group
+     *            the attributes of the group, which are kept if the group is new
+     * @param count
+     *            the number of documents
+     * @param visibility
+     *            the visibility of the documents
+     */
+    public void add(Collection<GroupingTypeAttribute<?>> group, long count, ColumnVisibility visibility) {
+        int hash = hash(group);
+        int mask = attributes.length - 1;
+        int slot = hash & mask;
+        while (attributes[slot] != null) {
+            if (hashes[slot] == hash && sameGroup(attributes[slot], group)) {
+                counts[slot] += count;
+                mergeAttributeVisibilities(attributes[slot], group);
+                mergeVisibility(slot, visibility);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        GroupingTypeAttribute<?>[] groupAttributes = group.toArray(new GroupingTypeAttribute<?>[group.size()]);
+        attributes[slot] = groupAttributes;
+        hashes[slot] = hash;
+        counts[slot] = count;
+        visibilities[slot] = visibility;
+        lastVisibilities[slot] = visibility;
+        size++;
+        memoryBytes += GROUP_OVERHEAD;
+        for (GroupingTypeAttribute<?> attr : groupAttributes) {
+            memoryBytes += attr.sizeInBytes();
+        }
+        
+        if (size * 4 > attributes.length * 3) {
+            resize();
+        }
+        if (spillSet != null && !draining && maxMemoryBytes > 0 && memoryBytes >= maxMemoryBytes) {
+            spill();
+        }
+    }
+    
+    // the same as the hashCode of a set of the attributes, spread over the low bits used to pick a slot
+    private static int hash(Collection<GroupingTypeAttribute<?>> group) {
+        int hash = 0;
+        for (GroupingTypeAttribute<?> attr : group) {
+            hash += attr.hashCode();
+        }
+        return hash ^ (hash >>> 16);
+    }
+    
+    // the attributes of a group are distinct, so this is set equality
+    private static boolean sameGroup(GroupingTypeAttribute<?>[] existing, Collection<GroupingTypeAttribute<?>> group) {
+        if (existing.length != group.size()) {
+            return false;
+        }
+        for (GroupingTypeAttribute<?> attr : group) {
+            if (indexOf(existing, attr) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int indexOf(GroupingTypeAttribute<?>[] existing, GroupingTypeAttribute<?> attr) {
+        for (int i = 0; i < existing.length; i++) {
+            if (existing[i].equals(attr)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private void mergeAttributeVisibilities(GroupingTypeAttribute<?>[] existing, Collection<GroupingTypeAttribute<?>> group) {
+        for (GroupingTypeAttribute<?> attr : group) {
+            GroupingTypeAttribute<?> existingAttr = existing[indexOf(existing, attr)];
+            if (!existingAttr.getColumnVisibility().equals(attr.getColumnVisibility())) {
+                existingAttr.setColumnVisibility(combine(existingAttr.getColumnVisibility(), attr.getColumnVisibility()));
+            }
+        }
+    }
+    
+    private void mergeVisibility(int slot, ColumnVisibility visibility) {
+        if (visibility == null || visibility.equals(lastVisibilities[slot]) || visibility.equals(visibilities[slot])) {
+            return;
+        }
+        visibilities[slot] = (visibilities[slot] == null) ? visibility : combine(visibilities[slot], visibility);
+        lastVisibilities[slot] = visibility;
+    }
+    
+    private ColumnVisibility combine(ColumnVisibility first, ColumnVisibility second) {
+        try {
+            return markingFunctions.combine(Arrays.asList(first, second));
+        } catch (MarkingFunctions.Exception e) {
+            throw new IllegalStateException("Unable to merge column visibilities: " + first + " and " + second, e);
+        }
+    }
+    
+    private void resize() {
+        GroupingTypeAttribute<?>[][] oldAttributes = attributes;
+        int[] oldHashes = hashes;
+        long[] oldCounts = counts;
+        ColumnVisibility[] oldVisibilities = visibilities;
+        ColumnVisibility[] oldLastVisibilities = lastVisibilities;
+        allocate(oldAttributes.length * 2);
+        int mask = attributes.length - 1;
+        for (int i = 0; i < oldAttributes.length; i++) {
+            if (oldAttributes[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (attributes[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                attributes[slot] = oldAttributes[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+                visibilities[slot] = oldVisibilities[i];
+                lastVisibilities[slot] = oldLastVisibilities[i];
+            }
+        }
+    }
+    
+    /**
+     * @return true if the aggregator is over its memory budget and has nowhere to spill
+     */
+    public boolean isFull() {
+        return spillSet == null && maxMemoryBytes > 0 && memoryBytes >= maxMemoryBytes;
+    }
+    
+    /**
+     * @return true if there are no groups in memory or spilled
+     */
+    public boolean isEmpty() {
+        return size == 0 && spillCount == 0;
+    }
+    
+    /**
+     * @return the approximate number of bytes held in memory by the groups
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+    
+    /**
+     * @return the number of times the groups have been spilled
+     */
+    public int getSpillCount() {
+        return spillCount;
+    }
+    
+    /**
+     * Hand over the groups counted so far, leaving the aggregator empty. Spilled groups are merged with those in memory as the iterator is consumed, and the
+     * spilled runs are removed once it is exhausted. Groups added while spilled groups are being drained are held in memory.
+     * 
+     * @return the groups
+     */
+    public Iterator<Group> drain() {
+        if (spillCount == 0) {
+            Iterator<Group> groups = new TableIterator(attributes, counts, visibilities);
+            clearTable();
+            return groups;
+        }
+        spill();
+        spillCount = 0;
+        draining = true;
+        return new SpillIterator(spillSet.iterator());
+    }
+    
+    private void clearTable() {
+        allocate(INITIAL_CAPACITY);
+        size = 0;
+        memoryBytes = 0;
+    }
+    
+    /**
+     * Drop all groups, including any spilled
+     */
+    public void clear() {
+        clearTable();
+        spillCount = 0;
+        draining = false;
+        if (spillSet != null) {
+            spillSet.clear();
+        }
+    }
+    
+    private void spill() {
+        long start = System.currentTimeMillis();
+        TreeSet<byte[]> run = new TreeSet<>(COMPARATOR);
+        try {
+            for (int i = 0; i < attributes.length; i++) {
+                if (attributes[i] != null) {
+                    run.add(serialize(attributes[i], counts[i], visibilities[i]));
+                }
+            }
+            spillSet.addAll(run);
+            spillSet.persist();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to spill grouped results", e);
+        }
+        spillCount++;
+        log.debug("Spilled {} groups ({} bytes) in {}ms", size, memoryBytes, System.currentTimeMillis() - start);
+        clearTable();
+    }
+    
+    /**
+     * A group is serialized as the length of its key followed by the key, so that the partial aggregates of a group sort together, then a sequence number to
+     * keep those partial aggregates distinct within the set, then the aggregates themselves:
+     * 
+     * <pre>
+     * key:        attribute count, then for each attribute in order: field name, type class, value
+     * sequence:   long
+     * aggregates: count, visibility, then the visibility of each attribute in key order
+     * </pre>
+     */
+    private byte[] serialize(GroupingTypeAttribute<?>[] group, long count, ColumnVisibility visibility) throws IOException {
+        GroupingTypeAttribute<?>[] ordered = group.clone();
+        Arrays.sort(ordered, ATTRIBUTE_ORDER);
+        
+        ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+        DataOutputStream key = new DataOutputStream(keyBytes);
+        WritableUtils.writeVInt(key, ordered.length);
+        for (GroupingTypeAttribute<?> attr : ordered) {
+            WritableUtils.writeString(key, attr.getMetadata().getRow().toString());
+            WritableUtils.writeString(key, attr.getType().getClass().getName());
+            WritableUtils.writeString(key, attr.getType().getDelegateAsString());
+        }
+        key.flush();
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(keyBytes.size() + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(keyBytes.size());
+        keyBytes.writeTo(out);
+        out.writeLong(spillSequence++);
+        WritableUtils.writeVLong(out, count);
+        writeVisibility(out, visibility);
+        for (GroupingTypeAttribute<?> attr : ordered) {
+            writeVisibility(out, attr.getColumnVisibility());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    private static void writeVisibility(DataOutputStream out, ColumnVisibility visibility) throws IOException {
+        byte[] expression = (visibility == null) ? new byte[0] : visibility.getExpression();
+        WritableUtils.writeVInt(out, expression.length);
+        out.write(expression);
+    }
+    
+    private static ColumnVisibility readVisibility(DataInputStream in) throws IOException {
+        byte[] expression = new byte[WritableUtils.readVInt(in)];
+        in.readFully(expression);
+        return new ColumnVisibility(expression);
+    }
+    
+    // the length of the key of a serialized group, including the length itself
+    private static int keyLength(byte[] record) {
+        return 4 + (((record[0] & 0xff) << 24) | ((record[1] & 0xff) << 16) | ((record[2] & 0xff) << 8) | (record[3] & 0xff));
+    }
+    
+    private static boolean sameKey(byte[] record, byte[] other) {
+        int length = keyLength(record);
+        if (length != keyLength(other)) {
+            return false;
+        }
+        for (int i = 4; i < length; i++) {
+            if (record[i] != other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * The attributes of a group, with their merged visibilities, and the number and merged visibility of the documents in the group
+     */
+    public static class Group {
+        private final GroupingTypeAttribute<?>[] attributes;
+        private long count;
+        private ColumnVisibility visibility;
+        
+        Group(GroupingTypeAttribute<?>[] attributes, long count, ColumnVisibility visibility) {
+            this.attributes = attributes;
+            this.count = count;
+            this.visibility = visibility;
+        }
+        
+        public GroupingTypeAttribute<?>[] getAttributes() {
+            return attributes;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public ColumnVisibility getVisibility() {
+            return visibility;
+        }
+    }
+    
+    private static class TableIterator implements Iterator<Group> {
+        private final GroupingTypeAttribute<?>[][] attributes;
+        private final long[] counts;
+        private final ColumnVisibility[] visibilities;
+        private int slot = -1;
+        
+        TableIterator(GroupingTypeAttribute<?>[][] attributes, long[] counts, ColumnVisibility[] visibilities) {
+            this.attributes = attributes;
+            this.counts = counts;
+            this.visibilities = visibilities;
+            advance();
+        }
+        
+        private void advance() {
+            do {
+                slot++;
+            } while (slot < attributes.length && attributes[slot] == null);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return slot < attributes.length;
+        }
+        
+        @Override
+        public Group next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Group group = new Group(attributes[slot], counts[slot], visibilities[slot]);
+            advance();
+            return group;
+        }
+    }
+    
+    // merges the partial aggregates of each group as they come off the sorted runs
+    private class SpillIterator implements Iterator<Group> {
+        private final Iterator<byte[]> records;
+        private byte[] record;
+        
+        SpillIterator(Iterator<byte[]> records) {
+            this.records = records;
+            this.record = records.hasNext() ? records.next() : null;
+            if (record == null) {
+                finish();
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return record != null;
+        }
+        
+        @Override
+        public Group next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                Group group = deserialize(record);
+                record = records.hasNext() ? records.next() : null;
+                while (record != null && sameKey(group.key, record)) {
+                    merge(group, record);
+                    record = records.hasNext() ? records.next() : null;
+                }
+                if (record == null) {
+                    finish();
+                }
+                return group.group;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read spilled grouped results", e);
+            }
+        }
+        
+        private void finish() {
+            draining = false;
+            spillSet.clear();
+        }
+        
+        private KeyedGroup deserialize(byte[] record) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            in.readInt();
+            int numAttributes = WritableUtils.readVInt(in);
+            GroupingTypeAttribute<?>[] groupAttributes = new GroupingTypeAttribute<?>[numAttributes];
+            for (int i = 0; i < numAttributes; i++) {
+                String fieldName = WritableUtils.readString(in);
+                String typeClass = WritableUtils.readString(in);
+                String value = WritableUtils.readString(in);
+                Type<?> type;
+                try {
+                    type = (Type<?>) Class.forName(typeClass).newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IOException("Unable to create type " + typeClass, e);
+                }
+                type.setDelegateFromString(value);
+                groupAttributes[i] = new GroupingTypeAttribute<>(type, new Key(fieldName), true);
+            }
+            in.readLong();
+            long count = WritableUtils.readVLong(in);
+            ColumnVisibility visibility = readVisibility(in);
+            for (GroupingTypeAttribute<?> attr : groupAttributes) {
+                attr.setColumnVisibility(readVisibility(in));
+            }
+            return new KeyedGroup(record, new Group(groupAttributes, count, visibility));
+        }
+        
+        private void merge(KeyedGroup group, byte[] record) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            in.skipBytes(keyLength(record) + 8);
+            group.group.count += WritableUtils.readVLong(in);
+            ColumnVisibility visibility = readVisibility(in);
+            if (!visibility.equals(group.group.visibility)) {
+                group.group.visibility = combine(group.group.visibility, visibility);
+            }
+            for (GroupingTypeAttribute<?> attr : group.group.attributes) {
+                ColumnVisibility attrVisibility = readVisibility(in);
+                if (!attrVisibility.equals(attr.getColumnVisibility())) {
+                    attr.setColumnVisibility(combine(attr.getColumnVisibility(), attrVisibility));
+                }
+            }
+        }
+    }
+    
+    private static class KeyedGroup {
+        private final byte[] key;
+        private final Group group;
+        
+        KeyedGroup(byte[] key, Group group) {
+            this.key = key;
+            this.group = group;
+        }
+    }
+}
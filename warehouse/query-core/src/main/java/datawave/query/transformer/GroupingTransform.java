@@ -1,6 +1,5 @@
 package datawave.query.transformer;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SortedSetMultimap;
@@ -11,9 +10,11 @@ import datawave.marking.MarkingFunctions;
 import datawave.query.attributes.Attribute;
 import datawave.query.attributes.Document;
 import datawave.query.attributes.TypeAttribute;
+import datawave.query.config.ShardQueryConfiguration;
 import datawave.query.jexl.JexlASTHelper;
 import datawave.query.model.QueryModel;
 import datawave.query.tables.ShardQueryLogic;
+import datawave.query.util.sortedset.HdfsBackedSortedSet;
 import datawave.webservice.query.Query;
 import datawave.webservice.query.logic.BaseQueryLogic;
 import org.apache.accumulo.core.data.Key;
@@ -25,11 +26,13 @@ import org.slf4j.Logger;
 import org.springframework.util.Assert;
 
 import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.AbstractMap;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -41,7 +44,6 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -55,10 +57,12 @@ import static org.slf4j.LoggerFactory.getLogger;
  * next call on the tserver will flatten the aggregated data into a single Entry&gt;Key,Document&lt; to return to the web server. The web server will then
  * aggregate these documents by count.
  */
-public class GroupingTransform extends DocumentTransform.DefaultDocumentTransform {
+public class GroupingTransform extends DocumentTransform.DefaultDocumentTransform implements Closeable {
     
     private static final Logger log = getLogger(GroupingTransform.class);
     
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 8L * 1024 * 1024;
+    
     /**
      * the fields (user provided) to group by
      */
@@ -70,18 +74,24 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
     private Map<String,GroupingTypeAttribute<?>> fieldMap = Maps.newHashMap();
     
     /**
-     * holds the aggregated column visibilities for each grouped event
+     * the count and merged column visibilities of each group. Groups are keyed on attributes that ignore the metadata (with visibilities) in their hashCode
+     * and equals methods
      */
-    private Multimap<Collection<GroupingTypeAttribute<?>>,ColumnVisibility> fieldVisibilities = HashMultimap.create();
+    private GroupAggregator aggregator;
     
     /**
-     * A map of TypeAttribute collection keys to integer counts This map uses a special key type that ignores the metadata (with visibilities) in its hashCode
-     * and equals methods
+     * the memory budget of the aggregator, and where it may spill once over it (webserver only)
+     */
+    private long maxMemoryBytes = DEFAULT_MAX_MEMORY_BYTES;
+    private HdfsBackedSortedSet<byte[]> spillSet = null;
+    
+    /**
+     * groups drained from the aggregator that have yet to be made into documents
      */
-    private GroupCountingHashMap countingMap;
+    private Iterator<GroupAggregator.Group> groups = null;
     
     /**
-     * list of documents to return, created from the countingMap
+     * list of documents to return, created from the aggregated groups
      */
     private final LinkedList<Document> documents = new LinkedList<>();
     
@@ -91,9 +101,9 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
     private Map<String,String> reverseModelMapping = null;
     
     /**
-     * list of keys that have been read, in order to keep track of where we left off when a new iterator is created
+     * the last key that has been read, in order to keep track of where we left off when a new iterator is created
      */
-    private List<Key> keys = new ArrayList<>();
+    private Key lastKey = null;
     
     /**
      * flatten or not. true on the tserver, false on the webserver
@@ -112,6 +122,20 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
         this.flatten = flatten;
     }
     
+    /**
+     * tserver calls this CTOR with flatten = true. Called by QueryIterator::seek. Once the groups take more than maxMemoryBytes, the grouping iterator returns
+     * them early, to be combined with the rest on the web server.
+     * 
+     * @param logic
+     * @param groupFieldsSet
+     * @param flatten
+     * @param maxMemoryBytes
+     */
+    public GroupingTransform(BaseQueryLogic<Entry<Key,Value>> logic, Collection<String> groupFieldsSet, boolean flatten, long maxMemoryBytes) {
+        this(logic, groupFieldsSet, flatten);
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+    
     /**
      * web server calls this CTOR (flatten defaults to false) called by ShardQueryLogic::getTransformer(Query)
      * 
@@ -125,6 +149,12 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
             if (model != null) {
                 reverseModelMapping = model.getReverseQueryMapping();
             }
+            // spill to the ivarator cache dirs if they are configured, otherwise stay exact and let the groups grow
+            ShardQueryConfiguration config = ((ShardQueryLogic) logic).getConfig();
+            if (config.getGroupFieldsMaxMemoryBytes() > 0) {
+                spillSet = IvaratorSpillSets.create(config, "grouping");
+            }
+            maxMemoryBytes = (spillSet != null) ? config.getGroupFieldsMaxMemoryBytes() : -1;
         }
         log.trace("groupFieldsSet: {}", this.groupFieldsSet);
     }
@@ -133,10 +163,32 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
         return fields.stream().map(field -> JexlASTHelper.deconstructIdentifier(field)).collect(Collectors.toSet());
     }
     
+    /**
+     * The transform may be added to more than one transformer of a query (e.g. one per page response), so the aggregator is only created the first time and
+     * keeps its groups and spilled runs for the rest of the query.
+     */
     @Override
     public void initialize(Query settings, MarkingFunctions markingFunctions) {
         super.initialize(settings, markingFunctions);
-        this.countingMap = new GroupCountingHashMap(markingFunctions);
+        if (this.aggregator == null) {
+            this.aggregator = new GroupAggregator(markingFunctions, maxMemoryBytes, spillSet);
+        }
+    }
+    
+    /**
+     * Release any spilled groups, along with the directories they were spilled to, when the query is closed or cancelled before the groups have been drained.
+     * 
+     * @throws IOException
+     *             if the spill directories could not be removed
+     */
+    @Override
+    public void close() throws IOException {
+        if (aggregator != null) {
+            aggregator.clear();
+        }
+        if (spillSet != null) {
+            spillSet.delete();
+        }
     }
     
     @Nullable
@@ -176,11 +228,16 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
                 for (int i = 0; i < groupFieldsBatchSize; i++) {
                     if (in.hasNext()) {
                         GroupingTransform.this.apply(in.next());
+                        if (aggregator.isFull()) {
+                            // return the partial aggregates now rather than hold more groups, the web server will combine them
+                            log.trace("flushing early because the groups are over their memory budget");
+                            break;
+                        }
                     } else if (yieldCallback != null && yieldCallback.hasYielded()) {
                         log.trace("hasNext is false because yield was called");
-                        if (countingMap != null && !countingMap.isEmpty()) {
+                        if (aggregator != null && !aggregator.isEmpty()) {
                             // reset the yield and use its key in the flattened document prepared below
-                            keys.add(yieldCallback.getPositionAndReset());
+                            lastKey = yieldCallback.getPositionAndReset();
                         }
                         break;
                     } else {
@@ -188,7 +245,7 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
                         break;
                     }
                 }
-                // if there is nothing in the countingMap, next will be null (so method returns false)
+                // if there is nothing in the aggregator, next will be null (so method returns false)
                 next = GroupingTransform.this.flush();
                 return next != null;
             }
@@ -214,55 +271,67 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
     @Override
     public Entry<Key,Document> flush() {
         
-        if (!countingMap.isEmpty()) {
-            
-            log.trace("flush will use the countingMap: {}", countingMap);
-            
-            for (Collection<GroupingTypeAttribute<?>> entry : countingMap.keySet()) {
-                log.trace("from countingMap, got entry: {}", entry);
-                ColumnVisibility columnVisibility = null;
-                try {
-                    columnVisibility = toColumnVisibility(fieldVisibilities.get(entry));
-                } catch (Exception e) {
-                    throw new IllegalStateException("Unable to merge column visibilities: " + fieldVisibilities.get(entry), e);
-                }
-                // grab a key from those saved during getListKeyCounts
-                Assert.notEmpty(keys, "no available keys for grouping results");
-                // use the last (most recent) key so a new iterator will know where to start
-                Key docKey = keys.get(keys.size() - 1);
-                Document d = new Document(docKey, true);
-                d.setColumnVisibility(columnVisibility);
-                
-                entry.forEach(base -> d.put(getFieldName(base), base));
-                NumberType type = new NumberType();
-                type.setDelegate(new BigDecimal(countingMap.get(entry)));
-                TypeAttribute<BigDecimal> attr = new TypeAttribute<>(type, new Key("count"), true);
-                d.put("COUNT", attr);
-                documents.add(d);
-            }
+        if (groups == null && !aggregator.isEmpty()) {
+            log.trace("flush will drain the aggregator");
+            groups = aggregator.drain();
             if (flatten) {
                 // flatten to just one document on the tserver.
+                while (groups.hasNext()) {
+                    documents.add(createDocument(groups.next()));
+                }
+                groups = null;
                 flatten(documents);
             }
         }
+        if (documents.isEmpty() && groups != null) {
+            // create the documents one at a time, as the groups may be coming off spilled runs
+            if (groups.hasNext()) {
+                documents.add(createDocument(groups.next()));
+            }
+            if (!groups.hasNext()) {
+                groups = null;
+            }
+        }
         if (!documents.isEmpty()) {
             log.trace("{} will flush first of {} documents: {}", this.hashCode(), documents.size(), documents);
             Document d = documents.pop();
             Key key;
-            if (keys.size() > 0 && flatten) {
+            if (lastKey != null && flatten) {
                 // use the last (most recent) key so a new iterator will know where to start
-                key = keys.get(keys.size() - 1);
+                key = lastKey;
             } else {
                 key = d.getMetadata();
             }
             Entry<Key,Document> entry = Maps.immutableEntry(key, d);
             log.trace("flushing out {}", entry);
-            countingMap.clear();
             return entry;
         }
         return null;
     }
     
+    private Document createDocument(GroupAggregator.Group group) {
+        log.trace("from the aggregator, got group: {} with count {}", group.getAttributes(), group.getCount());
+        ColumnVisibility columnVisibility = null;
+        try {
+            columnVisibility = toColumnVisibility(Collections.singleton(group.getVisibility()));
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to merge column visibilities: " + group.getVisibility(), e);
+        }
+        // use the last (most recent) key so a new iterator will know where to start
+        Assert.notNull(lastKey, "no available keys for grouping results");
+        Document d = new Document(lastKey, true);
+        d.setColumnVisibility(columnVisibility);
+        
+        for (GroupingTypeAttribute<?> base : group.getAttributes()) {
+            d.put(getFieldName(base), base);
+        }
+        NumberType type = new NumberType();
+        type.setDelegate(new BigDecimal(group.getCount()));
+        TypeAttribute<BigDecimal> attr = new TypeAttribute<>(type, new Key("count"), true);
+        d.put("COUNT", attr);
+        return d;
+    }
+    
     /**
      * <pre>
      * flush used the countingMap:
@@ -416,7 +485,7 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
     private void getListKeyCounts(Entry<Key,Document> entry) {
         
         log.trace("{} get list key counts for: {}", flatten ? "t" : "web" + "server", entry);
-        keys.add(entry.getKey());
+        lastKey = entry.getKey();
         
         Set<String> expandedGroupFieldsList = new LinkedHashSet<>();
         // if the incoming Documents have been aggregated on the tserver, they will have a COUNT field.
@@ -465,17 +534,14 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
                 if (count == null)
                     count = 1;
                 // see above comment about the COUNT field
-                log.trace("{} adding {} of {} to counting map", flatten ? "tserver" : "webserver", count, fieldCollection);
-                IntStream.range(0, count).forEach(j -> countingMap.add(fieldCollection));
-                fieldVisibilities.put(fieldCollection, getColumnVisibility(entry));
-                log.trace("put {} to {} into fieldVisibilities {}", fieldCollection, getColumnVisibility(entry), fieldVisibilities);
+                log.trace("{} adding {} of {} to the aggregator", flatten ? "tserver" : "webserver", count, fieldCollection);
+                aggregator.add(fieldCollection, count, getColumnVisibility(entry));
             } else {
                 log.trace("fieldList.size() != this.expandedGroupFieldsList.size()");
                 log.trace("fieldList: {}", fieldCollection);
                 log.trace("expandedGroupFieldsList: {}", expandedGroupFieldsList);
             }
         }
-        log.trace("countingMap: {}", countingMap);
     }
     
     private ColumnVisibility combine(Collection<ColumnVisibility> in) {
@@ -497,6 +563,12 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
         return combine(visibilities);
     }
     
+    /**
+     * A map of TypeAttribute collection keys to integer counts, merging the visibilities of the keys as they are counted.
+     * 
+     * @deprecated the transform counts groups with a {@link GroupAggregator}, which does not scan every key to merge visibilities
+     */
+    @Deprecated
     static class GroupCountingHashMap extends HashMap<Collection<GroupingTypeAttribute<?>>,Integer> {
         
         private MarkingFunctions markingFunctions;
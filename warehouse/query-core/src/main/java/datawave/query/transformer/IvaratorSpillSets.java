@@ -0,0 +1,65 @@
+package datawave.query.transformer;
+
+import datawave.core.iterators.filesystem.FileSystemCache;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.iterator.ivarator.IvaratorCacheDir;
+import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
+import datawave.query.util.sortedset.ByteArrayComparator;
+import datawave.query.util.sortedset.FileSortedSet;
+import datawave.query.util.sortedset.HdfsBackedSortedSet;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Creates the sorted sets that the webserver side transforms spill to, under the ivarator cache dirs of the query.
+ */
+final class IvaratorSpillSets {
+    
+    private static final Logger log = Logger.getLogger(IvaratorSpillSets.class);
+    
+    private IvaratorSpillSets() {}
+    
+    /**
+     * Create a set of byte arrays that persists sorted runs under the ivarator cache dirs of a query. The set never persists on its own, its owner decides
+     * when to spill.
+     * 
+     * @param config
+     *            the query configuration
+     * @param name
+     *            the name of the spilled files. Each set spills to its own directory under the query, named after it with a random suffix, so that sets of the
+     *            same name never share files.
+     * @return the set, or null if the query has no usable ivarator cache dirs. It should be deleted with {@link HdfsBackedSortedSet#delete()} once the query
+     *         is closed.
+     */
+    static HdfsBackedSortedSet<byte[]> create(ShardQueryConfiguration config, String name) {
+        if (!config.canHandleExceededValueThreshold()) {
+            return null;
+        }
+        try {
+            FileSystemCache fileSystemCache = new FileSystemCache(config.getHdfsSiteConfigURLs());
+            String queryId = (config.getQuery() != null && config.getQuery().getId() != null ? config.getQuery().getId().toString() : UUID.randomUUID()
+                            .toString());
+            List<IvaratorCacheDir> ivaratorCacheDirs = new ArrayList<>();
+            for (IvaratorCacheDirConfig cacheDirConfig : config.getIvaratorCacheDirConfigs()) {
+                if (cacheDirConfig.isValid()) {
+                    URI uri = new Path(cacheDirConfig.getBasePathURI(), queryId).toUri();
+                    ivaratorCacheDirs.add(new IvaratorCacheDir(cacheDirConfig, fileSystemCache.getFileSystem(uri), uri.toString()));
+                }
+            }
+            if (!ivaratorCacheDirs.isEmpty()) {
+                return new HdfsBackedSortedSet<>(new ByteArrayComparator(), Integer.MAX_VALUE, ivaratorCacheDirs, name + "-" + UUID.randomUUID(),
+                                config.getIvaratorMaxOpenFiles(), config.getIvaratorNumRetries(), new FileSortedSet.PersistOptions(
+                                                config.isIvaratorPersistVerify(), config.isIvaratorPersistVerify(), config.getIvaratorPersistVerifyCount()));
+            }
+        } catch (IOException e) {
+            log.warn("Unable to use the ivarator cache dirs for " + name + " results, keeping them in memory", e);
+        }
+        return null;
+    }
+}
@@ -4,15 +4,17 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.hash.BloomFilter;
 import com.google.common.hash.Funnel;
 import com.google.common.hash.PrimitiveSink;
 import datawave.query.attributes.Attribute;
 import datawave.query.attributes.Attributes;
 import datawave.query.attributes.Document;
 import datawave.query.attributes.UniqueFields;
+import datawave.query.config.ShardQueryConfiguration;
 import datawave.query.model.QueryModel;
 import datawave.query.tables.ShardQueryLogic;
+import datawave.query.util.sortedset.HdfsBackedSortedSet;
+import datawave.query.util.sortedset.UniqueByteArraySet;
 import datawave.webservice.query.logic.BaseQueryLogic;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
@@ -21,6 +23,7 @@ import org.apache.log4j.Logger;
 
 import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
@@ -39,26 +42,38 @@ import java.util.stream.Collectors;
 /**
  * This iterator will filter documents based on uniqueness across a set of configured fields. Only the first instance of an event with a unique set of those
  * fields will be returned. This transform is thread safe.
+ * <p>
+ * The unique field sets seen so far are tracked exactly in a {@link UniqueByteArraySet}. When created for a query logic with ivarator cache dirs configured,
+ * the set spills to those dirs once it goes over its memory budget. Otherwise it is held in memory: without a logic (e.g. within the query iterator) it stops
+ * recording new field sets once over budget, which may let duplicates through to be removed by the webserver side transform, and with a logic it grows as
+ * needed. Any spilled field sets are removed when the transform is flushed or closed.
  */
-public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform {
+public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform implements Closeable {
     
-    private static final Logger log = Logger.getLogger(GroupingTransform.class);
+    private static final Logger log = Logger.getLogger(UniqueTransform.class);
     
-    private final BloomFilter<byte[]> bloom;
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 8L * 1024 * 1024;
+    
+    private final UniqueByteArraySet seen;
     private UniqueFields uniqueFields;
     private Multimap<String,String> modelMapping;
     
     public UniqueTransform(UniqueFields uniqueFields) {
+        this(uniqueFields, new UniqueByteArraySet(DEFAULT_MAX_MEMORY_BYTES));
+    }
+    
+    private UniqueTransform(UniqueFields uniqueFields, UniqueByteArraySet seen) {
         this.uniqueFields = uniqueFields;
         this.uniqueFields.deconstructIdentifierFields();
-        this.bloom = BloomFilter.create(new ByteFunnel(), 500000, 1e-15);
+        this.seen = seen;
         if (log.isTraceEnabled()) {
             log.trace("unique fields: " + this.uniqueFields.getFields());
         }
     }
     
     /**
-     * Create a new {@link UniqueTransform} that will capture the reverse field mapping defined within the model being used by the logic (if present).
+     * Create a new {@link UniqueTransform} that will capture the reverse field mapping defined within the model being used by the logic (if present), and
+     * that will spill to the ivarator cache dirs of the logic (if configured).
      * 
      * @param logic
      *            the logic
@@ -66,7 +81,7 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
      *            the set of fields to find unique values for
      */
     public UniqueTransform(BaseQueryLogic<Entry<Key,Value>> logic, UniqueFields uniqueFields) {
-        this(uniqueFields);
+        this(uniqueFields, createUniqueSet(((ShardQueryLogic) logic).getConfig()));
         QueryModel model = ((ShardQueryLogic) logic).getQueryModel();
         if (model != null) {
             modelMapping = HashMultimap.create();
@@ -77,6 +92,25 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
         }
     }
     
+    /**
+     * Create the set used to track unique field sets for a query, spilling to the ivarator cache dirs if they are configured.
+     * 
+     * @param config
+     *            the query configuration
+     * @return the set
+     */
+    private static UniqueByteArraySet createUniqueSet(ShardQueryConfiguration config) {
+        long maxMemoryBytes = config.getUniqueMaxMemoryBytes();
+        if (maxMemoryBytes > 0) {
+            HdfsBackedSortedSet<byte[]> spillSet = IvaratorSpillSets.create(config, "unique");
+            if (spillSet != null) {
+                return new UniqueByteArraySet(maxMemoryBytes, spillSet);
+            }
+        }
+        // without anywhere to spill, stay exact and let the set grow
+        return new UniqueByteArraySet(-1);
+    }
+    
     /**
      * Get a predicate that will apply this transform.
      * 
@@ -107,6 +141,29 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
         return keyDocumentEntry;
     }
     
+    /**
+     * Release any spilled unique field sets once the last document has been seen.
+     * 
+     * @return null, as this transform does not aggregate documents
+     */
+    @Override
+    public Entry<Key,Document> flush() {
+        seen.clear();
+        return null;
+    }
+    
+    /**
+     * Release any spilled unique field sets, along with the directories they were spilled to, when the query is closed or cancelled before the last
+     * document has been seen.
+     * 
+     * @throws IOException
+     *             if the spill directories could not be removed
+     */
+    @Override
+    public void close() throws IOException {
+        seen.close();
+    }
+    
     /**
      * Determine if a document is unique per the fields specified. If we have seen this set of fields and values before, then it is not unique.
      * 
@@ -115,14 +172,7 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
      * @throws IOException
      */
     private boolean isDuplicate(Document document) throws IOException {
-        byte[] bytes = getBytes(document);
-        synchronized (bloom) {
-            if (bloom.mightContain(bytes)) {
-                return true;
-            }
-            bloom.put(bytes);
-        }
-        return false;
+        return !seen.add(getBytes(document));
     }
     
     /**
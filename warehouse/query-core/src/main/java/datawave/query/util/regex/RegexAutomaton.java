@@ -0,0 +1,665 @@
+package datawave.query.util.regex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.log4j.Logger;
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.RegExp;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
+import org.apache.lucene.util.automaton.Transition;
+
+/**
+ * A java regex compiled into a deterministic finite automaton. Matching a value against the automaton is a single pass over its characters, and given a value
+ * the automaton can determine the next value that could possibly match which allows a scan over sorted terms to seek past those that cannot match.
+ * <p>
+ * Compiled automata are cached by regex, so a regex is compiled once per JVM rather than once per scan. A regex using constructs that have no equivalent in an
+ * automaton (anchors within the regex, look arounds, back references, flags, etc) is matched using a {@link Pattern} instead, and cannot be used to seek.
+ * <p>
+ * Instances are thread safe.
+ */
+public class RegexAutomaton {
+    private static final Logger log = Logger.getLogger(RegexAutomaton.class);
+    
+    // bounds the number of states created when determinizing an automaton
+    public static final int MAX_DETERMINIZED_STATES = 10000;
+    
+    private static final Cache<String,RegexAutomaton> regexes = CacheBuilder.newBuilder().maximumSize(1000).concurrencyLevel(100).build();
+    private static final Cache<List<String>,RegexAutomaton> unions = CacheBuilder.newBuilder().maximumSize(1000).concurrencyLevel(100).build();
+    
+    // the ranges of characters not matched by a '.'
+    private static final int[] LINE_TERMINATORS = new int[] {'\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'};
+    
+    private final String regex;
+    // the pattern when this is a single regex
+    private final Pattern pattern;
+    // the deterministic automaton, null if the regex could not be represented by one
+    private final Automaton automaton;
+    private final CharacterRunAutomaton runAutomaton;
+    // the states from which an accept state can be reached
+    private final boolean[] live;
+    
+    private RegexAutomaton(String regex) {
+        this.regex = regex;
+        this.pattern = Pattern.compile(regex);
+        this.automaton = toAutomaton(regex);
+        this.runAutomaton = (automaton == null ? null : new CharacterRunAutomaton(automaton));
+        this.live = (automaton == null ? null : liveStates(automaton));
+    }
+    
+    private RegexAutomaton(String regex, Automaton automaton) {
+        this.regex = regex;
+        this.pattern = null;
+        this.automaton = automaton;
+        this.runAutomaton = (automaton == null ? null : new CharacterRunAutomaton(automaton));
+        this.live = (automaton == null ? null : liveStates(automaton));
+    }
+    
+    /**
+     * Get the compiled automaton for a regex
+     * 
+     * @param regex
+     *            a java regex
+     * @return the compiled regex
+     * @throws java.util.regex.PatternSyntaxException
+     *             if the regex is not valid
+     */
+    public static RegexAutomaton getInstance(String regex) {
+        try {
+            return regexes.get(regex, () -> new RegexAutomaton(regex));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw propagate(e);
+        }
+    }
+    
+    /**
+     * Get a compiled automaton matching any of a set of regexes and literals. This is intended for seeking over a set of terms matched by any of the regexes,
+     * the individual regexes are still required to determine which regex matched a term.
+     * 
+     * @param patterns
+     *            java regexes
+     * @param literals
+     *            literal values
+     * @param reverse
+     *            if true then the automaton will match the reversed values
+     * @return the compiled automaton, or null if one of the regexes can not be represented by an automaton
+     * @throws java.util.regex.PatternSyntaxException
+     *             if one of the regexes is not valid
+     */
+    public static RegexAutomaton getInstance(Collection<String> patterns, Collection<String> literals, boolean reverse) {
+        // a canonical key for the union, tagging each element with its type
+        List<String> key = new ArrayList<>();
+        key.add(Boolean.toString(reverse));
+        for (String pattern : new TreeSet<>(patterns)) {
+            key.add('p' + pattern);
+        }
+        for (String literal : new TreeSet<>(literals)) {
+            key.add('l' + literal);
+        }
+        try {
+            RegexAutomaton union = unions.get(key, () -> union(patterns, literals, reverse));
+            return (union.automaton == null ? null : union);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw propagate(e);
+        }
+    }
+    
+    private static RuntimeException propagate(Exception e) {
+        if (e.getCause() instanceof RuntimeException) {
+            return (RuntimeException) e.getCause();
+        }
+        return new IllegalStateException(e.getCause());
+    }
+    
+    private static RegexAutomaton union(Collection<String> patterns, Collection<String> literals, boolean reverse) {
+        List<Automaton> automata = new ArrayList<>();
+        for (String pattern : patterns) {
+            RegexAutomaton automaton = getInstance(pattern);
+            if (automaton.automaton == null) {
+                // cache the failure
+                return new RegexAutomaton(patterns + " " + literals, null);
+            }
+            automata.add(automaton.automaton);
+        }
+        for (String literal : literals) {
+            automata.add(Automata.makeString(literal));
+        }
+        Automaton union = Operations.union(automata);
+        if (reverse) {
+            union = Operations.reverse(union);
+        }
+        try {
+            union = Operations.determinize(union, MAX_DETERMINIZED_STATES);
+        } catch (TooComplexToDeterminizeException e) {
+            log.debug("Unable to determinize the union of " + patterns + " and " + literals, e);
+            union = null;
+        }
+        return new RegexAutomaton(patterns + " " + literals, union);
+    }
+    
+    /**
+     * Does a value match this automaton
+     * 
+     * @param value
+     * @return true if the entire value matches
+     */
+    public boolean matches(CharSequence value) {
+        if (runAutomaton != null) {
+            return runAutomaton.run(value.toString());
+        } else {
+            return pattern.matcher(value).matches();
+        }
+    }
+    
+    /**
+     * Can this automaton determine the next value that could match
+     * 
+     * @return true if {@link #nextString(String)} can skip values
+     */
+    public boolean isSeekable() {
+        return automaton != null;
+    }
+    
+    /**
+     * Determine where the next match could be found. All values between the given value and the returned value, exclusive of the returned value, do not
+     * match.
+     * 
+     * @param value
+     * @return the value itself if it matches or if this automaton is not seekable, a greater value no greater than the next match, or null if no value greater
+     *         than the given value matches
+     */
+    public String nextString(String value) {
+        if (automaton == null) {
+            return value;
+        }
+        if (automaton.getNumStates() == 0 || !live[0]) {
+            return null;
+        }
+        
+        // follow the value through the automaton for as long as a match is still possible, remembering the states passed through
+        int length = value.length();
+        int[] states = new int[length + 1];
+        int[] offsets = new int[length + 1];
+        int depth = 0;
+        int state = 0;
+        int offset = 0;
+        while (offset < length) {
+            int c = value.codePointAt(offset);
+            int next = runAutomaton.step(state, c);
+            if (next < 0 || !live[next]) {
+                break;
+            }
+            state = next;
+            offset += Character.charCount(c);
+            depth++;
+            states[depth] = state;
+            offsets[depth] = offset;
+        }
+        
+        Transition transition = new Transition();
+        StringBuilder builder = new StringBuilder(length + 16);
+        if (offset == length) {
+            if (automaton.isAccept(state)) {
+                return value;
+            }
+            // the least extension of the value is the next possible match
+            builder.append(value);
+            appendLeast(state, builder, transition);
+            return builder.toString();
+        }
+        
+        // find the deepest state from which we can move to a character greater than the one in the value
+        for (int i = depth; i >= 0; i--) {
+            int c = value.codePointAt(offsets[i]);
+            if (c < Character.MAX_CODE_POINT && nextTransition(states[i], c + 1, transition)) {
+                builder.append(value, 0, offsets[i]).appendCodePoint(Math.max(transition.min, c + 1));
+                appendLeast(transition.dest, builder, transition);
+                return builder.toString();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Find the transition out of a state with the least label no less than the specified minimum that leads to a live state
+     * 
+     * @return true if found, in which case the transition is populated
+     */
+    private boolean nextTransition(int state, int min, Transition transition) {
+        int count = automaton.initTransition(state, transition);
+        for (int i = 0; i < count; i++) {
+            automaton.getNextTransition(transition);
+            if (transition.max >= min && live[transition.dest]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Append the least string leading from a state to an accept state. If the least path cycles then there is no least string, and the path up to the cycle
+     * is appended which is still no greater than any match.
+     */
+    private void appendLeast(int state, StringBuilder builder, Transition transition) {
+        boolean[] visited = new boolean[automaton.getNumStates()];
+        while (!automaton.isAccept(state) && !visited[state]) {
+            visited[state] = true;
+            nextTransition(state, 0, transition);
+            builder.appendCodePoint(transition.min);
+            state = transition.dest;
+        }
+    }
+    
+    /**
+     * Determine the states from which an accept state can be reached
+     */
+    private static boolean[] liveStates(Automaton automaton) {
+        int numStates = automaton.getNumStates();
+        List<List<Integer>> sources = new ArrayList<>(numStates);
+        for (int state = 0; state < numStates; state++) {
+            sources.add(new ArrayList<>());
+        }
+        Transition transition = new Transition();
+        for (int state = 0; state < numStates; state++) {
+            int count = automaton.initTransition(state, transition);
+            for (int i = 0; i < count; i++) {
+                automaton.getNextTransition(transition);
+                sources.get(transition.dest).add(state);
+            }
+        }
+        boolean[] live = new boolean[numStates];
+        List<Integer> stack = new ArrayList<>();
+        for (int state = 0; state < numStates; state++) {
+            if (automaton.isAccept(state)) {
+                live[state] = true;
+                stack.add(state);
+            }
+        }
+        while (!stack.isEmpty()) {
+            for (int source : sources.get(stack.remove(stack.size() - 1))) {
+                if (!live[source]) {
+                    live[source] = true;
+                    stack.add(source);
+                }
+            }
+        }
+        return live;
+    }
+    
+    /**
+     * Compile a java regex into a deterministic automaton
+     * 
+     * @param regex
+     * @return the automaton, or null if the regex cannot be represented as one
+     */
+    private static Automaton toAutomaton(String regex) {
+        String translated = toRegExp(regex);
+        if (translated == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to represent " + regex + " as an automaton");
+            }
+            return null;
+        }
+        try {
+            Automaton automaton = new RegExp(translated, RegExp.NONE).toAutomaton(MAX_DETERMINIZED_STATES);
+            return Operations.determinize(automaton, MAX_DETERMINIZED_STATES);
+        } catch (IllegalArgumentException | TooComplexToDeterminizeException e) {
+            log.debug("Unable to compile " + regex + " into an automaton", e);
+            return null;
+        }
+    }
+    
+    /**
+     * Translate a java regex into the equivalent lucene {@link RegExp} when matching entire values
+     * 
+     * @param regex
+     * @return the lucene regexp, or null if the regex contains constructs that cannot be translated
+     */
+    static String toRegExp(String regex) {
+        try {
+            return new Translator(regex).translate();
+        } catch (IllegalArgumentException e) {
+            if (log.isTraceEnabled()) {
+                log.trace("Cannot translate " + regex + ": " + e.getMessage());
+            }
+            return null;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return regex;
+    }
+    
+    /**
+     * A recursive descent translation of the subset of the java regex syntax that is expressible as an automaton. Every literal character is escaped in the
+     * output, so no character is interpreted by the lucene syntax unintentionally.
+     */
+    private static class Translator {
+        private final String regex;
+        private final StringBuilder out = new StringBuilder();
+        private int pos = 0;
+        private int limit;
+        
+        Translator(String regex) {
+            this.regex = regex;
+            this.limit = regex.length();
+        }
+        
+        String translate() {
+            // leading and trailing anchors are implied when matching the entire value
+            if (regex.startsWith("^")) {
+                pos++;
+            }
+            if (limit > pos && regex.charAt(limit - 1) == '$' && !isEscaped(limit - 1)) {
+                limit--;
+            }
+            alternation();
+            if (pos < limit) {
+                throw new IllegalArgumentException("unbalanced ')' at " + pos);
+            }
+            return out.toString();
+        }
+        
+        private boolean isEscaped(int index) {
+            int escapes = 0;
+            while (index > 0 && regex.charAt(index - 1) == '\\') {
+                escapes++;
+                index--;
+            }
+            return (escapes % 2) == 1;
+        }
+        
+        private boolean more() {
+            return pos < limit;
+        }
+        
+        private char peek() {
+            return regex.charAt(pos);
+        }
+        
+        private boolean peek(int offset, char c) {
+            return pos + offset < limit && regex.charAt(pos + offset) == c;
+        }
+        
+        private void alternation() {
+            sequence();
+            while (more() && peek() == '|') {
+                pos++;
+                out.append('|');
+                sequence();
+            }
+        }
+        
+        private void sequence() {
+            boolean empty = true;
+            while (more() && peek() != '|' && peek() != ')') {
+                atom();
+                quantifier();
+                empty = false;
+            }
+            if (empty) {
+                out.append("()");
+            }
+        }
+        
+        private void atom() {
+            char c = peek();
+            switch (c) {
+                case '(':
+                    pos++;
+                    if (peek(0, '?')) {
+                        if (!peek(1, ':')) {
+                            throw new IllegalArgumentException("unsupported group construct at " + pos);
+                        }
+                        pos += 2;
+                    }
+                    out.append('(');
+                    alternation();
+                    if (!more() || peek() != ')') {
+                        throw new IllegalArgumentException("unclosed group");
+                    }
+                    pos++;
+                    out.append(')');
+                    break;
+                case '[':
+                    characterClass();
+                    break;
+                case '.':
+                    pos++;
+                    appendClass(LINE_TERMINATORS, true);
+                    break;
+                case '\\':
+                    int[] escaped = escape();
+                    if (escaped.length == 1) {
+                        appendLiteral(escaped[0]);
+                    } else {
+                        appendClass(escaped, escapedNegation);
+                    }
+                    break;
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw new IllegalArgumentException("dangling quantifier at " + pos);
+                case '^':
+                case '$':
+                    throw new IllegalArgumentException("unsupported anchor at " + pos);
+                default:
+                    int cp = regex.codePointAt(pos);
+                    pos += Character.charCount(cp);
+                    appendLiteral(cp);
+            }
+        }
+        
+        private void quantifier() {
+            if (!more()) {
+                return;
+            }
+            char c = peek();
+            if (c == '*' || c == '+' || c == '?') {
+                pos++;
+                out.append(c);
+            } else if (c == '{') {
+                int start = pos;
+                pos++;
+                int min = number();
+                out.append('{').append(min);
+                if (more() && peek() == ',') {
+                    pos++;
+                    out.append(',');
+                    if (more() && Character.isDigit(peek())) {
+                        out.append(number());
+                    }
+                }
+                if (!more() || peek() != '}') {
+                    throw new IllegalArgumentException("invalid repetition at " + start);
+                }
+                pos++;
+                out.append('}');
+            } else {
+                return;
+            }
+            // a reluctant quantifier matches the same values, a possessive one may not
+            if (more() && peek() == '?') {
+                pos++;
+            } else if (more() && peek() == '+') {
+                throw new IllegalArgumentException("unsupported possessive quantifier at " + pos);
+            }
+            if (more() && (peek() == '*' || peek() == '+' || peek() == '?' || peek() == '{')) {
+                throw new IllegalArgumentException("repeated quantifier at " + pos);
+            }
+        }
+        
+        private int number() {
+            int start = pos;
+            while (more() && peek() >= '0' && peek() <= '9') {
+                pos++;
+            }
+            if (start == pos || pos - start > 6) {
+                throw new IllegalArgumentException("invalid number at " + start);
+            }
+            return Integer.parseInt(regex.substring(start, pos));
+        }
+        
+        // whether the last class returned by escape() is negated
+        private boolean escapedNegation = false;
+        
+        /**
+         * Parse an escape sequence
+         * 
+         * @return a single code point for a literal, otherwise pairs of code points describing the ranges of a predefined class
+         */
+        private int[] escape() {
+            pos++;
+            if (!more()) {
+                throw new IllegalArgumentException("trailing escape");
+            }
+            int c = regex.codePointAt(pos);
+            pos += Character.charCount(c);
+            escapedNegation = Character.isUpperCase(c);
+            switch (c) {
+                case 't':
+                    return new int[] {'\t'};
+                case 'n':
+                    return new int[] {'\n'};
+                case 'r':
+                    return new int[] {'\r'};
+                case 'f':
+                    return new int[] {'\f'};
+                case 'a':
+                    return new int[] {'\u0007'};
+                case 'e':
+                    return new int[] {'\u001B'};
+                case 'x':
+                    return new int[] {hex(2)};
+                case 'u':
+                    return new int[] {hex(4)};
+                case 'd':
+                case 'D':
+                    return new int[] {'0', '9'};
+                case 'w':
+                case 'W':
+                    return new int[] {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+                case 's':
+                case 'S':
+                    return new int[] {'\t', '\r', ' ', ' '};
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw new IllegalArgumentException("unsupported escape \\" + new String(Character.toChars(c)));
+                    }
+                    return new int[] {c};
+            }
+        }
+        
+        private int hex(int digits) {
+            if (pos + digits > limit) {
+                throw new IllegalArgumentException("invalid hex escape at " + pos);
+            }
+            try {
+                int value = Integer.parseInt(regex.substring(pos, pos + digits), 16);
+                pos += digits;
+                return value;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid hex escape at " + pos);
+            }
+        }
+        
+        private void characterClass() {
+            pos++;
+            boolean negated = false;
+            if (more() && peek() == '^') {
+                negated = true;
+                pos++;
+            }
+            if (more() && peek() == ']') {
+                throw new IllegalArgumentException("unsupported leading ']' in class at " + pos);
+            }
+            List<Integer> ranges = new ArrayList<>();
+            while (more() && peek() != ']') {
+                if (peek() == '[' || (peek() == '&' && peek(1, '&'))) {
+                    throw new IllegalArgumentException("unsupported nested class at " + pos);
+                }
+                int start = classCharacter(ranges);
+                if (start < 0) {
+                    // a predefined class was added
+                    continue;
+                }
+                int end = start;
+                if (peek(0, '-') && pos + 1 < limit && !peek(1, ']')) {
+                    pos++;
+                    end = classCharacter(null);
+                    if (end < start) {
+                        throw new IllegalArgumentException("invalid range in class at " + pos);
+                    }
+                }
+                ranges.add(start);
+                ranges.add(end);
+            }
+            if (!more()) {
+                throw new IllegalArgumentException("unclosed class");
+            }
+            pos++;
+            int[] pairs = new int[ranges.size()];
+            for (int i = 0; i < pairs.length; i++) {
+                pairs[i] = ranges.get(i);
+            }
+            appendClass(pairs, negated);
+        }
+        
+        /**
+         * Parse a character within a class
+         * 
+         * @param ranges
+         *            where to add a predefined class, null if one is not allowed here
+         * @return the code point, or -1 if a predefined class was added to the ranges
+         */
+        private int classCharacter(List<Integer> ranges) {
+            if (peek() == '\\') {
+                int[] escaped = escape();
+                if (escaped.length == 1) {
+                    return escaped[0];
+                }
+                if (ranges == null || escapedNegation) {
+                    throw new IllegalArgumentException("unsupported class escape at " + pos);
+                }
+                for (int c : escaped) {
+                    ranges.add(c);
+                }
+                return -1;
+            }
+            int cp = regex.codePointAt(pos);
+            pos += Character.charCount(cp);
+            return cp;
+        }
+        
+        private void appendLiteral(int cp) {
+            out.append('\\').appendCodePoint(cp);
+        }
+        
+        private void appendClass(int[] ranges, boolean negated) {
+            out.append('[');
+            if (negated) {
+                out.append('^');
+            }
+            for (int i = 0; i < ranges.length; i += 2) {
+                appendLiteral(ranges[i]);
+                if (ranges[i + 1] != ranges[i]) {
+                    out.append('-');
+                    appendLiteral(ranges[i + 1]);
+                }
+            }
+            out.append(']');
+        }
+    }
+}
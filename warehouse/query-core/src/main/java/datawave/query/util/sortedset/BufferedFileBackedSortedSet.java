@@ -4,9 +4,16 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -18,6 +25,8 @@ import org.apache.log4j.Logger;
  * "persist" call is supplied to force flushing to disk. The iterator.remove and the subset operations will work up until any buffer has been flushed to disk.
  * After that, those operations will not work as specified by the underlying FileSortedSet.
  * 
+ * When a compaction executor is supplied, the persisted sets are compacted in the background so that adding to the set does not wait on compactions.
+ * 
  * @param <E>
  */
 public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
@@ -38,6 +47,18 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     protected List<SortedSetFileHandlerFactory> handlerFactories;
     protected int bufferPersistThreshold;
     
+    // the executor for background compactions, null to compact in the foreground
+    protected Executor compactionExecutor = null;
+    // the running background compaction and the sets it is compacting
+    protected FutureTask<FileSortedSet<E>> compaction = null;
+    protected MultiSetBackedSortedSet<E> compactingSet = null;
+    
+    // compaction statistics
+    protected final AtomicInteger compactions = new AtomicInteger();
+    protected final AtomicInteger maxCompactionFanIn = new AtomicInteger();
+    protected final AtomicLong compactionBytesRead = new AtomicLong();
+    protected final AtomicLong compactionBytesWritten = new AtomicLong();
+    
     /**
      * A factory for SortedSetFileHandlers
      * 
@@ -61,6 +82,7 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
         }
         this.sizeModified = other.sizeModified;
         this.size = other.size;
+        this.compactionExecutor = other.compactionExecutor;
     }
     
     public BufferedFileBackedSortedSet(List<SortedSetFileHandlerFactory> handlerFactories) {
@@ -145,10 +167,57 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
                 throw new IOException("Unable to persist the sorted set using the configured handler factories.");
             
             buffer = null;
-            compact(maxOpenFiles);
+            if (compactionExecutor != null) {
+                compactInBackground(maxOpenFiles);
+            } else {
+                compact(maxOpenFiles);
+            }
         }
     }
     
+    /**
+     * Compact the persisted sets in the background, using the supplied executor, while this set is still being filled. Sets are then only compacted in the
+     * foreground when iterated, if the background compactions have not kept up.
+     * 
+     * @param compactionExecutor
+     *            the executor, null to compact in the foreground
+     */
+    public void setCompactionExecutor(Executor compactionExecutor) {
+        this.compactionExecutor = compactionExecutor;
+    }
+    
+    public Executor getCompactionExecutor() {
+        return compactionExecutor;
+    }
+    
+    /**
+     * @return the number of compactions completed
+     */
+    public int getCompactionCount() {
+        return compactions.get();
+    }
+    
+    /**
+     * @return the largest number of sets merged by one compaction
+     */
+    public int getMaxCompactionFanIn() {
+        return maxCompactionFanIn.get();
+    }
+    
+    /**
+     * @return the number of bytes read from the persisted sets that were compacted
+     */
+    public long getCompactionBytesRead() {
+        return compactionBytesRead.get();
+    }
+    
+    /**
+     * @return the number of bytes written by compactions
+     */
+    public long getCompactionBytesWritten() {
+        return compactionBytesWritten.get();
+    }
+    
     protected List<FileSortedSet<E>> getSets() {
         List<FileSortedSet<E>> sets = new ArrayList<>();
         for (SortedSet<E> subSet : set.getSets()) {
@@ -225,6 +294,8 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
             // if we have any persisted sets, then ensure we are persisted
             if (set.getSets().size() > 1) {
                 persist();
+                // a background compaction may have left more sets than we can merge at once
+                compact(maxOpenFiles);
             }
         } catch (IOException ioe) {
             throw new RuntimeException("Unable to persist or compact file backed sorted set", ioe);
@@ -243,6 +314,9 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
      * @throws IOException
      */
     public void compact(int maxFiles) throws IOException {
+        // a background compaction must complete before the sets can be rearranged
+        awaitCompaction();
+        
         // if we have more sets than we are allowed, then we need to compact this down
         if (maxFiles > 0 && set.getSets().size() > maxFiles) {
             if (log.isDebugEnabled()) {
@@ -251,36 +325,25 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
             // create a copy of the set list (sorting below)
             List<SortedSet<E>> sets = new ArrayList<>(set.getSets());
             
-            // calculate the number of sets to compact
-            int numSets = sets.size();
-            int excessSets = numSets - (maxFiles / 2); // those over 50% of maxFiles
-            int setsPerCompaction = Math.min(excessSets + 1, numSets); // Add in 1 to account for the compacted set being added back in
-            
-            // sort the sets by size (compact up smaller sets first)
-            sets.sort(Comparator.comparing(SortedSet<E>::size).reversed());
-            
             // newSet will be the final multiset
             MultiSetBackedSortedSet<E> newSet = new MultiSetBackedSortedSet<>();
             
             // create a set for those sets to be compacted into one file
-            MultiSetBackedSortedSet<E> setToCompact = new MultiSetBackedSortedSet<>();
-            for (int i = 0; i < setsPerCompaction; i++) {
-                setToCompact.addSet(sets.remove(sets.size() - 1));
-            }
+            MultiSetBackedSortedSet<E> setToCompact = selectSetsToCompact(sets, maxFiles / 2, Integer.MAX_VALUE); // those over 50% of maxFiles
             
             // compact it
             if (log.isDebugEnabled()) {
                 log.debug("Starting compaction for " + setToCompact);
             }
             long start = System.currentTimeMillis();
-            FileSortedSet<E> compaction = compact(setToCompact);
+            FileSortedSet<E> compactedSet = compact(setToCompact);
             if (log.isDebugEnabled()) {
                 long delta = System.currentTimeMillis() - start;
-                log.debug("Compacted " + setToCompact + " -> " + compaction + " in " + delta + "ms");
+                log.debug("Compacted " + setToCompact + " -> " + compactedSet + " in " + delta + "ms");
             }
             
             // add the compacted set to our final multiset
-            newSet.addSet(compaction);
+            newSet.addSet(compactedSet);
             
             // clear the compactions set to remove the files that were compacted
             setToCompact.clear();
@@ -295,8 +358,116 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
         }
     }
     
+    /**
+     * Select the smallest sets to compact into one, such that the target number of sets remain once the compacted set is added back in.
+     * 
+     * @param sets
+     *            the sets to select from, from which the selected sets are removed
+     * @param targetSets
+     *            the number of sets to leave
+     * @param maxSets
+     *            the maximum number of sets to compact
+     * @return the sets to compact
+     */
+    private MultiSetBackedSortedSet<E> selectSetsToCompact(List<SortedSet<E>> sets, int targetSets, int maxSets) {
+        // calculate the number of sets to compact
+        int numSets = sets.size();
+        int excessSets = numSets - targetSets;
+        int setsPerCompaction = Math.min(Math.min(excessSets + 1, numSets), maxSets); // Add in 1 to account for the compacted set being added back in
+        
+        // sort the sets by size (compact up smaller sets first), reading the size of each persisted set only once
+        Map<SortedSet<E>,Integer> sizes = new IdentityHashMap<>();
+        for (SortedSet<E> subSet : sets) {
+            sizes.put(subSet, subSet.size());
+        }
+        sets.sort(Comparator.comparing((SortedSet<E> subSet) -> sizes.get(subSet)).reversed());
+        
+        MultiSetBackedSortedSet<E> setToCompact = new MultiSetBackedSortedSet<>();
+        for (int i = 0; i < setsPerCompaction; i++) {
+            setToCompact.addSet(sets.remove(sets.size() - 1));
+        }
+        return setToCompact;
+    }
+    
+    /**
+     * If the number of persisted sets is over maxFiles, then start compacting them down in the background unless a compaction is already running. As with
+     * {@link #compact(int)}, the goal is to get the number of sets down around 50% of maxFiles, however no more than maxFiles sets are merged at once.
+     * 
+     * @param maxFiles
+     * @throws IOException
+     *             if a completed background compaction failed
+     */
+    protected void compactInBackground(int maxFiles) throws IOException {
+        // pick up a completed compaction
+        if (compaction != null && compaction.isDone()) {
+            awaitCompaction();
+        }
+        
+        if (compaction == null && maxFiles > 0) {
+            List<SortedSet<E>> sets = new ArrayList<>();
+            for (SortedSet<E> subSet : set.getSets()) {
+                if (((FileSortedSet<E>) subSet).isPersisted()) {
+                    sets.add(subSet);
+                }
+            }
+            if (sets.size() > maxFiles) {
+                final MultiSetBackedSortedSet<E> setToCompact = selectSetsToCompact(sets, maxFiles / 2, Math.max(2, maxFiles));
+                if (log.isDebugEnabled()) {
+                    log.debug("Starting background compaction of " + setToCompact.getSets().size() + " sets [" + printHandlerFactories() + "]");
+                }
+                compactingSet = setToCompact;
+                compaction = new FutureTask<>(() -> compact(setToCompact));
+                compactionExecutor.execute(compaction);
+            }
+        }
+    }
+    
+    /**
+     * Wait for a background compaction to complete, and replace the sets it compacted with the compacted set
+     * 
+     * @throws IOException
+     *             if the background compaction failed
+     */
+    protected void awaitCompaction() throws IOException {
+        if (compaction != null) {
+            MultiSetBackedSortedSet<E> setToCompact = compactingSet;
+            compactingSet = null;
+            FileSortedSet<E> compactedSet;
+            try {
+                compactedSet = compaction.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for background compaction", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Background compaction failed", e.getCause());
+            } finally {
+                compaction = null;
+            }
+            
+            // newSet will be the final multiset
+            MultiSetBackedSortedSet<E> newSet = new MultiSetBackedSortedSet<>();
+            newSet.addSet(compactedSet);
+            List<SortedSet<E>> compacted = setToCompact.getSets();
+            for (SortedSet<E> subSet : set.getSets()) {
+                if (compacted.stream().noneMatch(s -> s == subSet)) {
+                    newSet.addSet(subSet);
+                }
+            }
+            
+            // clear the compactions set to remove the files that were compacted
+            setToCompact.clear();
+            
+            // and replace our set
+            this.set = newSet;
+        }
+    }
+    
     private FileSortedSet<E> compact(MultiSetBackedSortedSet<E> setToCompact) throws IOException {
         FileSortedSet<E> compactedSet = null;
+        long start = System.currentTimeMillis();
         
         // go through the handler factories and try to persist the sorted set
         for (int i = 0; i < handlerFactories.size() && compactedSet == null; i++) {
@@ -308,7 +479,7 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
                 Exception cause = null;
                 for (int attempts = 0; attempts <= numRetries && compactedSet == null; attempts++) {
                     try {
-                        compactedSet = setFactory.newInstance(setToCompact, handlerFactory.createHandler(), true);
+                        compactedSet = setFactory.newInstance(setToCompact, handler, true);
                     } catch (IOException e) {
                         if (attempts == numRetries)
                             cause = e;
@@ -333,9 +504,36 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
         if (compactedSet == null)
             throw new IOException("Unable to persist the sorted set using the configured handler factories.");
         
+        // gather the statistics
+        int fanIn = setToCompact.getSets().size();
+        long bytesRead = 0;
+        for (SortedSet<E> subSet : setToCompact.getSets()) {
+            FileSortedSet<E> fileSet = (FileSortedSet<E>) subSet;
+            if (fileSet.isPersisted()) {
+                bytesRead += Math.max(0, fileSet.handler.getSize());
+            }
+        }
+        long bytesWritten = Math.max(0, compactedSet.handler.getSize());
+        compactions.incrementAndGet();
+        maxCompactionFanIn.accumulateAndGet(fanIn, Math::max);
+        compactionBytesRead.addAndGet(bytesRead);
+        compactionBytesWritten.addAndGet(bytesWritten);
+        if (log.isDebugEnabled()) {
+            log.debug("Compacted " + fanIn + " sets, reading " + bytesRead + " bytes and writing " + bytesWritten + " bytes in "
+                            + (System.currentTimeMillis() - start) + "ms");
+        }
+        
         return compactedSet;
     }
     
+    private void completeCompaction() {
+        try {
+            awaitCompaction();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to complete background compaction", e);
+        }
+    }
+    
     @Override
     public Object[] toArray() {
         return set.toArray();
@@ -397,6 +595,8 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     
     @Override
     public boolean remove(Object o) {
+        // the persisted sets may be modified below
+        completeCompaction();
         boolean removed = false;
         for (SortedSet<E> subSet : set.getSets()) {
             FileSortedSet<E> fileSet = (FileSortedSet<E>) subSet;
@@ -433,6 +633,8 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     
     @Override
     public boolean retainAll(Collection<?> c) {
+        // the persisted sets may be modified below
+        completeCompaction();
         boolean modified = false;
         for (SortedSet<E> subSet : set.getSets()) {
             FileSortedSet<E> fileSet = (FileSortedSet<E>) subSet;
@@ -462,6 +664,8 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     
     @Override
     public boolean removeAll(Collection<?> c) {
+        // the persisted sets may be modified below
+        completeCompaction();
         boolean modified = false;
         for (SortedSet<E> subSet : set.getSets()) {
             FileSortedSet<E> fileSet = (FileSortedSet<E>) subSet;
@@ -491,6 +695,8 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     
     @Override
     public boolean removeIf(Predicate<? super E> filter) {
+        // the persisted sets may be modified below
+        completeCompaction();
         boolean removed = false;
         for (SortedSet<E> subSet : set.getSets()) {
             FileSortedSet<E> fileSet = (FileSortedSet<E>) subSet;
@@ -520,6 +726,12 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     
     @Override
     public void clear() {
+        // let any background compaction complete so that its files are cleared as well
+        try {
+            awaitCompaction();
+        } catch (IOException e) {
+            log.warn("Background compaction failed", e);
+        }
         // This will cause the MultiSetBackedSortedSet to call clear on each Set in its Set of Sets, including the buffer
         // It will also call clear on its Set of Sets, emptying the contents
         set.clear();
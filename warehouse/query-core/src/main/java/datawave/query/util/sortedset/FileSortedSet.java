@@ -2,6 +2,7 @@ package datawave.query.util.sortedset;
 
 import datawave.webservice.query.exception.DatawaveErrorCode;
 import datawave.webservice.query.exception.QueryException;
+import java.io.File;
 import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
@@ -884,6 +885,15 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
         long getSize();
         
         void deleteFile();
+        
+        /**
+         * Get the file on the local file system, which allows it to be memory mapped
+         * 
+         * @return the local file, or null if the file is not local
+         */
+        default File getLocalFile() {
+            return null;
+        }
     }
     
     /**
@@ -1,6 +1,7 @@
 package datawave.query.util.sortedset;
 
 import datawave.query.iterator.ivarator.IvaratorCacheDir;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -14,7 +15,9 @@ import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FsStatus;
+import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
 import org.apache.log4j.Logger;
 
 public class HdfsBackedSortedSet<E> extends BufferedFileBackedSortedSet<E> implements SortedSet<E> {
@@ -107,6 +110,23 @@ public class HdfsBackedSortedSet<E> extends BufferedFileBackedSortedSet<E> imple
         }
     }
     
+    /**
+     * Clear this set and remove the directories that it persists to
+     * 
+     * @throws IOException
+     *             if a directory could not be removed
+     */
+    public void delete() throws IOException {
+        clear();
+        for (SortedSetFileHandlerFactory handlerFactory : handlerFactories) {
+            if (handlerFactory instanceof SortedSetHdfsFileHandlerFactory) {
+                SortedSetHdfsFileHandlerFactory hdfsHandlerFactory = (SortedSetHdfsFileHandlerFactory) handlerFactory;
+                hdfsHandlerFactory.getFs().delete(hdfsHandlerFactory.getUniqueDir(), true);
+                hdfsHandlerFactory.setFileCount(0);
+            }
+        }
+    }
+    
     public static class SortedSetHdfsFileHandlerFactory implements SortedSetFileHandlerFactory {
         final private IvaratorCacheDir ivaratorCacheDir;
         private String uniqueSubPath;
@@ -131,11 +151,11 @@ public class HdfsBackedSortedSet<E> extends BufferedFileBackedSortedSet<E> imple
             return new Path(ivaratorCacheDir.getPathURI(), uniqueSubPath);
         }
         
-        public int getFileCount() {
+        public synchronized int getFileCount() {
             return fileCount;
         }
         
-        void setFileCount(int count) {
+        synchronized void setFileCount(int count) {
             this.fileCount = count;
         }
         
@@ -160,8 +180,9 @@ public class HdfsBackedSortedSet<E> extends BufferedFileBackedSortedSet<E> imple
             return false;
         }
         
+        // synchronized as background compactions create handlers as well
         @Override
-        public FileSortedSet.SortedSetFileHandler createHandler() throws IOException {
+        public synchronized FileSortedSet.SortedSetFileHandler createHandler() throws IOException {
             FileSystem fs = getFs();
             Path uniqueDir = getUniqueDir();
             
@@ -209,6 +230,9 @@ public class HdfsBackedSortedSet<E> extends BufferedFileBackedSortedSet<E> imple
     }
     
     public static class SortedSetHdfsFileHandler implements FileSortedSet.SortedSetFileHandler {
+        // the read ahead buffer for each file, as many files are read at once when merging
+        private static final int READ_AHEAD_BUFFER_SIZE = 64 * 1024;
+        
         private FileSystem fs;
         private Path file;
         private FileSortedSet.PersistOptions persistOptions;
@@ -232,7 +256,7 @@ public class HdfsBackedSortedSet<E> extends BufferedFileBackedSortedSet<E> imple
             if (log.isDebugEnabled()) {
                 log.debug("Reading " + file);
             }
-            return fs.open(file);
+            return fs.open(file, READ_AHEAD_BUFFER_SIZE);
         }
         
         @Override
@@ -273,6 +297,16 @@ public class HdfsBackedSortedSet<E> extends BufferedFileBackedSortedSet<E> imple
             }
         }
         
+        @Override
+        public File getLocalFile() {
+            if (fs instanceof LocalFileSystem) {
+                return ((LocalFileSystem) fs).pathToFile(file);
+            } else if (fs instanceof RawLocalFileSystem) {
+                return ((RawLocalFileSystem) fs).pathToFile(file);
+            }
+            return null;
+        }
+        
         @Override
         public String toString() {
             return file.toString();
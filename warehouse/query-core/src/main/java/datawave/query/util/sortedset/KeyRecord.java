@@ -0,0 +1,195 @@
+package datawave.query.util.sortedset;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * Encodes a key as a length-prefixed record which can be compared with other keys while still encoded, so that keys held in (direct or memory mapped)
+ * buffers only need to be materialized when they are returned. The layout is
+ * <ul>
+ * <li>int: the length of the rest of the record</li>
+ * <li>int length followed by the bytes of each of the row, column family, column qualifier and column visibility</li>
+ * <li>long: the timestamp</li>
+ * <li>byte: 1 if deleted, otherwise 0</li>
+ * </ul>
+ * Records are positioned by the offset of their length prefix.
+ */
+public class KeyRecord {
+    
+    // the record length prefix plus the four field lengths
+    private static final int LENGTHS_SIZE = 5 * Integer.BYTES;
+    // the timestamp and deleted flag
+    private static final int TRAILER_SIZE = Long.BYTES + 1;
+    
+    private KeyRecord() {}
+    
+    /**
+     * @param key
+     *            the key
+     * @return the encoded size of the key, including the length prefix
+     */
+    public static int size(Key key) {
+        return LENGTHS_SIZE + key.getRowData().length() + key.getColumnFamilyData().length() + key.getColumnQualifierData().length()
+                        + key.getColumnVisibilityData().length() + TRAILER_SIZE;
+    }
+    
+    /**
+     * @param buffer
+     *            the buffer holding the record
+     * @param offset
+     *            the offset of the record
+     * @return the encoded size of the record, including the length prefix
+     */
+    public static int size(ByteBuffer buffer, int offset) {
+        return Integer.BYTES + buffer.getInt(offset);
+    }
+    
+    /**
+     * Write a key at the current position of a buffer, advancing the position
+     * 
+     * @param buffer
+     *            the buffer, which must have {@link #size(Key)} bytes remaining
+     * @param key
+     *            the key
+     */
+    public static void write(ByteBuffer buffer, Key key) {
+        buffer.putInt(size(key) - Integer.BYTES);
+        put(buffer, key.getRowData());
+        put(buffer, key.getColumnFamilyData());
+        put(buffer, key.getColumnQualifierData());
+        put(buffer, key.getColumnVisibilityData());
+        buffer.putLong(key.getTimestamp());
+        buffer.put((byte) (key.isDeleted() ? 1 : 0));
+    }
+    
+    /**
+     * Write a key to an output
+     * 
+     * @param out
+     *            the output
+     * @param key
+     *            the key
+     * @throws IOException
+     *             if the key could not be written
+     */
+    public static void write(DataOutput out, Key key) throws IOException {
+        out.writeInt(size(key) - Integer.BYTES);
+        write(out, key.getRowData());
+        write(out, key.getColumnFamilyData());
+        write(out, key.getColumnQualifierData());
+        write(out, key.getColumnVisibilityData());
+        out.writeLong(key.getTimestamp());
+        out.writeByte(key.isDeleted() ? 1 : 0);
+    }
+    
+    /**
+     * Materialize the key encoded in a record
+     * 
+     * @param buffer
+     *            the buffer holding the record
+     * @param offset
+     *            the offset of the record
+     * @return the key
+     */
+    public static Key read(ByteBuffer buffer, int offset) {
+        int position = offset + Integer.BYTES;
+        byte[] row = get(buffer, position);
+        position += Integer.BYTES + row.length;
+        byte[] cf = get(buffer, position);
+        position += Integer.BYTES + cf.length;
+        byte[] cq = get(buffer, position);
+        position += Integer.BYTES + cq.length;
+        byte[] cv = get(buffer, position);
+        position += Integer.BYTES + cv.length;
+        long timestamp = buffer.getLong(position);
+        boolean deleted = buffer.get(position + Long.BYTES) != 0;
+        return new Key(row, cf, cq, cv, timestamp, deleted, false);
+    }
+    
+    /**
+     * Compare an encoded key with a key, in the same order as {@link Key#compareTo(Key)}
+     * 
+     * @param buffer
+     *            the buffer holding the record
+     * @param offset
+     *            the offset of the record
+     * @param key
+     *            the key to compare with
+     * @return a negative number, zero or a positive number as the encoded key is less than, equal to or greater than the key
+     */
+    public static int compare(ByteBuffer buffer, int offset, Key key) {
+        int position = offset + Integer.BYTES;
+        int result = compare(buffer, position, key.getRowData());
+        if (result != 0) {
+            return result;
+        }
+        position += Integer.BYTES + buffer.getInt(position);
+        result = compare(buffer, position, key.getColumnFamilyData());
+        if (result != 0) {
+            return result;
+        }
+        position += Integer.BYTES + buffer.getInt(position);
+        result = compare(buffer, position, key.getColumnQualifierData());
+        if (result != 0) {
+            return result;
+        }
+        position += Integer.BYTES + buffer.getInt(position);
+        result = compare(buffer, position, key.getColumnVisibilityData());
+        if (result != 0) {
+            return result;
+        }
+        position += Integer.BYTES + buffer.getInt(position);
+        
+        // newer timestamps sort first
+        long timestamp = buffer.getLong(position);
+        if (timestamp != key.getTimestamp()) {
+            return (timestamp < key.getTimestamp() ? 1 : -1);
+        }
+        
+        // deleted keys sort first
+        boolean deleted = buffer.get(position + Long.BYTES) != 0;
+        if (deleted == key.isDeleted()) {
+            return 0;
+        }
+        return (deleted ? -1 : 1);
+    }
+    
+    // compare the length-prefixed bytes at a position with a byte sequence, as unsigned bytes
+    private static int compare(ByteBuffer buffer, int position, ByteSequence bytes) {
+        int length = buffer.getInt(position);
+        int start = position + Integer.BYTES;
+        byte[] other = bytes.getBackingArray();
+        int otherStart = bytes.offset();
+        int otherLength = bytes.length();
+        int minLength = Math.min(length, otherLength);
+        for (int i = 0; i < minLength; i++) {
+            int result = (buffer.get(start + i) & 0xff) - (other[otherStart + i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return length - otherLength;
+    }
+    
+    private static void put(ByteBuffer buffer, ByteSequence bytes) {
+        buffer.putInt(bytes.length());
+        buffer.put(bytes.getBackingArray(), bytes.offset(), bytes.length());
+    }
+    
+    private static void write(DataOutput out, ByteSequence bytes) throws IOException {
+        out.writeInt(bytes.length());
+        out.write(bytes.getBackingArray(), bytes.offset(), bytes.length());
+    }
+    
+    private static byte[] get(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        ByteBuffer source = buffer.duplicate();
+        source.position(position + Integer.BYTES);
+        source.get(bytes);
+        return bytes;
+    }
+}
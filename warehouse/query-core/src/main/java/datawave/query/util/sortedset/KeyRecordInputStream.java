@@ -0,0 +1,163 @@
+package datawave.query.util.sortedset;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.log4j.Logger;
+
+/**
+ * Reads a file written by a {@link KeyRecordOutputStream}. When the file handler has a local file, the file is memory mapped and read in place, otherwise
+ * each record is read from the input stream into a reusable buffer. In both cases records are compared with the bounds while still encoded, and only the keys
+ * returned are materialized.
+ * <p>
+ * A mapping is released when it is garbage collected rather than on close, the file may be deleted while it is still mapped.
+ */
+public class KeyRecordInputStream implements FileSortedSet.SortedSetInputStream<Key> {
+    private static final Logger log = Logger.getLogger(KeyRecordInputStream.class);
+    
+    private final Key start;
+    private final Key end;
+    
+    // the memory mapped file and the position of the next record, or null when streaming
+    private ByteBuffer mapped = null;
+    private int position = KeyRecordOutputStream.HEADER_SIZE;
+    
+    // the stream and the buffer holding its current record, when not mapped
+    private DataInputStream stream = null;
+    private ByteBuffer record = null;
+    
+    private boolean done = false;
+    private int size = -1;
+    
+    public KeyRecordInputStream(FileSortedSet.SortedSetFileHandler handler) throws IOException {
+        this(handler, null, null);
+    }
+    
+    /**
+     * @param handler
+     *            the file handler
+     * @param start
+     *            the inclusive start key, null to read from the beginning
+     * @param end
+     *            the exclusive end key, null to read to the end
+     * @throws IOException
+     *             if the file could not be opened or was not written by a {@link KeyRecordOutputStream}
+     */
+    public KeyRecordInputStream(FileSortedSet.SortedSetFileHandler handler, Key start, Key end) throws IOException {
+        this.start = start;
+        this.end = end;
+        
+        File file = handler.getLocalFile();
+        int magic;
+        if (file != null && file.length() <= Integer.MAX_VALUE) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (mapped.limit() < KeyRecordOutputStream.HEADER_SIZE + KeyRecordOutputStream.TRAILER_SIZE) {
+                throw new IOException("File is too short to hold a key record set: " + file);
+            }
+            magic = mapped.getInt(0);
+        } else {
+            stream = new DataInputStream(new BufferedInputStream(handler.getInputStream()));
+            record = ByteBuffer.allocate(OffHeapSortedKeySet.AVERAGE_KEY_SIZE);
+            magic = stream.readInt();
+        }
+        if (magic != KeyRecordOutputStream.MAGIC) {
+            close();
+            throw new IOException("Not a key record set: " + handler);
+        }
+    }
+    
+    @Override
+    public Key readObject() throws IOException {
+        int offset = nextRecord();
+        while (offset >= 0 && start != null && KeyRecord.compare(buffer(), offset, start) < 0) {
+            offset = nextRecord();
+        }
+        if (offset < 0) {
+            return null;
+        }
+        if (end != null && KeyRecord.compare(buffer(), offset, end) >= 0) {
+            done = true;
+            return null;
+        }
+        return KeyRecord.read(buffer(), offset);
+    }
+    
+    @Override
+    public int readSize() throws IOException {
+        if (size < 0) {
+            if (mapped != null) {
+                size = mapped.getInt(mapped.limit() - Integer.BYTES);
+            } else if (done) {
+                throw new IllegalStateException("Cannot read size from undetermined location in stream");
+            } else {
+                // skip the remaining records without decoding them
+                while (nextRecord() >= 0) {
+                    // keep going
+                }
+            }
+        }
+        return size;
+    }
+    
+    @Override
+    public void close() {
+        mapped = null;
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.warn("Failed to close key record stream", e);
+            }
+            stream = null;
+        }
+    }
+    
+    private ByteBuffer buffer() {
+        return (mapped != null ? mapped : record);
+    }
+    
+    /**
+     * Position the next record
+     * 
+     * @return the offset of the record in the {@link #buffer()}, -1 if there are no more records
+     * @throws IOException
+     *             if the record could not be read
+     */
+    private int nextRecord() throws IOException {
+        if (done) {
+            return -1;
+        }
+        if (mapped != null) {
+            int length = mapped.getInt(position);
+            if (length == KeyRecordOutputStream.END_OF_RECORDS) {
+                size = mapped.getInt(position + Integer.BYTES);
+                done = true;
+                return -1;
+            }
+            int offset = position;
+            position += Integer.BYTES + length;
+            return offset;
+        } else {
+            int length = stream.readInt();
+            if (length == KeyRecordOutputStream.END_OF_RECORDS) {
+                size = stream.readInt();
+                done = true;
+                return -1;
+            }
+            if (record.capacity() < Integer.BYTES + length) {
+                record = ByteBuffer.allocate(Math.max(Integer.BYTES + length, record.capacity() * 2));
+            }
+            record.putInt(0, length);
+            stream.readFully(record.array(), Integer.BYTES, length);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package datawave.query.util.sortedset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * Writes a sorted set of keys as a file of {@link KeyRecord}s: a header, the records, an end marker and the number of keys.
+ */
+public class KeyRecordOutputStream implements FileSortedSet.SortedSetOutputStream<Key> {
+    // identifies the file format
+    public static final int MAGIC = 0x44574b52;
+    // in place of a record length, marks the end of the records
+    public static final int END_OF_RECORDS = -1;
+    public static final int HEADER_SIZE = Integer.BYTES;
+    // the end marker and the size
+    public static final int TRAILER_SIZE = 2 * Integer.BYTES;
+    
+    private DataOutputStream stream;
+    
+    public KeyRecordOutputStream(OutputStream stream) throws IOException {
+        this.stream = new DataOutputStream(new BufferedOutputStream(stream));
+        this.stream.writeInt(MAGIC);
+    }
+    
+    @Override
+    public void writeObject(Key o) throws IOException {
+        KeyRecord.write(stream, o);
+    }
+    
+    @Override
+    public void writeSize(int size) throws IOException {
+        stream.writeInt(END_OF_RECORDS);
+        stream.writeInt(size);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        stream.close();
+        stream = null;
+    }
+}
@@ -7,7 +7,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
-import java.util.TreeSet;
 import datawave.webservice.query.exception.DatawaveErrorCode;
 import datawave.webservice.query.exception.QueryException;
 
@@ -15,40 +14,47 @@ import datawave.webservice.query.exception.QueryException;
  * This is an iterator that will return a sorted set of items (no dups) from an underlying set of sorted sets. This will support null contained in the
  * underlying sets iff the underlying sets use a comparator that can handle null values.
  * 
- * 
+ * The head of each underlying iterator is kept in a binary heap of iterator indices, so each item returned costs O(log n) comparisons for n sets rather than a
+ * pass over all of the sets. An underlying iterator is only advanced when the next item is requested, which allows remove to be delegated to the iterators
+ * that contributed the last item returned.
  * 
  * @param <T>
  */
 public class MergeSortIterator<T> implements Iterator<T> {
     
     private List<Iterator<T>> iterators = new ArrayList<>();
-    private List<T> lastList = new ArrayList<>();
-    private boolean[] finished = null;
-    private SortedSet<T> set = null;
+    private Comparator<? super T> comparator = null;
+    // the current head of each iterator
+    private Object[] heads = null;
+    // a min heap of the indices of the iterators with a head, ordered by their heads
+    private int[] heap = null;
+    private int heapSize = 0;
+    // the indices of the iterators which need to be advanced, being those that contributed the last item returned
+    private int[] advance = null;
+    private int advanceSize = 0;
     private boolean populated = false;
-    private T next = null;
-    private List<Iterator<T>> nextIterators = new ArrayList<>();
     
     public MergeSortIterator(Collection<? extends SortedSet<T>> sets) {
-        Comparator<? super T> comparator = null;
         for (SortedSet<T> set : sets) {
             comparator = set.comparator();
-            Iterator<T> it = set.iterator();
-            iterators.add(it);
-            nextIterators.add(it);
-            lastList.add(null);
+            iterators.add(set.iterator());
+        }
+        this.heads = new Object[iterators.size()];
+        this.heap = new int[iterators.size()];
+        this.advance = new int[iterators.size()];
+        // all of the iterators need to be advanced to their first item
+        for (int i = 0; i < iterators.size(); i++) {
+            advance[advanceSize++] = i;
         }
-        this.set = new TreeSet<>(comparator);
-        this.finished = new boolean[iterators.size()];
     }
     
     @Override
     public boolean hasNext() {
-        if (!set.isEmpty()) {
+        if (heapSize > 0) {
             return true;
         }
-        for (Iterator<T> it : nextIterators) {
-            if (it != null && it.hasNext()) {
+        for (int i = 0; i < advanceSize; i++) {
+            if (iterators.get(advance[i]).hasNext()) {
                 return true;
             }
         }
@@ -62,7 +68,7 @@ public class MergeSortIterator<T> implements Iterator<T> {
             QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
             throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
         }
-        return next;
+        return head(advance[0]);
     }
     
     @Override
@@ -71,13 +77,11 @@ public class MergeSortIterator<T> implements Iterator<T> {
             throw new IllegalStateException();
         }
         Exception e = null;
-        for (Iterator<T> it : nextIterators) {
-            if (it != null) {
-                try {
-                    it.remove();
-                } catch (UnsupportedOperationException uoe) {
-                    e = uoe;
-                }
+        for (int i = 0; i < advanceSize; i++) {
+            try {
+                iterators.get(advance[i]).remove();
+            } catch (UnsupportedOperationException uoe) {
+                e = uoe;
             }
         }
         populated = false;
@@ -88,55 +92,85 @@ public class MergeSortIterator<T> implements Iterator<T> {
     
     /************ Some utility methods *********/
     
-    private boolean equals(T o1, T o2) {
-        if (o1 == null) {
-            return o2 == null;
-        } else if (o2 == null) {
-            return false;
+    @SuppressWarnings("unchecked")
+    private T head(int index) {
+        return (T) heads[index];
+    }
+    
+    @SuppressWarnings("unchecked")
+    private int compare(T o1, T o2) {
+        if (comparator == null) {
+            return ((Comparable<? super T>) o1).compareTo(o2);
         } else {
-            if (set.comparator() == null) {
-                return o1.equals(o2);
-            } else {
-                return set.comparator().compare(o1, o2) == 0;
+            return comparator.compare(o1, o2);
+        }
+    }
+    
+    // compare the heads of the iterators at two positions in the heap
+    private boolean less(int i, int j) {
+        return compare(head(heap[i]), head(heap[j])) < 0;
+    }
+    
+    private void swap(int i, int j) {
+        int index = heap[i];
+        heap[i] = heap[j];
+        heap[j] = index;
+    }
+    
+    private void push(int index) {
+        int i = heapSize++;
+        heap[i] = index;
+        while (i > 0 && less(i, (i - 1) / 2)) {
+            swap(i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+    
+    private int pop() {
+        int index = heap[0];
+        heap[0] = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
             }
+            if (child + 1 < heapSize && less(child + 1, child)) {
+                child++;
+            }
+            if (!less(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
         }
+        return index;
     }
     
     private void populate() {
         populated = false;
         
-        // update the last value for those iterators contributing to
-        // the last returned value
-        for (int i = 0; i < nextIterators.size(); i++) {
-            if (nextIterators.get(i) != null) {
-                Iterator<T> it = nextIterators.get(i);
-                if (it.hasNext()) {
-                    T val = it.next();
-                    lastList.set(i, val);
-                    set.add(val);
-                } else {
-                    lastList.set(i, null);
-                    finished[i] = true;
-                }
+        // advance those iterators contributing to the last returned value
+        for (int i = 0; i < advanceSize; i++) {
+            int index = advance[i];
+            Iterator<T> it = iterators.get(index);
+            if (it.hasNext()) {
+                heads[index] = it.next();
+                push(index);
+            } else {
+                heads[index] = null;
             }
         }
+        advanceSize = 0;
         
-        if (!set.isEmpty()) {
-            next = set.first();
-            set.remove(next);
-            for (int i = 0; i < iterators.size(); i++) {
-                if (!finished[i] && equals(next, lastList.get(i))) {
-                    nextIterators.set(i, iterators.get(i));
-                } else {
-                    // if the iterator is finished, or did not contribute to the value being returned
-                    // then null it out since the value returned is already in the set to compare
-                    // on the next round
-                    nextIterators.set(i, null);
-                }
+        if (heapSize > 0) {
+            // take the least value from every iterator that has it
+            T next = head(heap[0]);
+            while (heapSize > 0 && compare(head(heap[0]), next) == 0) {
+                advance[advanceSize++] = pop();
             }
             populated = true;
         }
-        
     }
     
 }
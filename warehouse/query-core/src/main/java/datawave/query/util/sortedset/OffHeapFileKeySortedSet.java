@@ -0,0 +1,188 @@
+package datawave.query.util.sortedset;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.SortedSet;
+
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * A {@link FileSortedSet} of keys which keeps its unpersisted keys off heap in an {@link OffHeapSortedKeySet}, and persists them as {@link KeyRecord}s which
+ * are memory mapped when read back from a local file. Keys are only materialized as they are returned, so large ivarated sets put far less pressure on the
+ * heap than a {@link FileKeySortedSet}.
+ * <p>
+ * Like the {@link FileKeySortedSet}, only the natural ordering of keys is supported. A subset of an unpersisted set is a copy held on the heap.
+ */
+public class OffHeapFileKeySortedSet extends FileSortedSet<Key> {
+    
+    /**
+     * Create a file sorted set from another one
+     * 
+     * @param other
+     */
+    public OffHeapFileKeySortedSet(OffHeapFileKeySortedSet other) {
+        super(other);
+        if (!persisted) {
+            this.set = new OffHeapSortedKeySet(other.set);
+        }
+    }
+    
+    /**
+     * Create a file sorted subset from another one
+     * 
+     * @param other
+     * @param from
+     * @param to
+     */
+    public OffHeapFileKeySortedSet(OffHeapFileKeySortedSet other, Key from, Key to) {
+        super(other, from, to);
+    }
+    
+    /**
+     * Create a persisted sorted set
+     * 
+     * @param handler
+     * @param persisted
+     */
+    public OffHeapFileKeySortedSet(SortedSetFileHandler handler, boolean persisted) {
+        super(new KeyRecordFileHandler(handler), new OffHeapFileKeySortedSet.Factory(), persisted);
+        this.set = new OffHeapSortedKeySet();
+    }
+    
+    /**
+     * Create a persisted sorted set
+     * 
+     * @param comparator
+     * @param handler
+     * @param persisted
+     */
+    public OffHeapFileKeySortedSet(Comparator<? super Key> comparator, SortedSetFileHandler handler, boolean persisted) {
+        this(handler, persisted);
+        if (comparator != null) {
+            throw new UnsupportedOperationException("Cannot supply a comparator for a OffHeapFileKeySortedSet.  Only a Key comparator will work");
+        }
+    }
+    
+    /**
+     * Create an unpersisted sorted set (still in memory)
+     * 
+     * @param set
+     * @param handler
+     */
+    public OffHeapFileKeySortedSet(SortedSet<Key> set, SortedSetFileHandler handler) {
+        this(handler, false);
+        this.set.addAll(set);
+    }
+    
+    /**
+     * Create an sorted set out of another sorted set. If persist is true, then the set will be directly persisted using the set's iterator which avoid pulling
+     * all of its entries into memory at once.
+     * 
+     * @param set
+     * @param handler
+     */
+    public OffHeapFileKeySortedSet(SortedSet<Key> set, SortedSetFileHandler handler, boolean persist) throws IOException {
+        super(set, new KeyRecordFileHandler(handler), new OffHeapFileKeySortedSet.Factory(), persist);
+        this.set = new OffHeapSortedKeySet(this.set);
+    }
+    
+    /**
+     * This will dump the set to the file, making the set "persisted"
+     * 
+     * @throws IOException
+     */
+    public void persist(SortedSetFileHandler handler) throws IOException {
+        // ensure this handler is wrapped with our handler
+        super.persist(new KeyRecordFileHandler(handler));
+    }
+    
+    /**
+     * Clone this set
+     */
+    @Override
+    public OffHeapFileKeySortedSet clone() {
+        return (OffHeapFileKeySortedSet) super.clone();
+    }
+    
+    /**
+     * A sortedsetfilehandler that reads and writes key records, and can bound the input stream
+     */
+    public static class KeyRecordFileHandler implements BoundedTypedSortedSetFileHandler<Key> {
+        SortedSetFileHandler delegate;
+        
+        public KeyRecordFileHandler(SortedSetFileHandler handler) {
+            this.delegate = handler;
+        }
+        
+        @Override
+        public SortedSetInputStream<Key> getInputStream() throws IOException {
+            return new KeyRecordInputStream(delegate);
+        }
+        
+        @Override
+        public SortedSetInputStream<Key> getInputStream(Key start, Key end) throws IOException {
+            return new KeyRecordInputStream(delegate, start, end);
+        }
+        
+        @Override
+        public SortedSetOutputStream getOutputStream() throws IOException {
+            return new KeyRecordOutputStream(delegate.getOutputStream());
+        }
+        
+        @Override
+        public PersistOptions getPersistOptions() {
+            return delegate.getPersistOptions();
+        }
+        
+        @Override
+        public long getSize() {
+            return delegate.getSize();
+        }
+        
+        @Override
+        public void deleteFile() {
+            delegate.deleteFile();
+        }
+        
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+    
+    /**
+     * A factory for these file sorted sets
+     */
+    public static class Factory implements FileSortedSetFactory<Key> {
+        
+        @Override
+        public OffHeapFileKeySortedSet newInstance(FileSortedSet<Key> other) {
+            return new OffHeapFileKeySortedSet((OffHeapFileKeySortedSet) other);
+        }
+        
+        @Override
+        public OffHeapFileKeySortedSet newInstance(FileSortedSet<Key> other, Key from, Key to) {
+            return new OffHeapFileKeySortedSet((OffHeapFileKeySortedSet) other, from, to);
+        }
+        
+        @Override
+        public OffHeapFileKeySortedSet newInstance(SortedSetFileHandler handler, boolean persisted) {
+            return new OffHeapFileKeySortedSet(handler, persisted);
+        }
+        
+        @Override
+        public OffHeapFileKeySortedSet newInstance(Comparator<? super Key> comparator, SortedSetFileHandler handler, boolean persisted) {
+            return new OffHeapFileKeySortedSet(comparator, handler, persisted);
+        }
+        
+        @Override
+        public OffHeapFileKeySortedSet newInstance(SortedSet<Key> set, SortedSetFileHandler handler) {
+            return new OffHeapFileKeySortedSet(set, handler);
+        }
+        
+        @Override
+        public OffHeapFileKeySortedSet newInstance(SortedSet<Key> set, SortedSetFileHandler handler, boolean persist) throws IOException {
+            return new OffHeapFileKeySortedSet(set, handler, persist);
+        }
+    }
+}
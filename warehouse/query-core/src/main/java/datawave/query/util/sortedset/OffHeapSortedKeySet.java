@@ -0,0 +1,380 @@
+package datawave.query.util.sortedset;
+
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * A sorted set of keys which keeps the keys encoded as {@link KeyRecord}s in a direct (off heap) buffer, along with an array of record offsets in sorted key
+ * order. A key is only materialized when it is returned, so a large set costs the heap an int per key rather than a Key object with four byte arrays.
+ * <p>
+ * Keys are in their natural order. The space of removed keys is only reclaimed when the set is cleared, which also releases the buffer.
+ */
+public class OffHeapSortedKeySet extends AbstractSet<Key> implements SortedSet<Key> {
+    public static final int AVERAGE_KEY_SIZE = 128;
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    protected final int initialCapacity;
+    protected ByteBuffer data = null;
+    protected int[] sortedOffsets = null;
+    protected int size = 0;
+    protected int modCount = 0;
+    
+    public OffHeapSortedKeySet() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param capacity
+     *            the number of keys to allocate space for initially
+     */
+    public OffHeapSortedKeySet(int capacity) {
+        this.initialCapacity = Math.max(1, capacity);
+    }
+    
+    public OffHeapSortedKeySet(Collection<Key> keys) {
+        this(Math.max(keys.size(), DEFAULT_CAPACITY));
+        addAll(keys);
+    }
+    
+    /************************** Overridden methods *************************/
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        if (o instanceof Key) {
+            return binarySearch((Key) o, 0, size - 1) >= 0;
+        }
+        return false;
+    }
+    
+    @Override
+    public Iterator<Key> iterator() {
+        return new OffHeapSortedKeySetIterator(0, size);
+    }
+    
+    @Override
+    public boolean add(Key key) {
+        int index = binarySearch(key, 0, size - 1);
+        if (index < 0) {
+            add(-1 - index, key);
+            return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Key)) {
+            return false;
+        }
+        int index = binarySearch((Key) o, 0, size - 1);
+        if (index >= 0) {
+            remove(index);
+            return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public void clear() {
+        modCount++;
+        size = 0;
+        // release the buffer, it is reallocated on the next add
+        data = null;
+        sortedOffsets = null;
+    }
+    
+    @Override
+    public Comparator<? super Key> comparator() {
+        return null;
+    }
+    
+    @Override
+    public SortedSet<Key> subSet(Key fromElement, Key toElement) {
+        if (fromElement.compareTo(toElement) > 0) {
+            throw new IllegalArgumentException("The start is greater than the end");
+        }
+        return new OffHeapSortedKeySubSet(fromElement, toElement);
+    }
+    
+    @Override
+    public SortedSet<Key> headSet(Key toElement) {
+        return new OffHeapSortedKeySubSet(null, toElement);
+    }
+    
+    @Override
+    public SortedSet<Key> tailSet(Key fromElement) {
+        return new OffHeapSortedKeySubSet(fromElement, null);
+    }
+    
+    @Override
+    public Key first() {
+        if (size == 0) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        return get(0);
+    }
+    
+    @Override
+    public Key last() {
+        if (size == 0) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        return get(size - 1);
+    }
+    
+    /***************************** Other public methods *************************/
+    
+    public Key get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index is out of range");
+        }
+        return KeyRecord.read(data, sortedOffsets[index]);
+    }
+    
+    /**
+     * @return the number of bytes allocated off heap
+     */
+    public int getCapacity() {
+        return (data == null ? 0 : data.capacity());
+    }
+    
+    /******************************* The protected stuff ***************************/
+    
+    protected void checkCapacity(int plusSize) {
+        if (data == null) {
+            data = ByteBuffer.allocateDirect(Math.max(initialCapacity * AVERAGE_KEY_SIZE, plusSize));
+            sortedOffsets = new int[initialCapacity];
+        } else if (data.remaining() < plusSize) {
+            long minCapacity = (long) data.position() + plusSize;
+            long newCapacity = Math.max(minCapacity, ((long) data.capacity() * 3) / 2 + 1);
+            if (newCapacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("OffHeapSortedKeySet cannot hold more than " + Integer.MAX_VALUE + " bytes");
+            }
+            ByteBuffer newData = ByteBuffer.allocateDirect((int) newCapacity);
+            data.flip();
+            newData.put(data);
+            data = newData;
+        }
+        if (size == sortedOffsets.length) {
+            sortedOffsets = Arrays.copyOf(sortedOffsets, (sortedOffsets.length * 3) / 2 + 1);
+        }
+    }
+    
+    protected void add(int index, Key key) {
+        modCount++;
+        checkCapacity(KeyRecord.size(key));
+        int offset = data.position();
+        KeyRecord.write(data, key);
+        System.arraycopy(sortedOffsets, index, sortedOffsets, index + 1, size - index);
+        sortedOffsets[index] = offset;
+        size++;
+    }
+    
+    protected void remove(int index) {
+        modCount++;
+        size--;
+        System.arraycopy(sortedOffsets, index + 1, sortedOffsets, index, size - index);
+    }
+    
+    /**
+     * A binary search of the records based on the sorted offsets
+     * 
+     * @param key
+     *            the key to find
+     * @param start
+     *            the first index to search
+     * @param end
+     *            the last index to search
+     * @return the index of the key, or -(insertion point + 1) if not found
+     */
+    protected int binarySearch(Key key, int start, int end) {
+        while (start <= end) {
+            int middle = (start + end) >>> 1;
+            int comparison = KeyRecord.compare(data, sortedOffsets[middle], key);
+            
+            if (comparison < 0)
+                start = middle + 1;
+            else if (comparison > 0)
+                end = middle - 1;
+            else
+                return middle;
+        }
+        // return a negative index if not found so we know where it should go
+        return -(start + 1);
+    }
+    
+    // the index of the first key not less than the key
+    protected int lowerBound(Key key) {
+        int index = binarySearch(key, 0, size - 1);
+        return (index < 0 ? -1 - index : index);
+    }
+    
+    protected class OffHeapSortedKeySetIterator implements Iterator<Key> {
+        protected int index = 0;
+        protected int end = 0;
+        protected int expectedModCount = -1;
+        protected int last = -1;
+        
+        public OffHeapSortedKeySetIterator(int start, int end) {
+            this.expectedModCount = modCount;
+            this.index = start;
+            this.end = end;
+        }
+        
+        final void checkModCount() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            checkModCount();
+            return index < end;
+        }
+        
+        @Override
+        public Key next() {
+            if (!hasNext()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            last = index;
+            return get(index++);
+        }
+        
+        @Override
+        public void remove() {
+            checkModCount();
+            if (last >= 0) {
+                OffHeapSortedKeySet.this.remove(last);
+                index--;
+                end--;
+                last = -1;
+                expectedModCount = modCount;
+            } else {
+                throw new IllegalStateException("next needs to be called first");
+            }
+        }
+    }
+    
+    /**
+     * A view of the keys in [from, to), null bounds being open
+     */
+    protected class OffHeapSortedKeySubSet extends AbstractSet<Key> implements SortedSet<Key> {
+        protected final Key from;
+        protected final Key to;
+        
+        public OffHeapSortedKeySubSet(Key from, Key to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        public Comparator<? super Key> comparator() {
+            return null;
+        }
+        
+        @Override
+        public SortedSet<Key> subSet(Key fromElement, Key toElement) {
+            if (!inRange(fromElement) || (to != null && to.compareTo(toElement) < 0)) {
+                throw new IllegalArgumentException("Cannot create subset outside of the range of this subset");
+            }
+            return OffHeapSortedKeySet.this.subSet(fromElement, toElement);
+        }
+        
+        @Override
+        public SortedSet<Key> headSet(Key toElement) {
+            return (from == null ? OffHeapSortedKeySet.this.headSet(toElement) : subSet(from, toElement));
+        }
+        
+        @Override
+        public SortedSet<Key> tailSet(Key fromElement) {
+            return (to == null ? OffHeapSortedKeySet.this.tailSet(fromElement) : subSet(fromElement, to));
+        }
+        
+        @Override
+        public Key first() {
+            if (isEmpty()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return get(getStart());
+        }
+        
+        @Override
+        public Key last() {
+            if (isEmpty()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return get(getEnd() - 1);
+        }
+        
+        @Override
+        public Iterator<Key> iterator() {
+            int start = getStart();
+            return new OffHeapSortedKeySetIterator(start, Math.max(start, getEnd()));
+        }
+        
+        @Override
+        public int size() {
+            return Math.max(0, getEnd() - getStart());
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return (o instanceof Key) && inRange((Key) o) && OffHeapSortedKeySet.this.contains(o);
+        }
+        
+        @Override
+        public boolean add(Key key) {
+            if (!inRange(key)) {
+                throw new IllegalArgumentException("Cannot add element outside of subset range");
+            }
+            return OffHeapSortedKeySet.this.add(key);
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            return contains(o) && OffHeapSortedKeySet.this.remove(o);
+        }
+        
+        protected boolean inRange(Key key) {
+            return (from == null || key.compareTo(from) >= 0) && (to == null || key.compareTo(to) < 0);
+        }
+        
+        // the index of the first key in the range
+        protected int getStart() {
+            return (from == null ? 0 : lowerBound(from));
+        }
+        
+        // the index after the last key in the range
+        protected int getEnd() {
+            return (to == null ? OffHeapSortedKeySet.this.size : lowerBound(to));
+        }
+    }
+}
@@ -55,6 +55,11 @@ public class SortedSetTempFileHandler implements FileSortedSet.SortedSetFileHand
         this.file.delete();
     }
     
+    @Override
+    public File getLocalFile() {
+        return file;
+    }
+    
     @Override
     public String toString() {
         return file.toString();
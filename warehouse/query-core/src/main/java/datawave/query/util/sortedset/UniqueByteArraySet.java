@@ -0,0 +1,289 @@
+package datawave.query.util.sortedset;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * An exact set of byte arrays with bounded memory usage. New entries are held in an in-memory sorted buffer. When the buffer goes over the memory budget it is
+ * spilled as a sorted run into a {@link BufferedFileBackedSortedSet} (typically an {@link HdfsBackedSortedSet} using the ivarator cache dirs), and only a 64 bit
+ * digest of each spilled entry is kept in memory, in a sorted primitive array per spilled run. A value whose digest has not been spilled is known to be new
+ * without touching the files; a digest match (a true duplicate or a collision) only reads the runs whose digests match, and only up to where the value would be.
+ * <p>
+ * If no spill set is supplied, then the set cannot spill. It will grow without bound if the memory budget is &lt;= 0, otherwise it stops recording new entries
+ * once the budget is reached and will report every unrecorded value as new from then on.
+ */
+public class UniqueByteArraySet {
+    private static final Logger log = Logger.getLogger(UniqueByteArraySet.class);
+    
+    // approximate heap overhead per buffered entry (tree node plus array header)
+    protected static final int ENTRY_OVERHEAD = 64;
+    
+    private static final HashFunction DIGEST = Hashing.murmur3_128();
+    private static final ByteArrayComparator COMPARATOR = new ByteArrayComparator();
+    
+    private final long maxMemoryBytes;
+    private final BufferedFileBackedSortedSet<byte[]> spillSet;
+    
+    private TreeSet<byte[]> buffer = new TreeSet<>(COMPARATOR);
+    private long bufferBytes = 0;
+    
+    // the sorted digests of each spilled run
+    private final List<SpilledRun> runs = new ArrayList<>();
+    
+    private int spillCount = 0;
+    private long spillReadCount = 0;
+    private boolean saturated = false;
+    
+    /**
+     * Create a set that is held in memory only
+     * 
+     * @param maxMemoryBytes
+     *            the memory budget, or &lt;= 0 for an unbounded (but exact) set
+     */
+    public UniqueByteArraySet(long maxMemoryBytes) {
+        this(maxMemoryBytes, null);
+    }
+    
+    /**
+     * Create a set that spills to the supplied sorted set when over the memory budget
+     * 
+     * @param maxMemoryBytes
+     *            the memory budget for buffered entries
+     * @param spillSet
+     *            the set to spill sorted runs into, which should be created with a {@link ByteArrayComparator} and a buffer persist threshold large enough to
+     *            never persist on its own. May be null.
+     */
+    public UniqueByteArraySet(long maxMemoryBytes, BufferedFileBackedSortedSet<byte[]> spillSet) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.spillSet = spillSet;
+    }
+    
+    /**
+     * Add a value to this set
+     * 
+     * @param value
+     *            the value
+     * @return true if the value was not previously in the set
+     * @throws IOException
+     *             if the spilled runs could not be read or written
+     */
+    public synchronized boolean add(byte[] value) throws IOException {
+        if (buffer.contains(value)) {
+            return false;
+        }
+        
+        if (!runs.isEmpty()) {
+            long digest = digest(value);
+            for (SpilledRun run : runs) {
+                // either a true duplicate or a digest collision, so check the run
+                if (run.mayContain(digest)) {
+                    spillReadCount++;
+                    if (run.contains(value)) {
+                        // keep it handy as a duplicate is likely to be seen again
+                        addToBuffer(value);
+                        return false;
+                    }
+                }
+            }
+        }
+        
+        if (!saturated) {
+            addToBuffer(value);
+        }
+        return true;
+    }
+    
+    private void addToBuffer(byte[] value) throws IOException {
+        buffer.add(value);
+        bufferBytes += value.length + ENTRY_OVERHEAD;
+        if (maxMemoryBytes > 0 && bufferBytes >= maxMemoryBytes) {
+            if (spillSet != null) {
+                spill();
+            } else if (!saturated) {
+                log.warn("Unique set has reached its memory budget of " + maxMemoryBytes + " bytes with " + buffer.size()
+                                + " entries and no spill directories, further values will not be recorded");
+                saturated = true;
+            }
+        }
+    }
+    
+    private void spill() throws IOException {
+        long start = System.currentTimeMillis();
+        
+        // compute the digests of the buffer before it is handed off
+        long[] digests = new long[buffer.size()];
+        int count = 0;
+        for (byte[] value : buffer) {
+            digests[count++] = digest(value);
+        }
+        Arrays.sort(digests);
+        
+        spillSet.addAll(buffer);
+        spillSet.persist();
+        updateRuns(digests);
+        spillCount++;
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Spilled " + buffer.size() + " unique entries (" + bufferBytes + " bytes) in " + (System.currentTimeMillis() - start) + "ms, "
+                            + runs.size() + " runs spilled in total");
+        }
+        
+        buffer = new TreeSet<>(COMPARATOR);
+        bufferBytes = 0;
+    }
+    
+    /**
+     * Match the persisted sets of the spill set up with their digests. The set just persisted is new, and persisting may have compacted runs together, in
+     * which case the digests of the compacted runs move to the set they were compacted into.
+     */
+    private void updateRuns(long[] digests) {
+        List<FileSortedSet<byte[]>> sets = spillSet.getSets();
+        long[] orphaned = digests;
+        for (Iterator<SpilledRun> it = runs.iterator(); it.hasNext();) {
+            SpilledRun run = it.next();
+            if (!containsSet(sets, run.set)) {
+                orphaned = mergeDigests(orphaned, run.digests);
+                it.remove();
+            }
+        }
+        for (FileSortedSet<byte[]> set : sets) {
+            if (!isTracked(set)) {
+                runs.add(new SpilledRun(set, orphaned));
+            }
+        }
+    }
+    
+    private static boolean containsSet(List<FileSortedSet<byte[]>> sets, FileSortedSet<byte[]> set) {
+        for (FileSortedSet<byte[]> other : sets) {
+            if (other == set) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean isTracked(FileSortedSet<byte[]> set) {
+        for (SpilledRun run : runs) {
+            if (run.set == set) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // merge two sorted arrays of digests, dropping duplicates
+    private static long[] mergeDigests(long[] a, long[] b) {
+        long[] merged = new long[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < b.length) {
+            long next;
+            if (j == b.length || (i < a.length && a[i] <= b[j])) {
+                next = a[i++];
+            } else {
+                next = b[j++];
+            }
+            if (k == 0 || merged[k - 1] != next) {
+                merged[k++] = next;
+            }
+        }
+        return Arrays.copyOf(merged, k);
+    }
+    
+    private static long digest(byte[] value) {
+        return DIGEST.hashBytes(value).asLong();
+    }
+    
+    /**
+     * @return the approximate number of bytes held in memory by the buffer and the digest index
+     */
+    public synchronized long getMemoryBytes() {
+        long digestBytes = 0;
+        for (SpilledRun run : runs) {
+            digestBytes += 8L * run.digests.length;
+        }
+        return bufferBytes + digestBytes;
+    }
+    
+    /**
+     * @return the number of times the buffer has been spilled
+     */
+    public synchronized int getSpillCount() {
+        return spillCount;
+    }
+    
+    /**
+     * @return the number of times a spilled run has been read to check for a value
+     */
+    public synchronized long getSpillReadCount() {
+        return spillReadCount;
+    }
+    
+    /**
+     * @return true if the set reached its memory budget without being able to spill and is no longer recording new values
+     */
+    public synchronized boolean isSaturated() {
+        return saturated;
+    }
+    
+    /**
+     * Drop all entries, including any spilled files
+     */
+    public synchronized void clear() {
+        buffer = new TreeSet<>(COMPARATOR);
+        bufferBytes = 0;
+        runs.clear();
+        saturated = false;
+        if (spillSet != null) {
+            spillSet.clear();
+        }
+    }
+    
+    /**
+     * Drop all entries and remove the spilled files along with the directories they were spilled to. The set may not spill again once closed.
+     * 
+     * @throws IOException
+     *             if the directories could not be removed
+     */
+    public synchronized void close() throws IOException {
+        clear();
+        if (spillSet instanceof HdfsBackedSortedSet) {
+            ((HdfsBackedSortedSet<byte[]>) spillSet).delete();
+        }
+    }
+    
+    /**
+     * A persisted sorted run and the sorted digests of its entries
+     */
+    private static class SpilledRun {
+        private final FileSortedSet<byte[]> set;
+        private final long[] digests;
+        
+        SpilledRun(FileSortedSet<byte[]> set, long[] digests) {
+            this.set = set;
+            this.digests = digests;
+        }
+        
+        boolean mayContain(long digest) {
+            return Arrays.binarySearch(digests, digest) >= 0;
+        }
+        
+        boolean contains(byte[] value) {
+            // the run is sorted, so only read as far as the first entry that is not less than the value
+            try {
+                byte[] ceiling = set.tailSet(value).first();
+                return ceiling != null && COMPARATOR.compare(ceiling, value) == 0;
+            } catch (NoSuchElementException e) {
+                return false;
+            }
+        }
+    }
+}
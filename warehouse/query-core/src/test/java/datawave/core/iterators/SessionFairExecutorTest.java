@@ -0,0 +1,123 @@
+package datawave.core.iterators;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class SessionFairExecutorTest {
+    
+    private ThreadPoolExecutor pool;
+    private SessionFairExecutor executor;
+    
+    @Before
+    public void setup() {
+        pool = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>());
+        executor = new SessionFairExecutor(pool);
+    }
+    
+    @After
+    public void teardown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    public void testRoundRobinAcrossSessions() throws Exception {
+        CountDownLatch blocker = block();
+        
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(executor.submit("large", () -> order.add("large")));
+        }
+        futures.add(executor.submit("small", () -> order.add("small")));
+        
+        Map<String,SessionFairExecutor.SessionStats> stats = executor.getSessionStats();
+        Assert.assertEquals(5, stats.get("large").getQueued());
+        Assert.assertEquals(1, stats.get("small").getQueued());
+        Assert.assertEquals(6, executor.getQueued());
+        
+        blocker.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        
+        // the small session does not wait behind the whole backlog of the large one
+        Assert.assertEquals("small", order.get(1));
+        Assert.assertEquals(6, order.size());
+    }
+    
+    @Test
+    public void testWeightedSessions() throws Exception {
+        executor.setWeight("heavy", 2);
+        CountDownLatch blocker = block();
+        
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit("heavy", () -> order.add("heavy")));
+            futures.add(executor.submit("light", () -> order.add("light")));
+        }
+        
+        blocker.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        
+        Assert.assertEquals("heavy", order.get(0));
+        Assert.assertEquals("heavy", order.get(1));
+        Assert.assertEquals("light", order.get(2));
+        Assert.assertEquals("heavy", order.get(3));
+        Assert.assertEquals("heavy", order.get(4));
+        Assert.assertEquals("light", order.get(5));
+    }
+    
+    @Test
+    public void testSessionsRetiredWhenIdle() throws Exception {
+        Future<?> future = executor.submit("query", () -> {});
+        future.get(1, TimeUnit.MINUTES);
+        
+        // the session is retired just after its last task completes
+        long end = System.currentTimeMillis() + 10000;
+        while (!executor.getSessionStats().isEmpty() && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(executor.getSessionStats().isEmpty());
+        Assert.assertEquals(0, executor.getQueued());
+    }
+    
+    @Test
+    public void testDefaultSession() throws Exception {
+        CountDownLatch blocker = block();
+        Future<?> future = executor.submit(null, () -> {});
+        Assert.assertEquals(1, executor.getSessionStats().get(SessionFairExecutor.DEFAULT_SESSION).getQueued());
+        blocker.countDown();
+        future.get(1, TimeUnit.MINUTES);
+    }
+    
+    // occupy the single pool thread until the returned latch is released
+    private CountDownLatch block() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        executor.submit("blocker", () -> {
+            started.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        return blocker;
+    }
+}
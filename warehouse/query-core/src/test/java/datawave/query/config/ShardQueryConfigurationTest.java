@@ -19,6 +19,8 @@ import datawave.query.function.DocumentPermutation;
 import datawave.query.function.DocumentProjection;
 import datawave.query.model.QueryModel;
 import datawave.query.attributes.UniqueFields;
+import datawave.query.transformer.GroupingTransform;
+import datawave.query.transformer.UniqueTransform;
 import datawave.query.attributes.UniqueGranularity;
 import datawave.util.TableName;
 import datawave.webservice.query.QueryImpl;
@@ -168,6 +170,7 @@ public class ShardQueryConfigurationTest {
         Assert.assertNull(config.getZookeeperConfig());
         Assert.assertTrue(config.getIvaratorCacheDirConfigs().isEmpty());
         Assert.assertEquals(2, config.getIvaratorNumRetries());
+        Assert.assertFalse(config.isIvaratorOffHeapSortedSets());
         Assert.assertEquals(100, config.getIvaratorPersistVerifyCount());
         Assert.assertEquals(true, config.isIvaratorPersistVerify());
         Assert.assertNull(config.getIvaratorFstHdfsBaseURIs());
@@ -179,6 +182,8 @@ public class ShardQueryConfigurationTest {
         Assert.assertEquals(33, config.getMaxIvaratorSources());
         Assert.assertEquals(25, config.getMaxEvaluationPipelines());
         Assert.assertEquals(25, config.getMaxPipelineCachedResults());
+        Assert.assertFalse(config.isAdaptiveEvaluationPipelines());
+        Assert.assertEquals(2, config.getMinEvaluationPipelines());
         Assert.assertFalse(config.isExpandAllTerms());
         Assert.assertNull(config.getQueryModel());
         Assert.assertNull(config.getModelName());
@@ -189,9 +194,11 @@ public class ShardQueryConfigurationTest {
         Assert.assertFalse(config.isIndexOnlyFilterFunctionsEnabled());
         Assert.assertFalse(config.isCompositeFilterFunctionsEnabled());
         Assert.assertEquals(0, config.getGroupFieldsBatchSize());
+        Assert.assertEquals(GroupingTransform.DEFAULT_MAX_MEMORY_BYTES, config.getGroupFieldsMaxMemoryBytes());
         Assert.assertFalse(config.getAccrueStats());
         Assert.assertEquals(Sets.newHashSet(), config.getGroupFields());
         Assert.assertEquals(new UniqueFields(), config.getUniqueFields());
+        Assert.assertEquals(UniqueTransform.DEFAULT_MAX_MEMORY_BYTES, config.getUniqueMaxMemoryBytes());
         Assert.assertFalse(config.getCacheModel());
         Assert.assertTrue(config.isTrackSizes());
         Assert.assertEquals(Lists.newArrayList(), config.getContentFieldNames());
@@ -0,0 +1,112 @@
+package datawave.query.function;
+
+import com.google.common.collect.Maps;
+import datawave.query.attributes.Document;
+import datawave.query.iterator.SortedListKeyValueIterator;
+import datawave.query.iterator.aggregation.DocumentData;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyToDocumentDataTest {
+    
+    private static final String ROW = "20190101_0";
+    
+    /**
+     * A source that counts its seeks
+     */
+    private static class CountingSource extends SortedListKeyValueIterator {
+        private int seeks = 0;
+        
+        CountingSource(List<Map.Entry<Key,Value>> data) {
+            super(data);
+        }
+        
+        @Override
+        public void seek(Range range, Collection columnFamilies, boolean inclusive) throws IOException {
+            seeks++;
+            super.seek(range, columnFamilies, inclusive);
+        }
+    }
+    
+    private static List<Map.Entry<Key,Value>> createData() {
+        List<Map.Entry<Key,Value>> data = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // every third document has no event data
+            if (i % 3 != 1) {
+                data.add(Maps.immutableEntry(new Key(ROW, "dt\0uid." + i, "FOO\0foo" + i), new Value()));
+                data.add(Maps.immutableEntry(new Key(ROW, "dt\0uid." + i, "BAR\0bar" + i), new Value()));
+            }
+            data.add(Maps.immutableEntry(new Key(ROW, "fi\0FOO", "foo" + i + "\0dt\0uid." + i), new Value()));
+            data.add(Maps.immutableEntry(new Key(ROW, "tf", "dt\0uid." + i + "\0foo" + i + "\0FOO"), new Value()));
+        }
+        data.add(Maps.immutableEntry(new Key(ROW, "d", "dt\0uid.0\0VIEW"), new Value()));
+        return data;
+    }
+    
+    private static List<Map.Entry<Key,Value>> apply(KeyToDocumentData keyToDocumentData, int... uids) {
+        List<Map.Entry<Key,Value>> attributes = new ArrayList<>();
+        for (int uid : uids) {
+            Key docKey = new Key(ROW, "dt\0uid." + uid);
+            Map.Entry<DocumentData,Document> entry = keyToDocumentData.apply(Maps.immutableEntry(docKey, new Document()));
+            for (Map.Entry<Key,Value> attribute : entry.getKey().getData()) {
+                assertTrue(attribute.getKey().equals(docKey, PartialKey.ROW_COLFAM));
+                attributes.add(attribute);
+            }
+        }
+        return attributes;
+    }
+    
+    @Test
+    public void testSeekToEveryDocument() {
+        CountingSource source = new CountingSource(createData());
+        List<Map.Entry<Key,Value>> attributes = apply(new KeyToDocumentData(source), 0, 1, 2, 3, 5, 9);
+        assertEquals(10, attributes.size());
+        assertEquals(6, source.seeks);
+    }
+    
+    @Test
+    public void testReadForward() {
+        List<Map.Entry<Key,Value>> expected = apply(new KeyToDocumentData(new CountingSource(createData())), 0, 1, 2, 3, 5, 9);
+        
+        CountingSource source = new CountingSource(createData());
+        KeyToDocumentData keyToDocumentData = new KeyToDocumentData(source);
+        keyToDocumentData.setSeekThreshold(10);
+        assertEquals(expected, apply(keyToDocumentData, 0, 1, 2, 3, 5, 9));
+        assertEquals(1, source.seeks);
+    }
+    
+    @Test
+    public void testReadForwardThreshold() {
+        CountingSource source = new CountingSource(createData());
+        KeyToDocumentData keyToDocumentData = new KeyToDocumentData(source);
+        keyToDocumentData.setSeekThreshold(1);
+        // uid.2 immediately follows uid.0, but uid.9 is more than a key away from uid.3
+        assertEquals(8, apply(keyToDocumentData, 0, 2, 3, 9).size());
+        assertEquals(2, source.seeks);
+    }
+    
+    @Test
+    public void testOutOfOrder() {
+        List<Map.Entry<Key,Value>> expected = apply(new KeyToDocumentData(new CountingSource(createData())), 5, 2, 2, 8);
+        
+        CountingSource source = new CountingSource(createData());
+        KeyToDocumentData keyToDocumentData = new KeyToDocumentData(source);
+        keyToDocumentData.setSeekThreshold(10);
+        assertEquals(expected, apply(keyToDocumentData, 5, 2, 2, 8));
+        assertEquals(8, expected.size());
+        // documents before or overlapping the last one are sought
+        assertEquals(3, source.seeks);
+    }
+}
@@ -0,0 +1,85 @@
+package datawave.query.function.serializer;
+
+import datawave.query.DocumentSerialization;
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.Numeric;
+import datawave.query.function.deserializer.CompactDocumentDeserializer;
+import datawave.query.function.deserializer.KryoDocumentDeserializer;
+import com.google.common.collect.Maps;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class CompactDocumentSerializerTest {
+    
+    private static final Key DOC_KEY = new Key("20190101_1", "datatype\u0000123.345.456", "", "PUBLIC", 1234L);
+    
+    @Test
+    public void testRoundTrip() {
+        Document document = createDocument();
+        
+        Map.Entry<Key,Value> serialized = new CompactDocumentSerializer().apply(Maps.immutableEntry(DOC_KEY, document));
+        Document deserialized = new CompactDocumentDeserializer().apply(serialized).getValue();
+        
+        Assert.assertEquals(document, deserialized);
+        Assert.assertEquals(document.size(), deserialized.size());
+        Assert.assertEquals(document.getAttributes().size(), deserialized.getAttributes().size());
+    }
+    
+    @Test
+    public void testRoundTripWithCompression() {
+        Document document = createDocument();
+        for (int i = 0; i < 1000; i++) {
+            document.put("FIELD_" + i, new Content("value " + i, DOC_KEY, true));
+        }
+        
+        CompactDocumentSerializer serializer = new CompactDocumentSerializer(false, true);
+        Map.Entry<Key,Value> serialized = serializer.apply(Maps.immutableEntry(DOC_KEY, document));
+        Assert.assertEquals(DocumentSerialization.GZIP, serialized.getValue().get()[2]);
+        
+        Document deserialized = new CompactDocumentDeserializer().apply(serialized).getValue();
+        Assert.assertEquals(document, deserialized);
+    }
+    
+    @Test
+    public void testSmallerThanKryo() {
+        Document document = createDocument();
+        
+        Map.Entry<Key,Value> compact = new CompactDocumentSerializer().apply(Maps.immutableEntry(DOC_KEY, document));
+        Map.Entry<Key,Value> kryo = new KryoDocumentSerializer().apply(Maps.immutableEntry(DOC_KEY, document));
+        
+        Assert.assertTrue(compact.getValue().getSize() < kryo.getValue().getSize());
+        Assert.assertEquals(new KryoDocumentDeserializer().apply(kryo).getValue(), new CompactDocumentDeserializer().apply(compact).getValue());
+    }
+    
+    @Test
+    public void testReuse() {
+        CompactDocumentSerializer serializer = new CompactDocumentSerializer();
+        CompactDocumentDeserializer deserializer = new CompactDocumentDeserializer();
+        
+        // interned field names must not leak from one document into the next
+        for (int i = 0; i < 3; i++) {
+            Document document = createDocument();
+            document.put("FIELD_" + i, new Content("value", DOC_KEY, true));
+            Assert.assertEquals(document, deserializer.apply(serializer.apply(Maps.immutableEntry(DOC_KEY, document))).getValue());
+        }
+    }
+    
+    private static Document createDocument() {
+        Document document = new Document(DOC_KEY, true);
+        document.put("NAME", new Content("alice", DOC_KEY, true));
+        document.put("NAME", new Content("bob", DOC_KEY, true));
+        document.put("AGE", new Numeric(42, DOC_KEY, true));
+        
+        Document child = new Document(DOC_KEY, true);
+        child.put("NAME", new Content("carol", DOC_KEY, true));
+        child.put("AGE", new Numeric(7, DOC_KEY, true));
+        document.put("CHILD", child);
+        
+        return document;
+    }
+}
@@ -0,0 +1,111 @@
+package datawave.query.iterator;
+
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class ParsedOptionsCacheTest {
+    
+    @Before
+    public void setup() {
+        ParsedOptionsCache.invalidateAll();
+    }
+    
+    @Test
+    public void testScript() throws Exception {
+        String query = "FOO == 'bar' && (BAZ == 'a' || BAZ == 'b')";
+        long hits = ParsedOptionsCache.getStats().hitCount();
+        
+        ASTJexlScript first = ParsedOptionsCache.getScript(query);
+        ASTJexlScript second = ParsedOptionsCache.getScript(query);
+        assertEquals(hits + 1, ParsedOptionsCache.getStats().hitCount());
+        
+        // each caller gets its own copy of the parsed script
+        assertNotSame(first, second);
+        String expected = JexlStringBuildingVisitor.buildQuery(JexlASTHelper.parseJexlQuery(query));
+        assertEquals(expected, JexlStringBuildingVisitor.buildQuery(first));
+        assertEquals(expected, JexlStringBuildingVisitor.buildQuery(second));
+    }
+    
+    @Test(expected = ParseException.class)
+    public void testBadScript() throws Exception {
+        ParsedOptionsCache.getScript("FOO == 'bar' &&");
+    }
+    
+    @Test
+    public void testDecompressed() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("decompressed", ParsedOptionsCache.getDecompressed("compressed", () -> {
+                calls.incrementAndGet();
+                return "decompressed";
+            }));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, ParsedOptionsCache.size());
+        
+        ParsedOptionsCache.invalidateAll();
+        assertEquals(0, ParsedOptionsCache.size());
+    }
+    
+    @Test
+    public void testDecompressedWeight() throws Exception {
+        ConfigurationCopy conf = new ConfigurationCopy();
+        conf.set(ParsedOptionsCache.MAX_BYTES, "100000");
+        ParsedOptionsCache.setConfig(conf);
+        try {
+            // a short option that decompresses to far more than the cache may hold is not kept
+            char[] value = new char[1024 * 1024];
+            Arrays.fill(value, 'a');
+            ParsedOptionsCache.getDecompressed("compressed", () -> new String(value));
+            assertEquals(0, ParsedOptionsCache.size());
+            
+            ParsedOptionsCache.getDecompressed("other", () -> "decompressed");
+            assertEquals(1, ParsedOptionsCache.size());
+        } finally {
+            conf.set(ParsedOptionsCache.MAX_BYTES, Long.toString(ParsedOptionsCache.DEFAULT_MAX_BYTES));
+            ParsedOptionsCache.setConfig(conf);
+        }
+    }
+    
+    @Test
+    public void testConfigure() throws Exception {
+        ConfigurationCopy conf = new ConfigurationCopy();
+        conf.set(ParsedOptionsCache.ENABLED, "true");
+        ParsedOptionsCache.getDecompressed("compressed", () -> "decompressed");
+        
+        // the configuration is only read again once the check interval has passed
+        Whitebox.setInternalState(ParsedOptionsCache.class, "configCheckedAt", System.currentTimeMillis());
+        conf.set(ParsedOptionsCache.ENABLED, "false");
+        ParsedOptionsCache.configure(conf);
+        assertEquals(1, ParsedOptionsCache.size());
+        
+        Whitebox.setInternalState(ParsedOptionsCache.class, "configCheckedAt", 0L);
+        try {
+            ParsedOptionsCache.configure(conf);
+            assertEquals(0, ParsedOptionsCache.size());
+        } finally {
+            conf.set(ParsedOptionsCache.ENABLED, "true");
+            ParsedOptionsCache.setConfig(conf);
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void testDecompressFailure() throws Exception {
+        ParsedOptionsCache.getDecompressed("garbage", () -> {
+            throw new IOException("not in GZIP format");
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package datawave.query.iterator.filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class EdgeFilterIteratorTest {
+    
+    private static final Value EMPTY = new Value(new byte[0]);
+    
+    private static List<Key> createKeys() {
+        List<Key> keys = new ArrayList<>();
+        for (String row : new String[] {"PLUTO\0MARS", "pluto\0Ceres", "Pluto", "EARTH\0\\u0050LUTO", "\0PLUTO", "PLUTO\0MARS\0CERES", "PLÜTO\0MARS"}) {
+            for (String colFam : new String[] {"MOON/FROM-TO", "Planet/From-To", "MOON", "STATS/ACTIVITY/MOON/FROM", "STATS/DURATION"}) {
+                for (String colQual : new String[] {"20190101/CSV/A2/A3", "20190101/json", "20190101//A2", "20190101/CSV/", ""}) {
+                    keys.add(new Key(row, colFam, colQual));
+                }
+            }
+        }
+        return keys;
+    }
+    
+    private static EdgeFilterIterator createIterator(String query, String statsQuery, boolean compile) throws Exception {
+        Map<String,String> options = new HashMap<>();
+        options.put(EdgeFilterIterator.JEXL_OPTION, query);
+        options.put(EdgeFilterIterator.PROTOBUF_OPTION, "TRUE");
+        options.put(EdgeFilterIterator.INCLUDE_STATS_OPTION, "TRUE");
+        if (statsQuery != null) {
+            options.put(EdgeFilterIterator.JEXL_STATS_OPTION, statsQuery);
+        }
+        options.put(EdgeFilterIterator.COMPILED_PREDICATE_OPTION, Boolean.toString(compile));
+        EdgeFilterIterator iterator = new EdgeFilterIterator();
+        iterator.init(null, options);
+        return iterator;
+    }
+    
+    private static int assertSameAsJexl(String query, String statsQuery) throws Exception {
+        EdgeFilterIterator compiled = createIterator(query, statsQuery, true);
+        EdgeFilterIterator jexl = createIterator(query, statsQuery, false);
+        int accepted = 0;
+        for (Key key : createKeys()) {
+            boolean expected = jexl.accept(key, EMPTY);
+            assertEquals(query + " on " + key, expected, compiled.accept(key, EMPTY));
+            if (expected) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+    
+    @Test
+    public void testCompile() {
+        assertNotNull(EdgeKeyPredicate.compile("source == 'pluto' && (sink == 'mars' || sink == 'ceres')"));
+        assertNotNull(EdgeKeyPredicate.compile("'pluto' == source && not(type =~ 'moo.*') && relation != 'from-to'"));
+        assertNotNull(EdgeKeyPredicate.compile("source !~ 'p.*' or attribute1 == 'csv'"));
+        // shapes left to JEXL
+        assertNull(EdgeKeyPredicate.compile("source == sink"));
+        assertNull(EdgeKeyPredicate.compile("attribute1 == 5"));
+        assertNull(EdgeKeyPredicate.compile("unknown == 'pluto'"));
+        assertNull(EdgeKeyPredicate.compile("source =~ '[a'"));
+        assertNull(EdgeKeyPredicate.compile("source == 'pluto'; sink == 'mars'"));
+    }
+    
+    @Test
+    public void testCompiledMatchesJexl() throws Exception {
+        assertEquals(100, assertSameAsJexl("SOURCE == 'PLUTO' && (SINK == 'MARS' || SINK == 'ceres')", null));
+        assertSameAsJexl("SOURCE =~ 'pl.*' && TYPE != 'Moon'", "TYPE == 'moon'");
+        assertSameAsJexl("RELATION !~ 'from.*' || ATTRIBUTE1 == 'CSV' || ATTRIBUTE2 == 'a2'", null);
+        assertSameAsJexl("not(SINK == 'mars') && DATE == '20190101' && ATTRIBUTE3 != 'a3'", "ATTRIBUTE1 =~ 'c.v'");
+        assertSameAsJexl("'mars' == SINK || SOURCE == 'earth' || SOURCE == 'plüto'", "SOURCE == 'pluto' && SINK == 'mars'");
+    }
+}
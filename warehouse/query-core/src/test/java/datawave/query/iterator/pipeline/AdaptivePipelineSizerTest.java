@@ -0,0 +1,88 @@
+package datawave.query.iterator.pipeline;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptivePipelineSizerTest {
+    
+    private double backlog = 0.0;
+    
+    @Test
+    public void testStartsAtMinimum() {
+        AdaptivePipelineSizer sizer = new AdaptivePipelineSizer(2, 25, () -> backlog);
+        Assert.assertEquals(2, sizer.getTarget());
+        
+        // the minimum is capped by the maximum, and at least one pipeline is always allowed
+        Assert.assertEquals(4, new AdaptivePipelineSizer(10, 4, () -> backlog).getTarget());
+        Assert.assertEquals(1, new AdaptivePipelineSizer(0, 4, () -> backlog).getTarget());
+    }
+    
+    @Test
+    public void testGrowsForExpensiveEvaluation() {
+        AdaptivePipelineSizer sizer = new AdaptivePipelineSizer(2, 25, () -> backlog);
+        
+        // evaluation is 10x the source, grow towards 11 pipelines, doubling each adjustment
+        record(sizer, 10_000, 1_000);
+        Assert.assertEquals(4, sizer.getTarget());
+        record(sizer, 10_000, 1_000);
+        Assert.assertEquals(8, sizer.getTarget());
+        record(sizer, 10_000, 1_000);
+        Assert.assertEquals(11, sizer.getTarget());
+        record(sizer, 10_000, 1_000);
+        Assert.assertEquals(11, sizer.getTarget());
+        
+        // never beyond the maximum
+        for (int i = 0; i < 10; i++) {
+            record(sizer, 1_000_000, 1_000);
+        }
+        Assert.assertEquals(25, sizer.getTarget());
+    }
+    
+    @Test
+    public void testShrinksForCheapEvaluation() {
+        AdaptivePipelineSizer sizer = new AdaptivePipelineSizer(2, 25, () -> backlog);
+        for (int i = 0; i < 5; i++) {
+            record(sizer, 100_000, 1_000);
+        }
+        Assert.assertEquals(25, sizer.getTarget());
+        
+        // once evaluation is cheaper than the source, drop back to the minimum
+        for (int i = 0; i < 10; i++) {
+            record(sizer, 100, 1_000);
+        }
+        Assert.assertEquals(2, sizer.getTarget());
+    }
+    
+    @Test
+    public void testBacksOffWhenPoolSaturated() {
+        AdaptivePipelineSizer sizer = new AdaptivePipelineSizer(2, 25, () -> backlog);
+        for (int i = 0; i < 5; i++) {
+            record(sizer, 100_000, 1_000);
+        }
+        Assert.assertEquals(25, sizer.getTarget());
+        
+        backlog = 3.0;
+        record(sizer, 100_000, 1_000);
+        Assert.assertEquals(12, sizer.getTarget());
+        record(sizer, 100_000, 1_000);
+        Assert.assertEquals(6, sizer.getTarget());
+        
+        // some tasks are waiting but the pool is not saturated, hold steady
+        backlog = 0.5;
+        record(sizer, 100_000, 1_000);
+        Assert.assertEquals(6, sizer.getTarget());
+        
+        // threads are free again, grow
+        backlog = 0.0;
+        record(sizer, 100_000, 1_000);
+        Assert.assertEquals(12, sizer.getTarget());
+    }
+    
+    // record one adjustment interval worth of samples
+    private static void record(AdaptivePipelineSizer sizer, long evaluationNanos, long sourceNanos) {
+        for (int i = 0; i < AdaptivePipelineSizer.ADJUST_INTERVAL; i++) {
+            sizer.recordSource(sourceNanos);
+            sizer.recordEvaluation(evaluationNanos);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package datawave.query.iterator.profile;
+
+import datawave.query.DocumentSerialization;
+import datawave.query.attributes.Document;
+import datawave.query.function.LogTiming;
+import datawave.query.function.deserializer.DocumentDeserializer;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+public class FinalDocumentTrackingIteratorTest {
+    
+    private Map.Entry<Key,Value> getFinalDocument(DocumentSerialization.ReturnType returnType) {
+        QuerySpan querySpan = new QuerySpan(null);
+        querySpan.seek();
+        querySpan.next();
+        
+        Range range = new Range(new Key("20190101_0", "datatype\u0000uid"), true, new Key("20190101_0\u0000"), false);
+        Iterator<Map.Entry<Key,Value>> empty = Collections.emptyIterator();
+        FinalDocumentTrackingIterator itr = new FinalDocumentTrackingIterator(new QuerySpanCollector(), querySpan, range, empty, returnType, false, false,
+                        null);
+        
+        Assert.assertTrue(itr.hasNext());
+        Map.Entry<Key,Value> entry = itr.next();
+        Assert.assertTrue(FinalDocumentTrackingIterator.isFinalDocumentKey(entry.getKey()));
+        Assert.assertFalse(itr.hasNext());
+        return entry;
+    }
+    
+    @Test
+    public void testCompact() throws Exception {
+        Map.Entry<Key,Value> entry = getFinalDocument(DocumentSerialization.ReturnType.compact);
+        
+        DocumentDeserializer deserializer = DocumentSerialization.getDocumentDeserializer(DocumentSerialization.ReturnType.compact);
+        Document document = deserializer.apply(entry).getValue();
+        Assert.assertNotNull(document.get(LogTiming.TIMING_METADATA));
+    }
+    
+    @Test
+    public void testKryo() throws Exception {
+        Map.Entry<Key,Value> entry = getFinalDocument(DocumentSerialization.ReturnType.kryo);
+        
+        DocumentDeserializer deserializer = DocumentSerialization.getDocumentDeserializer(DocumentSerialization.ReturnType.kryo);
+        Document document = deserializer.apply(entry).getValue();
+        Assert.assertNotNull(document.get(LogTiming.TIMING_METADATA));
+    }
+}
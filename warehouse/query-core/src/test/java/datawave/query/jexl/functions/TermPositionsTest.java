@@ -0,0 +1,73 @@
+package datawave.query.jexl.functions;
+
+import datawave.ingest.protobuf.TermWeightPosition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TermPositionsTest {
+    
+    private static TermWeightPosition getPosition(int offset, int prevSkips, int score) {
+        return new TermWeightPosition.Builder().setOffset(offset).setPrevSkips(prevSkips).setScore(score).build();
+    }
+    
+    private static TermPositions of(int... offsets) {
+        List<TermWeightPosition> positions = new ArrayList<>();
+        for (int offset : offsets) {
+            positions.add(getPosition(offset, -1, -1));
+        }
+        return TermPositions.of(positions);
+    }
+    
+    @Test
+    public void testSortedAndUnique() {
+        // offset 5 with 3 skips sorts on its low offset of 2
+        TermPositions positions = TermPositions.of(Arrays.asList(getPosition(7, -1, 1), getPosition(5, 3, 2), getPosition(3, -1, 3), getPosition(7, -1, 4)));
+        Assert.assertEquals(3, positions.size());
+        Assert.assertEquals(5, positions.getOffset(0));
+        Assert.assertEquals(2, positions.getLowOffset(0));
+        Assert.assertEquals(3, positions.getOffset(1));
+        Assert.assertEquals(7, positions.getOffset(2));
+        // the first of the equal positions is kept
+        Assert.assertEquals(1, positions.getScore(2));
+        Assert.assertEquals(7, positions.getMaxOffset(0));
+        Assert.assertEquals(Integer.MIN_VALUE, positions.getMaxOffset(3));
+    }
+    
+    @Test
+    public void testFilter() {
+        TermPositions positions = TermPositions.of(Arrays.asList(getPosition(1, -1, 10), getPosition(2, -1, 20), getPosition(3, -1, 30)));
+        Assert.assertSame(positions, positions.filter(30));
+        
+        TermPositions filtered = positions.filter(20);
+        Assert.assertEquals(2, filtered.size());
+        Assert.assertEquals(2, filtered.getOffset(1));
+        
+        Assert.assertTrue(positions.filter(5).isEmpty());
+        Assert.assertEquals(1, TermPositions.of(Arrays.asList(getPosition(1, -1, 10), getPosition(2, -1, 20)), 15).size());
+        Assert.assertTrue(TermPositions.of(null).isEmpty());
+    }
+    
+    @Test
+    public void testSeek() {
+        int[] offsets = new int[1000];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = i * 2;
+        }
+        TermPositions positions = of(offsets);
+        
+        for (int target = -1; target < 2002; target++) {
+            TermPositions other = of(target);
+            for (int from : new int[] {0, 1, 17, 500, 999, 1000}) {
+                int expected = from;
+                while (expected < positions.size() && positions.compare(expected, other, 0) < 0) {
+                    expected++;
+                }
+                Assert.assertEquals("seek to " + target + " from " + from, expected, positions.seek(from, other, 0));
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package datawave.query.metrics;
+
+import com.google.common.collect.Maps;
+import datawave.webservice.query.metric.BaseQueryMetric.PageMetric;
+import datawave.webservice.query.metric.QueryMetricSummary;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QueryMetricSummaryRollupTest {
+    
+    private static final ColumnVisibility VISIBILITY = new ColumnVisibility("PUBLIC");
+    
+    // 2019-01-01 10:30 GMT
+    private static final Date CREATE_DATE = new Date(1546338600000L);
+    private static final Date HOUR = new Date(1546336800000L);
+    private static final Date DAY = new Date(1546300800000L);
+    
+    private static List<Map.Entry<Key,Value>> toEntries(List<Mutation> mutations) {
+        List<Map.Entry<Key,Value>> entries = new ArrayList<>();
+        for (Mutation m : mutations) {
+            for (ColumnUpdate update : m.getUpdates()) {
+                Key key = new Key(m.getRow(), update.getColumnFamily(), update.getColumnQualifier(), update.getColumnVisibility(), 0L);
+                entries.add(Maps.immutableEntry(key, new Value(update.getValue())));
+            }
+        }
+        return entries;
+    }
+    
+    @Test
+    public void testMutations() {
+        List<PageMetric> pages = Arrays.asList(new PageMetric(10, 100, 0, 1), new PageMetric(30, 50, 1, 2));
+        List<Mutation> mutations = QueryMetricSummaryRollup.getMutations("user1", CREATE_DATE, VISIBILITY, true, pages);
+        assertEquals(4, mutations.size());
+        assertEquals("user1\u00002019010110", new String(mutations.get(0).getRow()));
+        assertEquals("user1\u000120190101", new String(mutations.get(1).getRow()));
+        assertEquals("\u00002019010110", new String(mutations.get(2).getRow()));
+        assertEquals("\u000120190101", new String(mutations.get(3).getRow()));
+        
+        Map<Date,QueryMetricSummary> rollups = QueryMetricSummaryRollup.read(toEntries(mutations.subList(0, 1)));
+        assertEquals(Collections.singleton(HOUR), rollups.keySet());
+        QueryMetricSummary rollup = rollups.get(HOUR);
+        assertEquals(1, rollup.getQueryCount());
+        assertEquals(2, rollup.getTotalPages());
+        assertEquals(40, rollup.getTotalPageResultSize());
+        assertEquals(150, rollup.getTotalPageResponseTime());
+        assertEquals(30, rollup.getMaxPageResultSize());
+        assertEquals(100, rollup.getMaxPageResponseTime());
+        assertArrayEquals(new long[] {2, 0, 0, 0, 0}, rollup.getPageResponseTimeCounts());
+        
+        // the daily rollup holds the same statistics
+        rollups = QueryMetricSummaryRollup.read(toEntries(mutations.subList(1, 2)));
+        assertEquals(Collections.singleton(DAY), rollups.keySet());
+        QueryMetricSummary dayRollup = rollups.get(DAY);
+        assertEquals(rollup.getQueryCount(), dayRollup.getQueryCount());
+        assertEquals(rollup.getTotalPageResponseTime(), dayRollup.getTotalPageResponseTime());
+        assertEquals(rollup.getMaxPageResultSize(), dayRollup.getMaxPageResultSize());
+        assertArrayEquals(rollup.getPageResponseTimeCounts(), dayRollup.getPageResponseTimeCounts());
+    }
+    
+    @Test
+    public void testPageResponseTimeCounts() {
+        // the bounds are inclusive, anything slower than the last bound is in the last bucket
+        List<PageMetric> pages = Arrays.asList(new PageMetric(1, 100, 0, 1), new PageMetric(1, 101, 0, 1), new PageMetric(1, 60000, 0, 1),
+                        new PageMetric(1, 60001, 0, 1), new PageMetric(1, 90000, 0, 1));
+        List<Mutation> mutations = QueryMetricSummaryRollup.getMutations("user1", CREATE_DATE, VISIBILITY, false, pages);
+        
+        QueryMetricSummary rollup = QueryMetricSummaryRollup.read(toEntries(mutations.subList(0, 1))).get(HOUR);
+        assertArrayEquals(new long[] {1, 1, 0, 1, 2}, rollup.getPageResponseTimeCounts());
+        
+        // summarizing the metrics themselves counts the same buckets
+        QueryMetricSummary summary = new QueryMetricSummary();
+        for (PageMetric page : pages) {
+            summary.addPage(page.getPagesize(), page.getReturnTime());
+        }
+        assertArrayEquals(rollup.getPageResponseTimeCounts(), summary.getPageResponseTimeCounts());
+    }
+    
+    @Test
+    public void testNothingNew() {
+        assertTrue(QueryMetricSummaryRollup.getMutations("user1", CREATE_DATE, VISIBILITY, false, Collections.emptyList()).isEmpty());
+        // a query without a user is only counted in the totals
+        assertEquals(2, QueryMetricSummaryRollup.getMutations(null, CREATE_DATE, VISIBILITY, true, Collections.emptyList()).size());
+    }
+    
+    @Test
+    public void testReadAcrossUpdates() {
+        List<Mutation> mutations = new ArrayList<>();
+        mutations.addAll(QueryMetricSummaryRollup.getMutations("user1", CREATE_DATE, VISIBILITY, true, Collections.emptyList()));
+        mutations.addAll(QueryMetricSummaryRollup.getMutations("user1", CREATE_DATE, VISIBILITY, false,
+                        Collections.singletonList(new PageMetric(10, 100, 0, 1))));
+        mutations.addAll(QueryMetricSummaryRollup.getMutations("user2", CREATE_DATE, VISIBILITY, false,
+                        Collections.singletonList(new PageMetric(20, 300, 0, 1))));
+        
+        // the combiners would fold the hourly totals into one entry per statistic, summing them on read gives the same answer
+        List<Mutation> totalMutations = new ArrayList<>();
+        for (Mutation m : mutations) {
+            if (new String(m.getRow()).startsWith("\u0000")) {
+                totalMutations.add(m);
+            }
+        }
+        QueryMetricSummary totals = QueryMetricSummaryRollup.read(toEntries(totalMutations)).get(HOUR);
+        assertEquals(1, totals.getQueryCount());
+        assertEquals(2, totals.getTotalPages());
+        assertEquals(30, totals.getTotalPageResultSize());
+        assertEquals(400, totals.getTotalPageResponseTime());
+        assertEquals(300, totals.getMaxPageResponseTime());
+    }
+    
+    @Test
+    public void testRange() {
+        Range range = QueryMetricSummaryRollup.getRange("user1", new Date(HOUR.getTime() - 1), CREATE_DATE);
+        assertTrue(range.contains(new Key("user1\u00002019010109")));
+        assertTrue(range.contains(new Key("user1\u00002019010110")));
+        assertFalse(range.contains(new Key("user1\u00002019010111")));
+        assertFalse(range.contains(new Key("user10\u00002019010110")));
+        
+        Range all = QueryMetricSummaryRollup.getRange(QueryMetricSummaryRollup.ALL_USERS, null, null);
+        assertTrue(all.contains(new Key("\u00002019010110")));
+        assertFalse(all.contains(new Key("user1\u00002019010110")));
+        assertFalse(all.contains(new Key("\u000120190101")));
+    }
+    
+    @Test
+    public void testDayRange() {
+        Range range = QueryMetricSummaryRollup.getDayRange("user1", new Date(DAY.getTime() + 1), CREATE_DATE);
+        assertTrue(range.contains(new Key("user1\u000120190101")));
+        assertFalse(range.contains(new Key("user1\u000120181231")));
+        assertFalse(range.contains(new Key("user1\u000120190102")));
+        assertFalse(range.contains(new Key("user1\u00002019010110")));
+        
+        Range all = QueryMetricSummaryRollup.getDayRange(QueryMetricSummaryRollup.ALL_USERS, null, null);
+        assertTrue(all.contains(new Key("\u000120190101")));
+        assertFalse(all.contains(new Key("\u00002019010110")));
+        assertFalse(all.contains(new Key("user1\u000120190101")));
+    }
+    
+    @Test
+    public void testDayStart() {
+        assertEquals(DAY, QueryMetricSummaryRollup.getDayStart(CREATE_DATE));
+        assertEquals(DAY, QueryMetricSummaryRollup.getDayStart(DAY));
+    }
+    
+    @Test
+    public void testMerge() {
+        QueryMetricSummary bucket = new QueryMetricSummary();
+        bucket.setTotalPageResultSize(Long.MAX_VALUE - 1);
+        bucket.setMaxPageResponseTime(500);
+        QueryMetricSummary rollup = new QueryMetricSummary();
+        rollup.setQueryCount(3);
+        rollup.setTotalPageResultSize(10);
+        rollup.setMaxPageResponseTime(100);
+        rollup.addPageResponseTimeCount(0, 2);
+        bucket.addPageResponseTimeCount(0, 1);
+        
+        QueryMetricSummaryRollup.merge(rollup, bucket);
+        assertEquals(3, bucket.getQueryCount());
+        assertEquals(Long.MAX_VALUE, bucket.getTotalPageResultSize());
+        assertEquals(500, bucket.getMaxPageResponseTime());
+        assertEquals(3, bucket.getPageResponseTimeCounts()[0]);
+    }
+}
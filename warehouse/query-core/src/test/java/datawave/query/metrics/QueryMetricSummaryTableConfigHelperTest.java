@@ -0,0 +1,119 @@
+package datawave.query.metrics;
+
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.webservice.query.metric.BaseQueryMetric.PageMetric;
+import datawave.webservice.query.metric.QueryMetricSummary;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.user.MaxCombiner;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class QueryMetricSummaryTableConfigHelperTest {
+    
+    private static final String TABLE_NAME = "QueryMetrics_s";
+    private static final ColumnVisibility VISIBILITY = new ColumnVisibility("PUBLIC");
+    
+    // 2019-01-01 10:30 GMT
+    private static final Date CREATE_DATE = new Date(1546338600000L);
+    private static final Date HOUR = new Date(1546336800000L);
+    private static final Date DAY = new Date(1546300800000L);
+    
+    private Connector connector;
+    private TableOperations tops;
+    
+    @Before
+    public void setup() throws Exception {
+        connector = new InMemoryInstance(QueryMetricSummaryTableConfigHelperTest.class.getName()).getConnector("root", new PasswordToken(""));
+        connector.securityOperations().changeUserAuthorizations("root", new Authorizations("PUBLIC"));
+        tops = connector.tableOperations();
+        tops.create(TABLE_NAME);
+        
+        Configuration conf = new Configuration();
+        conf.set(QueryMetricSummaryRollup.SUMMARY_TABLE_NAME, TABLE_NAME);
+        QueryMetricSummaryTableConfigHelper helper = new QueryMetricSummaryTableConfigHelper();
+        helper.setup(TABLE_NAME, conf, Logger.getLogger(getClass()));
+        helper.configure(tops);
+    }
+    
+    @Test
+    public void testCombiners() throws Exception {
+        for (IteratorScope scope : IteratorScope.values()) {
+            IteratorSetting sum = tops.getIteratorSetting(TABLE_NAME, "sum", scope);
+            assertEquals(SummingCombiner.class.getName(), sum.getIteratorClass());
+            assertEquals(18, sum.getPriority());
+            assertEquals(StringUtils.join(QueryMetricSummaryRollup.SUM_COLUMNS, ','), sum.getOptions().get("columns"));
+            assertEquals("STRING", sum.getOptions().get("type"));
+            
+            IteratorSetting max = tops.getIteratorSetting(TABLE_NAME, "max", scope);
+            assertEquals(MaxCombiner.class.getName(), max.getIteratorClass());
+            assertEquals(19, max.getPriority());
+            assertEquals(StringUtils.join(QueryMetricSummaryRollup.MAX_COLUMNS, ','), max.getOptions().get("columns"));
+        }
+        
+        // every sum column, including the page response time counts, is combined
+        assertEquals(4 + QueryMetricSummary.PAGE_RESPONSE_TIME_BOUNDS.length + 1, QueryMetricSummaryRollup.SUM_COLUMNS.length);
+    }
+    
+    @Test
+    public void testCombinedRollups() throws Exception {
+        BatchWriter writer = connector.createBatchWriter(TABLE_NAME, new BatchWriterConfig());
+        writer.addMutations(QueryMetricSummaryRollup.getMutations("user1", CREATE_DATE, VISIBILITY, true, Collections.emptyList()));
+        writer.addMutations(QueryMetricSummaryRollup.getMutations("user1", CREATE_DATE, VISIBILITY, false,
+                        Arrays.asList(new PageMetric(10, 50, 0, 1), new PageMetric(30, 2000, 1, 2))));
+        writer.addMutations(QueryMetricSummaryRollup.getMutations("user2", CREATE_DATE, VISIBILITY, true,
+                        Collections.singletonList(new PageMetric(20, 70000, 0, 1))));
+        writer.close();
+        
+        Scanner scanner = connector.createScanner(TABLE_NAME, new Authorizations("PUBLIC"));
+        scanner.setRange(QueryMetricSummaryRollup.getRange(QueryMetricSummaryRollup.ALL_USERS, null, null));
+        
+        // the combiners fold the updates into one entry per statistic
+        int entries = 0;
+        for (Map.Entry<Key,Value> entry : scanner) {
+            entries++;
+        }
+        assertEquals(9, entries);
+        
+        Map<Date,QueryMetricSummary> rollups = QueryMetricSummaryRollup.read(scanner);
+        
+        QueryMetricSummary totals = rollups.get(HOUR);
+        assertEquals(2, totals.getQueryCount());
+        assertEquals(3, totals.getTotalPages());
+        assertEquals(60, totals.getTotalPageResultSize());
+        assertEquals(72050, totals.getTotalPageResponseTime());
+        assertEquals(30, totals.getMaxPageResultSize());
+        assertEquals(70000, totals.getMaxPageResponseTime());
+        assertArrayEquals(new long[] {1, 0, 1, 0, 1}, totals.getPageResponseTimeCounts());
+        
+        // the daily totals are combined the same way
+        scanner.setRange(QueryMetricSummaryRollup.getDayRange(QueryMetricSummaryRollup.ALL_USERS, null, null));
+        QueryMetricSummary dayTotals = QueryMetricSummaryRollup.read(scanner).get(DAY);
+        assertEquals(2, dayTotals.getQueryCount());
+        assertEquals(72050, dayTotals.getTotalPageResponseTime());
+        assertEquals(70000, dayTotals.getMaxPageResponseTime());
+        assertArrayEquals(new long[] {1, 0, 1, 0, 1}, dayTotals.getPageResponseTimeCounts());
+    }
+}
@@ -0,0 +1,317 @@
+package datawave.query.metrics;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import datawave.security.authorization.DatawavePrincipal;
+import datawave.webservice.query.Query;
+import datawave.webservice.query.metric.BaseQueryMetric.Lifecycle;
+import datawave.webservice.query.metric.QueryMetric;
+import datawave.webservice.query.metric.QueryMetricSummary;
+import datawave.webservice.query.metric.QueryMetricsSummaryResponse;
+import datawave.webservice.result.BaseResponse;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Mutation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShardTableQueryMetricHandlerTest {
+    
+    // 2019-01-01 10:30 GMT
+    private static final long CREATE_DATE = 1546338600000L;
+    
+    // 2019-01-01 09:00 GMT
+    private static final long HOUR = 1546333200000L;
+    private static final long MS_PER_HOUR = 3600000L;
+    
+    // 2019-01-01 00:00 GMT
+    private static final long DAY = 1546300800000L;
+    private static final long MS_PER_DAY = 24 * MS_PER_HOUR;
+    
+    /**
+     * Records what would be deleted and written instead of writing to accumulo, and optionally holds the first write of a query until released.
+     */
+    private static class TestHandler extends ShardTableQueryMetricHandler {
+        private final List<Multimap<String,String>> deletes = Collections.synchronizedList(new ArrayList<>());
+        private final List<Multimap<String,String>> writes = Collections.synchronizedList(new ArrayList<>());
+        private final List<Mutation> rollups = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger lookups = new AtomicInteger();
+        private CountDownLatch writing = null;
+        private CountDownLatch release = null;
+        
+        @Override
+        protected void writeMetrics(QueryMetric updatedQueryMetric, QueryMetric storedQueryMetric, Multimap<String,String> fields, Date lastUpdated,
+                        boolean delete) throws Exception {
+            if (delete) {
+                deletes.add(fields);
+            } else {
+                writes.add(fields);
+                if (release != null && updatedQueryMetric.getNumUpdates() == 0) {
+                    writing.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                }
+            }
+        }
+        
+        @Override
+        protected void writeRollups(List<Mutation> mutations) {
+            rollups.addAll(mutations);
+        }
+        
+        @Override
+        protected List<QueryMetric> getQueryMetrics(BaseResponse response, Query query, DatawavePrincipal datawavePrincipal) {
+            lookups.incrementAndGet();
+            return new ArrayList<>();
+        }
+    }
+    
+    private static QueryMetric newMetric(String queryId, Lifecycle lifecycle, long elapsed) {
+        QueryMetric metric = new QueryMetric();
+        metric.setQueryId(queryId);
+        metric.setUser("user1");
+        metric.setQueryType("RunningQuery");
+        metric.setQuery("FIELD == 'value'");
+        metric.setCreateDate(new Date(CREATE_DATE));
+        metric.setLastUpdated(new Date(CREATE_DATE + elapsed));
+        metric.setLifecycle(lifecycle);
+        return metric;
+    }
+    
+    private static Multimap<String,String> fields(String... keyValues) {
+        Multimap<String,String> fields = HashMultimap.create();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            fields.put(keyValues[i], keyValues[i + 1]);
+        }
+        return fields;
+    }
+    
+    /**
+     * @return the statistics of the rollup mutations of a row
+     */
+    private static Multimap<String,String> rollup(List<Mutation> mutations, String row) {
+        Multimap<String,String> statistics = HashMultimap.create();
+        for (Mutation m : mutations) {
+            if (new String(m.getRow()).equals(row)) {
+                for (ColumnUpdate update : m.getUpdates()) {
+                    statistics.put(new String(update.getColumnFamily()), new String(update.getValue()));
+                }
+            }
+        }
+        return statistics;
+    }
+    
+    private static void assertDisjoint(Multimap<String,String> deleted, Multimap<String,String> written) {
+        for (Map.Entry<String,String> entry : deleted.entries()) {
+            assertFalse(entry + " is deleted and written", written.containsEntry(entry.getKey(), entry.getValue()));
+        }
+    }
+    
+    @Test
+    public void testGetFieldsToDelete() {
+        Multimap<String,String> fieldsToDelete = fields("NUM_UPDATES", "0", "ELAPSED_TIME", "1000", "LIFECYCLE", "DEFINED");
+        Multimap<String,String> fields = fields("NUM_UPDATES", "1", "ELAPSED_TIME", "1000", "LIFECYCLE", "INITIALIZED");
+        
+        // the elapsed time is unchanged, deleting it would hide the value that is still there
+        assertEquals(fields("NUM_UPDATES", "0", "LIFECYCLE", "DEFINED"), ShardTableQueryMetricHandler.getFieldsToDelete(fieldsToDelete, fields));
+    }
+    
+    @Test
+    public void testGetChangedFields() {
+        Multimap<String,String> fields = fields("QUERY", "FIELD == 'value'", "ELAPSED_TIME", "1000", "LIFECYCLE", "INITIALIZED", "PAGE_METRICS.1", "10");
+        Multimap<String,String> writtenFields = fields("QUERY", "FIELD == 'value'", "ELAPSED_TIME", "1000", "LIFECYCLE", "DEFINED");
+        
+        assertEquals(fields("LIFECYCLE", "INITIALIZED", "PAGE_METRICS.1", "10"), ShardTableQueryMetricHandler.getChangedFields(fields, writtenFields));
+        assertTrue(ShardTableQueryMetricHandler.getChangedFields(writtenFields, writtenFields).isEmpty());
+    }
+    
+    @Test
+    public void testUpdate() throws Exception {
+        TestHandler handler = new TestHandler();
+        String queryId = UUID.randomUUID().toString();
+        
+        // the first update of a query writes everything without looking for stored metrics
+        handler.updateMetric(newMetric(queryId, Lifecycle.DEFINED, 1000), null);
+        assertEquals(0, handler.lookups.get());
+        assertTrue(handler.deletes.isEmpty());
+        assertEquals(1, handler.writes.size());
+        Multimap<String,String> written = handler.writes.get(0);
+        assertTrue(written.containsEntry("QUERY", "FIELD == 'value'"));
+        assertTrue(written.containsEntry("LIFECYCLE", "DEFINED"));
+        assertTrue(written.containsEntry("NUM_UPDATES", "0"));
+        
+        // later updates only delete and write what changed
+        QueryMetric update = newMetric(queryId, Lifecycle.INITIALIZED, 3000);
+        update.addPageTime(10, 500, CREATE_DATE + 2000, CREATE_DATE + 2500);
+        handler.updateMetric(update, null);
+        assertEquals(0, handler.lookups.get());
+        assertEquals(1, handler.deletes.size());
+        assertEquals(2, handler.writes.size());
+        Multimap<String,String> deleted = handler.deletes.get(0);
+        written = handler.writes.get(1);
+        assertTrue(deleted.containsEntry("LIFECYCLE", "DEFINED"));
+        assertTrue(deleted.containsEntry("NUM_UPDATES", "0"));
+        assertTrue(deleted.containsEntry("ELAPSED_TIME", "1000"));
+        assertTrue(written.containsEntry("LIFECYCLE", "INITIALIZED"));
+        assertTrue(written.containsEntry("NUM_UPDATES", "1"));
+        assertTrue(written.containsEntry("ELAPSED_TIME", "3000"));
+        assertTrue(written.containsKey("PAGE_METRICS.1"));
+        assertFalse(written.containsKey("QUERY"));
+        assertDisjoint(deleted, written);
+        
+        // an update that only bumps the update number leaves every other value in place
+        QueryMetric repeat = newMetric(queryId, Lifecycle.INITIALIZED, 3000);
+        repeat.addPageTime(10, 500, CREATE_DATE + 2000, CREATE_DATE + 2500);
+        handler.updateMetric(repeat, null);
+        deleted = handler.deletes.get(1);
+        written = handler.writes.get(2);
+        assertEquals(fields("NUM_UPDATES", "1"), deleted);
+        assertEquals(fields("NUM_UPDATES", "2"), written);
+    }
+    
+    @Test
+    public void testUpdateWithoutCachedMetric() throws Exception {
+        TestHandler handler = new TestHandler();
+        
+        // a query past DEFINED that is not cached looks up its stored metrics
+        handler.updateMetric(newMetric(UUID.randomUUID().toString(), Lifecycle.INITIALIZED, 1000), null);
+        assertEquals(1, handler.lookups.get());
+        assertEquals(1, handler.writes.size());
+    }
+    
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        TestHandler handler = new TestHandler();
+        handler.writing = new CountDownLatch(1);
+        handler.release = new CountDownLatch(1);
+        String queryId = UUID.randomUUID().toString();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> {
+                handler.updateMetric(newMetric(queryId, Lifecycle.DEFINED, 1000), null);
+                return null;
+            });
+            assertTrue(handler.writing.await(10, TimeUnit.SECONDS));
+            
+            // the second update of the query waits for the first instead of missing the cache and looking up the stored metrics
+            Future<?> second = executor.submit(() -> {
+                handler.updateMetric(newMetric(queryId, Lifecycle.INITIALIZED, 2000), null);
+                return null;
+            });
+            Thread.sleep(200);
+            assertFalse(second.isDone());
+            assertEquals(1, handler.writes.size());
+            
+            handler.release.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(0, handler.lookups.get());
+        assertEquals(2, handler.writes.size());
+        Multimap<String,String> written = handler.writes.get(1);
+        assertTrue(written.containsEntry("LIFECYCLE", "INITIALIZED"));
+        assertTrue(written.containsEntry("NUM_UPDATES", "1"));
+    }
+    
+    @Test
+    public void testWriteRollups() throws Exception {
+        TestHandler handler = new TestHandler();
+        String queryId = UUID.randomUUID().toString();
+        
+        // the first update counts the query for its user and in the totals
+        handler.updateMetric(newMetric(queryId, Lifecycle.DEFINED, 1000), null);
+        assertEquals(4, handler.rollups.size());
+        assertEquals(fields("QUERY_COUNT", "1"), rollup(handler.rollups, "user1\u00002019010110"));
+        assertEquals(fields("QUERY_COUNT", "1"), rollup(handler.rollups, "user1\u000120190101"));
+        assertEquals(fields("QUERY_COUNT", "1"), rollup(handler.rollups, "\u00002019010110"));
+        assertEquals(fields("QUERY_COUNT", "1"), rollup(handler.rollups, "\u000120190101"));
+        
+        // later updates only add their new pages
+        handler.rollups.clear();
+        QueryMetric update = newMetric(queryId, Lifecycle.RESULTS, 3000);
+        update.addPageTime(10, 50, CREATE_DATE + 1000, CREATE_DATE + 1050);
+        update.addPageTime(20, 5000, CREATE_DATE + 2000, CREATE_DATE + 7000);
+        handler.updateMetric(update, null);
+        assertEquals(fields("TOTAL_PAGES", "2", "TOTAL_PAGE_RESULT_SIZE", "30", "TOTAL_PAGE_RESPONSE_TIME", "5050", "MAX_PAGE_RESULT_SIZE", "20",
+                        "MAX_PAGE_RESPONSE_TIME", "5000", "PAGE_RESPONSE_TIME_COUNT_LE_100", "1", "PAGE_RESPONSE_TIME_COUNT_LE_10000", "1"),
+                        rollup(handler.rollups, "user1\u00002019010110"));
+        
+        handler.rollups.clear();
+        QueryMetric repeat = newMetric(queryId, Lifecycle.CLOSED, 3000);
+        repeat.addPageTime(10, 50, CREATE_DATE + 1000, CREATE_DATE + 1050);
+        repeat.addPageTime(20, 5000, CREATE_DATE + 2000, CREATE_DATE + 7000);
+        handler.updateMetric(repeat, null);
+        assertTrue(handler.rollups.isEmpty());
+    }
+    
+    @Test
+    public void testWriteRollupsWithoutCachedMetric() throws Exception {
+        TestHandler handler = new TestHandler();
+        
+        // finding no stored metrics is not a first update, the lookup may have failed after the query was already counted
+        QueryMetric update = newMetric(UUID.randomUUID().toString(), Lifecycle.RESULTS, 3000);
+        update.addPageTime(10, 50, CREATE_DATE + 1000, CREATE_DATE + 1050);
+        handler.updateMetric(update, null);
+        assertEquals(1, handler.lookups.get());
+        Multimap<String,String> rollup = rollup(handler.rollups, "user1\u00002019010110");
+        assertFalse(rollup.containsKey("QUERY_COUNT"));
+        assertTrue(rollup.containsEntry("TOTAL_PAGES", "1"));
+    }
+    
+    @Test
+    public void testProcessQueryMetricsRollups() {
+        TestHandler handler = new TestHandler();
+        Map<Date,QueryMetricSummary> rollups = new TreeMap<>();
+        for (int hours = 0; hours < 7; hours++) {
+            QueryMetricSummary rollup = new QueryMetricSummary();
+            rollup.setQueryCount(1L << hours);
+            rollups.put(new Date(HOUR - hours * MS_PER_HOUR), rollup);
+        }
+        
+        // at 10:30 the last hour starts at 09:30, which the 09:00 rollup overlaps, and the last six hours start at 04:30, which the 04:00 rollup overlaps
+        QueryMetricsSummaryResponse summary = handler.processQueryMetricsRollups(new QueryMetricsSummaryResponse(), rollups, Collections.emptyMap(), new Date(
+                        CREATE_DATE));
+        assertEquals(1, summary.getHour1().getQueryCount());
+        assertEquals(63, summary.getHour6().getQueryCount());
+        assertEquals(127, summary.getHour12().getQueryCount());
+        assertEquals(127, summary.getAll().getQueryCount());
+    }
+    
+    @Test
+    public void testProcessQueryMetricsDayRollups() {
+        TestHandler handler = new TestHandler();
+        Map<Date,QueryMetricSummary> rollups = new TreeMap<>();
+        for (int days = 2; days < 9; days++) {
+            QueryMetricSummary rollup = new QueryMetricSummary();
+            rollup.setQueryCount(1L << days);
+            rollups.put(new Date(DAY - days * MS_PER_DAY), rollup);
+        }
+        
+        // days are binned on their end, so at 10:30 the last seven days include the day that they start in, seven days ago, but not the day before
+        QueryMetricsSummaryResponse summary = handler.processQueryMetricsRollups(new QueryMetricsSummaryResponse(), Collections.emptyMap(), rollups, new Date(
+                        CREATE_DATE));
+        assertEquals(0, summary.getDay1().getQueryCount());
+        assertEquals(252, summary.getDay7().getQueryCount());
+        assertEquals(508, summary.getDay30().getQueryCount());
+        assertEquals(508, summary.getAll().getQueryCount());
+    }
+}
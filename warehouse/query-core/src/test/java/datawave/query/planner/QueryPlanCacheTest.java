@@ -0,0 +1,169 @@
+package datawave.query.planner;
+
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.exceptions.DatawaveQueryException;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
+import datawave.query.tables.ScannerFactory;
+import datawave.query.util.DateIndexHelper;
+import datawave.query.util.MetadataHelper;
+import datawave.webservice.query.Query;
+import datawave.webservice.query.QueryImpl;
+import datawave.webservice.query.configuration.QueryData;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryPlanCacheTest {
+    
+    private static final String QUERY = "FOO == 'bar'";
+    
+    private DefaultQueryPlanner planner;
+    private QueryImpl settings;
+    
+    @Before
+    public void setup() {
+        QueryPlanCache.invalidateAll();
+        planner = new DefaultQueryPlanner();
+        settings = new QueryImpl();
+        settings.setQueryLogicName("EventQuery");
+        settings.addParameter("query.syntax", "JEXL");
+    }
+    
+    @After
+    public void cleanup() {
+        QueryPlanCache.invalidateAll();
+    }
+    
+    private ShardQueryConfiguration newConfig() {
+        ShardQueryConfiguration config = new ShardQueryConfiguration();
+        config.setBeginDate(new Date(0));
+        config.setEndDate(new Date(1000));
+        config.setAuthorizations(Collections.singleton(new Authorizations("A", "B")));
+        return config;
+    }
+    
+    @Test
+    public void testKey() {
+        List<Object> key = QueryPlanCache.getKey(planner, newConfig(), QUERY, settings);
+        assertEquals(key, QueryPlanCache.getKey(planner, newConfig(), QUERY, settings));
+        
+        ShardQueryConfiguration config = newConfig();
+        config.setAuthorizations(Collections.singleton(new Authorizations("A")));
+        assertNotEquals(key, QueryPlanCache.getKey(planner, config, QUERY, settings));
+        
+        config = newConfig();
+        config.setEndDate(new Date(2000));
+        assertNotEquals(key, QueryPlanCache.getKey(planner, config, QUERY, settings));
+        
+        assertNotEquals(key, QueryPlanCache.getKey(new IndexQueryPlanner(), newConfig(), QUERY, settings));
+        assertNotEquals(key, QueryPlanCache.getKey(planner, newConfig(), "FOO == 'baz'", settings));
+        
+        settings.addParameter("return.fields", "FOO");
+        assertNotEquals(key, QueryPlanCache.getKey(planner, newConfig(), QUERY, settings));
+    }
+    
+    @Test
+    public void testApply() throws Exception {
+        ShardQueryConfiguration planned = newConfig();
+        List<Object> key = QueryPlanCache.getKey(planner, planned, QUERY, settings);
+        assertNull(QueryPlanCache.apply(key, newConfig()));
+        
+        ASTJexlScript queryTree = JexlASTHelper.parseJexlQuery(QUERY);
+        planned.setBeginDate(new Date(500));
+        planned.setProjectFields(Collections.singleton("FOO"));
+        planned.setContainsIndexOnlyTerms(true);
+        QueryPlanCache.put(key, queryTree, planned);
+        
+        ShardQueryConfiguration config = newConfig();
+        ASTJexlScript cached = QueryPlanCache.apply(key, config);
+        assertNotSame(queryTree, cached);
+        assertEquals(JexlStringBuildingVisitor.buildQuery(queryTree), JexlStringBuildingVisitor.buildQuery(cached));
+        assertEquals(new Date(500), config.getBeginDate());
+        assertEquals(Collections.singleton("FOO"), config.getProjectFields());
+        assertTrue(config.isContainsIndexOnlyTerms());
+        
+        // a hit gets its own copy of the configuration
+        config.getProjectFields().add("BAR");
+        ShardQueryConfiguration other = newConfig();
+        QueryPlanCache.apply(key, other);
+        assertEquals(Collections.singleton("FOO"), other.getProjectFields());
+    }
+    
+    @Test
+    public void testInvalidate() throws Exception {
+        List<Object> key = QueryPlanCache.getKey(planner, newConfig(), QUERY, settings);
+        QueryPlanCache.invalidateAll();
+        
+        // a plan that was started before the metadata changed is put under a key that is never looked up again
+        QueryPlanCache.put(key, JexlASTHelper.parseJexlQuery(QUERY), newConfig());
+        List<Object> newKey = QueryPlanCache.getKey(planner, newConfig(), QUERY, settings);
+        assertNotEquals(key, newKey);
+        assertNull(QueryPlanCache.apply(newKey, newConfig()));
+        
+        QueryPlanCache.put(newKey, JexlASTHelper.parseJexlQuery(QUERY), newConfig());
+        QueryPlanCache.invalidateAll();
+        assertNull(QueryPlanCache.apply(newKey, newConfig()));
+    }
+    
+    /**
+     * Counts the plans it makes, which leave the project fields set as a real plan would
+     */
+    private static class CountingPlanner extends DefaultQueryPlanner {
+        private final AtomicInteger plans = new AtomicInteger();
+        
+        @Override
+        protected ASTJexlScript updateQueryTree(ScannerFactory scannerFactory, MetadataHelper metadataHelper, DateIndexHelper dateIndexHelper,
+                        ShardQueryConfiguration config, String query, QueryData queryData, Query settings) throws DatawaveQueryException {
+            plans.incrementAndGet();
+            config.setProjectFields(Collections.singleton("FOO"));
+            try {
+                return JexlASTHelper.parseJexlQuery(query);
+            } catch (ParseException e) {
+                throw new DatawaveQueryException(e);
+            }
+        }
+    }
+    
+    @Test
+    public void testPlanQueryTree() throws Exception {
+        CountingPlanner planner = new CountingPlanner();
+        planner.setCachePlans(true);
+        ASTJexlScript planned = planner.planQueryTree(null, null, null, newConfig(), QUERY, null, settings);
+        assertEquals(1, planner.plans.get());
+        assertEquals(1, QueryPlanCache.size());
+        
+        // an identical query takes the plan, and the configuration that planning left, from the cache
+        long hits = QueryPlanCache.getStats().hitCount();
+        ShardQueryConfiguration config = newConfig();
+        ASTJexlScript cached = planner.planQueryTree(null, null, null, config, QUERY, null, settings);
+        assertEquals(1, planner.plans.get());
+        assertEquals(hits + 1, QueryPlanCache.getStats().hitCount());
+        assertNotSame(planned, cached);
+        assertEquals(JexlStringBuildingVisitor.buildQuery(planned), JexlStringBuildingVisitor.buildQuery(cached));
+        assertEquals(Collections.singleton("FOO"), config.getProjectFields());
+        
+        // a different query is planned
+        planner.planQueryTree(null, null, null, newConfig(), "FOO == 'baz'", null, settings);
+        assertEquals(2, planner.plans.get());
+        
+        // and every query is planned when plans are not cached
+        planner.setCachePlans(false);
+        planner.planQueryTree(null, null, null, newConfig(), QUERY, null, settings);
+        assertEquals(3, planner.plans.get());
+    }
+}
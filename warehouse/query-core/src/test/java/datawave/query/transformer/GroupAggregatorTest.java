@@ -0,0 +1,152 @@
+package datawave.query.transformer;
+
+import com.google.common.collect.Sets;
+import datawave.data.type.LcType;
+import datawave.data.type.NumberType;
+import datawave.marking.MarkingFunctions;
+import datawave.query.iterator.ivarator.IvaratorCacheDir;
+import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
+import datawave.query.transformer.GroupingTransform.GroupingTypeAttribute;
+import datawave.query.util.sortedset.ByteArrayComparator;
+import datawave.query.util.sortedset.FileSortedSet;
+import datawave.query.util.sortedset.HdfsBackedSortedSet;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+public class GroupAggregatorTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private final MarkingFunctions markingFunctions = new MarkingFunctions.Default();
+    
+    @Test
+    public void testCounts() {
+        GroupAggregator aggregator = new GroupAggregator(markingFunctions, -1);
+        for (int i = 0; i < 1000; i++) {
+            aggregator.add(group("NAME", "name" + (i % 10), "A"), 1, new ColumnVisibility("A"));
+        }
+        aggregator.add(group("NAME", "name0", "B"), 5, new ColumnVisibility("B"));
+        Assert.assertFalse(aggregator.isFull());
+        
+        Map<String,Long> counts = drain(aggregator);
+        Assert.assertEquals(10, counts.size());
+        Assert.assertEquals(Long.valueOf(105), counts.get("name0"));
+        Assert.assertEquals(Long.valueOf(100), counts.get("name9"));
+        Assert.assertTrue(aggregator.isEmpty());
+    }
+    
+    @Test
+    public void testVisibilities() {
+        GroupAggregator aggregator = new GroupAggregator(markingFunctions, -1);
+        aggregator.add(Sets.newHashSet(attribute("NAME", "foo", "A"), attribute("AGE", "5", "C")), 1, new ColumnVisibility("A&C"));
+        aggregator.add(Sets.newHashSet(attribute("NAME", "foo", "B"), attribute("AGE", "5", "D")), 1, new ColumnVisibility("B&D"));
+        aggregator.add(Sets.newHashSet(attribute("NAME", "bar", "C"), attribute("AGE", "6", "D")), 1, new ColumnVisibility("C&D"));
+        
+        Iterator<GroupAggregator.Group> groups = aggregator.drain();
+        int found = 0;
+        while (groups.hasNext()) {
+            GroupAggregator.Group group = groups.next();
+            for (GroupingTypeAttribute<?> attr : group.getAttributes()) {
+                String value = attr.getData().toString();
+                if (value.equals("foo")) {
+                    Assert.assertEquals(2, group.getCount());
+                    Assert.assertEquals(new ColumnVisibility("A&B"), attr.getColumnVisibility());
+                    Assert.assertEquals(new ColumnVisibility("A&B&C&D"), group.getVisibility());
+                    found++;
+                } else if (value.equals("5")) {
+                    Assert.assertEquals(new ColumnVisibility("C&D"), attr.getColumnVisibility());
+                } else if (value.equals("bar")) {
+                    // the visibilities of one group are not merged into another
+                    Assert.assertEquals(1, group.getCount());
+                    Assert.assertEquals(new ColumnVisibility("C"), attr.getColumnVisibility());
+                    found++;
+                }
+            }
+        }
+        Assert.assertEquals(2, found);
+    }
+    
+    @Test
+    public void testFull() {
+        // enough room for roughly 10 groups, with nowhere to spill
+        GroupAggregator aggregator = new GroupAggregator(markingFunctions, 10 * (GroupAggregator.GROUP_OVERHEAD + 64));
+        for (int i = 0; i < 100 && !aggregator.isFull(); i++) {
+            aggregator.add(group("NAME", "name" + i, "A"), 1, new ColumnVisibility("A"));
+        }
+        Assert.assertTrue(aggregator.isFull());
+        drain(aggregator);
+        Assert.assertFalse(aggregator.isFull());
+    }
+    
+    @Test
+    public void testSpill() throws Exception {
+        File tempDir = temporaryFolder.newFolder();
+        LocalFileSystem fs = new LocalFileSystem();
+        fs.initialize(tempDir.toURI(), new Configuration());
+        
+        IvaratorCacheDir cacheDir = new IvaratorCacheDir(new IvaratorCacheDirConfig(tempDir.toURI().toString()), fs, tempDir.toURI().toString());
+        HdfsBackedSortedSet<byte[]> spillSet = new HdfsBackedSortedSet<>(new ByteArrayComparator(), Integer.MAX_VALUE, Collections.singletonList(cacheDir),
+                        "grouping", 5, 2, new FileSortedSet.PersistOptions());
+        
+        // enough room for roughly 10 groups
+        GroupAggregator aggregator = new GroupAggregator(markingFunctions, 10 * (GroupAggregator.GROUP_OVERHEAD + 64), spillSet);
+        for (int i = 0; i < 1000; i++) {
+            aggregator.add(Sets.newHashSet(attribute("NAME", "name" + (i % 50), "A"), attribute("AGE", Integer.toString(i % 5), "B")), 1,
+                            new ColumnVisibility(i == 0 ? "C" : "A&B"));
+        }
+        Assert.assertFalse(aggregator.isFull());
+        Assert.assertTrue(aggregator.getSpillCount() > 0);
+        
+        // every group is counted exactly once, combined across the spilled runs
+        Iterator<GroupAggregator.Group> groups = aggregator.drain();
+        int numGroups = 0;
+        while (groups.hasNext()) {
+            GroupAggregator.Group group = groups.next();
+            numGroups++;
+            Assert.assertEquals(20, group.getCount());
+            Assert.assertEquals(2, group.getAttributes().length);
+            for (GroupingTypeAttribute<?> attr : group.getAttributes()) {
+                if (attr.getData().toString().equals("name0")) {
+                    Assert.assertEquals(new ColumnVisibility("A&B&C"), group.getVisibility());
+                }
+            }
+        }
+        Assert.assertEquals(50, numGroups);
+        Assert.assertTrue(aggregator.isEmpty());
+    }
+    
+    private static Map<String,Long> drain(GroupAggregator aggregator) {
+        Map<String,Long> counts = new HashMap<>();
+        Iterator<GroupAggregator.Group> groups = aggregator.drain();
+        while (groups.hasNext()) {
+            GroupAggregator.Group group = groups.next();
+            counts.put(group.getAttributes()[0].getData().toString(), group.getCount());
+        }
+        return counts;
+    }
+    
+    private static Collection<GroupingTypeAttribute<?>> group(String field, String value, String visibility) {
+        return Collections.singleton(attribute(field, value, visibility));
+    }
+    
+    private static GroupingTypeAttribute<?> attribute(String field, String value, String visibility) {
+        GroupingTypeAttribute<?> attr = field.equals("AGE") ? new GroupingTypeAttribute<>(new NumberType(value), new Key(field), true)
+                        : new GroupingTypeAttribute<>(new LcType(value), new Key(field), true);
+        attr.setColumnVisibility(new ColumnVisibility(visibility));
+        return attr;
+    }
+}
@@ -0,0 +1,179 @@
+package datawave.query.transformer;
+
+import datawave.query.attributes.DiacriticContent;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.UniqueFields;
+import datawave.query.attributes.UniqueGranularity;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
+import datawave.query.tables.ShardQueryLogic;
+import datawave.query.util.sortedset.HdfsBackedSortedSet;
+import datawave.webservice.query.QueryImpl;
+import datawave.webservice.query.logic.QueryLogicTransformer;
+import org.apache.accumulo.core.data.Key;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.powermock.reflect.Whitebox;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class IvaratorSpillSetsTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private ShardQueryConfiguration config;
+    private File queryDir;
+    
+    @Before
+    public void setup() throws Exception {
+        File cacheDir = temporaryFolder.newFolder();
+        QueryImpl query = new QueryImpl();
+        query.setId(UUID.randomUUID());
+        queryDir = new File(cacheDir, query.getId().toString());
+        
+        config = new ShardQueryConfiguration();
+        config.setQuery(query);
+        config.setHdfsSiteConfigURLs(getClass().getResource("/testhadoop.config").toExternalForm());
+        config.setIvaratorCacheDirConfigs(Collections.singletonList(new IvaratorCacheDirConfig(cacheDir.toURI().toString())));
+    }
+    
+    private File[] getSpillDirs() {
+        File[] spillDirs = queryDir.listFiles();
+        return (spillDirs != null ? spillDirs : new File[0]);
+    }
+    
+    private static Map.Entry<Key,Document> newEntry(String value) {
+        Document document = new Document();
+        document.put("FIELD", new DiacriticContent(value, document.getMetadata(), true), true, false);
+        return new AbstractMap.SimpleEntry<>(document.getMetadata(), document);
+    }
+    
+    private static <T extends DocumentTransform> T getTransform(QueryLogicTransformer transformer, Class<T> transformClass) {
+        List<DocumentTransform> transforms = Whitebox.getInternalState(transformer, "transforms");
+        for (DocumentTransform transform : transforms) {
+            if (transformClass.isInstance(transform)) {
+                return transformClass.cast(transform);
+            }
+        }
+        return null;
+    }
+    
+    @Test
+    public void testSeparateDirs() throws Exception {
+        HdfsBackedSortedSet<byte[]> spillSet = IvaratorSpillSets.create(config, "unique");
+        spillSet.add("value".getBytes(StandardCharsets.UTF_8));
+        spillSet.persist();
+        Assert.assertEquals(1, getSpillDirs().length);
+        
+        // another set of the same name must neither see nor remove the files of the first
+        HdfsBackedSortedSet<byte[]> other = IvaratorSpillSets.create(config, "unique");
+        Assert.assertFalse(other.hasPersistedData());
+        Assert.assertTrue(other.isEmpty());
+        other.delete();
+        Assert.assertTrue(spillSet.hasPersistedData());
+        Assert.assertTrue(spillSet.contains("value".getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    @Test
+    public void testDelete() throws Exception {
+        HdfsBackedSortedSet<byte[]> spillSet = IvaratorSpillSets.create(config, "grouping");
+        spillSet.add("value".getBytes(StandardCharsets.UTF_8));
+        spillSet.persist();
+        Assert.assertEquals(1, getSpillDirs().length);
+        Assert.assertTrue(getSpillDirs()[0].getName().startsWith("grouping-"));
+        
+        spillSet.delete();
+        Assert.assertEquals(0, getSpillDirs().length);
+    }
+    
+    @Test
+    public void testUniqueTransformPaging() throws Exception {
+        UniqueFields uniqueFields = new UniqueFields();
+        uniqueFields.put("FIELD", UniqueGranularity.ALL);
+        config.setUniqueFields(uniqueFields);
+        config.setUniqueMaxMemoryBytes(1);
+        ShardQueryLogic logic = new ShardQueryLogic();
+        logic.setConfig(config);
+        
+        // the first page spills every value it sees
+        UniqueTransform transform = getTransform(logic.getTransformer(config.getQuery()), UniqueTransform.class);
+        Assert.assertNotNull(transform.apply(newEntry("a")));
+        Assert.assertNotNull(transform.apply(newEntry("b")));
+        File[] spillDirs = getSpillDirs();
+        Assert.assertEquals(1, spillDirs.length);
+        
+        // each page creates another transformer for its response, which must reuse the transform rather than spill elsewhere or clear its runs
+        Assert.assertSame(transform, getTransform(logic.getTransformer(config.getQuery()), UniqueTransform.class));
+        Assert.assertSame(transform, getTransform(logic.getTransformer(config.getQuery()), UniqueTransform.class));
+        Assert.assertEquals(1, ((List<?>) Whitebox.getInternalState(logic, "spillingTransforms")).size());
+        Assert.assertArrayEquals(spillDirs, getSpillDirs());
+        
+        // so the second page still sees the values spilled by the first
+        Assert.assertNull(transform.apply(newEntry("a")));
+        Assert.assertNull(transform.apply(newEntry("b")));
+        Assert.assertNotNull(transform.apply(newEntry("c")));
+        
+        logic.close();
+        Assert.assertEquals(0, getSpillDirs().length);
+    }
+    
+    @Test
+    public void testGroupingTransformClose() throws Exception {
+        config.setGroupFieldsMaxMemoryBytes(1024);
+        ShardQueryLogic logic = new ShardQueryLogic();
+        logic.setConfig(config);
+        GroupingTransform transform = new GroupingTransform(logic, Collections.singleton("FIELD"));
+        
+        HdfsBackedSortedSet<byte[]> spillSet = Whitebox.getInternalState(transform, "spillSet");
+        spillSet.add("value".getBytes(StandardCharsets.UTF_8));
+        spillSet.persist();
+        Assert.assertEquals(1, getSpillDirs().length);
+        
+        // a query closed before the groups were drained leaves nothing behind
+        transform.close();
+        Assert.assertEquals(0, getSpillDirs().length);
+    }
+    
+    @Test
+    public void testGroupingTransformPaging() throws Exception {
+        config.setGroupFields(Collections.singleton("FIELD"));
+        config.setGroupFieldsMaxMemoryBytes(1024);
+        ShardQueryLogic logic = new ShardQueryLogic();
+        logic.setConfig(config);
+        
+        GroupingTransform transform = getTransform(logic.getTransformer(config.getQuery()), GroupingTransform.class);
+        GroupAggregator aggregator = Whitebox.getInternalState(transform, "aggregator");
+        HdfsBackedSortedSet<byte[]> spillSet = Whitebox.getInternalState(transform, "spillSet");
+        spillSet.add("value".getBytes(StandardCharsets.UTF_8));
+        spillSet.persist();
+        File[] spillDirs = getSpillDirs();
+        Assert.assertEquals(1, spillDirs.length);
+        
+        // the transformers created for later page responses share the transform, its aggregator and its spilled runs
+        Assert.assertSame(transform, getTransform(logic.getTransformer(config.getQuery()), GroupingTransform.class));
+        Assert.assertSame(transform, getTransform(logic.getTransformer(config.getQuery()), GroupingTransform.class));
+        Assert.assertSame(aggregator, Whitebox.getInternalState(transform, "aggregator"));
+        Assert.assertEquals(1, ((List<?>) Whitebox.getInternalState(logic, "spillingTransforms")).size());
+        Assert.assertArrayEquals(spillDirs, getSpillDirs());
+        Assert.assertTrue(spillSet.hasPersistedData());
+        
+        logic.close();
+        Assert.assertEquals(0, getSpillDirs().length);
+    }
+    
+    @Test
+    public void testNoCacheDirs() {
+        config.setIvaratorCacheDirConfigs(Collections.emptyList());
+        Assert.assertNull(IvaratorSpillSets.create(config, "unique"));
+    }
+}
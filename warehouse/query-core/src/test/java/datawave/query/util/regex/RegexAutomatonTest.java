@@ -0,0 +1,117 @@
+package datawave.query.util.regex;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class RegexAutomatonTest {
+    
+    private static final String[] REGEXES = new String[] {"a.*", ".*b", "a|b", "(a|b)c*", "^ab$", "a{2,3}", "a{2,}b?", "[a-b]+c", "[^a]*", "\\.a", "a\\.?b",
+            "(?:ab)+", "", "(|a|ab)", "a*?b", "\\w+", "[\\w.]+", "\\s*a", "\\D+", ".{2}", "[-a]+", "[ab-]c"};
+    
+    private static final String[] UNSUPPORTED = new String[] {"a\\b", "(?i)a", "(a)\\1", "a(?=b)", "a++", "[[a]]", "a$b", "\\p{L}"};
+    
+    private List<String> values() {
+        List<String> values = new ArrayList<>();
+        addValues("", 4, "\n.abc", values);
+        Collections.sort(values);
+        return values;
+    }
+    
+    private void addValues(String prefix, int length, String characters, List<String> values) {
+        values.add(prefix);
+        if (length > 0) {
+            for (char c : characters.toCharArray()) {
+                addValues(prefix + c, length - 1, characters, values);
+            }
+        }
+    }
+    
+    @Test
+    public void testMatches() {
+        List<String> values = values();
+        for (String regex : REGEXES) {
+            RegexAutomaton automaton = RegexAutomaton.getInstance(regex);
+            Assert.assertTrue(regex, automaton.isSeekable());
+            Pattern pattern = Pattern.compile(regex);
+            for (String value : values) {
+                Assert.assertEquals(regex + " on " + value, pattern.matcher(value).matches(), automaton.matches(value));
+            }
+        }
+    }
+    
+    @Test
+    public void testUnsupported() {
+        for (String regex : UNSUPPORTED) {
+            RegexAutomaton automaton = RegexAutomaton.getInstance(regex);
+            Assert.assertFalse(regex, automaton.isSeekable());
+            Assert.assertEquals(Pattern.compile(regex).matcher("ab").matches(), automaton.matches("ab"));
+            Assert.assertEquals("ab", automaton.nextString("ab"));
+        }
+        Assert.assertNull(RegexAutomaton.getInstance(Arrays.asList(UNSUPPORTED), Collections.emptyList(), false));
+    }
+    
+    @Test
+    public void testCached() {
+        Assert.assertSame(RegexAutomaton.getInstance("a.*b"), RegexAutomaton.getInstance("a.*b"));
+        Assert.assertSame(RegexAutomaton.getInstance(Arrays.asList("a.*", "b.*"), Collections.singleton("c"), false),
+                        RegexAutomaton.getInstance(Arrays.asList("b.*", "a.*"), Collections.singleton("c"), false));
+    }
+    
+    @Test
+    public void testNextString() {
+        List<String> values = values();
+        for (String regex : REGEXES) {
+            RegexAutomaton automaton = RegexAutomaton.getInstance(regex);
+            Pattern pattern = Pattern.compile(regex);
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                String next = automaton.nextString(value);
+                if (pattern.matcher(value).matches()) {
+                    Assert.assertEquals(regex, value, next);
+                    continue;
+                }
+                // nothing between the value and the next string may match
+                for (int j = i + 1; j < values.size() && (next == null || values.get(j).compareTo(next) < 0); j++) {
+                    Assert.assertFalse(regex + " skipped from " + value + " to " + next, pattern.matcher(values.get(j)).matches());
+                }
+                Assert.assertTrue(next == null || next.compareTo(value) > 0);
+            }
+        }
+    }
+    
+    @Test
+    public void testReversedUnion() {
+        List<String> values = values();
+        RegexAutomaton automaton = RegexAutomaton.getInstance(Arrays.asList("ab.*", "c+"), Arrays.asList("ba", "..a"), true);
+        Assert.assertNotNull(automaton);
+        Pattern pattern = Pattern.compile("ab.*|c+|ba|\\.\\.a");
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i);
+            Assert.assertEquals(value, pattern.matcher(new StringBuilder(value).reverse()).matches(), automaton.matches(value));
+            String next = automaton.nextString(value);
+            for (int j = i + 1; j < values.size() && (next == null || values.get(j).compareTo(next) < 0); j++) {
+                Assert.assertFalse(value + " skipped to " + next, pattern.matcher(new StringBuilder(values.get(j)).reverse()).matches());
+            }
+        }
+    }
+    
+    @Test
+    public void testRegexTrie() {
+        String[] strings = new String[] {"", "A", "AB", "ABCDEF", "BC", "BB"};
+        RegexAutomaton automaton = RegexAutomaton.getInstance(new RegexTrie(Arrays.asList(strings)).toRegex());
+        Assert.assertTrue(automaton.isSeekable());
+        for (String string : strings) {
+            Assert.assertTrue(automaton.matches(string));
+        }
+        Assert.assertFalse(automaton.matches("ABC"));
+        Assert.assertEquals("ABCDEF", automaton.nextString("ABC"));
+        Assert.assertEquals("BB", automaton.nextString("AC"));
+        Assert.assertNull(automaton.nextString("BD"));
+    }
+}
@@ -15,6 +15,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -48,11 +50,23 @@ public class BufferedFileBackedKeySortedSetTest {
             sortedOrder[i * 2] = sortedTemplate[i] + sortedTemplate.length;
             sortedOrder[i * 2 + 1] = sortedTemplate[i];
         }
-        set = new BufferedFileBackedSortedSet<>(null, 5, 7, 2, Collections.singletonList(new BufferedFileBackedSortedSet.SortedSetFileHandlerFactory() {
+        set = new BufferedFileBackedSortedSet<>(null, 5, 7, 2, Collections.singletonList(createHandlerFactory()), getFactory());
+        
+        // adding in the data set multiple times to create underlying files with duplicate values making the
+        // MergeSortIterator's job a little tougher...
+        for (int d = 0; d < 11; d++) {
+            Collections.addAll(set, data);
+        }
+    }
+    
+    private BufferedFileBackedSortedSet.SortedSetFileHandlerFactory createHandlerFactory() {
+        return new BufferedFileBackedSortedSet.SortedSetFileHandlerFactory() {
             @Override
             public FileSortedSet.SortedSetFileHandler createHandler() throws IOException {
                 SortedSetTempFileHandler fileHandler = new SortedSetTempFileHandler();
-                tempFileHandlers.add(fileHandler);
+                synchronized (tempFileHandlers) {
+                    tempFileHandlers.add(fileHandler);
+                }
                 return fileHandler;
             }
             
@@ -60,13 +74,11 @@ public class BufferedFileBackedKeySortedSetTest {
             public boolean isValid() {
                 return true;
             }
-        }), new FileKeySortedSet.Factory());
-        
-        // adding in the data set multiple times to create underlying files with duplicate values making the
-        // MergeSortIterator's job a little tougher...
-        for (int d = 0; d < 11; d++) {
-            Collections.addAll(set, data);
-        }
+        };
+    }
+    
+    protected FileSortedSet.FileSortedSetFactory<Key> getFactory() {
+        return new FileKeySortedSet.Factory();
     }
     
     @After
@@ -257,4 +269,31 @@ public class BufferedFileBackedKeySortedSetTest {
         assertEquals(3, set.getSets().size());
     }
     
+    @Test
+    public void testBackgroundCompaction() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            BufferedFileBackedSortedSet<Key> backgroundSet = new BufferedFileBackedSortedSet<>(null, 5, 8, 2, Collections.singletonList(createHandlerFactory()),
+                            getFactory());
+            backgroundSet.setCompactionExecutor(executor);
+            for (int d = 0; d < 11; d++) {
+                Collections.addAll(backgroundSet, data);
+            }
+            
+            int index = 0;
+            for (Iterator<Key> it = backgroundSet.iterator(); it.hasNext();) {
+                assertEquals(data[sortedOrder[index++]], it.next());
+            }
+            assertEquals(data.length, index);
+            assertTrue(backgroundSet.getSets().size() <= 8);
+            assertTrue(backgroundSet.getCompactionCount() > 0);
+            assertTrue(backgroundSet.getMaxCompactionFanIn() > 1);
+            assertTrue(backgroundSet.getCompactionBytesRead() > 0);
+            assertTrue(backgroundSet.getCompactionBytesWritten() > 0);
+            backgroundSet.clear();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
 }
@@ -0,0 +1,96 @@
+package datawave.query.util.sortedset;
+
+import org.apache.accumulo.core.data.Key;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the buffered file backed key sorted set tests against the off heap sorted sets
+ */
+public class BufferedFileBackedOffHeapKeySortedSetTest extends BufferedFileBackedKeySortedSetTest {
+    
+    @Override
+    protected FileSortedSet.FileSortedSetFactory<Key> getFactory() {
+        return new OffHeapFileKeySortedSet.Factory();
+    }
+    
+    private List<Key> createKeys() {
+        List<Key> keys = new ArrayList<>();
+        for (String row : new String[] {"", "a", "ab", "b", "\u00ff"}) {
+            for (String cf : new String[] {"", "f"}) {
+                for (long timestamp : new long[] {-1L, 0L, 5L, Long.MAX_VALUE}) {
+                    Key key = new Key(row, cf, "q", "vis", timestamp);
+                    keys.add(key);
+                    Key deleted = new Key(key);
+                    deleted.setDeleted(true);
+                    keys.add(deleted);
+                }
+            }
+        }
+        return keys;
+    }
+    
+    @Test
+    public void testKeyRecordOrdering() {
+        List<Key> keys = createKeys();
+        ByteBuffer buffer = ByteBuffer.allocate(keys.size() * 64);
+        List<Integer> offsets = new ArrayList<>();
+        for (Key key : keys) {
+            offsets.add(buffer.position());
+            KeyRecord.write(buffer, key);
+            assertEquals(buffer.position() - offsets.get(offsets.size() - 1), KeyRecord.size(key));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Key key = KeyRecord.read(buffer, offsets.get(i));
+            assertEquals(keys.get(i), key);
+            assertEquals(keys.get(i).isDeleted(), key.isDeleted());
+            for (Key other : keys) {
+                assertEquals(Integer.signum(keys.get(i).compareTo(other)), Integer.signum(KeyRecord.compare(buffer, offsets.get(i), other)));
+            }
+        }
+    }
+    
+    @Test
+    public void testOffHeapSortedKeySet() {
+        List<Key> keys = createKeys();
+        SortedSet<Key> expected = new TreeSet<>(keys);
+        OffHeapSortedKeySet set = new OffHeapSortedKeySet(1);
+        for (Key key : keys) {
+            assertTrue(set.add(key));
+            assertFalse(set.add(key));
+        }
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected.first(), set.first());
+        assertEquals(expected.last(), set.last());
+        Iterator<Key> it = set.iterator();
+        for (Key key : expected) {
+            assertEquals(key, it.next());
+        }
+        assertFalse(it.hasNext());
+        
+        Key from = new Key("a");
+        Key to = new Key("b");
+        assertEquals(new ArrayList<>(expected.subSet(from, to)), new ArrayList<>(set.subSet(from, to)));
+        assertEquals(new ArrayList<>(expected.headSet(to)), new ArrayList<>(set.headSet(to)));
+        assertEquals(new ArrayList<>(expected.tailSet(from)), new ArrayList<>(set.tailSet(from)));
+        
+        for (Key key : keys) {
+            assertTrue(set.contains(key));
+            assertTrue(set.remove(key));
+            assertFalse(set.contains(key));
+        }
+        assertTrue(set.isEmpty());
+        set.clear();
+        assertEquals(0, set.getCapacity());
+    }
+}
@@ -0,0 +1,119 @@
+package datawave.query.util.sortedset;
+
+import datawave.query.iterator.ivarator.IvaratorCacheDir;
+import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+public class UniqueByteArraySetTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    @Test
+    public void inMemoryTest() throws Exception {
+        UniqueByteArraySet set = new UniqueByteArraySet(-1);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(set.add(bytes(i)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertFalse(set.add(bytes(i)));
+        }
+        Assert.assertFalse(set.isSaturated());
+        Assert.assertEquals(0, set.getSpillCount());
+    }
+    
+    @Test
+    public void saturatedTest() throws Exception {
+        // enough room for roughly 10 entries
+        UniqueByteArraySet set = new UniqueByteArraySet(10 * (UniqueByteArraySet.ENTRY_OVERHEAD + 8));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(set.add(bytes(i)));
+        }
+        Assert.assertTrue(set.isSaturated());
+        
+        // values recorded before saturation are still found
+        Assert.assertFalse(set.add(bytes(0)));
+        
+        // values after saturation are not recorded
+        Assert.assertTrue(set.add(bytes(99)));
+    }
+    
+    @Test
+    public void spillTest() throws Exception {
+        File tempDir = temporaryFolder.newFolder();
+        LocalFileSystem fs = new LocalFileSystem();
+        fs.initialize(tempDir.toURI(), new Configuration());
+        
+        IvaratorCacheDir cacheDir = new IvaratorCacheDir(new IvaratorCacheDirConfig(tempDir.toURI().toString()), fs, tempDir.toURI().toString());
+        HdfsBackedSortedSet<byte[]> spillSet = new HdfsBackedSortedSet<>(new ByteArrayComparator(), Integer.MAX_VALUE, Collections.singletonList(cacheDir),
+                        "unique", 5, 2, new FileSortedSet.PersistOptions());
+        
+        // enough room for roughly 10 entries
+        UniqueByteArraySet set = new UniqueByteArraySet(10 * (UniqueByteArraySet.ENTRY_OVERHEAD + 8), spillSet);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(set.add(bytes(i)));
+        }
+        Assert.assertFalse(set.isSaturated());
+        Assert.assertTrue(set.getSpillCount() > 0);
+        Assert.assertTrue(fs.exists(new Path(tempDir.toURI().toString(), "unique")));
+        
+        // every value is still known exactly, whether buffered or spilled
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(set.add(bytes(i)));
+        }
+        for (int i = 100; i < 150; i++) {
+            Assert.assertTrue(set.add(bytes(i)));
+        }
+        
+        set.clear();
+        Assert.assertTrue(set.add(bytes(0)));
+    }
+    
+    @Test
+    public void spilledDuplicateReadsOneRunTest() throws Exception {
+        File tempDir = temporaryFolder.newFolder();
+        LocalFileSystem fs = new LocalFileSystem();
+        fs.initialize(tempDir.toURI(), new Configuration());
+        
+        // enough open files that the runs are never compacted together
+        IvaratorCacheDir cacheDir = new IvaratorCacheDir(new IvaratorCacheDirConfig(tempDir.toURI().toString()), fs, tempDir.toURI().toString());
+        HdfsBackedSortedSet<byte[]> spillSet = new HdfsBackedSortedSet<>(new ByteArrayComparator(), Integer.MAX_VALUE, Collections.singletonList(cacheDir),
+                        "unique", 100, 2, new FileSortedSet.PersistOptions());
+        
+        UniqueByteArraySet set = new UniqueByteArraySet(10 * (UniqueByteArraySet.ENTRY_OVERHEAD + 8), spillSet);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(set.add(bytes(i)));
+        }
+        Assert.assertTrue(set.getSpillCount() > 5);
+        Assert.assertEquals(0, set.getSpillReadCount());
+        
+        // a spilled duplicate only reads the run that holds it
+        Assert.assertFalse(set.add(bytes(0)));
+        Assert.assertEquals(1, set.getSpillReadCount());
+        
+        // and is then found in memory
+        Assert.assertFalse(set.add(bytes(0)));
+        Assert.assertEquals(1, set.getSpillReadCount());
+        
+        // new values do not read any run
+        Assert.assertTrue(set.add(bytes(500)));
+        Assert.assertEquals(1, set.getSpillReadCount());
+        
+        set.close();
+        Assert.assertFalse(fs.exists(new Path(tempDir.toURI().toString(), "unique")));
+    }
+    
+    private static byte[] bytes(int i) {
+        return String.format("value%03d", i).getBytes(StandardCharsets.UTF_8);
+    }
+}
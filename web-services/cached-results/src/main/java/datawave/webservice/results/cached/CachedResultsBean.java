@@ -8,7 +8,6 @@ import datawave.annotation.Required;
 import datawave.configuration.spring.SpringBean;
 import datawave.interceptor.RequiredInterceptor;
 import datawave.interceptor.ResponseInterceptor;
-import datawave.marking.MarkingFunctions;
 import datawave.marking.SecurityMarking;
 import datawave.resteasy.interceptor.CreateQuerySessionIDFilter;
 import datawave.security.authorization.DatawavePrincipal;
@@ -114,14 +113,11 @@ import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.Principal;
-import java.sql.BatchUpdateException;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLSyntaxErrorException;
 import java.sql.Statement;
-import java.sql.Types;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -133,8 +129,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
 /**
@@ -238,6 +234,8 @@ public class CachedResultsBean {
     
     private static Map<String,RunningQuery> loadingQueryMap = Collections.synchronizedMap(new HashMap<>());
     private static Set<String> loadingQueries = Collections.synchronizedSet(new HashSet<>());
+    // loads in progress, by view name
+    private static Map<String,CachedResultsLoader> loaders = new ConcurrentHashMap<>();
     private URL importFileUrl = null;
     private CachedResultsParameters cp = new CachedResultsParameters();
     
@@ -272,65 +270,6 @@ public class CachedResultsBean {
         }
     }
     
-    protected void loadBatch(PreparedStatement ps, String owner, String queryId, String logicName, Map<String,Integer> fieldMap, CacheableQueryRow cqo,
-                    int maxFieldSize) throws SQLException {
-        
-        // Maintain a list of the columns that are populated so
-        // that we can
-        // set the others to null.
-        HashSet<Integer> populatedColumns = new HashSet<>();
-        // Done capturing all the fields in the event, insert
-        // into database.
-        ps.clearParameters(); // not sure we need this
-        
-        // Each entry is a different visibility.
-        ps.setString(1, owner);
-        ps.setString(2, queryId);
-        ps.setString(3, logicName);
-        ps.setString(4, cqo.getDataType());
-        ps.setString(5, cqo.getEventId());
-        ps.setString(6, cqo.getRow());
-        ps.setString(7, cqo.getColFam());
-        ps.setString(8, MarkingFunctions.Encoding.toString(new TreeMap<>(cqo.getMarkings())));
-        for (Entry<String,String> e : cqo.getColumnValues().entrySet()) {
-            
-            String columnName = e.getKey();
-            String columnValue = e.getValue();
-            // Get the field number from the fieldMap.
-            Integer columnNumber = fieldMap.get(columnName);
-            if (columnNumber == null) {
-                columnNumber = CacheableQueryRow.getFixedColumnSet().size() + fieldMap.size() + 1;
-                fieldMap.put(columnName, columnNumber);
-            }
-            
-            if (columnValue.length() > maxFieldSize) {
-                columnValue = columnValue.substring(0, maxFieldSize) + "<truncated>";
-                ps.setString(columnNumber, columnValue);
-            } else {
-                ps.setString(columnNumber, columnValue);
-            }
-            populatedColumns.add(columnNumber);
-            if (log.isTraceEnabled()) {
-                log.trace("Set parameter: " + columnNumber + " with field name: " + columnName + " to value: " + columnValue);
-            }
-        }
-        
-        ps.setString(9, cqo.getColumnSecurityMarkingString(fieldMap));
-        ps.setString(10, cqo.getColumnTimestampString(fieldMap));
-        
-        // Need to set all of the remaining parameters to
-        // NULL
-        int startCol = CacheableQueryRow.getFixedColumnSet().size() + 1;
-        int maxCol = CacheableQueryRow.getFixedColumnSet().size() + 901;
-        for (int i = startCol; i < maxCol; i++) {
-            if (!populatedColumns.contains(i)) {
-                ps.setNull(i, Types.VARCHAR);
-            }
-        }
-        ps.addBatch();
-        
-    }
-    
     protected GenericResponse<String> load(@Required("queryId") String queryId, String alias, String nameBase) {
         
         GenericResponse<String> response = new GenericResponse<>();
@@ -355,13 +294,12 @@ public class CachedResultsBean {
         String tableName = "t" + nameBase;
         String viewName = "v" + nameBase;
         Connection con = null;
-        PreparedStatement ps = null;
+        CachedResultsLoader loader = null;
         boolean tableCreated = false;
         boolean viewCreated = false;
         CachedRunningQuery crq = null;
         Span span = null;
         boolean queryLockedException = false;
-        int rowsPerBatch = cachedResultsConfiguration.getRowsPerBatch();
         try {
             
             // This RunningQuery may be in use. Make a copy using the defined Query.
@@ -506,10 +444,6 @@ public class CachedResultsBean {
                 s.execute(createTable);
                 s.close();
                 tableCreated = true;
-                // Parse the PreparedStatement
-                String insert = cachedResultsConfiguration.getParameters().get("INSERT");
-                insert = insert.replace(TABLE, tableName);
-                ps = con.prepareStatement(insert);
             } catch (SQLException sqle) {
                 throw new QueryException(DatawaveErrorCode.CACHED_RESULTS_TABLE_CREATE_ERROR, sqle);
             }
@@ -527,7 +461,14 @@ public class CachedResultsBean {
                 span = Trace.trace(traceInfo, "cachedresults:load");
             }
             
-            int rowsWritten = 0;
+            // Rows are written by the loader's writers while the next page of results is retrieved
+            String insert = cachedResultsConfiguration.getParameters().get("INSERT");
+            insert = insert.replace(TABLE, tableName);
+            loader = new CachedResultsLoader(ds, insert, executor, cachedResultsConfiguration.getLoaderThreads(),
+                            cachedResultsConfiguration.getLoaderStartTimeout(), cachedResultsConfiguration.getLoaderQueueSize(), cachedResultsConfiguration.getRowsPerBatch(),
+                            cachedResultsConfiguration.getRowsPerInsert());
+            CachedResultsBean.loaders.put(viewName, loader);
+            
             boolean go = true;
             while (go) {
                 
@@ -550,69 +491,18 @@ public class CachedResultsBean {
                     break;
                 }
                 
-                int maxLength = 0;
                 for (Object o : results.getResults()) {
                     
                     List<CacheableQueryRow> cacheableQueryRowList = cacheableLogic.writeToCache(o);
                     
                     for (CacheableQueryRow cacheableQueryObject : cacheableQueryRowList) {
-                        
-                        Collection<String> values = ((CacheableQueryRow) cacheableQueryObject).getColumnValues().values();
-                        int maxValueLength = 0;
-                        for (String s : values) {
-                            if (s.length() > maxValueLength) {
-                                maxValueLength = s.length();
-                            }
-                        }
-                        
-                        boolean dataWritten = false;
-                        // If a successful maxLength has been determined, then don't change it.
-                        if (maxLength == 0)
-                            maxLength = maxValueLength + 1;
-                        else if (maxValueLength > maxLength) {
-                            maxLength = maxValueLength;
-                        }
-                        
-                        int attempt = 0;
-                        SQLException loadBatchException = null; // exception;
-                        while (dataWritten == false && attempt < 10) {
-                            try {
-                                loadBatch(ps, owner, queryId, logic.getLogicName(), fieldMap, cacheableQueryObject, maxLength);
-                                dataWritten = true;
-                                rowsWritten++;
-                            } catch (SQLException e) {
-                                loadBatchException = e;
-                                String msg = e.getMessage();
-                                if (msg.startsWith("Table") && msg.endsWith("doesn't exist")) {
-                                    throw new QueryException(DatawaveErrorCode.CACHE_TABLE_MISSING, MessageFormat.format("message: {0}", msg));
-                                } else {
-                                    log.info("Caught other SQLException:" + msg + " writing batch with maxLength:" + maxLength);
-                                    maxLength = maxLength / 2;
-                                }
-                            }
-                            attempt++;
-                        }
-                        
-                        if (dataWritten == false) {
-                            String message = (loadBatchException == null) ? "unknown" : loadBatchException.getMessage();
-                            
-                            log.error("Batch write FAILED - last exception = " + message + "record = " + cacheableQueryObject.getColumnValues().entrySet(),
-                                            loadBatchException);
-                        } else if (rowsWritten >= rowsPerBatch) {
-                            persistBatch(ps);
-                            ps.clearBatch();
-                            rowsWritten = 0;
-                        }
+                        loader.addRow(owner, queryId, logic.getLogicName(), fieldMap, cacheableQueryObject);
                     }
                 }
             } // End of inserts into table
             
-            // commit the last batch
-            if (rowsWritten > 0) {
-                persistBatch(ps);
-                ps.clearBatch();
-                rowsWritten = 0;
-            }
+            // wait for the writers to finish the last batches
+            loader.finish();
             
             // Dump the fieldMap for debugging
             if (log.isTraceEnabled()) {
@@ -664,6 +554,10 @@ public class CachedResultsBean {
             response.addException(qe.getBottomQueryException());
             throw new QueryCanceledException(qe, response);
         } catch (Throwable t) {
+            // stop writing before the table is dropped
+            if (loader != null) {
+                loader.close();
+            }
             if (crq != null && crq.getQueryLogic().getCollectQueryMetrics() == true) {
                 try {
                     crq.getMetric().setError(t);
@@ -727,7 +621,11 @@ public class CachedResultsBean {
             }
             throw new DatawaveWebApplicationException(t, response, statusCode);
         } finally {
-            DbUtils.closeQuietly(con, ps, null);
+            if (loader != null) {
+                loader.close();
+                CachedResultsBean.loaders.remove(viewName);
+            }
+            DbUtils.closeQuietly(con);
             if (queryLockedException == false) {
                 CachedResultsBean.loadingQueryMap.remove(queryId);
                 CachedResultsBean.loadingQueries.remove(queryId);
@@ -835,6 +733,14 @@ public class CachedResultsBean {
             response.addMessage(crq.getStatusMessage());
         }
         
+        if (status == CachedRunningQuery.Status.LOADING) {
+            // a loading query is saved under the name of its view
+            CachedResultsLoader loader = CachedResultsBean.loaders.get(crq.getQueryId());
+            if (loader != null) {
+                response.addMessage(loader.getProgress());
+            }
+        }
+        
         return response;
     }
     
@@ -856,37 +762,6 @@ public class CachedResultsBean {
         return dn;
     }
     
-    protected void persistBatch(PreparedStatement ps) throws SQLException {
-        int[] batchResults = null;
-        try {
-            batchResults = ps.executeBatch();
-            int failCount = 0;
-            for (int i = 0; i < batchResults.length; i++) {
-                if (batchResults[i] == Statement.EXECUTE_FAILED) {
-                    failCount++;
-                }
-            }
-            
-            if (failCount > 0) {
-                StringBuilder b = new StringBuilder();
-                for (int i = 0; i < batchResults.length; i++) {
-                    if (batchResults[i] == Statement.EXECUTE_FAILED) {
-                        b.append(i).append(" ");
-                    }
-                }
-                log.warn("Batch failed to perform " + failCount + " updates, indexes: " + b);
-            } else if (log.isDebugEnabled()) {
-                log.debug("Successfully persisted batch of size: " + batchResults.length + " total " + failCount + " failures");
-            }
-        } catch (BatchUpdateException be) {
-            log.warn("Caught BatchUpdateException, one or more batch update have failed: " + be.getMessage(), be);
-            throw be;
-        } catch (SQLException sqle) {
-            log.error("Error committing last batch", sqle);
-            throw sqle;
-        }
-    }
-    
     /**
      * Loads the results of the defined query, specified by query id, into a store that allows SQL queries to be run against it. This allows caller to sort and
      * group by attributes
@@ -0,0 +1,501 @@
+package datawave.webservice.results.cached;
+
+import datawave.marking.MarkingFunctions;
+import datawave.webservice.query.cachedresults.CacheableQueryRow;
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.log4j.Logger;
+
+import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads rows into a cached results table while the query is still producing them. The loading thread converts each row into the parameters of the INSERT
+ * statement and adds it here. Rows are queued in batches of rowsPerBatch, and a number of writer tasks, each with its own database connection, take the
+ * batches off the queue and write them, so that writing to the database overlaps with scanning. A full queue blocks the loading thread, which keeps the memory
+ * used by a load bounded.
+ * 
+ * Each writer inserts rowsPerInsert rows at a time with a single multi-row INSERT, which saves a round trip and a statement execution per row. The remaining
+ * rows of a batch are written with a JDBC batch. A row that cannot be written is retried on its own, halving the length of its values each time, as loads
+ * always have.
+ * 
+ * With no writer threads the batches are written by the loading thread itself. The writers run on a shared executor, so if none of them has started within
+ * writerStartTimeout of creating the loader, the loading thread writes the batches itself rather than waiting on a queue that nothing takes from. Writers that
+ * have still not started when the load finishes are abandoned.
+ */
+public class CachedResultsLoader implements AutoCloseable {
+    
+    private static Logger log = Logger.getLogger(CachedResultsLoader.class);
+    
+    // MySQL prepared statements are limited to 65535 parameters
+    protected static final int MAX_PARAMETERS = 65535;
+    private static final int MAX_ATTEMPTS = 10;
+    private static final String TRUNCATED = "<truncated>";
+    private static final String VALUES = "VALUES";
+    private static final long POLL_MILLIS = 100;
+    
+    private final DataSource ds;
+    private final String insert;
+    private final String multiRowInsert;
+    private final int numParameters;
+    private final int rowsPerInsert;
+    private final int rowsPerBatch;
+    private final BlockingQueue<List<String[]>> queue;
+    private final List<WriterTask> writers = new ArrayList<>();
+    private final long writerStartTimeout;
+    private final AtomicInteger writersStarted = new AtomicInteger();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final AtomicLong rowsQueued = new AtomicLong();
+    private final AtomicLong rowsLoaded = new AtomicLong();
+    private final long startMillis = System.currentTimeMillis();
+    
+    private Writer inlineWriter = null;
+    private List<String[]> batch;
+    private volatile boolean closed = false;
+    
+    /**
+     * @param ds
+     *            the datasource of the cached results table
+     * @param insert
+     *            the INSERT statement for one row of the table
+     * @param executor
+     *            runs the writer tasks
+     * @param writerThreads
+     *            the number of writer tasks, or 0 to write on the loading thread
+     * @param writerStartTimeout
+     *            the milliseconds to wait for a writer task to start before the loading thread writes the batches itself
+     * @param queueSize
+     *            the number of batches that may wait for a writer
+     * @param rowsPerBatch
+     *            the number of rows handed to a writer at a time, raised to rowsPerInsert if smaller
+     * @param rowsPerInsert
+     *            the most rows to write with one INSERT statement, limited by the number of parameters a statement may have
+     */
+    public CachedResultsLoader(DataSource ds, String insert, ExecutorService executor, int writerThreads, long writerStartTimeout, int queueSize,
+                    int rowsPerBatch, int rowsPerInsert) {
+        this.ds = ds;
+        this.writerStartTimeout = writerStartTimeout;
+        this.insert = insert;
+        this.numParameters = countParameters(insert);
+        this.rowsPerInsert = Math.max(1, Math.min(rowsPerInsert, MAX_PARAMETERS / Math.max(1, numParameters)));
+        // a writer gets at least enough rows for a multi-row INSERT
+        this.rowsPerBatch = Math.max(rowsPerBatch, this.rowsPerInsert);
+        this.multiRowInsert = (this.rowsPerInsert > 1) ? createMultiRowInsert(insert, this.rowsPerInsert) : null;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.batch = new ArrayList<>(this.rowsPerBatch);
+        for (int i = 0; i < writerThreads; i++) {
+            WriterTask writer = new WriterTask();
+            writer.future = executor.submit(() -> runWriter(writer));
+            writers.add(writer);
+        }
+    }
+    
+    /**
+     * Counts the parameters of a statement, all of which are expected to be in its VALUES clause.
+     */
+    protected static int countParameters(String insert) {
+        int count = 0;
+        for (int i = 0; i < insert.length(); i++) {
+            if (insert.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Repeats the VALUES clause of an INSERT statement for one row so that the statement inserts numRows rows.
+     * 
+     * @return the multi-row INSERT statement, or null if the statement has no VALUES clause that can be repeated
+     */
+    protected static String createMultiRowInsert(String insert, int numRows) {
+        int values = insert.toUpperCase().lastIndexOf(VALUES);
+        if (values < 0) {
+            return null;
+        }
+        String row = insert.substring(values + VALUES.length()).trim();
+        if (!row.startsWith("(") || !row.endsWith(")")) {
+            return null;
+        }
+        StringBuilder b = new StringBuilder(insert.length() + (row.length() + 1) * numRows);
+        b.append(insert, 0, values + VALUES.length()).append(' ').append(row);
+        for (int i = 1; i < numRows; i++) {
+            b.append(',').append(row);
+        }
+        return b.toString();
+    }
+    
+    /**
+     * Converts a row of results into the parameters of the INSERT statement and queues it for writing. Fields are assigned the next free column the first
+     * time they are seen, so rows must be added by a single thread.
+     * 
+     * @return false if the row has more fields than the table has columns and was not loaded
+     * @throws QueryException
+     *             if a writer has failed, for instance because the table is missing
+     * @throws InterruptedException
+     *             if interrupted while waiting for a writer to take a batch
+     */
+    public boolean addRow(String owner, String queryId, String logicName, Map<String,Integer> fieldMap, CacheableQueryRow cqo) throws QueryException,
+                    InterruptedException {
+        String[] parameters = new String[numParameters];
+        parameters[0] = owner;
+        parameters[1] = queryId;
+        parameters[2] = logicName;
+        parameters[3] = cqo.getDataType();
+        parameters[4] = cqo.getEventId();
+        parameters[5] = cqo.getRow();
+        parameters[6] = cqo.getColFam();
+        parameters[7] = MarkingFunctions.Encoding.toString(new TreeMap<>(cqo.getMarkings()));
+        for (Entry<String,String> e : cqo.getColumnValues().entrySet()) {
+            // Get the field number from the fieldMap.
+            Integer columnNumber = fieldMap.get(e.getKey());
+            if (columnNumber == null) {
+                columnNumber = CacheableQueryRow.getFixedColumnSet().size() + fieldMap.size() + 1;
+                fieldMap.put(e.getKey(), columnNumber);
+            }
+            if (columnNumber > numParameters) {
+                log.error("Batch write FAILED - no column for field " + e.getKey() + " record = " + cqo.getColumnValues().entrySet());
+                return false;
+            }
+            parameters[columnNumber - 1] = e.getValue();
+            if (log.isTraceEnabled()) {
+                log.trace("Set parameter: " + columnNumber + " with field name: " + e.getKey() + " to value: " + e.getValue());
+            }
+        }
+        parameters[8] = cqo.getColumnSecurityMarkingString(fieldMap);
+        parameters[9] = cqo.getColumnTimestampString(fieldMap);
+        
+        batch.add(parameters);
+        rowsQueued.incrementAndGet();
+        if (batch.size() >= rowsPerBatch) {
+            flush();
+        }
+        return true;
+    }
+    
+    /**
+     * Waits for all of the rows added to be written.
+     * 
+     * @throws QueryException
+     *             if a writer failed
+     * @throws InterruptedException
+     *             if interrupted while waiting for the writers
+     */
+    public void finish() throws QueryException, InterruptedException {
+        flush();
+        stop(false);
+        checkFailure();
+        // write the batches left by writers that never started
+        List<String[]> rows;
+        while ((rows = queue.poll()) != null) {
+            writeInline(rows);
+        }
+        closeInlineWriter();
+        if (log.isDebugEnabled()) {
+            log.debug(getProgress());
+        }
+    }
+    
+    /**
+     * Stops the writers, discarding any batches they have not yet taken. Used when a load is abandoned, and harmless after {@link #finish()}.
+     */
+    @Override
+    public void close() {
+        try {
+            stop(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeInlineWriter();
+        }
+    }
+    
+    private void stop(boolean discard) throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        if (discard) {
+            queue.clear();
+        }
+        closed = true;
+        for (WriterTask writer : writers) {
+            if (writer.claimed.compareAndSet(false, true)) {
+                // the executor never got to this writer, so there is nothing to wait for
+                writer.future.cancel(false);
+                continue;
+            }
+            try {
+                writer.future.get();
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, (Exception) e.getCause());
+            }
+        }
+    }
+    
+    private void closeInlineWriter() {
+        if (inlineWriter != null) {
+            inlineWriter.close();
+            inlineWriter = null;
+        }
+    }
+    
+    public long getRowsLoaded() {
+        return rowsLoaded.get();
+    }
+    
+    public double getRowsPerSecond() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startMillis);
+        return rowsLoaded.get() * 1000.0 / elapsed;
+    }
+    
+    public String getProgress() {
+        return MessageFormat.format("Loaded {0} of {1} rows ({2,number,#.#} rows/sec)", rowsLoaded.get(), rowsQueued.get(), getRowsPerSecond());
+    }
+    
+    private void flush() throws QueryException, InterruptedException {
+        checkFailure();
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (writers.isEmpty() || writersStalled()) {
+            writeInline(batch);
+            batch.clear();
+            return;
+        }
+        // check for a failed or stalled writer now and then instead of waiting on a queue that may never drain
+        while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+            checkFailure();
+            if (writersStalled()) {
+                writeInline(batch);
+                batch.clear();
+                return;
+            }
+        }
+        batch = new ArrayList<>(rowsPerBatch);
+    }
+    
+    // true if no writer has started within the writer start timeout, as when the executor is busy with other work
+    private boolean writersStalled() {
+        if (writersStarted.get() > 0 || System.currentTimeMillis() - startMillis < writerStartTimeout) {
+            return false;
+        }
+        if (inlineWriter == null) {
+            log.warn("No writer started within " + writerStartTimeout + "ms, writing cached results on the loading thread");
+        }
+        return true;
+    }
+    
+    private void writeInline(List<String[]> rows) throws QueryException {
+        if (inlineWriter == null) {
+            inlineWriter = new Writer();
+        }
+        inlineWriter.write(rows);
+    }
+    
+    private void checkFailure() throws QueryException {
+        Exception e = failure.get();
+        if (e instanceof QueryException) {
+            throw (QueryException) e;
+        } else if (e != null) {
+            throw new QueryException(DatawaveErrorCode.CACHED_RESULTS_PERSIST_ERROR, e);
+        }
+    }
+    
+    private Void runWriter(WriterTask task) throws Exception {
+        if (!task.claimed.compareAndSet(false, true)) {
+            // abandoned by stop before it started
+            return null;
+        }
+        writersStarted.incrementAndGet();
+        try (Writer writer = new Writer()) {
+            while (true) {
+                // no batches are added once closed, so the queue is drained if it is empty after closing
+                boolean done = closed;
+                List<String[]> rows = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (rows != null) {
+                    writer.write(rows);
+                } else if (done) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+            throw e;
+        }
+        return null;
+    }
+    
+    /**
+     * A writer submitted to the executor, claimed either by the writer when it starts or by {@link #stop(boolean)} if it never did.
+     */
+    private static class WriterTask {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<?> future;
+    }
+    
+    /**
+     * Writes batches of rows over a connection of its own.
+     */
+    private class Writer implements AutoCloseable {
+        
+        private Connection con = null;
+        private PreparedStatement ps = null;
+        private PreparedStatement multiRowPs = null;
+        
+        void write(List<String[]> rows) throws QueryException {
+            try {
+                if (con == null) {
+                    con = ds.getConnection();
+                    ps = con.prepareStatement(insert);
+                    if (multiRowInsert != null) {
+                        multiRowPs = con.prepareStatement(multiRowInsert);
+                    }
+                }
+                
+                int start = 0;
+                if (multiRowPs != null) {
+                    for (; start + rowsPerInsert <= rows.size(); start += rowsPerInsert) {
+                        writeMultiRow(rows.subList(start, start + rowsPerInsert));
+                    }
+                }
+                if (start < rows.size()) {
+                    writeBatch(rows.subList(start, rows.size()));
+                }
+            } catch (SQLException e) {
+                throw new QueryException(DatawaveErrorCode.CACHED_RESULTS_PERSIST_ERROR, e);
+            }
+        }
+        
+        private void writeMultiRow(List<String[]> rows) throws SQLException, QueryException {
+            multiRowPs.clearParameters();
+            int index = 1;
+            for (String[] row : rows) {
+                for (String value : row) {
+                    setParameter(multiRowPs, index++, value);
+                }
+            }
+            try {
+                multiRowPs.executeUpdate();
+                rowsLoaded.addAndGet(rows.size());
+            } catch (SQLException e) {
+                // the statement inserts all of its rows or none of them
+                checkTableMissing(e);
+                log.info("Caught SQLException: " + e.getMessage() + " writing " + rows.size() + " rows, retrying them one at a time");
+                for (String[] row : rows) {
+                    writeRow(row);
+                }
+            }
+        }
+        
+        private void writeBatch(List<String[]> rows) throws SQLException, QueryException {
+            ps.clearBatch();
+            for (String[] row : rows) {
+                bind(row, Integer.MAX_VALUE);
+                ps.addBatch();
+            }
+            int[] batchResults;
+            try {
+                batchResults = ps.executeBatch();
+            } catch (BatchUpdateException be) {
+                checkTableMissing(be);
+                log.warn("Caught BatchUpdateException, one or more batch update have failed: " + be.getMessage(), be);
+                batchResults = be.getUpdateCounts();
+            }
+            // retry the rows that failed, or were not attempted after a failure
+            int failCount = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                if (batchResults == null || i >= batchResults.length || batchResults[i] == Statement.EXECUTE_FAILED) {
+                    failCount++;
+                    writeRow(rows.get(i));
+                } else {
+                    rowsLoaded.incrementAndGet();
+                }
+            }
+            if (failCount > 0) {
+                log.warn("Batch failed to perform " + failCount + " updates, retried them one at a time");
+            } else if (log.isDebugEnabled()) {
+                log.debug("Successfully persisted batch of size: " + rows.size());
+            }
+        }
+        
+        private void writeRow(String[] row) throws SQLException, QueryException {
+            int maxLength = 0;
+            for (int i = CacheableQueryRow.getFixedColumnSet().size(); i < row.length; i++) {
+                if (row[i] != null && row[i].length() > maxLength) {
+                    maxLength = row[i].length();
+                }
+            }
+            SQLException lastException = null;
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                try {
+                    bind(row, maxLength);
+                    ps.executeUpdate();
+                    rowsLoaded.incrementAndGet();
+                    return;
+                } catch (SQLException e) {
+                    checkTableMissing(e);
+                    lastException = e;
+                    log.info("Caught other SQLException:" + e.getMessage() + " writing row with maxLength:" + maxLength);
+                    maxLength = maxLength / 2;
+                }
+            }
+            log.error("Batch write FAILED - last exception = " + lastException.getMessage() + " record = " + row[4], lastException);
+        }
+        
+        // binds a row to the single row statement, truncating the values of its fields to maxLength
+        private void bind(String[] row, int maxLength) throws SQLException {
+            ps.clearParameters();
+            int fixedColumns = CacheableQueryRow.getFixedColumnSet().size();
+            for (int i = 0; i < row.length; i++) {
+                String value = row[i];
+                if (i >= fixedColumns && value != null && value.length() > maxLength) {
+                    value = value.substring(0, maxLength) + TRUNCATED;
+                }
+                setParameter(ps, i + 1, value);
+            }
+        }
+        
+        private void setParameter(PreparedStatement statement, int index, String value) throws SQLException {
+            if (value == null) {
+                statement.setNull(index, Types.VARCHAR);
+            } else {
+                statement.setString(index, value);
+            }
+        }
+        
+        private void checkTableMissing(SQLException e) throws QueryException {
+            String msg = e.getMessage();
+            if (msg != null && msg.startsWith("Table") && msg.endsWith("doesn't exist")) {
+                throw new QueryException(DatawaveErrorCode.CACHE_TABLE_MISSING, MessageFormat.format("message: {0}", msg));
+            }
+        }
+        
+        @Override
+        public void close() {
+            DbUtils.closeQuietly(multiRowPs);
+            DbUtils.closeQuietly(con, ps, null);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package datawave.webservice.results.cached;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import datawave.webservice.query.cachedresults.CacheableQueryRow;
+import datawave.webservice.query.exception.QueryException;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CachedResultsLoaderTest {
+    
+    private static final String INSERT = "INSERT INTO t (_user_, _queryId_, _logicName_, _datatype_, _eventId_, _row_, _colf_, _markings_, _column_markings_, "
+                    + "_column_timestamps_, field0, field1) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    // the value of field0 of each row written, by event id
+    private final Map<String,String> written = new ConcurrentHashMap<>();
+    private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+    
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * A datasource that records the rows written by its statements, and fails any statement with a field value longer than maxValueLength.
+     */
+    private DataSource createDataSource(int maxValueLength, boolean tableMissing) {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {DataSource.class}, (ds, dsMethod, dsArgs) -> {
+            if (!dsMethod.getName().equals("getConnection")) {
+                return null;
+            }
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class}, (con, conMethod, conArgs) -> {
+                if (!conMethod.getName().equals("prepareStatement")) {
+                    return null;
+                }
+                String sql = (String) conArgs[0];
+                statements.add(sql);
+                int numParameters = CachedResultsLoader.countParameters(sql);
+                List<Object[]> batch = new ArrayList<>();
+                Object[] parameters = new Object[numParameters + 1];
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {PreparedStatement.class}, (ps, psMethod, psArgs) -> {
+                    switch (psMethod.getName()) {
+                        case "setString":
+                            parameters[(Integer) psArgs[0]] = psArgs[1];
+                            return null;
+                        case "setNull":
+                            parameters[(Integer) psArgs[0]] = null;
+                            return null;
+                        case "addBatch":
+                            batch.add(parameters.clone());
+                            return null;
+                        case "clearBatch":
+                            batch.clear();
+                            return null;
+                        case "executeUpdate":
+                            write(parameters, maxValueLength, tableMissing);
+                            return numParameters / 12;
+                        case "executeBatch":
+                            int[] counts = new int[batch.size()];
+                            for (int i = 0; i < counts.length; i++) {
+                                counts[i] = write(batch.get(i), maxValueLength, tableMissing);
+                            }
+                            return counts;
+                        default:
+                            return null;
+                    }
+                });
+            });
+        });
+    }
+    
+    private int write(Object[] parameters, int maxValueLength, boolean tableMissing) throws SQLException {
+        if (tableMissing) {
+            throw new SQLException("Table 't' doesn't exist");
+        }
+        // each row is 12 parameters, numbered from 1
+        for (int i = 1; i < parameters.length; i += 12) {
+            String value = (String) parameters[i + 10];
+            if (value != null && value.length() > maxValueLength) {
+                throw new SQLException("Data too long for column 'field0'");
+            }
+        }
+        for (int i = 1; i < parameters.length; i += 12) {
+            written.put((String) parameters[i + 4], (String) parameters[i + 10]);
+        }
+        return 1;
+    }
+    
+    private CacheableQueryRow createRow(String eventId, String value) {
+        CacheableQueryRow row = EasyMock.createNiceMock(CacheableQueryRow.class);
+        EasyMock.expect(row.getEventId()).andReturn(eventId).anyTimes();
+        EasyMock.expect(row.getMarkings()).andReturn(Collections.emptyMap()).anyTimes();
+        EasyMock.expect(row.getColumnValues()).andReturn(Collections.singletonMap("FIELD", value)).anyTimes();
+        EasyMock.replay(row);
+        return row;
+    }
+    
+    @Test
+    public void testCreateMultiRowInsert() {
+        Assert.assertEquals(12, CachedResultsLoader.countParameters(INSERT));
+        String tuple = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String multiRowInsert = CachedResultsLoader.createMultiRowInsert(INSERT, 3);
+        Assert.assertEquals(INSERT + "," + tuple + "," + tuple, multiRowInsert);
+        Assert.assertEquals(36, CachedResultsLoader.countParameters(multiRowInsert));
+        Assert.assertNull(CachedResultsLoader.createMultiRowInsert("INSERT INTO t SELECT * FROM template", 3));
+    }
+    
+    @Test
+    public void testLoad() throws Exception {
+        for (int threads : new int[] {0, 1, 3}) {
+            written.clear();
+            Map<String,Integer> fieldMap = new HashMap<>();
+            try (CachedResultsLoader loader = new CachedResultsLoader(createDataSource(100, false), INSERT, executor, threads, 10000, 2, 10, 4)) {
+                for (int i = 0; i < 1001; i++) {
+                    Assert.assertTrue(loader.addRow("me", "query", "logic", fieldMap, createRow(Integer.toString(i), "value" + i)));
+                }
+                loader.finish();
+                Assert.assertEquals(1001, loader.getRowsLoaded());
+            }
+            Assert.assertEquals(1001, written.size());
+            Assert.assertEquals("value500", written.get("500"));
+            Assert.assertEquals(Collections.singletonMap("FIELD", 11), fieldMap);
+        }
+        Assert.assertTrue(statements.contains(CachedResultsLoader.createMultiRowInsert(INSERT, 4)));
+    }
+    
+    @Test
+    public void testTruncation() throws Exception {
+        Map<String,Integer> fieldMap = new HashMap<>();
+        try (CachedResultsLoader loader = new CachedResultsLoader(createDataSource(20, false), INSERT, executor, 2, 10000, 2, 10, 4)) {
+            for (int i = 0; i < 8; i++) {
+                loader.addRow("me", "query", "logic", fieldMap, createRow(Integer.toString(i), i == 5 ? "0123456789012345678901234567890123456789" : "short"));
+            }
+            loader.finish();
+        }
+        Assert.assertEquals(8, written.size());
+        Assert.assertEquals("short", written.get("4"));
+        // halved until short enough to write
+        Assert.assertEquals("01234<truncated>", written.get("5"));
+    }
+    
+    @Test
+    public void testSaturatedExecutor() throws Exception {
+        // an executor whose only thread is busy with other work until the load is done
+        ExecutorService saturated = Executors.newSingleThreadExecutor();
+        CountDownLatch busy = new CountDownLatch(1);
+        saturated.submit(() -> {
+            busy.await();
+            return null;
+        });
+        try {
+            long start = System.currentTimeMillis();
+            try (CachedResultsLoader loader = new CachedResultsLoader(createDataSource(100, false), INSERT, saturated, 2, 100, 2, 10, 4)) {
+                for (int i = 0; i < 1001; i++) {
+                    Assert.assertTrue(loader.addRow("me", "query", "logic", new HashMap<>(), createRow(Integer.toString(i), "value" + i)));
+                }
+                loader.finish();
+                Assert.assertEquals(1001, loader.getRowsLoaded());
+            }
+            // the loading thread wrote the rows once the writers did not start, rather than waiting for them
+            Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+            Assert.assertEquals(1001, written.size());
+            Assert.assertEquals("value500", written.get("500"));
+        } finally {
+            busy.countDown();
+            saturated.shutdown();
+        }
+        // the abandoned writers never run
+        Assert.assertTrue(saturated.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1001, written.size());
+    }
+    
+    @Test(expected = QueryException.class)
+    public void testTableMissing() throws Exception {
+        try (CachedResultsLoader loader = new CachedResultsLoader(createDataSource(100, true), INSERT, executor, 2, 10000, 2, 10, 4)) {
+            for (int i = 0; i < 1000; i++) {
+                loader.addRow("me", "query", "logic", new HashMap<>(), createRow(Integer.toString(i), "value"));
+            }
+            loader.finish();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorOrder;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
 
 @XmlAccessorType(XmlAccessType.NONE)
 @XmlAccessorOrder(XmlAccessOrder.ALPHABETICAL)
@@ -15,6 +16,11 @@ public class QueryMetricSummary implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final float MS_PER_S = 1000f;
     
+    /**
+     * The upper bounds, in ms, of the page response time buckets. The last bucket counts every page slower than the last bound.
+     */
+    public static final long[] PAGE_RESPONSE_TIME_BOUNDS = {100L, 1000L, 10000L, 60000L};
+    
     @XmlElement(name = "QueryCount")
     private long queryCount = 0L;
     @XmlElement(name = "MinimumPageResponseTime")
@@ -31,6 +37,9 @@ public class QueryMetricSummary implements Serializable {
     private long totalPageResultSize = 0L;
     @XmlElement(name = "MaximumPageResultSize")
     private long maxPageResultSize = 0;
+    @XmlElementWrapper(name = "PageResponseTimeCounts")
+    @XmlElement(name = "Count")
+    private long[] pageResponseTimeCounts = new long[PAGE_RESPONSE_TIME_BOUNDS.length + 1];
     
     public long getQueryCount() {
         return queryCount;
@@ -96,6 +105,30 @@ public class QueryMetricSummary implements Serializable {
         this.maxPageResultSize = maxPageResultSize;
     }
     
+    public long[] getPageResponseTimeCounts() {
+        return pageResponseTimeCounts;
+    }
+    
+    public void setPageResponseTimeCounts(long[] pageResponseTimeCounts) {
+        this.pageResponseTimeCounts = pageResponseTimeCounts;
+    }
+    
+    /**
+     * @return the bucket of {@link #getPageResponseTimeCounts()} that a page response time falls in
+     */
+    public static int getPageResponseTimeBucket(long responseTime) {
+        int bucket = 0;
+        while (bucket < PAGE_RESPONSE_TIME_BOUNDS.length && responseTime > PAGE_RESPONSE_TIME_BOUNDS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+    
+    public void addPageResponseTimeCount(int bucket, long count) {
+        long sum = this.pageResponseTimeCounts[bucket] + count;
+        this.pageResponseTimeCounts[bucket] = sum < 0 ? Long.MAX_VALUE : sum;
+    }
+    
     public float getAvgPageResultSize() {
         if (0 == this.totalPages)
             return 0;
@@ -154,7 +187,7 @@ public class QueryMetricSummary implements Serializable {
         }
         
         this.totalPages++;
-        
+        addPageResponseTimeCount(getPageResponseTimeBucket(responseTime), 1);
     }
     
 }
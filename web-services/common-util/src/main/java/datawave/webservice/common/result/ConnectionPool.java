@@ -44,6 +44,18 @@ public class ConnectionPool implements Serializable, Comparable<ConnectionPool>
     @XmlElement(name = "NumWaiting")
     private Integer numWaiting = null;
     
+    @XmlElement(name = "NumWaitTimes")
+    private Long numWaitTimes = null;
+    
+    @XmlElement(name = "MeanWaitTime")
+    private Double meanWaitTime = null;
+    
+    @XmlElement(name = "P99WaitTime")
+    private Long p99WaitTime = null;
+    
+    @XmlElement(name = "MaxWaitTime")
+    private Long maxWaitTime = null;
+    
     @XmlElementWrapper(name = "ConnectionRequests")
     @XmlElement(name = "Connection")
     private List<Connection> connectionRequests = null;
@@ -88,6 +100,41 @@ public class ConnectionPool implements Serializable, Comparable<ConnectionPool>
         this.numWaiting = numWaiting;
     }
     
+    /**
+     * @return the number of connections borrowed within the window the wait times cover
+     */
+    public Long getNumWaitTimes() {
+        return numWaitTimes;
+    }
+    
+    public void setNumWaitTimes(Long numWaitTimes) {
+        this.numWaitTimes = numWaitTimes;
+    }
+    
+    public Double getMeanWaitTime() {
+        return meanWaitTime;
+    }
+    
+    public void setMeanWaitTime(Double meanWaitTime) {
+        this.meanWaitTime = meanWaitTime;
+    }
+    
+    public Long getP99WaitTime() {
+        return p99WaitTime;
+    }
+    
+    public void setP99WaitTime(Long p99WaitTime) {
+        this.p99WaitTime = p99WaitTime;
+    }
+    
+    public Long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+    
+    public void setMaxWaitTime(Long maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+    
     public List<Connection> getConnectionRequests() {
         return connectionRequests;
     }
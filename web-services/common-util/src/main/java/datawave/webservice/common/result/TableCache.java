@@ -29,9 +29,18 @@ public class TableCache implements Serializable {
     @XmlAttribute
     private Long maxRows = null;
     
+    @XmlAttribute
+    private Long fullReloadInterval = null;
+    
     @XmlAttribute
     private Date lastRefresh = null;
     
+    @XmlAttribute
+    private Long lastReloadDuration = null;
+    
+    @XmlAttribute
+    private Long lastReloadCount = null;
+    
     @XmlAttribute
     private Boolean currentlyRefreshing = null;
     
@@ -55,10 +64,22 @@ public class TableCache implements Serializable {
         return maxRows;
     }
     
+    public Long getFullReloadInterval() {
+        return fullReloadInterval;
+    }
+    
     public Date getLastRefresh() {
         return lastRefresh;
     }
     
+    public Long getLastReloadDuration() {
+        return lastReloadDuration;
+    }
+    
+    public Long getLastReloadCount() {
+        return lastReloadCount;
+    }
+    
     public Boolean getCurrentlyRefreshing() {
         return currentlyRefreshing;
     }
@@ -83,10 +104,22 @@ public class TableCache implements Serializable {
         this.maxRows = maxRows;
     }
     
+    public void setFullReloadInterval(Long fullReloadInterval) {
+        this.fullReloadInterval = fullReloadInterval;
+    }
+    
     public void setLastRefresh(Date lastRefresh) {
         this.lastRefresh = lastRefresh;
     }
     
+    public void setLastReloadDuration(Long lastReloadDuration) {
+        this.lastReloadDuration = lastReloadDuration;
+    }
+    
+    public void setLastReloadCount(Long lastReloadCount) {
+        this.lastReloadCount = lastReloadCount;
+    }
+    
     public void setCurrentlyRefreshing(Boolean currentlyRefreshing) {
         this.currentlyRefreshing = currentlyRefreshing;
     }
@@ -45,4 +45,37 @@ public class CachedResultsConfiguration {
     public int getRowsPerBatch() {
         return Integer.parseInt(getParameters().get("ROWS_PER_BATCH"));
     }
+    
+    /**
+     * @return the number of threads writing rows to the database during a load, or 0 to write them from the loading thread
+     */
+    public int getLoaderThreads() {
+        return getIntParameter("LOADER_THREADS", 4);
+    }
+    
+    /**
+     * @return the milliseconds to wait for a writer to start during a load before writing rows from the loading thread
+     */
+    public int getLoaderStartTimeout() {
+        return getIntParameter("LOADER_START_TIMEOUT_MILLIS", 10000);
+    }
+    
+    /**
+     * @return the number of batches of rows that may wait for a writer during a load
+     */
+    public int getLoaderQueueSize() {
+        return getIntParameter("LOADER_QUEUE_SIZE", 8);
+    }
+    
+    /**
+     * @return the most rows to write with one multi-row INSERT statement, or 1 to write each row with its own statement
+     */
+    public int getRowsPerInsert() {
+        return getIntParameter("ROWS_PER_INSERT", 50);
+    }
+    
+    private int getIntParameter(String name, int defaultValue) {
+        String value = getParameters().get(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : Integer.parseInt(value.trim());
+    }
 }
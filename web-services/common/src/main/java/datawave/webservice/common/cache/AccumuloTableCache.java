@@ -31,6 +31,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import datawave.annotation.Required;
 import datawave.configuration.DatawaveEmbeddedProjectStageHolder;
 import datawave.interceptor.RequiredInterceptor;
@@ -80,6 +82,9 @@ public class AccumuloTableCache {
     @Inject
     private AccumuloTableCacheConfiguration accumuloTableCacheConfiguration;
     
+    @Inject
+    private MetricRegistry metricRegistry;
+    
     @Inject
     @ConfigProperty(name = "dw.cacheCoordinator.evictionReaperIntervalSeconds", defaultValue = "30")
     private int evictionReaperIntervalInSeconds;
@@ -165,7 +170,22 @@ public class AccumuloTableCache {
             }
             detail.setWatcher(cacheCoordinator);
             details.put(entry.getKey(), entry.getValue());
-            
+            registerReloadMetrics(tableName, detail);
+        }
+    }
+    
+    // export the time and entry count of the last reload of each table, such as dw.tableCache.DatawaveMetadata.reloadTime
+    private void registerReloadMetrics(String tableName, final TableCache detail) {
+        if (metricRegistry == null) {
+            return;
+        }
+        String reloadTime = MetricRegistry.name("dw.tableCache", tableName, "reloadTime");
+        String reloadCount = MetricRegistry.name("dw.tableCache", tableName, "reloadCount");
+        try {
+            metricRegistry.register(reloadTime, (Gauge<Long>) detail::getLastReloadDuration);
+            metricRegistry.register(reloadCount, (Gauge<Long>) detail::getLastReloadCount);
+        } catch (IllegalArgumentException e) {
+            log.warn("Table cache reload metrics for " + tableName + " are already registered");
         }
     }
     
@@ -315,6 +335,9 @@ public class AccumuloTableCache {
             t.setAuthorizations(entry.getValue().getAuths());
             t.setReloadInterval(entry.getValue().getReloadInterval());
             t.setMaxRows(entry.getValue().getMaxRows());
+            t.setFullReloadInterval(entry.getValue().getFullReloadInterval());
+            t.setLastReloadDuration(entry.getValue().getLastReloadDuration());
+            t.setLastReloadCount(entry.getValue().getLastReloadCount());
             t.setLastRefresh(entry.getValue().getLastRefresh());
             t.setCurrentlyRefreshing((entry.getValue().getReference() != null));
             response.getCaches().add(t);
@@ -24,6 +24,10 @@ public class AccumuloTableCacheConfiguration {
     @Inject
     @ConfigProperty(name = "dw.cache.reloadInterval", defaultValue = "86400000")
     private long reloadInterval;
+    // reloads in between full reloads only copy what changed, 0 makes every reload a full one
+    @Inject
+    @ConfigProperty(name = "dw.cache.fullReloadInterval", defaultValue = "0")
+    private long fullReloadInterval;
     
     private Map<String,TableCache> caches = new HashMap<>();
     
@@ -34,6 +38,7 @@ public class AccumuloTableCacheConfiguration {
             cache.setTableName(tableName);
             cache.setConnectionPoolName(poolName);
             cache.setReloadInterval(reloadInterval);
+            cache.setFullReloadInterval(fullReloadInterval);
             caches.put(tableName, cache);
         }
     }
@@ -29,8 +29,10 @@ import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.user.RegExFilter;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.curator.framework.recipes.locks.InterProcessLock;
 import org.apache.log4j.Logger;
 
 import com.google.common.collect.Lists;
@@ -39,6 +41,11 @@ public class BaseTableCache implements Serializable, TableCache {
     
     private static final long serialVersionUID = 1L;
     
+    private static final long NO_HIGH_WATER_MARK = Long.MIN_VALUE;
+    // entries can become visible after newer ones have been copied, so each incremental reload looks back a little way
+    private static final long INCREMENTAL_OVERLAP_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final String RELOAD_MUTEX = "reload";
+    
     private final transient Logger log = Logger.getLogger(this.getClass());
     
     /** should be set by configuration **/
@@ -47,6 +54,7 @@ public class BaseTableCache implements Serializable, TableCache {
     private String auths = null;
     private long reloadInterval = 0;
     private long maxRows = Long.MAX_VALUE;
+    private long fullReloadInterval = 0;
     
     /** set programatically **/
     private Date lastRefresh = new Date(0);
@@ -54,6 +62,10 @@ public class BaseTableCache implements Serializable, TableCache {
     private transient InMemoryInstance instance = null;
     private SharedCacheCoordinator watcher = null;
     private Future<Boolean> reference = null;
+    private Date lastFullRefresh = new Date(0);
+    private long highWaterMark = NO_HIGH_WATER_MARK;
+    private long lastReloadDuration = 0;
+    private long lastReloadCount = 0;
     
     private ReentrantLock lock = new ReentrantLock();
     
@@ -147,6 +159,26 @@ public class BaseTableCache implements Serializable, TableCache {
         this.reference = reference;
     }
     
+    @Override
+    public long getFullReloadInterval() {
+        return fullReloadInterval;
+    }
+    
+    @Override
+    public void setFullReloadInterval(long fullReloadInterval) {
+        this.fullReloadInterval = fullReloadInterval;
+    }
+    
+    @Override
+    public long getLastReloadDuration() {
+        return lastReloadDuration;
+    }
+    
+    @Override
+    public long getLastReloadCount() {
+        return lastReloadCount;
+    }
+    
     @Override
     public long getMaxRows() {
         return this.maxRows;
@@ -165,9 +197,21 @@ public class BaseTableCache implements Serializable, TableCache {
         BatchScanner scanner = null;
         BatchWriter writer = null;
         Connector accumuloConn = null;
+        InterProcessLock reloadMutex = null;
         
         String tempTableName = tableName + "Temp";
         try {
+            // only one server reloads a table at a time, the others try again on their next scheduled check
+            if (null != watcher) {
+                InterProcessLock mutex = watcher.getMutex(RELOAD_MUTEX);
+                if (!mutex.acquire(0, TimeUnit.SECONDS)) {
+                    log.debug("Another server is reloading table: " + tableName + ", will try again later");
+                    return false;
+                }
+                reloadMutex = mutex;
+            }
+            
+            long start = System.currentTimeMillis();
             Map<String,String> map = connectionFactory.getTrackingMap(Thread.currentThread().getStackTrace());
             accumuloConn = connectionFactory.getConnection(connectionPoolName, Priority.ADMIN, map);
             if (accumuloConn instanceof WrappedConnector) {
@@ -184,24 +228,39 @@ public class BaseTableCache implements Serializable, TableCache {
             Connector instanceConnector = instance.getConnector(AccumuloTableCache.MOCK_USERNAME, AccumuloTableCache.MOCK_PASSWORD);
             instanceConnector.securityOperations().changeUserAuthorizations(AccumuloTableCache.MOCK_USERNAME, authorizations);
             
-            createNamespaceIfNecessary(instanceConnector.namespaceOperations(), tempTableName);
-            
-            if (instanceConnector.tableOperations().exists(tempTableName)) {
-                instanceConnector.tableOperations().delete(tempTableName);
+            boolean incremental = isIncrementalReload(start) && instanceConnector.tableOperations().exists(tableName);
+            if (incremental) {
+                // write the entries newer than what was last copied straight into the cached table
+                writer = instanceConnector.createBatchWriter(tableName, 10L * (1024L * 1024L), 100L, 1);
+            } else {
+                createNamespaceIfNecessary(instanceConnector.namespaceOperations(), tempTableName);
+                
+                if (instanceConnector.tableOperations().exists(tempTableName)) {
+                    instanceConnector.tableOperations().delete(tempTableName);
+                }
+                
+                instanceConnector.tableOperations().create(tempTableName);
+                
+                writer = instanceConnector.createBatchWriter(tempTableName, 10L * (1024L * 1024L), 100L, 1);
             }
             
-            instanceConnector.tableOperations().create(tempTableName);
-            
-            writer = instanceConnector.createBatchWriter(tempTableName, 10L * (1024L * 1024L), 100L, 1);
-            
             setupScanner(scanner);
+            if (incremental) {
+                IteratorSetting settings = new IteratorSetting(101, "skipOlderEntries", TimestampFilter.class);
+                TimestampFilter.setStart(settings, highWaterMark - INCREMENTAL_OVERLAP_MS, true);
+                scanner.addScanIterator(settings);
+            }
             
             Iterator<Entry<Key,Value>> iter = scanner.iterator();
             long count = 0;
+            long maxTimestamp = incremental ? highWaterMark : Long.MIN_VALUE;
+            boolean truncated = false;
             while (iter.hasNext()) {
                 
-                if (count > maxRows)
+                if (count > maxRows) {
+                    truncated = true;
                     break;
+                }
                 Entry<Key,Value> value = iter.next();
                 
                 Key valueKey = value.getKey();
@@ -210,16 +269,34 @@ public class BaseTableCache implements Serializable, TableCache {
                 m.put(valueKey.getColumnFamily(), valueKey.getColumnQualifier(), new ColumnVisibility(valueKey.getColumnVisibility()), valueKey.getTimestamp(),
                                 value.getValue());
                 writer.addMutation(m);
+                maxTimestamp = Math.max(maxTimestamp, valueKey.getTimestamp());
                 count++;
             }
+            if (!incremental) {
+                // the batch writer has to be flushed before the table is renamed out from under it
+                writer.close();
+                writer = null;
+                try {
+                    instanceConnector.tableOperations().delete(tableName);
+                } catch (TableNotFoundException e) {
+                    // the table will not exist the first time this is run
+                }
+                instanceConnector.tableOperations().rename(tempTableName, tableName);
+            }
+            
+            // the batch scanner returns entries out of order, so a truncated scan cannot say which entries are still missing
+            if (truncated) {
+                highWaterMark = NO_HIGH_WATER_MARK;
+            } else if (count > 0 || !incremental) {
+                highWaterMark = maxTimestamp;
+            }
             this.lastRefresh = new Date();
-            try {
-                instanceConnector.tableOperations().delete(tableName);
-            } catch (TableNotFoundException e) {
-                // the table will not exist the first time this is run
+            if (!incremental) {
+                this.lastFullRefresh = this.lastRefresh;
             }
-            instanceConnector.tableOperations().rename(tempTableName, tableName);
-            log.info("Cached " + count + " k,v for table: " + tableName);
+            this.lastReloadDuration = System.currentTimeMillis() - start;
+            this.lastReloadCount = count;
+            log.info("Cached " + count + " k,v for table: " + tableName + " in " + lastReloadDuration + "ms" + (incremental ? " (incremental)" : ""));
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             throw e;
@@ -238,11 +315,28 @@ public class BaseTableCache implements Serializable, TableCache {
             } catch (Exception e) {
                 log.warn("Error closing batch writer for table: " + tempTableName, e);
             }
+            try {
+                if (null != reloadMutex)
+                    reloadMutex.release();
+            } catch (Exception e) {
+                log.warn("Error releasing reload lock for table: " + tableName, e);
+            }
             lock.unlock();
         }
         return true;
     }
     
+    /**
+     * A reload only copies what changed when full reloads are spread out by a {@link #getFullReloadInterval()}, one is not due, and the cache was not reset by
+     * {@link #setLastRefresh(Date)}. Entries that were deleted from the table are only dropped by the next full reload.
+     */
+    private boolean isIncrementalReload(long now) {
+        if (fullReloadInterval <= 0 || highWaterMark == NO_HIGH_WATER_MARK || lastRefresh.getTime() == 0) {
+            return false;
+        }
+        return (now - lastFullRefresh.getTime()) < fullReloadInterval;
+    }
+    
     public void setupScanner(BatchScanner scanner) {
         scanner.setRanges(Lists.newArrayList(new Range()));
         Map<String,String> options = new HashMap<>();
@@ -31,6 +31,12 @@ public interface TableCache extends Callable<Boolean>, Serializable {
     
     long getMaxRows();
     
+    long getFullReloadInterval();
+    
+    long getLastReloadDuration();
+    
+    long getLastReloadCount();
+    
     void setTableName(String tableName);
     
     void setConnectionPoolName(String connectionPoolName);
@@ -51,6 +57,8 @@ public interface TableCache extends Callable<Boolean>, Serializable {
     
     void setMaxRows(long maxRows);
     
+    void setFullReloadInterval(long fullReloadInterval);
+    
     Boolean call() throws Exception;
     
 }
@@ -1,5 +1,8 @@
 package datawave.webservice.common.connection;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
 import datawave.configuration.DatawaveEmbeddedProjectStageHolder;
 import datawave.security.authorization.DatawavePrincipal;
 import datawave.webservice.common.cache.AccumuloTableCache;
@@ -97,6 +100,9 @@ public class AccumuloConnectionFactoryBean implements AccumuloConnectionFactory
     @Inject
     private ConnectionPoolsConfiguration connectionPoolsConfiguration;
     
+    @Inject
+    private MetricRegistry metricRegistry;
+    
     private String defaultPoolName = null;
     
     @PostConstruct
@@ -117,6 +123,7 @@ public class AccumuloConnectionFactoryBean implements AccumuloConnectionFactory
             p.put(Priority.NORMAL, createConnectionPool(conf, conf.getNormalPriorityPoolSize()));
             p.put(Priority.LOW, createConnectionPool(conf, conf.getLowPriorityPoolSize()));
             this.pools.put(entry.getKey(), Collections.unmodifiableMap(p));
+            registerWaitTimes(entry.getKey(), p);
             try {
                 setupMockAccumuloUser(conf, p.get(Priority.NORMAL), instances);
             } catch (Exception e) {
@@ -154,7 +161,7 @@ public class AccumuloConnectionFactoryBean implements AccumuloConnectionFactory
     private AccumuloConnectionPool createConnectionPool(ConnectionPoolConfiguration conf, int limit) {
         AccumuloConnectionPoolFactory factory = new AccumuloConnectionPoolFactory(conf.getUsername(), conf.getPassword(), conf.getZookeepers(),
                         conf.getInstance());
-        AccumuloConnectionPool pool = new AccumuloConnectionPool(factory);
+        AccumuloConnectionPool pool = new AccumuloConnectionPool(factory, conf.getAgingMillis());
         pool.setTestOnBorrow(true);
         pool.setTestOnReturn(true);
         pool.setMaxTotal(limit);
@@ -169,6 +176,21 @@ public class AccumuloConnectionFactoryBean implements AccumuloConnectionFactory
         return pool;
     }
     
+    // export the time callers wait for a connection from each pool, such as dw.connectionPool.WAREHOUSE.NORMAL.waitTime
+    private void registerWaitTimes(String poolName, Map<Priority,AccumuloConnectionPool> p) {
+        if (metricRegistry == null) {
+            return;
+        }
+        for (Entry<Priority,AccumuloConnectionPool> poolEntry : p.entrySet()) {
+            String name = MetricRegistry.name("dw.connectionPool", poolName, poolEntry.getKey().name(), "waitTime");
+            try {
+                metricRegistry.register(name, poolEntry.getValue().getWaitTimes(poolEntry.getKey()));
+            } catch (IllegalArgumentException e) {
+                log.warn("Connection pool wait time metric " + name + " is already registered");
+            }
+        }
+    }
+    
     private void setupMockAccumuloUser(ConnectionPoolConfiguration conf, AccumuloConnectionPool pool, HashMap<String,Pair<String,PasswordToken>> instances)
                     throws Exception {
         Connector c = null;
@@ -265,7 +287,7 @@ public class AccumuloConnectionFactoryBean implements AccumuloConnectionFactory
                 trackingMap.put("proxyServers", proxyServers.toString());
         }
         AccumuloConnectionPool pool = pools.get(poolName).get(priority);
-        Connector c = pool.borrowObject(trackingMap);
+        Connector c = pool.borrowObject(priority, trackingMap);
         Connector mock = cache.getInstance().getConnector(pool.getFactory().getUsername(), new PasswordToken(pool.getFactory().getPassword()));
         WrappedConnector wrappedConnector = new WrappedConnector(c, mock);
         String classLoaderContext = System.getProperty("dw.accumulo.classLoader.context");
@@ -356,8 +378,8 @@ public class AccumuloConnectionFactoryBean implements AccumuloConnectionFactory
                 MutableInt maxIdle = new MutableInt();
                 MutableInt numIdle = new MutableInt();
                 MutableInt numWaiting = new MutableInt();
-                // getConnectionPoolStats will collect the tracking maps and maxActive, numActive, maxIdle, numIdle while synchronized
-                // to ensure consistency between the GenericObjectPool and the tracking maps
+                // getConnectionPoolStats will collect the tracking maps and maxActive, numActive, maxIdle, numIdle without blocking borrowers, so they
+                // may differ by a connection borrowed or returned while they are collected
                 List<Map<String,String>> requestingConnectionsMap = p.getConnectionPoolStats(maxActive, numActive, maxIdle, numIdle, numWaiting);
                 
                 ConnectionPool poolInfo = new ConnectionPool();
@@ -369,6 +391,13 @@ public class AccumuloConnectionFactoryBean implements AccumuloConnectionFactory
                 poolInfo.setNumIdle(numIdle.toInteger());
                 poolInfo.setPoolName(poolName);
                 
+                Histogram waitTimes = p.getWaitTimes(priority);
+                Snapshot snapshot = waitTimes.getSnapshot();
+                poolInfo.setNumWaitTimes((long) snapshot.size());
+                poolInfo.setMeanWaitTime(snapshot.getMean());
+                poolInfo.setP99WaitTime((long) snapshot.get99thPercentile());
+                poolInfo.setMaxWaitTime(snapshot.getMax());
+                
                 List<Connection> requestingConnections = new ArrayList<>();
                 for (Map<String,String> m : requestingConnectionsMap) {
                     Connection c = new Connection();
@@ -3,25 +3,62 @@ package datawave.webservice.common.connection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.SlidingTimeWindowReservoir;
+import datawave.webservice.common.connection.AccumuloConnectionFactory.Priority;
 import org.apache.accumulo.core.client.Connector;
 import org.apache.commons.lang.mutable.MutableInt;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.log4j.Logger;
 
+/**
+ * A pool of Accumulo connectors which tracks who is waiting for and holding each connector. When the pool is exhausted, borrowers wait in a
+ * {@link PriorityWaitQueue}, and the time each waits is recorded in a histogram for its priority.
+ */
 public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
     
+    public static final long DEFAULT_AGING_MILLIS = 10000L;
+    
     private static final Logger log = Logger.getLogger(AccumuloConnectionPool.class);
-    private final Map<Long,Map<String,String>> threadToTrackingMapMap = Collections.synchronizedMap(new HashMap<>());
-    private final Map<Connector,Map<String,String>> connectorToTrackingMapMap = Collections.synchronizedMap(new HashMap<>());
+    private final Map<Long,Map<String,String>> threadToTrackingMapMap = new ConcurrentHashMap<>();
+    private final Map<Connector,Map<String,String>> connectorToTrackingMapMap = new ConcurrentHashMap<>();
+    private final Map<Priority,Histogram> waitTimes = new EnumMap<>(Priority.class);
+    private final PriorityWaitQueue waitQueue;
     private AccumuloConnectionPoolFactory factory = null;
     
     public AccumuloConnectionPool(AccumuloConnectionPoolFactory factory) {
+        this(factory, DEFAULT_AGING_MILLIS);
+    }
+    
+    /**
+     * @param factory
+     *            the factory creating the connectors
+     * @param agingMillis
+     *            how long a borrower must wait to be served ahead of newer borrowers of the next higher priority
+     */
+    public AccumuloConnectionPool(AccumuloConnectionPoolFactory factory, long agingMillis) {
         super(factory);
         this.factory = factory;
+        this.waitQueue = new PriorityWaitQueue(getMaxTotal(), agingMillis);
+        for (Priority priority : Priority.values()) {
+            // the wait times of the last five minutes
+            waitTimes.put(priority, new Histogram(new SlidingTimeWindowReservoir(5, TimeUnit.MINUTES)));
+        }
+    }
+    
+    @Override
+    public void setMaxTotal(int maxTotal) {
+        super.setMaxTotal(maxTotal);
+        // called by the super constructor before the wait queue exists
+        if (waitQueue != null) {
+            waitQueue.setLimit(maxTotal);
+        }
     }
     
     @Override
@@ -30,15 +67,35 @@ public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
     }
     
     public Connector borrowObject(Map<String,String> trackingMap) throws Exception {
+        return borrowObject(Priority.NORMAL, trackingMap);
+    }
+    
+    /**
+     * Borrow a connector, waiting behind borrowers of a higher or aged priority if the pool is exhausted.
+     * 
+     * @param priority
+     *            the priority of the borrower
+     * @param trackingMap
+     *            describes the borrower while it waits for and holds the connector
+     * @return the connector
+     * @throws Exception
+     *             if a connector could not be created or validated
+     */
+    public Connector borrowObject(Priority priority, Map<String,String> trackingMap) throws Exception {
         
         Long threadId = Thread.currentThread().getId();
         Connector o = null;
+        boolean acquired = false;
         try {
-            trackingMap.put("connection.state.start", Long.valueOf(System.currentTimeMillis()).toString());
+            long start = System.currentTimeMillis();
+            trackingMap.put("connection.state.start", Long.valueOf(start).toString());
             trackingMap.put("state", AccumuloConnectionFactory.State.WAITING.toString());
             trackingMap.put("thread.name", Thread.currentThread().getName());
             threadToTrackingMapMap.put(threadId, trackingMap);
+            waitQueue.acquire(priority);
+            acquired = true;
             o = super.borrowObject();
+            waitTimes.get(priority).update(System.currentTimeMillis() - start);
             log.debug(System.currentTimeMillis() + " thread: " + threadId + " borrowed connector: " + o);
             if (log.isTraceEnabled()) {
                 log.trace(System.currentTimeMillis() + " " + Arrays.toString(Thread.currentThread().getStackTrace()));
@@ -54,6 +111,9 @@ public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
             
         } finally {
             threadToTrackingMapMap.remove(threadId);
+            if (acquired && o == null) {
+                waitQueue.release();
+            }
         }
         return o;
     }
@@ -65,46 +125,47 @@ public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
     
     public void returnObject(Connector connector) {
         if (connector != null) {
-            synchronized (connectorToTrackingMapMap) {
-                connectorToTrackingMapMap.remove(connector);
-                Long threadId = Thread.currentThread().getId();
-                log.debug(System.currentTimeMillis() + " thread: " + threadId + " returned connector: " + connector);
-                if (log.isTraceEnabled()) {
-                    log.trace(System.currentTimeMillis() + " " + Arrays.toString(Thread.currentThread().getStackTrace()));
-                }
+            boolean tracked = connectorToTrackingMapMap.remove(connector) != null;
+            Long threadId = Thread.currentThread().getId();
+            log.debug(System.currentTimeMillis() + " thread: " + threadId + " returned connector: " + connector);
+            if (log.isTraceEnabled()) {
+                log.trace(System.currentTimeMillis() + " " + Arrays.toString(Thread.currentThread().getStackTrace()));
             }
             
-            super.returnObject(connector);
+            try {
+                super.returnObject(connector);
+            } finally {
+                // only a connector handed out by borrowObject holds a permit
+                if (tracked) {
+                    waitQueue.release();
+                }
+            }
         }
     }
     
     public List<Map<String,String>> getConnectionPoolStats(MutableInt maxTotal, MutableInt numActive, MutableInt maxIdle, MutableInt numIdle,
                     MutableInt numWaiting) {
         
+        // the tracking maps are read without blocking borrowers, so the values are a snapshot which may be off by the borrows and returns made while
+        // it is taken
         ArrayList<Map<String,String>> t = new ArrayList<>();
-        // no changes to underlying values while collecting metrics
-        synchronized (connectorToTrackingMapMap) {
-            // no changes to underlying values while collecting metrics
-            synchronized (threadToTrackingMapMap) {
-                // synchronize this last to prevent race condition for this lock underlying super type
-                synchronized (this) {
-                    if (!threadToTrackingMapMap.isEmpty()) {
-                        t.addAll(Collections.unmodifiableCollection(threadToTrackingMapMap.values()));
-                    }
-                    if (!connectorToTrackingMapMap.isEmpty()) {
-                        t.addAll(Collections.unmodifiableCollection(connectorToTrackingMapMap.values()));
-                    }
-                    maxTotal.setValue(getMaxTotal());
-                    numActive.setValue(getNumActive());
-                    maxIdle.setValue(getMaxIdle());
-                    numIdle.setValue(getNumIdle());
-                    numWaiting.setValue(getNumWaiters());
-                }
-            }
-        }
+        t.addAll(threadToTrackingMapMap.values());
+        t.addAll(connectorToTrackingMapMap.values());
+        maxTotal.setValue(getMaxTotal());
+        numActive.setValue(getNumActive());
+        maxIdle.setValue(getMaxIdle());
+        numIdle.setValue(getNumIdle());
+        numWaiting.setValue(waitQueue.getNumWaiting() + getNumWaiters());
         return Collections.unmodifiableList(t);
     }
     
+    /**
+     * @return the time in milliseconds borrowers of the priority have waited for a connector
+     */
+    public Histogram getWaitTimes(Priority priority) {
+        return waitTimes.get(priority);
+    }
+    
     public boolean connectorCameFromHere(Connector c) {
         return this.connectorToTrackingMapMap.containsKey(c);
     }
@@ -0,0 +1,131 @@
+package datawave.webservice.common.connection;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import datawave.webservice.common.connection.AccumuloConnectionFactory.Priority;
+
+/**
+ * Hands out a limited number of permits, one for each connection a pool may have active. When none are free, callers wait in order of priority, with aging:
+ * every agingMillis a caller has waited counts as one step up in priority, so that a LOW priority request is eventually served ahead of newer requests of a
+ * higher priority instead of being starved for as long as they keep arriving.
+ * 
+ * Since every waiter ages at the same rate, the order of two waiters never changes while they wait, and the queue is ordered by a rank fixed when the waiter
+ * arrives: its arrival time less agingMillis for every step of priority above LOW.
+ */
+public class PriorityWaitQueue {
+    
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    private final long agingMillis;
+    // a negative limit means there is no limit on the number of permits
+    private int limit;
+    private int taken = 0;
+    private long sequence = 0;
+    
+    public PriorityWaitQueue(int limit, long agingMillis) {
+        this.limit = limit;
+        this.agingMillis = agingMillis;
+    }
+    
+    /**
+     * Wait until a permit is free and no waiter is ahead of this one.
+     * 
+     * @param priority
+     *            the priority of the caller
+     * @throws InterruptedException
+     *             if interrupted while waiting, in which case no permit is taken
+     */
+    public void acquire(Priority priority) throws InterruptedException {
+        lock.lock();
+        try {
+            if (isFree() && waiters.isEmpty()) {
+                taken++;
+                return;
+            }
+            Waiter waiter = new Waiter(System.currentTimeMillis() - priority.ordinal() * agingMillis, sequence++, lock.newCondition());
+            waiters.add(waiter);
+            try {
+                while (!isFree() || waiters.peek() != waiter) {
+                    waiter.condition.await();
+                }
+            } catch (InterruptedException e) {
+                waiters.remove(waiter);
+                signalNext();
+                throw e;
+            }
+            waiters.remove(waiter);
+            taken++;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Give back a permit taken by {@link #acquire(Priority)}.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            taken--;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Change the number of permits, for instance when the maximum size of the pool changes. Permits already taken are kept until released.
+     */
+    public void setLimit(int limit) {
+        lock.lock();
+        try {
+            this.limit = limit;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getNumWaiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // must be called holding the lock
+    private boolean isFree() {
+        return limit < 0 || taken < limit;
+    }
+    
+    // must be called holding the lock
+    private void signalNext() {
+        Waiter next = waiters.peek();
+        if (next != null && isFree()) {
+            next.condition.signal();
+        }
+    }
+    
+    private static class Waiter implements Comparable<Waiter> {
+        private final long rank;
+        private final long sequence;
+        private final Condition condition;
+        
+        Waiter(long rank, long sequence, Condition condition) {
+            this.rank = rank;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+        
+        @Override
+        public int compareTo(Waiter other) {
+            int cmp = Long.compare(rank, other.rank);
+            return cmp != 0 ? cmp : Long.compare(sequence, other.sequence);
+        }
+    }
+}
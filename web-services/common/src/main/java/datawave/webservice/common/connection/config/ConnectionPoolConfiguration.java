@@ -12,6 +12,7 @@ public class ConnectionPoolConfiguration {
     private int normalPriorityPoolSize;
     private int highPriorityPoolSize;
     private int adminPriorityPoolSize;
+    private long agingMillis;
     
     public ConnectionPoolConfiguration(String poolName) {
         username = ConfigResolver.getPropertyValue("dw." + poolName + ".accumulo.userName");
@@ -22,6 +23,7 @@ public class ConnectionPoolConfiguration {
         normalPriorityPoolSize = Integer.parseInt(ConfigResolver.getPropertyValue("dw." + poolName + ".pool.normal.size", "50"));
         highPriorityPoolSize = Integer.parseInt(ConfigResolver.getPropertyValue("dw." + poolName + ".pool.high.size", "100"));
         adminPriorityPoolSize = Integer.parseInt(ConfigResolver.getPropertyValue("dw." + poolName + ".pool.admin.size", "200"));
+        agingMillis = Long.parseLong(ConfigResolver.getPropertyValue("dw." + poolName + ".pool.aging.millis", "10000"));
     }
     
     public String getUsername() {
@@ -56,4 +58,11 @@ public class ConnectionPoolConfiguration {
         return adminPriorityPoolSize;
     }
     
+    /**
+     * @return how long a request waiting for a connection must wait to be served ahead of newer requests of the next higher priority
+     */
+    public long getAgingMillis() {
+        return agingMillis;
+    }
+    
 }
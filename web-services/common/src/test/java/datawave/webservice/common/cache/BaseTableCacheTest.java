@@ -0,0 +1,212 @@
+package datawave.webservice.common.cache;
+
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.curator.framework.recipes.locks.InterProcessLock;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BaseTableCacheTest {
+    
+    private static final String TABLE_NAME = "DatawaveMetadata";
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    
+    private Connector source;
+    private InMemoryInstance cacheInstance;
+    private BaseTableCache cache;
+    
+    @Before
+    public void setup() throws Exception {
+        String name = UUID.randomUUID().toString();
+        source = new InMemoryInstance("source-" + name).getConnector("root", new PasswordToken(""));
+        source.tableOperations().create(TABLE_NAME);
+        cacheInstance = new InMemoryInstance("cache-" + name);
+        
+        AccumuloConnectionFactory connectionFactory = EasyMock.createNiceMock(AccumuloConnectionFactory.class);
+        EasyMock.expect(connectionFactory.getTrackingMap(EasyMock.anyObject())).andReturn(new HashMap<>()).anyTimes();
+        EasyMock.expect(connectionFactory.getConnection(EasyMock.anyString(), EasyMock.anyObject(), EasyMock.anyObject())).andReturn(source).anyTimes();
+        EasyMock.replay(connectionFactory);
+        
+        cache = new BaseTableCache();
+        cache.setTableName(TABLE_NAME);
+        cache.setConnectionPoolName("WAREHOUSE");
+        cache.setConnectionFactory(connectionFactory);
+        cache.setInstance(cacheInstance);
+        cache.setFullReloadInterval(HOUR);
+    }
+    
+    private void write(String row, long timestamp) throws Exception {
+        BatchWriter writer = source.createBatchWriter(TABLE_NAME, new BatchWriterConfig());
+        Mutation m = new Mutation(row);
+        m.put("e", "csv", timestamp, new Value(new byte[0]));
+        writer.addMutation(m);
+        writer.close();
+    }
+    
+    private void delete(String row, long timestamp) throws Exception {
+        BatchWriter writer = source.createBatchWriter(TABLE_NAME, new BatchWriterConfig());
+        Mutation m = new Mutation(row);
+        m.putDelete("e", "csv", timestamp);
+        writer.addMutation(m);
+        writer.close();
+    }
+    
+    private TreeSet<String> getCachedRows() throws Exception {
+        Connector connector = cacheInstance.getConnector(AccumuloTableCache.MOCK_USERNAME, AccumuloTableCache.MOCK_PASSWORD);
+        Scanner scanner = connector.createScanner(TABLE_NAME, new Authorizations());
+        TreeSet<String> rows = new TreeSet<>();
+        for (Map.Entry<Key,Value> entry : scanner) {
+            rows.add(entry.getKey().getRow().toString());
+        }
+        return rows;
+    }
+    
+    private static TreeSet<String> rows(String... rows) {
+        TreeSet<String> set = new TreeSet<>();
+        for (String row : rows) {
+            set.add(row);
+        }
+        return set;
+    }
+    
+    @Test
+    public void testIncrementalReload() throws Exception {
+        long now = System.currentTimeMillis();
+        write("a", now - 3 * HOUR);
+        write("b", now - 2 * HOUR);
+        
+        // the first reload is full
+        assertTrue(cache.call());
+        assertEquals(rows("a", "b"), getCachedRows());
+        assertEquals(2, cache.getLastReloadCount());
+        
+        // later reloads only copy the entries from a little before the newest one copied, so deletes and older entries wait for a full reload
+        write("c", now - HOUR);
+        write("old", now - 4 * HOUR);
+        delete("a", now);
+        assertTrue(cache.call());
+        assertEquals(2, cache.getLastReloadCount());
+        assertEquals(rows("a", "b", "c"), getCachedRows());
+        
+        // with nothing new only the overlap is copied again
+        assertTrue(cache.call());
+        assertEquals(1, cache.getLastReloadCount());
+        assertEquals(rows("a", "b", "c"), getCachedRows());
+    }
+    
+    @Test
+    public void testFullReloadInterval() throws Exception {
+        long now = System.currentTimeMillis();
+        write("a", now - 2 * HOUR);
+        cache.setFullReloadInterval(1);
+        assertTrue(cache.call());
+        
+        // once the full reload interval has passed the cache is rebuilt, which drops deleted entries and picks up old ones
+        Thread.sleep(10);
+        write("old", now - 4 * HOUR);
+        delete("a", now);
+        assertTrue(cache.call());
+        assertEquals(1, cache.getLastReloadCount());
+        assertEquals(rows("old"), getCachedRows());
+    }
+    
+    @Test
+    public void testNoFullReloadInterval() throws Exception {
+        long now = System.currentTimeMillis();
+        write("a", now - 2 * HOUR);
+        cache.setFullReloadInterval(0);
+        assertTrue(cache.call());
+        
+        // without a full reload interval every reload is full
+        delete("a", now);
+        assertTrue(cache.call());
+        assertTrue(getCachedRows().isEmpty());
+    }
+    
+    @Test
+    public void testResetForcesFullReload() throws Exception {
+        long now = System.currentTimeMillis();
+        write("a", now - 2 * HOUR);
+        assertTrue(cache.call());
+        
+        // resetting the cache through the last refresh time drops the high-water mark
+        write("old", now - 4 * HOUR);
+        cache.setLastRefresh(new Date(0));
+        assertTrue(cache.call());
+        assertEquals(2, cache.getLastReloadCount());
+        assertEquals(rows("a", "old"), getCachedRows());
+    }
+    
+    @Test
+    public void testTruncatedScanForcesFullReload() throws Exception {
+        long now = System.currentTimeMillis();
+        write("a", now - 3 * HOUR);
+        write("b", now - 2 * HOUR);
+        write("c", now - HOUR);
+        
+        // a truncated scan cannot tell which entries are missing, so the next reload is full as well
+        cache.setMaxRows(1);
+        assertTrue(cache.call());
+        assertEquals(2, cache.getLastReloadCount());
+        
+        cache.setMaxRows(Long.MAX_VALUE);
+        assertTrue(cache.call());
+        assertEquals(3, cache.getLastReloadCount());
+        assertEquals(rows("a", "b", "c"), getCachedRows());
+    }
+    
+    @Test
+    public void testReloadMutexHeld() throws Exception {
+        InterProcessLock mutex = EasyMock.createMock(InterProcessLock.class);
+        EasyMock.expect(mutex.acquire(0, TimeUnit.SECONDS)).andReturn(false);
+        SharedCacheCoordinator watcher = EasyMock.createMock(SharedCacheCoordinator.class);
+        EasyMock.expect(watcher.getMutex("reload")).andReturn(mutex);
+        
+        // the reload is skipped without touching accumulo while another server holds the mutex
+        AccumuloConnectionFactory connectionFactory = EasyMock.createMock(AccumuloConnectionFactory.class);
+        EasyMock.replay(mutex, watcher, connectionFactory);
+        cache.setConnectionFactory(connectionFactory);
+        cache.setWatcher(watcher);
+        
+        assertFalse(cache.call());
+        assertEquals(new Date(0), cache.getLastRefresh());
+        EasyMock.verify(mutex, watcher, connectionFactory);
+    }
+    
+    @Test
+    public void testReloadMutexReleased() throws Exception {
+        write("a", System.currentTimeMillis());
+        InterProcessLock mutex = EasyMock.createMock(InterProcessLock.class);
+        EasyMock.expect(mutex.acquire(0, TimeUnit.SECONDS)).andReturn(true);
+        mutex.release();
+        SharedCacheCoordinator watcher = EasyMock.createMock(SharedCacheCoordinator.class);
+        EasyMock.expect(watcher.getMutex("reload")).andReturn(mutex);
+        EasyMock.replay(mutex, watcher);
+        cache.setWatcher(watcher);
+        
+        assertTrue(cache.call());
+        assertEquals(rows("a"), getCachedRows());
+        EasyMock.verify(mutex, watcher);
+    }
+}
@@ -0,0 +1,86 @@
+package datawave.webservice.common.connection;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import datawave.webservice.common.connection.AccumuloConnectionFactory.Priority;
+import org.junit.Test;
+
+public class PriorityWaitQueueTest {
+    
+    private final List<Priority> served = new CopyOnWriteArrayList<>();
+    
+    private Thread startWaiter(PriorityWaitQueue queue, Priority priority) throws InterruptedException {
+        int waiting = queue.getNumWaiting();
+        Thread thread = new Thread(() -> {
+            try {
+                queue.acquire(priority);
+                served.add(priority);
+                queue.release();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        while (queue.getNumWaiting() == waiting) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+    
+    @Test
+    public void testServedByPriority() throws Exception {
+        PriorityWaitQueue queue = new PriorityWaitQueue(1, 60000L);
+        queue.acquire(Priority.NORMAL);
+        Thread low = startWaiter(queue, Priority.LOW);
+        Thread normal = startWaiter(queue, Priority.NORMAL);
+        Thread admin = startWaiter(queue, Priority.ADMIN);
+        Thread high = startWaiter(queue, Priority.HIGH);
+        assertEquals(4, queue.getNumWaiting());
+        
+        queue.release();
+        for (Thread thread : new Thread[] {low, normal, admin, high}) {
+            thread.join(10000L);
+        }
+        assertEquals(0, queue.getNumWaiting());
+        assertEquals(4, served.size());
+        assertEquals(Priority.ADMIN, served.get(0));
+        assertEquals(Priority.HIGH, served.get(1));
+        assertEquals(Priority.NORMAL, served.get(2));
+        assertEquals(Priority.LOW, served.get(3));
+    }
+    
+    @Test
+    public void testAging() throws Exception {
+        PriorityWaitQueue queue = new PriorityWaitQueue(1, 20L);
+        queue.acquire(Priority.NORMAL);
+        Thread low = startWaiter(queue, Priority.LOW);
+        // waiting longer than two aging periods puts the low priority waiter ahead of a new high priority one
+        Thread.sleep(100L);
+        Thread high = startWaiter(queue, Priority.HIGH);
+        
+        queue.release();
+        low.join(10000L);
+        high.join(10000L);
+        assertEquals(Priority.LOW, served.get(0));
+        assertEquals(Priority.HIGH, served.get(1));
+    }
+    
+    @Test
+    public void testSetLimit() throws Exception {
+        PriorityWaitQueue queue = new PriorityWaitQueue(1, 60000L);
+        queue.acquire(Priority.NORMAL);
+        Thread waiter = startWaiter(queue, Priority.LOW);
+        queue.setLimit(2);
+        waiter.join(10000L);
+        assertEquals(1, served.size());
+        
+        // unlimited
+        queue.setLimit(-1);
+        queue.acquire(Priority.LOW);
+        queue.acquire(Priority.LOW);
+        assertEquals(0, queue.getNumWaiting());
+    }
+}
@@ -55,12 +55,12 @@ public class EmbeddedAccumuloConnectionFactory implements AccumuloConnectionFact
     
     @Override
     public Connector getConnection(Priority priority, Map<String,String> trackingMap) throws Exception {
-        return pool.borrowObject(trackingMap);
+        return pool.borrowObject(priority, trackingMap);
     }
     
     @Override
     public Connector getConnection(String poolName, Priority priority, Map<String,String> trackingMap) throws Exception {
-        return pool.borrowObject(trackingMap);
+        return pool.borrowObject(priority, trackingMap);
     }
     
     @Override
@@ -35,6 +35,7 @@ public abstract class BaseQueryLogic<T> implements QueryLogic<T> {
     protected Iterator<T> iterator = (Iterator<T>) Collections.emptyList().iterator();
     private int maxPageSize = 0;
     private long pageByteTrigger = 0;
+    private int prefetchPages = 0;
     private boolean collectQueryMetrics = true;
     private String _connPoolName;
     private Set<String> authorizedDNs;
@@ -70,6 +71,7 @@ public abstract class BaseQueryLogic<T> implements QueryLogic<T> {
         this.iterator = other.iterator;
         setMaxPageSize(other.getMaxPageSize());
         setPageByteTrigger(other.getPageByteTrigger());
+        setPrefetchPages(other.getPrefetchPages());
         setCollectQueryMetrics(other.getCollectQueryMetrics());
         setConnPoolName(other.getConnPoolName());
         setPrincipal(other.getPrincipal());
@@ -178,6 +180,16 @@ public abstract class BaseQueryLogic<T> implements QueryLogic<T> {
         this.pageByteTrigger = pageByteTrigger;
     }
     
+    @Override
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+    
+    @Override
+    public void setPrefetchPages(int prefetchPages) {
+        this.prefetchPages = prefetchPages;
+    }
+    
     @Override
     public int getBaseIteratorPriority() {
         return getConfig().getBaseIteratorPriority();
@@ -142,6 +142,11 @@ public interface QueryLogic<T> extends Iterable<T>, Cloneable, ParameterValidato
      */
     long getPageByteTrigger();
     
+    /**
+     * @return the number of pages to prefetch in the background after a page is returned, 0 to disable prefetching
+     */
+    int getPrefetchPages();
+    
     /**
      * Returns the base iterator priority.
      * 
@@ -186,6 +191,12 @@ public interface QueryLogic<T> extends Iterable<T>, Cloneable, ParameterValidato
      */
     void setPageByteTrigger(long pageByteTrigger);
     
+    /**
+     * @param prefetchPages
+     *            the number of pages to prefetch in the background after a page is returned, 0 to disable prefetching
+     */
+    void setPrefetchPages(int prefetchPages);
+    
     /**
      * Sets the base iterator priority
      * 
@@ -48,6 +48,9 @@ public class QueryLogicFactoryImpl implements QueryLogicFactory {
         if (logic.getPageByteTrigger() == 0) {
             logic.setPageByteTrigger(queryLogicFactoryConfiguration.getPageByteTrigger());
         }
+        if (logic.getPrefetchPages() == 0) {
+            logic.setPrefetchPages(queryLogicFactoryConfiguration.getPrefetchPages());
+        }
         return logic;
     }
     
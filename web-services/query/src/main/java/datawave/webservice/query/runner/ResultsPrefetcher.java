@@ -0,0 +1,190 @@
+package datawave.webservice.query.runner;
+
+import datawave.webservice.query.data.ObjectSizeOf;
+import org.apache.commons.collections4.iterators.TransformIterator;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pulls results from a {@link TransformIterator} on a background thread into a bounded buffer so that the next page(s) of a {@link RunningQuery} are ready
+ * before the client asks for them. The buffer is bounded by a result count and, optionally, by a byte budget computed with {@link ObjectSizeOf}. Filling stops
+ * whenever a bound is reached and is resumed by the consumer as results are drained, so no executor thread is held while a client is idle between pages.
+ * <p>
+ * Once a prefetcher has been created for an iterator, it must be the only caller of {@link TransformIterator#hasNext()} and {@link TransformIterator#next()}.
+ */
+class ResultsPrefetcher {
+    
+    private static final Logger log = Logger.getLogger(ResultsPrefetcher.class);
+    
+    private static class Prefetched {
+        private final Object result;
+        private final long bytes;
+        
+        private Prefetched(Object result, long bytes) {
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+    
+    private static final long FILL_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    
+    // marks the end of the results, or the point at which the background fill failed
+    private static final Prefetched END = new Prefetched(null, 0);
+    
+    private final TransformIterator iter;
+    private final ExecutorService executor;
+    private final int maxResults;
+    private final long maxBytes;
+    
+    private final LinkedBlockingQueue<Prefetched> buffer = new LinkedBlockingQueue<>();
+    private final AtomicLong bufferedBytes = new AtomicLong(0);
+    
+    private volatile boolean exhausted = false;
+    private volatile boolean released = false;
+    private volatile Throwable failure = null;
+    private volatile boolean ended = false;
+    
+    // guarded by this
+    private Future<?> fillFuture = null;
+    
+    /**
+     * @param iter
+     *            the iterator to drain
+     * @param executor
+     *            the executor used to fill the buffer
+     * @param maxResults
+     *            the maximum number of results to hold in the buffer
+     * @param maxBytes
+     *            the maximum number of bytes to hold in the buffer, or a value &lt;= 0 to bound by result count only
+     */
+    ResultsPrefetcher(TransformIterator iter, ExecutorService executor, int maxResults, long maxBytes) {
+        this.iter = iter;
+        this.executor = executor;
+        this.maxResults = Math.max(1, maxResults);
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Start filling the buffer in the background if it is not already being filled and there is room for more results.
+     */
+    synchronized void fill() {
+        if (released || exhausted || isFull() || (fillFuture != null && !fillFuture.isDone())) {
+            return;
+        }
+        try {
+            fillFuture = executor.submit(this::fillBuffer);
+        } catch (RejectedExecutionException e) {
+            // the consumer will simply retry the next time results are requested
+            log.debug("Prefetch rejected by executor, will retry on the next request", e);
+        }
+    }
+    
+    private void fillBuffer() {
+        try {
+            while (!released && !isFull()) {
+                Object o = (iter.hasNext() ? iter.next() : null);
+                if (o == null) {
+                    exhausted = true;
+                    buffer.add(END);
+                    break;
+                }
+                long bytes = (maxBytes > 0 ? ObjectSizeOf.Sizer.getObjectSize(o) : 0);
+                bufferedBytes.addAndGet(bytes);
+                buffer.add(new Prefetched(o, bytes));
+            }
+        } catch (Throwable t) {
+            if (!released) {
+                failure = t;
+                exhausted = true;
+                buffer.add(END);
+            }
+        }
+    }
+    
+    private boolean isFull() {
+        return buffer.size() >= maxResults || (maxBytes > 0 && bufferedBytes.get() >= maxBytes);
+    }
+    
+    /**
+     * @return true if a result is buffered or may still be produced
+     */
+    boolean hasNext() {
+        return !ended && !released;
+    }
+    
+    /**
+     * Get the next buffered result, waiting up to the specified time for one to be produced. The buffer is refilled in the background as results are taken.
+     * 
+     * @param timeout
+     *            the maximum time to wait
+     * @param unit
+     *            the unit of the timeout
+     * @return the next result, or null if none was produced in time or there are no more results (see {@link #hasNext()} to distinguish the two)
+     * @throws ExecutionException
+     *             if the background fill failed; results produced before the failure are returned first
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    Object poll(long timeout, TimeUnit unit) throws ExecutionException, InterruptedException {
+        if (!hasNext()) {
+            return null;
+        }
+        Prefetched prefetched = buffer.poll();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (prefetched == null) {
+            // a fill that just found the buffer full may not have completed yet, so periodically make sure one is running
+            fill();
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            prefetched = buffer.poll(Math.min(remaining, FILL_CHECK_NANOS), TimeUnit.NANOSECONDS);
+        }
+        if (prefetched == END) {
+            ended = true;
+            Throwable t = failure;
+            if (t != null) {
+                failure = null;
+                throw new ExecutionException(t);
+            }
+            return null;
+        }
+        bufferedBytes.addAndGet(-prefetched.bytes);
+        fill();
+        return prefetched.result;
+    }
+    
+    /**
+     * @return the number of results currently buffered
+     */
+    int getBufferedResults() {
+        return buffer.size();
+    }
+    
+    /**
+     * @return the estimated number of bytes currently buffered, 0 if the buffer is not bounded by bytes
+     */
+    long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+    
+    /**
+     * Stop filling, cancel any background fill in progress and drop the buffered results.
+     */
+    synchronized void release() {
+        released = true;
+        if (fillFuture != null) {
+            fillFuture.cancel(true);
+            fillFuture = null;
+        }
+        buffer.clear();
+        bufferedBytes.set(0);
+    }
+}
@@ -64,6 +64,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
     private RunningQueryTiming timing = null;
     private ExecutorService executor = null;
     private volatile Future<Object> future = null;
+    private transient volatile ResultsPrefetcher prefetcher = null;
     private QueryPredictor predictor = null;
     private long maxResults = 0;
     
@@ -211,7 +212,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
             // test for any exceptions prior to loop as hasNext() would likely be false;
             testForUncaughtException(resultList.size());
             
-            while (!this.finished && ((future != null) || this.iter.hasNext())) {
+            while (!this.finished && ((future != null) || (prefetcher != null ? prefetcher.hasNext() : this.iter.hasNext()))) {
                 // if we are canceled, then break out
                 if (this.canceled) {
                     log.info("Query has been cancelled, aborting query.next call");
@@ -266,7 +267,16 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                 }
                 
                 Object o = null;
-                if (executor != null) {
+                boolean waiting = false;
+                if (prefetcher != null) {
+                    try {
+                        o = prefetcher.poll(1, TimeUnit.MINUTES);
+                        // if nothing was produced in time, then we are still waiting....simply continue
+                        waiting = (o == null && prefetcher.hasNext());
+                    } catch (InterruptedException ie) {
+                        // in this case we were most likely cancelled, no longer waiting
+                    }
+                } else if (executor != null) {
                     if (future == null) {
                         future = executor.submit(() -> iter.next());
                     }
@@ -282,6 +292,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                         throw ee;
                     } catch (TimeoutException te) {
                         // in this case we are still waiting on our future....simply continue
+                        waiting = true;
                     }
                 } else {
                     o = iter.next();
@@ -292,8 +303,8 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                     ((WritesQueryMetrics) iter.getTransformer()).writeQueryMetrics(this.getMetric());
                 }
                 
-                // if not still waiting on a future, then process the result (or lack thereof)
-                if (future == null) {
+                // if not still waiting on a future or the prefetcher, then process the result (or lack thereof)
+                if (!waiting) {
                     if (null == o) {
                         log.debug("Null result encountered, no more results");
                         this.finished = true;
@@ -320,6 +331,9 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
             if (!resultList.isEmpty()) {
                 this.getMetric().setLifecycle(QueryMetric.Lifecycle.RESULTS);
             }
+            
+            // start filling the next page(s) while the client processes this one
+            prefetch();
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             this.getMetric().setError(e);
@@ -344,8 +358,41 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
         }
     }
     
+    /**
+     * If prefetching is enabled for the query logic, start pulling the next page(s) of results in the background. The prefetch buffer is bounded by the page
+     * size and, when the logic has a page byte trigger, by the page byte trigger times the number of pages to prefetch.
+     */
+    private void prefetch() {
+        if (this.finished || this.canceled || this.executor == null) {
+            return;
+        }
+        if (this.prefetcher == null) {
+            // a pending future still owns the iterator
+            if (this.future != null || this.logic.getPrefetchPages() <= 0) {
+                return;
+            }
+            int pageSize = this.settings.getPagesize();
+            if (this.logic.getMaxPageSize() > 0) {
+                pageSize = Math.min(pageSize, this.logic.getMaxPageSize());
+            }
+            int pages = this.logic.getPrefetchPages();
+            long maxBytes = (this.logic.getPageByteTrigger() > 0 ? this.logic.getPageByteTrigger() * pages : 0);
+            this.prefetcher = new ResultsPrefetcher(this.iter, this.executor, pageSize * pages, maxBytes);
+        }
+        this.prefetcher.fill();
+    }
+    
+    private void releasePrefetcher() {
+        ResultsPrefetcher prefetcher = this.prefetcher;
+        if (prefetcher != null) {
+            prefetcher.release();
+        }
+    }
+    
     public void cancel() {
         this.canceled = true;
+        // stop any background prefetch and drop what it buffered
+        releasePrefetcher();
         // save off the future as it could be removed at any time
         Future<Object> future = this.future;
         // cancel the future if we have one
@@ -419,6 +466,8 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
     public void closeConnection(AccumuloConnectionFactory factory) throws Exception {
         this.getMetric().setLifecycle(BaseQueryMetric.Lifecycle.CLOSED);
         
+        releasePrefetcher();
+        
         if (iter != null && iter.getTransformer() instanceof WritesResultCardinalities) {
             ((WritesResultCardinalities) iter.getTransformer()).writeResultCardinalities();
         }
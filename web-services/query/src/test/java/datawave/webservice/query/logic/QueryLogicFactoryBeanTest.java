@@ -71,7 +71,7 @@ public class QueryLogicFactoryBeanTest extends EasyMockSupport {
         Whitebox.setInternalState(bean, ClassPathXmlApplicationContext.class, queryFactory);
         
         ctx = createMock(EJBContext.class);
-        logic = createMockBuilder(BaseQueryLogic.class).addMockedMethods("setLogicName", "getMaxPageSize", "getPageByteTrigger").createMock();
+        logic = createMockBuilder(BaseQueryLogic.class).addMockedMethods("setLogicName", "getMaxPageSize", "getPageByteTrigger", "getPrefetchPages").createMock();
         DatawaveUser user = new DatawaveUser(SubjectIssuerDNPair.of("CN=Poe Edgar Allan eapoe, OU=acme", "<CN=ca, OU=acme>"), UserType.USER, null, null, null,
                         0L);
         principal = new DatawavePrincipal(Collections.singletonList(user));
@@ -102,10 +102,12 @@ public class QueryLogicFactoryBeanTest extends EasyMockSupport {
         QueryLogicFactoryConfiguration qlfc = new QueryLogicFactoryConfiguration();
         qlfc.setMaxPageSize(25);
         qlfc.setPageByteTrigger(1024L);
+        qlfc.setPrefetchPages(1);
         this.logic.setPrincipal(altPrincipal);
         this.logic.setLogicName(queryName);
         expect(this.logic.getMaxPageSize()).andReturn(25);
         expect(this.logic.getPageByteTrigger()).andReturn(1024L);
+        expect(this.logic.getPrefetchPages()).andReturn(1);
         expect(this.applicationContext.getBean(queryName)).andReturn(this.logic);
         
         // Run the test
@@ -130,6 +132,7 @@ public class QueryLogicFactoryBeanTest extends EasyMockSupport {
         QueryLogicFactoryConfiguration qlfc = new QueryLogicFactoryConfiguration();
         qlfc.setMaxPageSize(25);
         qlfc.setPageByteTrigger(1024L);
+        qlfc.setPrefetchPages(2);
         
         Map<String,Collection<String>> rolesMap = new HashMap<>();
         rolesMap.put(queryName, roles);
@@ -138,8 +141,10 @@ public class QueryLogicFactoryBeanTest extends EasyMockSupport {
         this.logic.setLogicName(queryName);
         expect(this.logic.getMaxPageSize()).andReturn(0);
         expect(this.logic.getPageByteTrigger()).andReturn(0L);
+        expect(this.logic.getPrefetchPages()).andReturn(0);
         this.logic.setMaxPageSize(25);
         this.logic.setPageByteTrigger(1024L);
+        this.logic.setPrefetchPages(2);
         expect(this.applicationContext.getBean(queryName)).andReturn(this.logic);
         
         // Run the test
@@ -0,0 +1,125 @@
+package datawave.webservice.query.runner;
+
+import org.apache.commons.collections4.Transformer;
+import org.apache.commons.collections4.iterators.TransformIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResultsPrefetcherTest {
+    
+    private ExecutorService executor;
+    
+    @Before
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+    
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    public void testReturnsAllResultsInOrder() throws Exception {
+        List<String> expected = Arrays.asList("a", "b", "c", "d", "e", "f", "g");
+        ResultsPrefetcher prefetcher = new ResultsPrefetcher(new TransformIterator(expected.iterator()), executor, 3, 0);
+        
+        List<Object> results = new ArrayList<>();
+        while (prefetcher.hasNext()) {
+            Object o = prefetcher.poll(1, TimeUnit.MINUTES);
+            if (o != null) {
+                results.add(o);
+            }
+        }
+        assertEquals(expected, results);
+        assertNull(prefetcher.poll(1, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void testBufferIsBounded() throws Exception {
+        ResultsPrefetcher prefetcher = new ResultsPrefetcher(new TransformIterator(new CountingIterator(1000)), executor, 5, 0);
+        prefetcher.fill();
+        waitForBuffer(prefetcher, 5);
+        Thread.sleep(100);
+        assertEquals(5, prefetcher.getBufferedResults());
+        
+        assertEquals(0, prefetcher.poll(1, TimeUnit.MINUTES));
+        waitForBuffer(prefetcher, 5);
+        assertEquals(5, prefetcher.getBufferedResults());
+    }
+    
+    @Test
+    public void testFailureSurfacesAfterBufferedResults() throws Exception {
+        Transformer<Object,Object> transformer = input -> {
+            if (((Integer) input) == 2) {
+                throw new IllegalStateException("INTENTIONALLY THROWN TEST EXCEPTION");
+            }
+            return input;
+        };
+        ResultsPrefetcher prefetcher = new ResultsPrefetcher(new TransformIterator(new CountingIterator(5), transformer), executor, 10, 0);
+        
+        assertEquals(0, prefetcher.poll(1, TimeUnit.MINUTES));
+        assertEquals(1, prefetcher.poll(1, TimeUnit.MINUTES));
+        try {
+            prefetcher.poll(1, TimeUnit.MINUTES);
+            fail("Expected the background failure to be thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertFalse(prefetcher.hasNext());
+    }
+    
+    @Test
+    public void testReleaseDropsBuffer() throws Exception {
+        ResultsPrefetcher prefetcher = new ResultsPrefetcher(new TransformIterator(new CountingIterator(1000)), executor, 5, 0);
+        prefetcher.fill();
+        waitForBuffer(prefetcher, 5);
+        
+        prefetcher.release();
+        assertEquals(0, prefetcher.getBufferedResults());
+        assertFalse(prefetcher.hasNext());
+        assertNull(prefetcher.poll(1, TimeUnit.MINUTES));
+    }
+    
+    private static void waitForBuffer(ResultsPrefetcher prefetcher, int size) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (prefetcher.getBufferedResults() < size && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+    }
+    
+    private static class CountingIterator implements Iterator<Object> {
+        private final int max;
+        private int next = 0;
+        
+        private CountingIterator(int max) {
+            this.max = max;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next < max;
+        }
+        
+        @Override
+        public Object next() {
+            return next++;
+        }
+    }
+}